@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+/**
+ * A source of byte arrays for use as stream buffers, to which buffers
+ * are returned when no longer needed so that they may be reused.
+ * Streams created with a recycler, such as {@link
+ * UnsyncBufferedInputStream}, {@link UnsyncBufferedOutputStream} and
+ * {@link UnsyncByteArrayOutputStream}, obtain their buffers from it,
+ * and release them to it when closed, so that an application
+ * creating a stream per request can avoid allocating a buffer each
+ * time.
+ *
+ * <p>A buffer released to a recycler must no longer be used by the
+ * releasing code.  Buffers handed out by a recycler are not cleared,
+ * so they may contain data written by a previous user; a recycler
+ * should not be shared by code that must not see each other's data.
+ *
+ * @see UnsyncBufferedInputStream
+ * @see UnsyncBufferedOutputStream
+ * @see UnsyncByteArrayOutputStream
+ * @since 1.8
+ */
+public interface BufferRecycler {
+
+    /**
+     * Returns an array of at least the given length.
+     *
+     * @param minSize the minimum length of the array
+     * @return an array of length at least {@code minSize}
+     * @throws IllegalArgumentException if {@code minSize} is negative
+     */
+    byte[] allocate(int minSize);
+
+    /**
+     * Returns a buffer to this recycler, which may hand it out again
+     * from {@link #allocate}, or discard it.
+     *
+     * @param buffer the buffer, which the caller must no longer use
+     * @throws NullPointerException if {@code buffer} is null
+     */
+    void release(byte[] buffer);
+
+    /**
+     * Returns a recycler that allocates a new array of exactly the
+     * requested length for each buffer, and discards released buffers.
+     *
+     * @return a non-pooling recycler
+     */
+    static BufferRecycler heap() {
+        return BufferRecyclers.HEAP;
+    }
+
+    /**
+     * Returns a new recycler that keeps, for each thread, released
+     * buffers of each power-of-two length from 1 KB to 1 MB, up to a
+     * total of 4 MB per thread, and hands them out again to the same
+     * thread.  This is equivalent to {@code threadLocal(1L << 22)}.
+     *
+     * @return a new thread-local recycler
+     * @see #threadLocal(long)
+     */
+    static BufferRecycler threadLocal() {
+        return new BufferRecyclers.ThreadLocalRecycler(
+            BufferRecyclers.ThreadLocalRecycler.DEFAULT_MAX_RETAINED);
+    }
+
+    /**
+     * Returns a new recycler that keeps, for each thread, released
+     * buffers of each power-of-two length from 1 KB to 1 MB, and hands
+     * them out again to the same thread, most recently released first.
+     * Requests for up to 1 MB are rounded up to a power of two; larger
+     * buffers are not kept.  A buffer released when the buffers kept
+     * for the thread would then exceed {@code maxRetained} bytes in
+     * total is discarded.  This suits streams that are created, used
+     * and closed within a single thread, as in per-request processing;
+     * to recycle all the chunks of a {@link ChunkedByteArrayOutputStream},
+     * {@code maxRetained} should be at least the size of its content.
+     *
+     * <p>Each invocation returns a distinct recycler, so buffers are
+     * never shared with other callers of this method.  The recycler
+     * should be created once and retained, since buffers are reused
+     * only among streams using the same recycler.
+     *
+     * @param maxRetained the greatest total length, in bytes, of the
+     *        buffers kept for each thread
+     * @return a new thread-local recycler
+     * @throws IllegalArgumentException if {@code maxRetained} is
+     *         negative
+     */
+    static BufferRecycler threadLocal(long maxRetained) {
+        if (maxRetained < 0L)
+            throw new IllegalArgumentException("Negative maxRetained");
+        return new BufferRecyclers.ThreadLocalRecycler(maxRetained);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+import java.util.Arrays;
+
+/**
+ * Implementations of {@link BufferRecycler}.
+ */
+final class BufferRecyclers {
+
+    private BufferRecyclers() {}
+
+    static final BufferRecycler HEAP = new BufferRecycler() {
+        public byte[] allocate(int minSize) {
+            if (minSize < 0)
+                throw new IllegalArgumentException("Negative size");
+            return new byte[minSize];
+        }
+
+        public void release(byte[] buffer) {
+            if (buffer == null)
+                throw new NullPointerException();
+        }
+    };
+
+    /**
+     * Keeps, for each thread, a stack of released buffers for each
+     * power-of-two size class, bounded by the total length of the
+     * buffers kept for the thread.
+     */
+    static final class ThreadLocalRecycler implements BufferRecycler {
+        static final int MIN_SHIFT = 10;
+        static final int MAX_SHIFT = 20;
+
+        /** The default bound on the bytes kept per thread */
+        static final long DEFAULT_MAX_RETAINED = 1L << 22;
+
+        /** The buffers kept by a thread */
+        static final class Pool {
+            final byte[][][] stacks = new byte[MAX_SHIFT - MIN_SHIFT + 1][][];
+            final int[] counts = new int[MAX_SHIFT - MIN_SHIFT + 1];
+            long retained;      // total length of the buffers kept
+        }
+
+        private final long maxRetained;
+
+        private final ThreadLocal<Pool> pools = new ThreadLocal<Pool>() {
+            protected Pool initialValue() {
+                return new Pool();
+            }
+        };
+
+        ThreadLocalRecycler(long maxRetained) {
+            this.maxRetained = maxRetained;
+        }
+
+        public byte[] allocate(int minSize) {
+            if (minSize < 0)
+                throw new IllegalArgumentException("Negative size");
+            if (minSize > 1 << MAX_SHIFT)
+                return new byte[minSize];
+            int shift = (minSize <= 1 << MIN_SHIFT) ? MIN_SHIFT :
+                32 - Integer.numberOfLeadingZeros(minSize - 1);
+            Pool p = pools.get();
+            int i = shift - MIN_SHIFT, n = p.counts[i];
+            if (n == 0)
+                return new byte[1 << shift];
+            byte[][] stack = p.stacks[i];
+            byte[] b = stack[--n];
+            stack[n] = null;
+            p.counts[i] = n;
+            p.retained -= b.length;
+            return b;
+        }
+
+        public void release(byte[] buffer) {
+            int len = buffer.length;
+            if ((len & (len - 1)) != 0 ||
+                len < 1 << MIN_SHIFT || len > 1 << MAX_SHIFT)
+                return;
+            Pool p = pools.get();
+            if (p.retained + len > maxRetained)
+                return;
+            int i = Integer.numberOfTrailingZeros(len) - MIN_SHIFT;
+            int n = p.counts[i];
+            byte[][] stack = p.stacks[i];
+            if (stack == null)
+                p.stacks[i] = stack = new byte[8][];
+            else if (n == stack.length)
+                p.stacks[i] = stack = Arrays.copyOf(stack, n << 1);
+            stack[n] = buffer;
+            p.counts[i] = n + 1;
+            p.retained += len;
+        }
+    }
+}
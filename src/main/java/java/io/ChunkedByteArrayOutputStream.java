@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * An output stream in which the data is written into a sequence of
+ * fixed-size chunks.  Unlike a {@link ByteArrayOutputStream}, which
+ * copies its contents into a new array each time it grows, and again
+ * when they are retrieved by {@code toByteArray()}, this stream only
+ * ever appends to its last chunk, adding another when that is full,
+ * so data written to it is copied once.  The contents may be written
+ * out by {@link #writeTo(GatheringByteChannel)} in a single gathering
+ * operation, or viewed as an array of read-only buffers by {@link
+ * #toByteBuffers()}, without being gathered into a single array.
+ *
+ * <p>Chunks are obtained from a {@link BufferRecycler}, and are
+ * released to it when the stream is {@linkplain #reset reset} or
+ * {@linkplain #close closed}.  Closing the stream discards its
+ * contents.  The stream may still be written after it is closed, as if
+ * it had been reset, in which case new chunks are obtained.  A pooling
+ * recycler keeps only a bounded number of chunks (see {@link
+ * BufferRecycler#threadLocal(long)}), beyond which released chunks are
+ * discarded.
+ *
+ * <p>Like {@link UnsyncByteArrayOutputStream}, this class does not
+ * synchronize, and instances must be confined to a single thread, or
+ * be handed off between threads safely.
+ *
+ * @see ByteArrayOutputStream
+ * @since 1.8
+ */
+public class ChunkedByteArrayOutputStream extends OutputStream {
+
+    /** The default chunk size */
+    private static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    /**
+     * The maximum size of array to allocate.
+     * Some VMs reserve some header words in an array.
+     * Attempts to allocate larger arrays may result in
+     * OutOfMemoryError: Requested array size exceeds VM limit
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /** The chunk of a stream with no chunks, always full */
+    private static final byte[] EMPTY = new byte[0];
+
+    /** The minimum size of the chunks requested from the recycler */
+    private final int chunkSize;
+
+    /** The source and destination of chunks */
+    private final BufferRecycler recycler;
+
+    /**
+     * The chunks in use, all but the last of which are full; elements
+     * at and beyond {@code chunkCount} are null.
+     */
+    private byte[][] chunks;
+
+    /** The number of chunks in use */
+    private int chunkCount;
+
+    /** The last chunk in use, or EMPTY if none */
+    private byte[] current;
+
+    /** The number of bytes written to the current chunk */
+    private int pos;
+
+    /** The number of bytes in all chunks preceding the current one */
+    private long filled;
+
+    /**
+     * Creates a new chunked output stream with chunks of the default
+     * size, allocated from the heap.
+     */
+    public ChunkedByteArrayOutputStream() {
+        this(DEFAULT_CHUNK_SIZE, BufferRecycler.heap());
+    }
+
+    /**
+     * Creates a new chunked output stream with chunks of the specified
+     * size, allocated from the heap.
+     *
+     * @param   chunkSize   the size of each chunk, in bytes.
+     * @exception  IllegalArgumentException if chunkSize &lt;= 0.
+     */
+    public ChunkedByteArrayOutputStream(int chunkSize) {
+        this(chunkSize, BufferRecycler.heap());
+    }
+
+    /**
+     * Creates a new chunked output stream with chunks of at least the
+     * specified size, obtained from the given recycler.
+     *
+     * @param   chunkSize   the minimum size of each chunk, in bytes.
+     * @param   recycler    the source and destination of chunks.
+     * @exception  IllegalArgumentException if chunkSize &lt;= 0.
+     * @exception  NullPointerException if {@code recycler} is null.
+     */
+    public ChunkedByteArrayOutputStream(int chunkSize,
+                                        BufferRecycler recycler) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size <= 0");
+        }
+        if (recycler == null) {
+            throw new NullPointerException();
+        }
+        this.chunkSize = chunkSize;
+        this.recycler = recycler;
+        this.chunks = new byte[8][];
+        this.current = EMPTY;
+    }
+
+    /**
+     * Appends a new chunk, the current one being full.
+     */
+    private void addChunk() {
+        byte[] c = recycler.allocate(chunkSize);
+        if (chunkCount == chunks.length) {
+            byte[][] a = new byte[chunkCount << 1][];
+            System.arraycopy(chunks, 0, a, 0, chunkCount);
+            chunks = a;
+        }
+        chunks[chunkCount++] = c;
+        filled += pos;
+        current = c;
+        pos = 0;
+    }
+
+    /**
+     * Writes the specified byte to this output stream.
+     *
+     * @param   b   the byte to be written.
+     */
+    public void write(int b) {
+        if (pos == current.length)
+            addChunk();
+        current[pos++] = (byte) b;
+    }
+
+    /**
+     * Writes <code>len</code> bytes from the specified byte array
+     * starting at offset <code>off</code> to this output stream.
+     *
+     * @param   b     the data.
+     * @param   off   the start offset in the data.
+     * @param   len   the number of bytes to write.
+     */
+    public void write(byte b[], int off, int len) {
+        if ((off < 0) || (off > b.length) || (len < 0) ||
+            ((off + len) - b.length > 0)) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (pos == current.length)
+                addChunk();
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(b, off, current, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Writes the complete contents of this output stream to the
+     * specified output stream argument, a chunk at a time.
+     *
+     * @param      out   the output stream to which to write the data.
+     * @exception  IOException  if an I/O error occurs.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        int last = chunkCount - 1;
+        for (int i = 0; i < last; i++)
+            out.write(chunks[i]);
+        if (pos > 0)
+            out.write(current, 0, pos);
+    }
+
+    /**
+     * Writes the complete contents of this output stream to the
+     * specified channel, by gathering writes of the chunks.  The
+     * gathering write is repeated until all bytes have been written,
+     * so the channel should be in blocking mode.
+     *
+     * @param      ch   the channel to which to write the data.
+     * @return     the number of bytes written.
+     * @exception  IOException  if an I/O error occurs.
+     */
+    public long writeTo(GatheringByteChannel ch) throws IOException {
+        ByteBuffer[] bufs = toByteBuffers();
+        long total = size(), written = 0L;
+        int first = 0;
+        while (written < total) {
+            written += ch.write(bufs, first, bufs.length - first);
+            while (first < bufs.length && !bufs[first].hasRemaining())
+                first++;
+        }
+        return written;
+    }
+
+    /**
+     * Returns the contents of this output stream as an array of
+     * read-only buffers, one per chunk, whose remaining bytes are in
+     * order the bytes written.  The buffers share the chunks of this
+     * stream rather than copying them; they are unaffected by later
+     * writes, but must not be used once the stream has been reset or
+     * closed, as the chunks are then released to the recycler.
+     *
+     * @return  the current contents of this output stream, as buffers.
+     */
+    public ByteBuffer[] toByteBuffers() {
+        int n = (pos > 0) ? chunkCount : chunkCount - 1;
+        if (n <= 0)
+            return new ByteBuffer[0];
+        ByteBuffer[] bufs = new ByteBuffer[n];
+        int last = chunkCount - 1;
+        for (int i = 0; i < n; i++) {
+            byte[] c = chunks[i];
+            int len = (i == last) ? pos : c.length;
+            bufs[i] = ByteBuffer.wrap(c, 0, len).asReadOnlyBuffer();
+        }
+        return bufs;
+    }
+
+    /**
+     * Creates a newly allocated byte array. Its size is the current
+     * size of this output stream and the contents of the chunks have
+     * been copied into it.
+     *
+     * @return  the current contents of this output stream, as a byte array.
+     * @exception  OutOfMemoryError if the size of this stream exceeds
+     *             the maximum size of an array.
+     * @see     java.io.ChunkedByteArrayOutputStream#size()
+     */
+    public byte[] toByteArray() {
+        long size = size();
+        if (size > MAX_ARRAY_SIZE)
+            throw new OutOfMemoryError("Required array size too large");
+        byte[] a = new byte[(int) size];
+        int off = 0, last = chunkCount - 1;
+        for (int i = 0; i < last; i++) {
+            byte[] c = chunks[i];
+            System.arraycopy(c, 0, a, off, c.length);
+            off += c.length;
+        }
+        System.arraycopy(current, 0, a, off, pos);
+        return a;
+    }
+
+    /**
+     * Returns the number of bytes written to this output stream since
+     * it was created or last reset or closed.
+     *
+     * @return  the number of valid bytes in this output stream.
+     */
+    public long size() {
+        return filled + pos;
+    }
+
+    /**
+     * Discards the contents of this output stream, releasing all its
+     * chunks but the first to the recycler.  The output stream can be
+     * used again, reusing the first chunk.
+     */
+    public void reset() {
+        release(1);
+    }
+
+    /**
+     * Discards the contents of this output stream, releasing all its
+     * chunks to the recycler.  The methods in this class can be called
+     * after the stream has been closed without generating an
+     * <tt>IOException</tt>.
+     */
+    public void close() {
+        release(0);
+    }
+
+    /**
+     * Releases all chunks at and beyond index {@code keep}, and
+     * empties the stream.
+     */
+    private void release(int keep) {
+        byte[][] cs = chunks;
+        int n = chunkCount;
+        if (keep > n)
+            keep = n;
+        for (int i = keep; i < n; i++) {
+            byte[] c = cs[i];
+            cs[i] = null;
+            recycler.release(c);
+        }
+        chunkCount = keep;
+        current = (keep > 0) ? cs[keep - 1] : EMPTY;
+        pos = 0;
+        filled = 0L;
+    }
+
+    /**
+     * Converts the contents into a string decoding bytes using the
+     * platform's default character set.
+     *
+     * @return String decoded from the contents.
+     */
+    public String toString() {
+        return new String(toByteArray());
+    }
+
+    /**
+     * Converts the contents into a string by decoding the bytes using
+     * the named {@link java.nio.charset.Charset charset}.
+     *
+     * @param      charsetName  the name of a supported
+     *             {@link java.nio.charset.Charset charset}
+     * @return     String decoded from the contents.
+     * @exception  UnsupportedEncodingException
+     *             If the named charset is not supported
+     */
+    public String toString(String charsetName)
+        throws UnsupportedEncodingException
+    {
+        return new String(toByteArray(), charsetName);
+    }
+}
@@ -48,11 +48,16 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import jdk.internal.org.objectweb.asm.ClassWriter;
+import jdk.internal.org.objectweb.asm.MethodVisitor;
 import sun.misc.Unsafe;
 import sun.reflect.CallerSensitive;
 import sun.reflect.Reflection;
 import sun.reflect.ReflectionFactory;
 import sun.reflect.misc.ReflectUtil;
+import sun.security.action.GetBooleanAction;
+
+import static jdk.internal.org.objectweb.asm.Opcodes.*;
 
 /**
  * Serialization's descriptor for classes.  It contains the name and
@@ -1896,8 +1901,9 @@ public class ObjectStreamClass implements Serializable {
 
     /**
      * Class for setting and retrieving serializable field values in batch.
+     * If enabled, subclasses specialized to particular sets of fields are
+     * generated by FieldReflectorGenerator.
      */
-    // REMIND: dynamically generate these?
     private static class FieldReflector {
 
         /** handle for performing unsafe operations */
@@ -2120,18 +2126,7 @@ public class ObjectStreamClass implements Serializable {
                     case 'L':
                     case '[':
                         Object val = vals[offsets[i]];
-                        if (val != null &&
-                            !types[i - numPrimFields].isInstance(val))
-                        {
-                            Field f = fields[i].getField();
-                            throw new ClassCastException(
-                                "cannot assign instance of " +
-                                val.getClass().getName() + " to field " +
-                                f.getDeclaringClass().getName() + "." +
-                                f.getName() + " of type " +
-                                f.getType().getName() + " in instance of " +
-                                obj.getClass().getName());
-                        }
+                        checkObjFieldValue(obj, i, val);
                         unsafe.putObject(obj, key, val);
                         break;
 
@@ -2140,6 +2135,273 @@ public class ObjectStreamClass implements Serializable {
                 }
             }
         }
+
+        /**
+         * Throws ClassCastException if val may not be assigned to the i'th
+         * field, an object field, of obj.
+         */
+        final void checkObjFieldValue(Object obj, int i, Object val) {
+            if (val != null && !types[i - numPrimFields].isInstance(val)) {
+                Field f = fields[i].getField();
+                throw new ClassCastException(
+                    "cannot assign instance of " +
+                    val.getClass().getName() + " to field " +
+                    f.getDeclaringClass().getName() + "." +
+                    f.getName() + " of type " +
+                    f.getType().getName() + " in instance of " +
+                    obj.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Generator of FieldReflector subclasses specialized to a set of fields,
+     * enabled by the "sun.io.serialization.generateFieldReflectors" system
+     * property.  The methods of a generated reflector access each field in
+     * turn with the field's unsafe key as a constant, rather than looping
+     * over the fields and switching on their type codes, so that the JIT
+     * compiler can reduce them to a sequence of loads and stores.  The
+     * values marshalled are the same as those of the base class, so the
+     * serialized form is unchanged.
+     *
+     * <p>Reflectors are generated only for sets of fields that all match
+     * fields of the local class, as is the case when a class is serialized
+     * and deserialized by the same version of the class.  Otherwise, or if
+     * generation fails, an ordinary FieldReflector is used.  Generated
+     * classes are defined as VM-anonymous classes hosted by FieldReflector,
+     * and refer to neither the serialized class nor its fields' types, so
+     * they do not keep them reachable; they are cached along with ordinary
+     * reflectors in Caches.reflectors.
+     */
+    private static final class FieldReflectorGenerator {
+
+        /** true if reflectors should be generated */
+        static final boolean ENABLED =
+            AccessController.doPrivileged(new GetBooleanAction(
+                "sun.io.serialization.generateFieldReflectors")).booleanValue();
+
+        /** maximum number of fields, to keep methods within size limits */
+        private static final int MAX_FIELDS = 1024;
+
+        private static final String NAME =
+            "java/io/ObjectStreamClass$FieldReflector$Generated";
+        private static final String SUPER =
+            "java/io/ObjectStreamClass$FieldReflector";
+        private static final String UNSAFE = "sun/misc/Unsafe";
+        private static final String BITS = "java/io/Bits";
+
+        private static final Unsafe unsafe = Unsafe.getUnsafe();
+
+        /**
+         * Returns a reflector for the given fields, generated if enabled and
+         * possible.
+         */
+        static FieldReflector newReflector(ObjectStreamField[] fields) {
+            FieldReflector refl = new FieldReflector(fields);
+            if (ENABLED && isGeneratable(refl)) {
+                try {
+                    return generate(refl);
+                } catch (ReflectiveOperationException | LinkageError |
+                         RuntimeException | InternalError ex) {
+                    // fall back on the ordinary reflector, whatever went
+                    // wrong in generating, defining or instantiating
+                }
+            }
+            return refl;
+        }
+
+        /**
+         * Returns true if all fields of the given reflector are bound to
+         * distinct fields of a local class.
+         */
+        private static boolean isGeneratable(FieldReflector refl) {
+            int n = refl.fields.length;
+            if (n == 0 || n > MAX_FIELDS) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                long key = refl.readKeys[i];
+                if (key == Unsafe.INVALID_FIELD_OFFSET ||
+                    key != refl.writeKeys[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Generates, defines and instantiates a reflector for the fields of
+         * the given reflector.
+         */
+        private static FieldReflector generate(FieldReflector refl)
+            throws ReflectiveOperationException
+        {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(V1_8, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC,
+                     NAME, null, SUPER, null);
+
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>",
+                "([Ljava/io/ObjectStreamField;)V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKESPECIAL, SUPER, "<init>",
+                               "([Ljava/io/ObjectStreamField;)V", false);
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(-1, -1);
+            mv.visitEnd();
+
+            generateGetPrim(cw, refl);
+            generateSetPrim(cw, refl);
+            generateGetObj(cw, refl);
+            generateSetObj(cw, refl);
+            cw.visitEnd();
+
+            final Class<?> c = unsafe.defineAnonymousClass(
+                FieldReflector.class, cw.toByteArray(), null);
+            Constructor<?> cons = AccessController.doPrivileged(
+                new PrivilegedAction<Constructor<?>>() {
+                    public Constructor<?> run() {
+                        Constructor<?> cons = c.getDeclaredConstructors()[0];
+                        cons.setAccessible(true);
+                        return cons;
+                    }
+                });
+            try {
+                return (FieldReflector) cons.newInstance(
+                    (Object) refl.fields);
+            } catch (InvocationTargetException ex) {
+                throw new InternalError(ex.getCause());
+            }
+        }
+
+        /**
+         * Begins a method of the given name taking the object and a value
+         * array, which throws NullPointerException if the object is null.
+         */
+        private static MethodVisitor begin(ClassWriter cw, String name,
+                                           String arrayDesc) {
+            MethodVisitor mv = cw.visitMethod(0, name,
+                "(Ljava/lang/Object;" + arrayDesc + ")V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKESTATIC, "java/util/Objects",
+                "requireNonNull", "(Ljava/lang/Object;)Ljava/lang/Object;",
+                false);
+            mv.visitInsn(POP);
+            return mv;
+        }
+
+        private static void end(MethodVisitor mv) {
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(-1, -1);
+            mv.visitEnd();
+        }
+
+        /** Pushes the unsafe instance, the object, and the i'th key */
+        private static void pushTarget(MethodVisitor mv, FieldReflector refl,
+                                       int i) {
+            mv.visitFieldInsn(GETSTATIC, SUPER, "unsafe",
+                              "Lsun/misc/Unsafe;");
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitLdcInsn(refl.readKeys[i]);
+        }
+
+        /** Pushes the value array and the i'th offset */
+        private static void pushSlot(MethodVisitor mv, FieldReflector refl,
+                                     int i) {
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitLdcInsn(refl.offsets[i]);
+        }
+
+        /** Returns the Unsafe accessor suffix and descriptor of a type code */
+        private static String suffix(char tcode) {
+            switch (tcode) {
+                case 'Z': return "Boolean";
+                case 'B': return "Byte";
+                case 'C': return "Char";
+                case 'S': return "Short";
+                case 'I': return "Int";
+                case 'F': return "Float";
+                case 'J': return "Long";
+                case 'D': return "Double";
+                default: throw new InternalError();
+            }
+        }
+
+        private static void generateGetPrim(ClassWriter cw,
+                                            FieldReflector refl) {
+            MethodVisitor mv = begin(cw, "getPrimFieldValues", "[B");
+            for (int i = 0; i < refl.numPrimFields; i++) {
+                char tcode = refl.typeCodes[i];
+                pushSlot(mv, refl, i);
+                pushTarget(mv, refl, i);
+                mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "get" + suffix(tcode),
+                                   "(Ljava/lang/Object;J)" + tcode, false);
+                if (tcode == 'B') {
+                    mv.visitInsn(BASTORE);
+                } else {
+                    mv.visitMethodInsn(INVOKESTATIC, BITS, "put" + suffix(tcode),
+                                       "([BI" + tcode + ")V", false);
+                }
+            }
+            end(mv);
+        }
+
+        private static void generateSetPrim(ClassWriter cw,
+                                            FieldReflector refl) {
+            MethodVisitor mv = begin(cw, "setPrimFieldValues", "[B");
+            for (int i = 0; i < refl.numPrimFields; i++) {
+                char tcode = refl.typeCodes[i];
+                pushTarget(mv, refl, i);
+                pushSlot(mv, refl, i);
+                if (tcode == 'B') {
+                    mv.visitInsn(BALOAD);
+                } else {
+                    mv.visitMethodInsn(INVOKESTATIC, BITS, "get" + suffix(tcode),
+                                       "([BI)" + tcode, false);
+                }
+                mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "put" + suffix(tcode),
+                                   "(Ljava/lang/Object;J" + tcode + ")V", false);
+            }
+            end(mv);
+        }
+
+        private static void generateGetObj(ClassWriter cw,
+                                           FieldReflector refl) {
+            MethodVisitor mv = begin(cw, "getObjFieldValues",
+                                     "[Ljava/lang/Object;");
+            for (int i = refl.numPrimFields; i < refl.fields.length; i++) {
+                pushSlot(mv, refl, i);
+                pushTarget(mv, refl, i);
+                mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "getObject",
+                    "(Ljava/lang/Object;J)Ljava/lang/Object;", false);
+                mv.visitInsn(AASTORE);
+            }
+            end(mv);
+        }
+
+        private static void generateSetObj(ClassWriter cw,
+                                           FieldReflector refl) {
+            MethodVisitor mv = begin(cw, "setObjFieldValues",
+                                     "[Ljava/lang/Object;");
+            for (int i = refl.numPrimFields; i < refl.fields.length; i++) {
+                // checkObjFieldValue(obj, i, vals[off])
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitLdcInsn(i);
+                pushSlot(mv, refl, i);
+                mv.visitInsn(AALOAD);
+                mv.visitMethodInsn(INVOKEVIRTUAL, SUPER, "checkObjFieldValue",
+                    "(Ljava/lang/Object;ILjava/lang/Object;)V", false);
+                pushTarget(mv, refl, i);
+                pushSlot(mv, refl, i);
+                mv.visitInsn(AALOAD);
+                mv.visitMethodInsn(INVOKEVIRTUAL, UNSAFE, "putObject",
+                    "(Ljava/lang/Object;JLjava/lang/Object;)V", false);
+            }
+            end(mv);
+        }
     }
 
     /**
@@ -2190,7 +2452,8 @@ public class ObjectStreamClass implements Serializable {
             entry = ((EntryFuture) entry).get();
         } else if (entry == null) {
             try {
-                entry = new FieldReflector(matchFields(fields, localDesc));
+                entry = FieldReflectorGenerator.newReflector(
+                    matchFields(fields, localDesc));
             } catch (Throwable th) {
                 entry = th;
             }
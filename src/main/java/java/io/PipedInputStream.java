@@ -39,6 +39,13 @@ package java.io;
  * The piped input stream contains a buffer,
  * decoupling read operations from write operations,
  * within limits.
+ * <p>
+ * A thread blocked reading from an empty pipe is woken as soon as
+ * data is written, and a thread blocked writing to a full pipe is
+ * woken as soon as data is read.  A pipe may be created with a
+ * buffer that grows, up to a maximum size, when the writer gets
+ * ahead of the reader, rather than blocking the writer.
+ * <p>
  * A pipe is said to be <a name="BROKEN"> <i>broken</i> </a> if a
  * thread that was providing data bytes to the connected
  * piped output stream is no longer alive.
@@ -61,6 +68,19 @@ public class PipedInputStream extends InputStream {
 
     private static final int DEFAULT_PIPE_SIZE = 1024;
 
+    /**
+     * Interval in milliseconds at which a blocked thread checks
+     * whether the thread at the other end of the pipe is still alive.
+     * Blocked threads are otherwise woken by notification.
+     */
+    private static final long LIVENESS_CHECK_INTERVAL = 1000L;
+
+    /** The size up to which the buffer may grow */
+    private int maxPipeSize;
+
+    /** Number of threads waiting for data, or for space */
+    private int readWaiters, writeWaiters;
+
     /**
      * The default size of the pipe's circular input buffer.
      * @since   JDK1.1
@@ -122,7 +142,29 @@ public class PipedInputStream extends InputStream {
      */
     public PipedInputStream(PipedOutputStream src, int pipeSize)
             throws IOException {
-         initPipe(pipeSize);
+         initPipe(pipeSize, pipeSize);
+         connect(src);
+    }
+
+    /**
+     * Creates a <code>PipedInputStream</code> so that it is
+     * connected to the piped output stream <code>src</code> and uses
+     * a buffer of the specified initial size, which grows as needed
+     * up to the specified maximum size before writes block.
+     * Data bytes written to <code>src</code> will then
+     * be available as input from this stream.
+     *
+     * @param      src   the stream to connect to.
+     * @param      pipeSize the initial size of the pipe's buffer.
+     * @param      maxPipeSize the maximum size of the pipe's buffer.
+     * @exception  IOException  if an I/O error occurs.
+     * @exception  IllegalArgumentException if {@code pipeSize <= 0}
+     *             or {@code maxPipeSize < pipeSize}.
+     * @since      1.8
+     */
+    public PipedInputStream(PipedOutputStream src, int pipeSize,
+                            int maxPipeSize) throws IOException {
+         initPipe(pipeSize, maxPipeSize);
          connect(src);
     }
 
@@ -135,7 +177,7 @@ public class PipedInputStream extends InputStream {
      * <code>PipedOutputStream</code> before being used.
      */
     public PipedInputStream() {
-        initPipe(DEFAULT_PIPE_SIZE);
+        initPipe(DEFAULT_PIPE_SIZE, DEFAULT_PIPE_SIZE);
     }
 
     /**
@@ -151,14 +193,37 @@ public class PipedInputStream extends InputStream {
      * @since      1.6
      */
     public PipedInputStream(int pipeSize) {
-        initPipe(pipeSize);
+        initPipe(pipeSize, pipeSize);
+    }
+
+    /**
+     * Creates a <code>PipedInputStream</code> so that it is not yet
+     * {@linkplain #connect(java.io.PipedOutputStream) connected} and
+     * uses a buffer of the specified initial size, which grows as
+     * needed up to the specified maximum size before writes block.
+     * It must be {@linkplain java.io.PipedOutputStream#connect(
+     * java.io.PipedInputStream)
+     * connected} to a <code>PipedOutputStream</code> before being used.
+     *
+     * @param      pipeSize the initial size of the pipe's buffer.
+     * @param      maxPipeSize the maximum size of the pipe's buffer.
+     * @exception  IllegalArgumentException if {@code pipeSize <= 0}
+     *             or {@code maxPipeSize < pipeSize}.
+     * @since      1.8
+     */
+    public PipedInputStream(int pipeSize, int maxPipeSize) {
+        initPipe(pipeSize, maxPipeSize);
     }
 
-    private void initPipe(int pipeSize) {
+    private void initPipe(int pipeSize, int maxPipeSize) {
          if (pipeSize <= 0) {
             throw new IllegalArgumentException("Pipe Size <= 0");
          }
+         if (maxPipeSize < pipeSize) {
+            throw new IllegalArgumentException("Max pipe size < pipe size");
+         }
          buffer = new byte[pipeSize];
+         this.maxPipeSize = maxPipeSize;
     }
 
     /**
@@ -210,6 +275,8 @@ public class PipedInputStream extends InputStream {
         if (in >= buffer.length) {
             in = 0;
         }
+        if (readWaiters > 0)
+            notifyAll();
     }
 
     /**
@@ -225,6 +292,8 @@ public class PipedInputStream extends InputStream {
     synchronized void receive(byte b[], int off, int len)  throws IOException {
         checkStateForReceive();
         writeSide = Thread.currentThread();
+        if (maxPipeSize > buffer.length)
+            grow(len);
         int bytesToTransfer = len;
         while (bytesToTransfer > 0) {
             if (in == out)
@@ -251,6 +320,8 @@ public class PipedInputStream extends InputStream {
                 in = 0;
             }
         }
+        if (readWaiters > 0)
+            notifyAll();
     }
 
     private void checkStateForReceive() throws IOException {
@@ -266,17 +337,50 @@ public class PipedInputStream extends InputStream {
     private void awaitSpace() throws IOException {
         while (in == out) {
             checkStateForReceive();
+            if (maxPipeSize > buffer.length) {
+                grow(1);
+                return;
+            }
 
             /* full: kick any waiting readers */
-            notifyAll();
+            if (readWaiters > 0)
+                notifyAll();
+            writeWaiters++;
             try {
-                wait(1000);
+                wait(LIVENESS_CHECK_INTERVAL);
             } catch (InterruptedException ex) {
                 throw new java.io.InterruptedIOException();
+            } finally {
+                writeWaiters--;
             }
         }
     }
 
+    /**
+     * Grows the buffer, if it has less than the given number of bytes
+     * free, to a size that has, or to the maximum size, and moves the
+     * buffered bytes to its start.
+     */
+    private void grow(int needed) {
+        int n = buffer.length;
+        int used = (in < 0) ? 0 : (in > out) ? in - out : in + n - out;
+        long want = (long)used + needed;
+        if (want <= n)
+            return;
+        int size = n;
+        while (size < want && size < maxPipeSize)
+            size = (int)Math.min((long)size << 1, maxPipeSize);
+        byte[] newBuffer = new byte[size];
+        if (used > 0) {
+            int first = Math.min(used, n - out);
+            System.arraycopy(buffer, out, newBuffer, 0, first);
+            System.arraycopy(buffer, 0, newBuffer, first, used - first);
+            out = 0;
+            in = used;
+        }
+        buffer = newBuffer;
+    }
+
     /**
      * Notifies all waiting threads that the last byte of data has been
      * received.
@@ -301,6 +405,29 @@ public class PipedInputStream extends InputStream {
      *           or if an I/O error occurs.
      */
     public synchronized int read()  throws IOException {
+        if (!awaitData()) {
+            return -1;
+        }
+        int ret = buffer[out++] & 0xFF;
+        if (out >= buffer.length) {
+            out = 0;
+        }
+        if (in == out) {
+            /* now empty */
+            in = -1;
+        }
+        if (writeWaiters > 0)
+            notifyAll();
+
+        return ret;
+    }
+
+    /**
+     * Waits while the buffer is empty.
+     *
+     * @return false if the end of the stream has been reached
+     */
+    private boolean awaitData() throws IOException {
         if (!connected) {
             throw new IOException("Pipe not connected");
         } else if (closedByReader) {
@@ -315,29 +442,21 @@ public class PipedInputStream extends InputStream {
         while (in < 0) {
             if (closedByWriter) {
                 /* closed by writer, return EOF */
-                return -1;
+                return false;
             }
             if ((writeSide != null) && (!writeSide.isAlive()) && (--trials < 0)) {
                 throw new IOException("Pipe broken");
             }
-            /* might be a writer waiting */
-            notifyAll();
+            readWaiters++;
             try {
-                wait(1000);
+                wait(LIVENESS_CHECK_INTERVAL);
             } catch (InterruptedException ex) {
                 throw new java.io.InterruptedIOException();
+            } finally {
+                readWaiters--;
             }
         }
-        int ret = buffer[out++] & 0xFF;
-        if (out >= buffer.length) {
-            out = 0;
-        }
-        if (in == out) {
-            /* now empty */
-            in = -1;
-        }
-
-        return ret;
+        return true;
     }
 
     /**
@@ -373,26 +492,23 @@ public class PipedInputStream extends InputStream {
             return 0;
         }
 
-        /* possibly wait on the first character */
-        int c = read();
-        if (c < 0) {
+        /* possibly wait on the first byte */
+        if (!awaitData()) {
             return -1;
         }
-        b[off] = (byte) c;
-        int rlen = 1;
-        while ((in >= 0) && (len > 1)) {
+        int rlen = 0;
+        while ((in >= 0) && (len > 0)) {
 
             int available;
 
             if (in > out) {
-                available = Math.min((buffer.length - out), (in - out));
+                available = in - out;
             } else {
                 available = buffer.length - out;
             }
 
-            // A byte is read beforehand outside the loop
-            if (available > (len - 1)) {
-                available = len - 1;
+            if (available > len) {
+                available = len;
             }
             System.arraycopy(buffer, out, b, off + rlen, available);
             out += available;
@@ -407,6 +523,8 @@ public class PipedInputStream extends InputStream {
                 in = -1;
             }
         }
+        if (writeWaiters > 0)
+            notifyAll();
         return rlen;
     }
 
@@ -444,6 +562,7 @@ public class PipedInputStream extends InputStream {
         closedByReader = true;
         synchronized (this) {
             in = -1;
+            notifyAll();
         }
     }
 }
@@ -28,6 +28,12 @@ package java.io;
 
 /**
  * Piped character-input streams.
+ * <p>
+ * A thread blocked reading from an empty pipe is woken as soon as
+ * characters are written, and a thread blocked writing to a full pipe
+ * is woken as soon as characters are read.  A pipe may be created
+ * with a buffer that grows, up to a maximum size, when the writer gets
+ * ahead of the reader, rather than blocking the writer.
  *
  * @author      Mark Reinhold
  * @since       JDK1.1
@@ -50,6 +56,19 @@ public class PipedReader extends Reader {
     */
     private static final int DEFAULT_PIPE_SIZE = 1024;
 
+    /**
+     * Interval in milliseconds at which a blocked thread checks
+     * whether the thread at the other end of the pipe is still alive.
+     * Blocked threads are otherwise woken by notification.
+     */
+    private static final long LIVENESS_CHECK_INTERVAL = 1000L;
+
+    /** The size up to which the buffer may grow */
+    private int maxPipeSize;
+
+    /** Number of threads waiting for data, or for space */
+    private int readWaiters, writeWaiters;
+
     /**
      * The circular buffer into which incoming data is placed.
      */
@@ -95,7 +114,28 @@ public class PipedReader extends Reader {
      * @since      1.6
      */
     public PipedReader(PipedWriter src, int pipeSize) throws IOException {
-        initPipe(pipeSize);
+        initPipe(pipeSize, pipeSize);
+        connect(src);
+    }
+
+    /**
+     * Creates a <code>PipedReader</code> so that it is connected
+     * to the piped writer <code>src</code> and uses a buffer of the
+     * specified initial size, which grows as needed up to the
+     * specified maximum size before writes block. Data written to
+     * <code>src</code> will then be available as input from this stream.
+     *
+     * @param      src       the stream to connect to.
+     * @param      pipeSize  the initial size of the pipe's buffer.
+     * @param      maxPipeSize  the maximum size of the pipe's buffer.
+     * @exception  IOException  if an I/O error occurs.
+     * @exception  IllegalArgumentException if {@code pipeSize <= 0}
+     *             or {@code maxPipeSize < pipeSize}.
+     * @since      1.8
+     */
+    public PipedReader(PipedWriter src, int pipeSize, int maxPipeSize)
+            throws IOException {
+        initPipe(pipeSize, maxPipeSize);
         connect(src);
     }
 
@@ -108,7 +148,7 @@ public class PipedReader extends Reader {
      * before being used.
      */
     public PipedReader() {
-        initPipe(DEFAULT_PIPE_SIZE);
+        initPipe(DEFAULT_PIPE_SIZE, DEFAULT_PIPE_SIZE);
     }
 
     /**
@@ -124,14 +164,37 @@ public class PipedReader extends Reader {
      * @since      1.6
      */
     public PipedReader(int pipeSize) {
-        initPipe(pipeSize);
+        initPipe(pipeSize, pipeSize);
+    }
+
+    /**
+     * Creates a <code>PipedReader</code> so that it is not yet
+     * {@link #connect(java.io.PipedWriter) connected} and uses a
+     * buffer of the specified initial size, which grows as needed up
+     * to the specified maximum size before writes block.
+     * It must be  {@linkplain java.io.PipedWriter#connect(
+     * java.io.PipedReader) connected} to a <code>PipedWriter</code>
+     * before being used.
+     *
+     * @param   pipeSize the initial size of the pipe's buffer.
+     * @param   maxPipeSize the maximum size of the pipe's buffer.
+     * @exception  IllegalArgumentException if {@code pipeSize <= 0}
+     *             or {@code maxPipeSize < pipeSize}.
+     * @since      1.8
+     */
+    public PipedReader(int pipeSize, int maxPipeSize) {
+        initPipe(pipeSize, maxPipeSize);
     }
 
-    private void initPipe(int pipeSize) {
+    private void initPipe(int pipeSize, int maxPipeSize) {
         if (pipeSize <= 0) {
             throw new IllegalArgumentException("Pipe size <= 0");
         }
+        if (maxPipeSize < pipeSize) {
+            throw new IllegalArgumentException("Max pipe size < pipe size");
+        }
         buffer = new char[pipeSize];
+        this.maxPipeSize = maxPipeSize;
     }
 
     /**
@@ -166,6 +229,54 @@ public class PipedReader extends Reader {
      * available.
      */
     synchronized void receive(int c) throws IOException {
+        checkStateForReceive();
+        writeSide = Thread.currentThread();
+        if (in == out)
+            awaitSpace();
+        if (in < 0) {
+            in = 0;
+            out = 0;
+        }
+        buffer[in++] = (char) c;
+        if (in >= buffer.length) {
+            in = 0;
+        }
+        if (readWaiters > 0)
+            notifyAll();
+    }
+
+    /**
+     * Receives data into an array of characters.  This method will
+     * block until some input is available.
+     */
+    synchronized void receive(char c[], int off, int len)  throws IOException {
+        checkStateForReceive();
+        writeSide = Thread.currentThread();
+        if (maxPipeSize > buffer.length)
+            grow(len);
+        while (len > 0) {
+            if (in == out)
+                awaitSpace();
+            if (in < 0) {
+                in = 0;
+                out = 0;
+            }
+            int n = (in < out) ? out - in : buffer.length - in;
+            if (n > len)
+                n = len;
+            System.arraycopy(c, off, buffer, in, n);
+            len -= n;
+            off += n;
+            in += n;
+            if (in >= buffer.length) {
+                in = 0;
+            }
+        }
+        if (readWaiters > 0)
+            notifyAll();
+    }
+
+    private void checkStateForReceive() throws IOException {
         if (!connected) {
             throw new IOException("Pipe not connected");
         } else if (closedByWriter || closedByReader) {
@@ -173,38 +284,52 @@ public class PipedReader extends Reader {
         } else if (readSide != null && !readSide.isAlive()) {
             throw new IOException("Read end dead");
         }
+    }
 
-        writeSide = Thread.currentThread();
+    private void awaitSpace() throws IOException {
         while (in == out) {
-            if ((readSide != null) && !readSide.isAlive()) {
-                throw new IOException("Pipe broken");
+            checkStateForReceive();
+            if (maxPipeSize > buffer.length) {
+                grow(1);
+                return;
             }
             /* full: kick any waiting readers */
-            notifyAll();
+            if (readWaiters > 0)
+                notifyAll();
+            writeWaiters++;
             try {
-                wait(1000);
+                wait(LIVENESS_CHECK_INTERVAL);
             } catch (InterruptedException ex) {
                 throw new java.io.InterruptedIOException();
+            } finally {
+                writeWaiters--;
             }
         }
-        if (in < 0) {
-            in = 0;
-            out = 0;
-        }
-        buffer[in++] = (char) c;
-        if (in >= buffer.length) {
-            in = 0;
-        }
     }
 
     /**
-     * Receives data into an array of characters.  This method will
-     * block until some input is available.
+     * Grows the buffer, if it has less than the given number of
+     * characters free, to a size that has, or to the maximum size, and
+     * moves the buffered characters to its start.
      */
-    synchronized void receive(char c[], int off, int len)  throws IOException {
-        while (--len >= 0) {
-            receive(c[off++]);
+    private void grow(int needed) {
+        int n = buffer.length;
+        int used = (in < 0) ? 0 : (in > out) ? in - out : in + n - out;
+        long want = (long)used + needed;
+        if (want <= n)
+            return;
+        int size = n;
+        while (size < want && size < maxPipeSize)
+            size = (int)Math.min((long)size << 1, maxPipeSize);
+        char[] newBuffer = new char[size];
+        if (used > 0) {
+            int first = Math.min(used, n - out);
+            System.arraycopy(buffer, out, newBuffer, 0, first);
+            System.arraycopy(buffer, 0, newBuffer, first, used - first);
+            out = 0;
+            in = used;
         }
+        buffer = newBuffer;
     }
 
     /**
@@ -231,6 +356,28 @@ public class PipedReader extends Reader {
      *          or an I/O error occurs.
      */
     public synchronized int read()  throws IOException {
+        if (!awaitData()) {
+            return -1;
+        }
+        int ret = buffer[out++];
+        if (out >= buffer.length) {
+            out = 0;
+        }
+        if (in == out) {
+            /* now empty */
+            in = -1;
+        }
+        if (writeWaiters > 0)
+            notifyAll();
+        return ret;
+    }
+
+    /**
+     * Waits while the buffer is empty.
+     *
+     * @return false if the end of the stream has been reached
+     */
+    private boolean awaitData() throws IOException {
         if (!connected) {
             throw new IOException("Pipe not connected");
         } else if (closedByReader) {
@@ -245,28 +392,21 @@ public class PipedReader extends Reader {
         while (in < 0) {
             if (closedByWriter) {
                 /* closed by writer, return EOF */
-                return -1;
+                return false;
             }
             if ((writeSide != null) && (!writeSide.isAlive()) && (--trials < 0)) {
                 throw new IOException("Pipe broken");
             }
-            /* might be a writer waiting */
-            notifyAll();
+            readWaiters++;
             try {
-                wait(1000);
+                wait(LIVENESS_CHECK_INTERVAL);
             } catch (InterruptedException ex) {
                 throw new java.io.InterruptedIOException();
+            } finally {
+                readWaiters--;
             }
         }
-        int ret = buffer[out++];
-        if (out >= buffer.length) {
-            out = 0;
-        }
-        if (in == out) {
-            /* now empty */
-            in = -1;
-        }
-        return ret;
+        return true;
     }
 
     /**
@@ -305,15 +445,19 @@ public class PipedReader extends Reader {
         }
 
         /* possibly wait on the first character */
-        int c = read();
-        if (c < 0) {
+        if (!awaitData()) {
             return -1;
         }
-        cbuf[off] =  (char)c;
-        int rlen = 1;
-        while ((in >= 0) && (--len > 0)) {
-            cbuf[off + rlen] = buffer[out++];
-            rlen++;
+        int rlen = 0;
+        while ((in >= 0) && (len > 0)) {
+            int available = (in > out) ? in - out : buffer.length - out;
+            if (available > len) {
+                available = len;
+            }
+            System.arraycopy(buffer, out, cbuf, off + rlen, available);
+            out += available;
+            rlen += available;
+            len -= available;
             if (out >= buffer.length) {
                 out = 0;
             }
@@ -322,6 +466,8 @@ public class PipedReader extends Reader {
                 in = -1;
             }
         }
+        if (writeWaiters > 0)
+            notifyAll();
         return rlen;
     }
 
@@ -358,5 +504,8 @@ public class PipedReader extends Reader {
     public void close()  throws IOException {
         in = -1;
         closedByReader = true;
+        synchronized (this) {
+            notifyAll();
+        }
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * An {@link ObjectInputStream} reading a session of many messages
+ * written by a {@link SessionObjectOutputStream}.  Class descriptors
+ * received in full are kept for the life of the stream, so that later
+ * references to them by compact identifier, including those after the
+ * stream has been reset, need not be read or parsed again.  The local
+ * class of each such descriptor is resolved once, by {@link
+ * #resolveClass}, and the result reused for the rest of the session;
+ * subclasses overriding {@code resolveClass} should therefore resolve
+ * classes the same way throughout the session.
+ *
+ * <p>As with the corresponding output stream, a single instance may be
+ * kept for the life of a connection, its handle table and buffers being
+ * retained across the resets that separate messages.
+ *
+ * @see SessionObjectOutputStream
+ * @since 1.8
+ */
+public class SessionObjectInputStream extends ObjectInputStream {
+
+    /** descriptors received in full, indexed by identifier - 1 */
+    private final ArrayList<ObjectStreamClass> received = new ArrayList<>();
+
+    /** local classes of the descriptors received */
+    private final IdentityHashMap<ObjectStreamClass, Class<?>> resolved =
+        new IdentityHashMap<>();
+
+    /**
+     * Creates a SessionObjectInputStream that reads from the specified
+     * InputStream, reading the serialization stream header.
+     *
+     * @param   in input stream to read from
+     * @throws  StreamCorruptedException if the stream header is incorrect
+     * @throws  IOException if an I/O error occurs while reading stream header
+     * @throws  NullPointerException if <code>in</code> is <code>null</code>
+     */
+    public SessionObjectInputStream(InputStream in) throws IOException {
+        super(in);
+    }
+
+    /**
+     * Reads the identifier of a class descriptor, followed, if it is
+     * new to this session, by the descriptor itself.
+     *
+     * @return  the class descriptor read
+     * @throws  IOException If an I/O error has occurred.
+     * @throws  ClassNotFoundException If the Class of a serialized object used
+     *          in the class descriptor representation cannot be found
+     */
+    @Override
+    protected ObjectStreamClass readClassDescriptor()
+        throws IOException, ClassNotFoundException
+    {
+        int id = readVarInt();
+        if (id == 0) {
+            ObjectStreamClass desc = super.readClassDescriptor();
+            received.add(desc);
+            return desc;
+        } else if (id <= received.size()) {
+            return received.get(id - 1);
+        } else {
+            throw new StreamCorruptedException(
+                "invalid class descriptor identifier: " + id);
+        }
+    }
+
+    /**
+     * Returns the local class of the given descriptor, as resolved when
+     * it was first received in this session.
+     *
+     * @param   desc an instance of class <code>ObjectStreamClass</code>
+     * @return  a <code>Class</code> object corresponding to <code>desc</code>
+     * @throws  IOException any of the usual Input/Output exceptions.
+     * @throws  ClassNotFoundException if class of a serialized object cannot
+     *          be found.
+     */
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException
+    {
+        Class<?> cl = resolved.get(desc);
+        if (cl == null) {
+            cl = super.resolveClass(desc);
+            resolved.put(desc, cl);
+        }
+        return cl;
+    }
+
+    /**
+     * Reads a non-negative int written by
+     * SessionObjectOutputStream.writeVarInt.
+     */
+    private int readVarInt() throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (v < 0) {
+                    break;
+                }
+                return v;
+            }
+        }
+        throw new StreamCorruptedException(
+            "invalid class descriptor identifier");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+import java.util.IdentityHashMap;
+
+/**
+ * An {@link ObjectOutputStream} for a session of many messages over one
+ * connection, read by a {@link SessionObjectInputStream}.  Each class
+ * descriptor is written in full the first time it is used in the
+ * session, and thereafter as a compact identifier, even after the
+ * stream has been {@linkplain #reset() reset}.  A single pair of
+ * streams can therefore be kept for the life of a connection, with each
+ * message written as one or more objects followed by a reset, so that
+ * messages do not refer to each other's objects:
+ *
+ * <pre>{@code
+ *     out.writeObject(message);
+ *     out.reset();
+ *     out.flush();
+ * }</pre>
+ *
+ * <p>Unlike a new stream per message, this writes the stream header
+ * once, retains the handle table and buffers across messages, and
+ * omits the names, serial version UIDs and field descriptions of
+ * classes already sent.  A reset does not discard the class
+ * descriptors already sent; the corresponding input stream keeps them
+ * too, along with the local classes they were resolved to.
+ *
+ * <p>The descriptors sent are retained for the life of the stream, and
+ * with them their classes.  The old stream protocol, {@link
+ * ObjectStreamConstants#PROTOCOL_VERSION_1}, is not supported, since it
+ * does not allow class descriptors to be customized.
+ *
+ * @see SessionObjectInputStream
+ * @since 1.8
+ */
+public class SessionObjectOutputStream extends ObjectOutputStream {
+
+    /** identifiers of descriptors already sent, starting at 1 */
+    private final IdentityHashMap<ObjectStreamClass, Integer> sent =
+        new IdentityHashMap<>();
+
+    /**
+     * Creates a SessionObjectOutputStream that writes to the specified
+     * OutputStream, writing the serialization stream header.
+     *
+     * @param   out output stream to write to
+     * @throws  IOException if an I/O error occurs while writing stream header
+     * @throws  NullPointerException if <code>out</code> is <code>null</code>
+     */
+    public SessionObjectOutputStream(OutputStream out) throws IOException {
+        super(out);
+    }
+
+    /**
+     * Specifies the stream protocol version, which must be
+     * {@link ObjectStreamConstants#PROTOCOL_VERSION_2}.
+     *
+     * @param   version use ProtocolVersion from java.io.ObjectStreamConstants.
+     * @throws  IllegalStateException if called after any objects
+     *          have been serialized.
+     * @throws  IllegalArgumentException if invalid version is passed in,
+     *          or if the version is <code>PROTOCOL_VERSION_1</code>
+     * @throws  IOException if I/O errors occur
+     */
+    @Override
+    public void useProtocolVersion(int version) throws IOException {
+        if (version == PROTOCOL_VERSION_1) {
+            throw new IllegalArgumentException(
+                "protocol version 1 not supported by session streams");
+        }
+        super.useProtocolVersion(version);
+    }
+
+    /**
+     * Writes the identifier of the given class descriptor, preceded by
+     * the descriptor itself if it has not yet been sent in this session.
+     * The identifier is written as an unsigned variable-length integer,
+     * zero denoting a descriptor sent in full.
+     *
+     * @param   desc class descriptor to write to the stream
+     * @throws  IOException If an I/O error has occurred.
+     */
+    @Override
+    protected void writeClassDescriptor(ObjectStreamClass desc)
+        throws IOException
+    {
+        Integer id = sent.get(desc);
+        if (id != null) {
+            writeVarInt(id.intValue());
+        } else {
+            writeVarInt(0);
+            super.writeClassDescriptor(desc);
+            sent.put(desc, sent.size() + 1);
+        }
+    }
+
+    /**
+     * Writes a non-negative int in seven-bit groups, least significant
+     * first, with the high bit of each byte set if more follow.
+     */
+    private void writeVarInt(int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+}
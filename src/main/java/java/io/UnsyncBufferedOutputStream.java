@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+/**
+ * A {@link BufferedOutputStream} for use by one thread at a time.
+ * Its methods behave as those of {@code BufferedOutputStream}, but do
+ * not synchronize, so that writing a byte at a time costs little more
+ * than an array store.  Instances must be confined to a single
+ * thread, or be handed off between threads safely, as by a
+ * {@link java.util.concurrent.BlockingQueue}.
+ *
+ * <p>The buffer may be obtained from a {@link BufferRecycler}, to
+ * which it is released when the stream is closed.  Unlike a {@code
+ * BufferedOutputStream}, a closed {@code UnsyncBufferedOutputStream}
+ * throws {@code IOException} on further writes, since it no longer
+ * has a buffer.
+ *
+ * @see BufferedOutputStream
+ * @since 1.8
+ */
+public class UnsyncBufferedOutputStream extends FilterOutputStream {
+
+    /** A zero-length buffer, marking a closed stream */
+    private static final byte[] CLOSED = new byte[0];
+
+    /**
+     * The internal buffer where data is stored.
+     */
+    protected byte buf[];
+
+    /**
+     * The number of valid bytes in the buffer. This value is always
+     * in the range <tt>0</tt> through <tt>buf.length</tt>; elements
+     * <tt>buf[0]</tt> through <tt>buf[count-1]</tt> contain valid
+     * byte data.
+     */
+    protected int count;
+
+    /** The source and destination of buffers */
+    private final BufferRecycler recycler;
+
+    /**
+     * Creates a new buffered output stream to write data to the
+     * specified underlying output stream.
+     *
+     * @param   out   the underlying output stream.
+     */
+    public UnsyncBufferedOutputStream(OutputStream out) {
+        this(out, 8192, BufferRecycler.heap());
+    }
+
+    /**
+     * Creates a new buffered output stream to write data to the
+     * specified underlying output stream with the specified buffer
+     * size.
+     *
+     * @param   out    the underlying output stream.
+     * @param   size   the buffer size.
+     * @exception IllegalArgumentException if size &lt;= 0.
+     */
+    public UnsyncBufferedOutputStream(OutputStream out, int size) {
+        this(out, size, BufferRecycler.heap());
+    }
+
+    /**
+     * Creates a new buffered output stream to write data to the
+     * specified underlying output stream, with a buffer of at least
+     * the specified size obtained from the given recycler, to which it
+     * is released when the stream is closed.
+     *
+     * @param   out    the underlying output stream.
+     * @param   size   the minimum buffer size.
+     * @param   recycler the source and destination of buffers.
+     * @exception IllegalArgumentException if size &lt;= 0.
+     * @exception NullPointerException if {@code recycler} is null.
+     */
+    public UnsyncBufferedOutputStream(OutputStream out, int size,
+                                      BufferRecycler recycler) {
+        super(out);
+        if (size <= 0) {
+            throw new IllegalArgumentException("Buffer size <= 0");
+        }
+        if (recycler == null) {
+            throw new NullPointerException();
+        }
+        this.recycler = recycler;
+        buf = recycler.allocate(size);
+    }
+
+    /** Flush the internal buffer */
+    private void flushBuffer() throws IOException {
+        if (buf == CLOSED) {
+            throw new IOException("Stream closed");
+        }
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     * Writes the specified byte to this buffered output stream.
+     *
+     * @param      b   the byte to be written.
+     * @exception  IOException  if an I/O error occurs.
+     */
+    public void write(int b) throws IOException {
+        if (count >= buf.length) {
+            flushBuffer();
+        }
+        buf[count++] = (byte)b;
+    }
+
+    /**
+     * Writes <code>len</code> bytes from the specified byte array
+     * starting at offset <code>off</code> to this buffered output
+     * stream, as by {@link BufferedOutputStream#write(byte[], int, int)}.
+     *
+     * @param      b     the data.
+     * @param      off   the start offset in the data.
+     * @param      len   the number of bytes to write.
+     * @exception  IOException  if an I/O error occurs.
+     */
+    public void write(byte b[], int off, int len) throws IOException {
+        if (len >= buf.length) {
+            /* If the request length exceeds the size of the output buffer,
+               flush the output buffer and then write the data directly.
+               In this way buffered streams will cascade harmlessly. */
+            flushBuffer();
+            out.write(b, off, len);
+            return;
+        }
+        if (len > buf.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * Flushes this buffered output stream. This forces any buffered
+     * output bytes to be written out to the underlying output stream.
+     *
+     * @exception  IOException  if an I/O error occurs.
+     * @see        java.io.FilterOutputStream#out
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Closes this output stream, as by {@link FilterOutputStream#close},
+     * and releases its buffer to the recycler.  Closing a previously
+     * closed stream has no effect.
+     *
+     * @exception  IOException  if an I/O error occurs.
+     */
+    public void close() throws IOException {
+        byte[] buffer = buf;
+        if (buffer == CLOSED)
+            return;
+        try {
+            super.close();
+        } finally {
+            buf = CLOSED;
+            count = 0;
+            recycler.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.io;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ByteArrayOutputStream} for use by one thread at a time.
+ * Its methods behave as those of {@code ByteArrayOutputStream}, but do
+ * not synchronize.  Instances must be confined to a single thread, or
+ * be handed off between threads safely, as by a
+ * {@link java.util.concurrent.BlockingQueue}.
+ *
+ * <p>The buffer may be obtained from a {@link BufferRecycler}.  Buffers
+ * outgrown as data is written are released to the recycler, and
+ * closing the stream releases the current buffer and discards its
+ * contents, so the contents must be retrieved, as by {@link
+ * #toByteArray} or {@link #writeTo}, before the stream is closed.  The
+ * stream may still be written after it is closed, as if it had been
+ * {@linkplain #reset reset}, in which case a new buffer is obtained.
+ * A stream created without a recycler keeps its contents when closed.
+ *
+ * @see ByteArrayOutputStream
+ * @since 1.8
+ */
+public class UnsyncByteArrayOutputStream extends OutputStream {
+
+    /** The buffer of a closed stream using a recycler */
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * The buffer where data is stored.
+     */
+    protected byte buf[];
+
+    /**
+     * The number of valid bytes in the buffer.
+     */
+    protected int count;
+
+    /** The source and destination of buffers, or null if none */
+    private final BufferRecycler recycler;
+
+    /**
+     * Creates a new byte array output stream. The buffer capacity is
+     * initially 32 bytes, though its size increases if necessary.
+     */
+    public UnsyncByteArrayOutputStream() {
+        this(32);
+    }
+
+    /**
+     * Creates a new byte array output stream, with a buffer capacity of
+     * the specified size, in bytes.
+     *
+     * @param   size   the initial size.
+     * @exception  IllegalArgumentException if size is negative.
+     */
+    public UnsyncByteArrayOutputStream(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative initial size: "
+                                               + size);
+        }
+        buf = new byte[size];
+        recycler = null;
+    }
+
+    /**
+     * Creates a new byte array output stream, with a buffer of at least
+     * the specified capacity obtained from the given recycler.
+     *
+     * @param   size   the minimum initial size.
+     * @param   recycler the source and destination of buffers.
+     * @exception  IllegalArgumentException if size is negative.
+     * @exception  NullPointerException if {@code recycler} is null.
+     */
+    public UnsyncByteArrayOutputStream(int size, BufferRecycler recycler) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative initial size: "
+                                               + size);
+        }
+        if (recycler == null) {
+            throw new NullPointerException();
+        }
+        this.recycler = recycler;
+        buf = recycler.allocate(size);
+    }
+
+    /**
+     * Increases the capacity if necessary to ensure that it can hold
+     * at least the number of elements specified by the minimum
+     * capacity argument.
+     *
+     * @param minCapacity the desired minimum capacity
+     * @throws OutOfMemoryError if {@code minCapacity < 0}.  This is
+     * interpreted as a request for the unsatisfiably large capacity
+     * {@code (long) Integer.MAX_VALUE + (minCapacity - Integer.MAX_VALUE)}.
+     */
+    private void ensureCapacity(int minCapacity) {
+        // overflow-conscious code
+        if (minCapacity - buf.length > 0)
+            grow(minCapacity);
+    }
+
+    /**
+     * The maximum size of array to allocate.
+     * Some VMs reserve some header words in an array.
+     * Attempts to allocate larger arrays may result in
+     * OutOfMemoryError: Requested array size exceeds VM limit
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Increases the capacity to ensure that it can hold at least the
+     * number of elements specified by the minimum capacity argument.
+     *
+     * @param minCapacity the desired minimum capacity
+     */
+    private void grow(int minCapacity) {
+        // overflow-conscious code
+        byte[] oldBuf = buf;
+        int oldCapacity = oldBuf.length;
+        int newCapacity = oldCapacity << 1;
+        if (newCapacity - minCapacity < 0)
+            newCapacity = minCapacity;
+        if (newCapacity - MAX_ARRAY_SIZE > 0)
+            newCapacity = hugeCapacity(minCapacity);
+        BufferRecycler r = recycler;
+        if (r == null)
+            buf = Arrays.copyOf(oldBuf, newCapacity);
+        else {
+            byte[] newBuf = r.allocate(newCapacity);
+            System.arraycopy(oldBuf, 0, newBuf, 0, count);
+            buf = newBuf;
+            if (oldCapacity > 0)
+                r.release(oldBuf);
+        }
+    }
+
+    private static int hugeCapacity(int minCapacity) {
+        if (minCapacity < 0) // overflow
+            throw new OutOfMemoryError();
+        return (minCapacity > MAX_ARRAY_SIZE) ?
+            Integer.MAX_VALUE :
+            MAX_ARRAY_SIZE;
+    }
+
+    /**
+     * Writes the specified byte to this byte array output stream.
+     *
+     * @param   b   the byte to be written.
+     */
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buf[count] = (byte) b;
+        count += 1;
+    }
+
+    /**
+     * Writes <code>len</code> bytes from the specified byte array
+     * starting at offset <code>off</code> to this byte array output stream.
+     *
+     * @param   b     the data.
+     * @param   off   the start offset in the data.
+     * @param   len   the number of bytes to write.
+     */
+    public void write(byte b[], int off, int len) {
+        if ((off < 0) || (off > b.length) || (len < 0) ||
+            ((off + len) - b.length > 0)) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * Writes the complete contents of this byte array output stream to
+     * the specified output stream argument, as if by calling the output
+     * stream's write method using <code>out.write(buf, 0, count)</code>.
+     *
+     * @param      out   the output stream to which to write the data.
+     * @exception  IOException  if an I/O error occurs.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    /**
+     * Resets the <code>count</code> field of this byte array output
+     * stream to zero, so that all currently accumulated output in the
+     * output stream is discarded. The output stream can be used again,
+     * reusing the already allocated buffer space.
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Creates a newly allocated byte array. Its size is the current
+     * size of this output stream and the valid contents of the buffer
+     * have been copied into it.
+     *
+     * @return  the current contents of this output stream, as a byte array.
+     * @see     java.io.UnsyncByteArrayOutputStream#size()
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    /**
+     * Returns the current size of the buffer.
+     *
+     * @return  the value of the <code>count</code> field, which is the number
+     *          of valid bytes in this output stream.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Converts the buffer's contents into a string decoding bytes using the
+     * platform's default character set, as by
+     * {@link ByteArrayOutputStream#toString()}.
+     *
+     * @return String decoded from the buffer's contents.
+     */
+    public String toString() {
+        return new String(buf, 0, count);
+    }
+
+    /**
+     * Converts the buffer's contents into a string by decoding the bytes using
+     * the named {@link java.nio.charset.Charset charset}, as by
+     * {@link ByteArrayOutputStream#toString(String)}.
+     *
+     * @param      charsetName  the name of a supported
+     *             {@link java.nio.charset.Charset charset}
+     * @return     String decoded from the buffer's contents.
+     * @exception  UnsupportedEncodingException
+     *             If the named charset is not supported
+     */
+    public String toString(String charsetName)
+        throws UnsupportedEncodingException
+    {
+        return new String(buf, 0, count, charsetName);
+    }
+
+    /**
+     * If this stream was created with a recycler, releases its buffer to
+     * the recycler and discards the contents; otherwise has no effect.
+     * In either case the methods in this class can be called after the
+     * stream has been closed without generating an <tt>IOException</tt>.
+     */
+    public void close() {
+        BufferRecycler r = recycler;
+        byte[] b = buf;
+        if (r != null && b.length > 0) {
+            buf = EMPTY;
+            count = 0;
+            r.release(b);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.management;
+
+/**
+ * The management interface for a {@link java.util.concurrent.ForkJoinPool
+ * ForkJoinPool}.
+ *
+ * <p> A class implementing this interface is an
+ * {@link javax.management.MXBean}.  The management interface of the
+ * {@linkplain java.util.concurrent.ForkJoinPool#commonPool common pool}
+ * can be obtained by calling the {@link
+ * java.lang.management.ManagementFactory#getPlatformMXBean(Class)
+ * getPlatformMXBean} method, and is registered with the platform {@link
+ * javax.management.MBeanServer MBeanServer} under the {@link
+ * javax.management.ObjectName ObjectName}:
+ * <pre>
+ *     java.util.concurrent:type=ForkJoinPool
+ * </pre>
+ * The management interface of any other pool is obtained by calling
+ * {@link ManagementFactory#getForkJoinPoolMXBean getForkJoinPoolMXBean},
+ * and may be registered by the application under the name returned by
+ * {@link #getObjectName getObjectName}, which takes the form:
+ * <pre>
+ *     java.util.concurrent:type=ForkJoinPool,name=<i>identity hash code</i>
+ * </pre>
+ * where the name is the {@linkplain System#identityHashCode identity
+ * hash code} of the pool in hexadecimal.
+ *
+ * <p> The per-queue counters reported by {@link #getWorkQueueInfo} are
+ * maintained only while {@linkplain #isMetricsEnabled metrics are
+ * enabled} for the pool.  Metrics are disabled by default; they may be
+ * enabled for the common pool on startup by setting the system property
+ * {@code java.util.concurrent.ForkJoinPool.common.metrics} to
+ * {@code true}.
+ *
+ * @see java.util.concurrent.ForkJoinPool
+ * @since 1.8
+ */
+public interface ForkJoinPoolMXBean extends PlatformManagedObject {
+
+    /**
+     * Returns the targeted parallelism level of the pool.
+     *
+     * @return the targeted parallelism level of the pool
+     * @see java.util.concurrent.ForkJoinPool#getParallelism
+     */
+    int getParallelism();
+
+    /**
+     * Returns the number of worker threads that have started but not
+     * yet terminated.
+     *
+     * @return the number of worker threads
+     * @see java.util.concurrent.ForkJoinPool#getPoolSize
+     */
+    int getPoolSize();
+
+    /**
+     * Returns an estimate of the number of threads that are currently
+     * stealing or executing tasks.
+     *
+     * @return the number of active threads
+     * @see java.util.concurrent.ForkJoinPool#getActiveThreadCount
+     */
+    int getActiveThreadCount();
+
+    /**
+     * Returns an estimate of the number of worker threads that are not
+     * blocked waiting to join tasks or for other managed synchronization.
+     *
+     * @return the number of running worker threads
+     * @see java.util.concurrent.ForkJoinPool#getRunningThreadCount
+     */
+    int getRunningThreadCount();
+
+    /**
+     * Returns an estimate of the total number of tasks stolen from one
+     * thread's work queue by another.
+     *
+     * @return the number of steals
+     * @see java.util.concurrent.ForkJoinPool#getStealCount
+     */
+    long getStealCount();
+
+    /**
+     * Returns an estimate of the total number of tasks currently held in
+     * queues by worker threads.
+     *
+     * @return the number of queued tasks
+     * @see java.util.concurrent.ForkJoinPool#getQueuedTaskCount
+     */
+    long getQueuedTaskCount();
+
+    /**
+     * Returns an estimate of the number of tasks submitted to the pool
+     * that have not yet begun executing.
+     *
+     * @return the number of queued submissions
+     * @see java.util.concurrent.ForkJoinPool#getQueuedSubmissionCount
+     */
+    int getQueuedSubmissionCount();
+
+    /**
+     * Returns {@code true} if per-queue metrics are maintained.
+     *
+     * @return {@code true} if per-queue metrics are maintained
+     * @see java.util.concurrent.ForkJoinPool#isMetricsEnabled
+     */
+    boolean isMetricsEnabled();
+
+    /**
+     * Enables or disables per-queue metrics.  Counters start from zero
+     * when metrics are enabled, and are discarded when they are disabled.
+     *
+     * @param enable {@code true} to enable metrics; {@code false} to
+     *        disable them
+     * @throws SecurityException if a security manager exists and
+     *         the caller does not have
+     *         {@link java.lang.RuntimePermission}{@code ("modifyThread")}
+     * @see java.util.concurrent.ForkJoinPool#setMetricsEnabled
+     */
+    void setMetricsEnabled(boolean enable);
+
+    /**
+     * Returns information about each of the work queues of the pool,
+     * including those of worker threads and the shared queues holding
+     * external submissions.  The queue sizes are estimates, and the
+     * counters are those maintained while metrics were enabled; they
+     * are zero if metrics are disabled.
+     *
+     * @return an array of {@code WorkQueueInfo} objects, one for each
+     *         work queue of the pool
+     */
+    WorkQueueInfo[] getWorkQueueInfo();
+}
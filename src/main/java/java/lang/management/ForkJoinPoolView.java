@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.management;
+
+import java.util.concurrent.ForkJoinPool;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * The management interface of a {@link ForkJoinPool}, reading the
+ * state of the pool on each call.
+ */
+final class ForkJoinPoolView implements ForkJoinPoolMXBean {
+    private final ForkJoinPool pool;
+
+    ForkJoinPoolView(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ObjectName getObjectName() {
+        String name = "java.util.concurrent:type=ForkJoinPool";
+        if (pool != ForkJoinPool.commonPool())
+            name += ",name=" +
+                Integer.toHexString(System.identityHashCode(pool));
+        try {
+            return ObjectName.getInstance(name);
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getPoolSize() {
+        return pool.getPoolSize();
+    }
+
+    public int getActiveThreadCount() {
+        return pool.getActiveThreadCount();
+    }
+
+    public int getRunningThreadCount() {
+        return pool.getRunningThreadCount();
+    }
+
+    public long getStealCount() {
+        return pool.getStealCount();
+    }
+
+    public long getQueuedTaskCount() {
+        return pool.getQueuedTaskCount();
+    }
+
+    public int getQueuedSubmissionCount() {
+        return pool.getQueuedSubmissionCount();
+    }
+
+    public boolean isMetricsEnabled() {
+        return pool.isMetricsEnabled();
+    }
+
+    public void setMetricsEnabled(boolean enable) {
+        pool.setMetricsEnabled(enable);
+    }
+
+    public WorkQueueInfo[] getWorkQueueInfo() {
+        ForkJoinPool.WorkQueueMetrics[] ms = pool.getWorkQueueMetrics();
+        WorkQueueInfo[] infos = new WorkQueueInfo[ms.length];
+        for (int i = 0; i < ms.length; ++i) {
+            ForkJoinPool.WorkQueueMetrics m = ms[i];
+            infos[i] = new WorkQueueInfo
+                (m.getPoolIndex(), m.isShared(), m.getOwnerName(),
+                 m.getQueuedTaskCount(), m.getMaxQueuedTaskCount(),
+                 m.getPushCount(), m.getStealCount(), m.getEmptyScanCount(),
+                 m.getParkCount(), m.getUnparkCount(), m.getParkedTime());
+        }
+        return infos;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.management;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.InvalidKeyException;
+
+/**
+ * Information about contention for a lock or other synchronizer built
+ * on {@link java.util.concurrent.locks.AbstractQueuedSynchronizer
+ * AbstractQueuedSynchronizer}, gathered while {@linkplain
+ * LockContentionMXBean#isProfilingEnabled contention profiling} is
+ * enabled.  A wait is counted each time a thread that failed to
+ * acquire the synchronizer is queued, and lasts until the thread
+ * acquires it, or gives up because of a timeout or interrupt.
+ *
+ * <p> The lock is identified by a {@link LockInfo} describing the
+ * synchronizer object, which is the same object reported as the lock
+ * on which a thread is blocked by {@link ThreadInfo#getLockInfo}.
+ * Wait times and queue lengths are recorded in histograms whose
+ * values are resolved to within about 6%, so the percentiles and
+ * totals reported are estimates.
+ *
+ * <h3><a name="MappedType">MXBean Mapping</a></h3>
+ * <tt>LockContentionInfo</tt> is mapped to a {@link CompositeData
+ * CompositeData} as specified in the {@link #from from} method.
+ *
+ * @see LockContentionMXBean
+ * @since 1.8
+ */
+public class LockContentionInfo {
+
+    private final LockInfo lock;
+    private final long waitCount;
+    private final long totalWaitTime;
+    private final long medianWaitTime;
+    private final long waitTimeAt99thPercentile;
+    private final long maxWaitTime;
+    private final double meanQueueLength;
+    private final int maxQueueLength;
+
+    /**
+     * Constructs a <tt>LockContentionInfo</tt> object.
+     *
+     * @param lock information about the synchronizer object
+     * @param waitCount the number of times that a thread waited
+     * @param totalWaitTime the total time in nanoseconds spent waiting
+     * @param medianWaitTime the median wait time in nanoseconds
+     * @param waitTimeAt99thPercentile the wait time in nanoseconds that
+     *                                 99 percent of waits did not exceed
+     * @param maxWaitTime the longest wait time in nanoseconds
+     * @param meanQueueLength the mean number of threads found queued
+     *                        ahead of a thread when it started waiting
+     * @param maxQueueLength the largest number of threads found queued
+     *                       ahead of a thread when it started waiting
+     * @throws NullPointerException if {@code lock} is null
+     */
+    public LockContentionInfo(LockInfo lock, long waitCount,
+                              long totalWaitTime, long medianWaitTime,
+                              long waitTimeAt99thPercentile, long maxWaitTime,
+                              double meanQueueLength, int maxQueueLength) {
+        if (lock == null) {
+            throw new NullPointerException("Parameter lock cannot be null");
+        }
+        this.lock = lock;
+        this.waitCount = waitCount;
+        this.totalWaitTime = totalWaitTime;
+        this.medianWaitTime = medianWaitTime;
+        this.waitTimeAt99thPercentile = waitTimeAt99thPercentile;
+        this.maxWaitTime = maxWaitTime;
+        this.meanQueueLength = meanQueueLength;
+        this.maxQueueLength = maxQueueLength;
+    }
+
+    /**
+     * Returns information about the synchronizer object.  For the locks
+     * of {@code java.util.concurrent.locks}, such as {@link
+     * java.util.concurrent.locks.ReentrantLock ReentrantLock}, this is
+     * the internal synchronizer of the lock rather than the lock itself.
+     *
+     * @return information about the synchronizer object
+     */
+    public LockInfo getLock() {
+        return lock;
+    }
+
+    /**
+     * Returns the number of times that a thread waited to acquire the
+     * synchronizer.
+     *
+     * @return the number of waits
+     */
+    public long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * Returns an estimate of the total time that threads have spent
+     * waiting to acquire the synchronizer.
+     *
+     * @return the total wait time, in nanoseconds
+     */
+    public long getTotalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * Returns an estimate of the median time that a thread waited to
+     * acquire the synchronizer.
+     *
+     * @return the median wait time, in nanoseconds
+     */
+    public long getMedianWaitTime() {
+        return medianWaitTime;
+    }
+
+    /**
+     * Returns an estimate of the time that 99 percent of waits to
+     * acquire the synchronizer did not exceed.
+     *
+     * @return the 99th percentile of wait times, in nanoseconds
+     */
+    public long getWaitTimeAt99thPercentile() {
+        return waitTimeAt99thPercentile;
+    }
+
+    /**
+     * Returns an estimate of the longest time that a thread waited to
+     * acquire the synchronizer.
+     *
+     * @return the longest wait time, in nanoseconds
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * Returns the mean number of threads found queued ahead of a
+     * thread when it started waiting.
+     *
+     * @return the mean queue length
+     */
+    public double getMeanQueueLength() {
+        return meanQueueLength;
+    }
+
+    /**
+     * Returns an estimate of the largest number of threads found queued
+     * ahead of a thread when it started waiting.
+     *
+     * @return the largest queue length
+     */
+    public int getMaxQueueLength() {
+        return maxQueueLength;
+    }
+
+    /**
+     * Returns a {@code LockContentionInfo} object represented by the
+     * given {@code CompositeData}.
+     * The given {@code CompositeData} must contain the following attributes:
+     * <blockquote>
+     * <table border summary="The attributes and the types the given CompositeData contains">
+     * <tr>
+     *   <th align=left>Attribute Name</th>
+     *   <th align=left>Type</th>
+     * </tr>
+     * <tr>
+     *   <td>lock</td>
+     *   <td><tt>javax.management.openmbean.CompositeData</tt>
+     *       as specified in {@link LockInfo#from}</td>
+     * </tr>
+     * <tr>
+     *   <td>waitCount</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>totalWaitTime</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>medianWaitTime</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>waitTimeAt99thPercentile</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>maxWaitTime</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>meanQueueLength</td>
+     *   <td><tt>java.lang.Double</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>maxQueueLength</td>
+     *   <td><tt>java.lang.Integer</tt></td>
+     * </tr>
+     * </table>
+     * </blockquote>
+     *
+     * @param cd {@code CompositeData} representing a
+     *           {@code LockContentionInfo}
+     *
+     * @throws IllegalArgumentException if {@code cd} does not
+     *   represent a {@code LockContentionInfo} with the attributes
+     *   described above.
+     * @return a {@code LockContentionInfo} object represented
+     *         by {@code cd} if {@code cd} is not {@code null};
+     *         {@code null} otherwise.
+     */
+    public static LockContentionInfo from(CompositeData cd) {
+        if (cd == null) {
+            return null;
+        }
+
+        try {
+            return new LockContentionInfo(LockInfo.from((CompositeData) cd.get("lock")),
+                                          (Long) cd.get("waitCount"),
+                                          (Long) cd.get("totalWaitTime"),
+                                          (Long) cd.get("medianWaitTime"),
+                                          (Long) cd.get("waitTimeAt99thPercentile"),
+                                          (Long) cd.get("maxWaitTime"),
+                                          (Double) cd.get("meanQueueLength"),
+                                          (Integer) cd.get("maxQueueLength"));
+        } catch (InvalidKeyException | ClassCastException |
+                 NullPointerException e) {
+            throw new IllegalArgumentException(
+                "Unexpected composite type for LockContentionInfo", e);
+        }
+    }
+
+    /**
+     * Returns a string representation of this lock contention
+     * information.
+     *
+     * @return a string representation of this lock contention
+     *         information
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder(lock.toString());
+        sb.append(": waits = ").append(waitCount);
+        sb.append(", totalWaitTime = ").append(totalWaitTime).append("ns");
+        sb.append(", medianWaitTime = ").append(medianWaitTime).append("ns");
+        sb.append(", waitTimeAt99thPercentile = ")
+          .append(waitTimeAt99thPercentile).append("ns");
+        sb.append(", maxWaitTime = ").append(maxWaitTime).append("ns");
+        sb.append(", meanQueueLength = ").append(meanQueueLength);
+        sb.append(", maxQueueLength = ").append(maxQueueLength);
+        return sb.toString();
+    }
+}
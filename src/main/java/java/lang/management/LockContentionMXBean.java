@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.management;
+
+/**
+ * The management interface for the contention profiler of locks and
+ * synchronizers built on {@link
+ * java.util.concurrent.locks.AbstractQueuedSynchronizer
+ * AbstractQueuedSynchronizer}, such as {@link
+ * java.util.concurrent.locks.ReentrantLock ReentrantLock}, {@link
+ * java.util.concurrent.locks.ReentrantReadWriteLock
+ * ReentrantReadWriteLock} and {@link java.util.concurrent.Semaphore
+ * Semaphore}.
+ *
+ * <p> A class implementing this interface is an
+ * {@link javax.management.MXBean}.  The single instance can be
+ * obtained by calling the {@link
+ * java.lang.management.ManagementFactory#getPlatformMXBean(Class)
+ * getPlatformMXBean} method, and is registered with the platform {@link
+ * javax.management.MBeanServer MBeanServer} under the {@link
+ * javax.management.ObjectName ObjectName}:
+ * <pre>
+ *     java.util.concurrent.locks:type=LockContention
+ * </pre>
+ *
+ * <p> While {@linkplain #isProfilingEnabled profiling is enabled}, each
+ * synchronizer records, whenever a thread has to queue to acquire it,
+ * the number of threads already queued and the time until the thread
+ * stops waiting.  Only synchronizers that have been contended are
+ * tracked, and a synchronizer ceases to be tracked when it is garbage
+ * collected.  Profiling is disabled by default; it may be enabled on
+ * startup by setting the system property
+ * {@code java.util.concurrent.locks.AbstractQueuedSynchronizer.profile}
+ * to {@code true}.
+ *
+ * @see java.util.concurrent.locks.AbstractQueuedSynchronizer#getContentionProfiles
+ * @since 1.8
+ */
+public interface LockContentionMXBean extends PlatformManagedObject {
+
+    /**
+     * Returns {@code true} if contention profiling is enabled.
+     *
+     * @return {@code true} if contention profiling is enabled
+     */
+    boolean isProfilingEnabled();
+
+    /**
+     * Enables or disables contention profiling.  Statistics gathered
+     * while profiling was enabled are retained when it is disabled,
+     * until {@linkplain #resetStatistics reset}.
+     *
+     * @param enable {@code true} to enable profiling; {@code false} to
+     *        disable it
+     * @throws SecurityException if a security manager exists and
+     *         the caller does not have
+     *         ManagementPermission("control").
+     */
+    void setProfilingEnabled(boolean enable);
+
+    /**
+     * Returns information about the most contended synchronizers,
+     * those whose threads have spent the longest total time waiting,
+     * in decreasing order of that time.
+     *
+     * @param maxCount the maximum number of synchronizers to report
+     * @return an array of {@code LockContentionInfo} objects, of length
+     *         at most {@code maxCount}
+     * @throws IllegalArgumentException if {@code maxCount} is negative
+     */
+    LockContentionInfo[] getContendedLocks(int maxCount);
+
+    /**
+     * Discards the statistics gathered for all synchronizers.
+     *
+     * @throws SecurityException if a security manager exists and
+     *         the caller does not have
+     *         ManagementPermission("control").
+     */
+    void resetStatistics();
+}
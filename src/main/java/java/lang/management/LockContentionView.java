@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.management;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongHistogram;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer.ContentionProfile;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * The management interface of the contention profiler of {@link
+ * AbstractQueuedSynchronizer}, reading the profiles on each call.
+ */
+final class LockContentionView implements LockContentionMXBean {
+    private static final ManagementPermission controlPermission =
+        new ManagementPermission("control");
+
+    private static void checkControl() {
+        SecurityManager security = System.getSecurityManager();
+        if (security != null)
+            security.checkPermission(controlPermission);
+    }
+
+    public ObjectName getObjectName() {
+        try {
+            return ObjectName.getInstance(
+                "java.util.concurrent.locks:type=LockContention");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public boolean isProfilingEnabled() {
+        return AbstractQueuedSynchronizer.isProfilingEnabled();
+    }
+
+    public void setProfilingEnabled(final boolean enable) {
+        checkControl();
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            public Void run() {
+                AbstractQueuedSynchronizer.setProfilingEnabled(enable);
+                return null;
+            }
+        });
+    }
+
+    public LockContentionInfo[] getContendedLocks(int maxCount) {
+        if (maxCount < 0)
+            throw new IllegalArgumentException();
+        ContentionProfile[] ps =
+            AbstractQueuedSynchronizer.getContentionProfiles();
+        LockContentionInfo[] infos = new LockContentionInfo[ps.length];
+        for (int i = 0; i < ps.length; ++i) {
+            ContentionProfile p = ps[i];
+            LongHistogram.Snapshot w = p.getWaitTimes();
+            LongHistogram.Snapshot q = p.getQueueLengths();
+            long n = w.getTotalCount();
+            infos[i] = new LockContentionInfo
+                (new LockInfo(p.getClassName(), p.getIdentityHashCode()),
+                 n, (long)(w.getMean() * n),
+                 w.getValueAtPercentile(50.0),
+                 w.getValueAtPercentile(99.0),
+                 w.getMax(), q.getMean(), (int)q.getMax());
+        }
+        Arrays.sort(infos, new Comparator<LockContentionInfo>() {
+            public int compare(LockContentionInfo a, LockContentionInfo b) {
+                return Long.compare(b.getTotalWaitTime(),
+                                    a.getTotalWaitTime());
+            }
+        });
+        return (infos.length > maxCount) ?
+            Arrays.copyOf(infos, maxCount) : infos;
+    }
+
+    public void resetStatistics() {
+        checkControl();
+        AccessController.doPrivileged(new PrivilegedAction<Void>() {
+            public Void run() {
+                AbstractQueuedSynchronizer.resetContentionProfiles();
+                return null;
+            }
+        });
+    }
+}
@@ -45,6 +45,7 @@ import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.security.AccessController;
 import java.security.Permission;
 import java.security.PrivilegedAction;
@@ -416,6 +417,23 @@ public class ManagementFactory {
         return ManagementFactoryHelper.getGarbageCollectorMXBeans();
     }
 
+    /**
+     * Returns a managed bean for the given fork/join pool.  The bean
+     * of the {@linkplain ForkJoinPool#commonPool common pool} is also
+     * registered with the platform {@code MBeanServer}; those of other
+     * pools may be registered by the application.
+     *
+     * @param pool the pool
+     * @return a {@link ForkJoinPoolMXBean} object for the pool
+     * @throws NullPointerException if the pool is null
+     * @since 1.8
+     */
+    public static ForkJoinPoolMXBean getForkJoinPoolMXBean(ForkJoinPool pool) {
+        if (pool == null)
+            throw new NullPointerException();
+        return new ForkJoinPoolView(pool);
+    }
+
     private static MBeanServer platformMBeanServer;
     /**
      * Returns the platform {@link javax.management.MBeanServer MBeanServer}.
@@ -32,6 +32,7 @@ import java.util.HashSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
 
@@ -216,6 +217,34 @@ enum PlatformComponent {
             }
         }),
 
+    /**
+     * Fork/join common pool.
+     */
+    FORK_JOIN_POOL(
+        "java.lang.management.ForkJoinPoolMXBean",
+        "java.util.concurrent", "ForkJoinPool", defaultKeyProperties(),
+        true, // singleton
+        new MXBeanFetcher<ForkJoinPoolMXBean>() {
+            public List<ForkJoinPoolMXBean> getMXBeans() {
+                return Collections.<ForkJoinPoolMXBean>singletonList(
+                    new ForkJoinPoolView(ForkJoinPool.commonPool()));
+            }
+        }),
+
+    /**
+     * Lock contention profiler.
+     */
+    LOCK_CONTENTION(
+        "java.lang.management.LockContentionMXBean",
+        "java.util.concurrent.locks", "LockContention", defaultKeyProperties(),
+        true, // singleton
+        new MXBeanFetcher<LockContentionMXBean>() {
+            public List<LockContentionMXBean> getMXBeans() {
+                return Collections.<LockContentionMXBean>singletonList(
+                    new LockContentionView());
+            }
+        }),
+
 
     // Sun Platform Extension
 
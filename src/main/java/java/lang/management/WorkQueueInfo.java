@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.lang.management;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.InvalidKeyException;
+
+/**
+ * Information about a work queue of a {@link
+ * java.util.concurrent.ForkJoinPool ForkJoinPool}.  A pool has one queue
+ * for each worker thread, holding the tasks that the worker forks, and
+ * shared queues holding tasks submitted by other threads.
+ *
+ * <p> Counters other than the queue size are maintained only while
+ * {@linkplain ForkJoinPoolMXBean#isMetricsEnabled metrics are enabled}
+ * for the pool, and are otherwise zero.  Each counter is updated by a
+ * single thread without synchronization, so the values of a
+ * {@code WorkQueueInfo} need not be mutually consistent.
+ *
+ * <h3><a name="MappedType">MXBean Mapping</a></h3>
+ * <tt>WorkQueueInfo</tt> is mapped to a {@link CompositeData CompositeData}
+ * as specified in the {@link #from from} method.
+ *
+ * @see ForkJoinPoolMXBean
+ * @since 1.8
+ */
+public class WorkQueueInfo {
+
+    private final int poolIndex;
+    private final boolean shared;
+    private final String ownerName;
+    private final int queuedTaskCount;
+    private final int maxQueuedTaskCount;
+    private final long pushCount;
+    private final long stealCount;
+    private final long emptyScanCount;
+    private final long parkCount;
+    private final long unparkCount;
+    private final long parkedTime;
+
+    /**
+     * Constructs a <tt>WorkQueueInfo</tt> object.
+     *
+     * @param poolIndex the index of the queue in the pool
+     * @param shared {@code true} if the queue holds external submissions
+     * @param ownerName the name of the worker thread owning the queue, or
+     *                  {@code null} if the queue is shared
+     * @param queuedTaskCount the number of tasks in the queue
+     * @param maxQueuedTaskCount the largest number of tasks observed in
+     *                           the queue
+     * @param pushCount the number of tasks pushed onto the queue
+     * @param stealCount the number of tasks taken by the owner from other
+     *                   queues when scanning for work
+     * @param emptyScanCount the number of scans for work by the owner
+     *                       that found none
+     * @param parkCount the number of times the owner parked waiting for
+     *                  work
+     * @param unparkCount the number of times the owner was unparked by
+     *                    another thread signalling work
+     * @param parkedTime the total time in nanoseconds that the owner has
+     *                   spent parked waiting for work
+     */
+    public WorkQueueInfo(int poolIndex, boolean shared, String ownerName,
+                         int queuedTaskCount, int maxQueuedTaskCount,
+                         long pushCount, long stealCount, long emptyScanCount,
+                         long parkCount, long unparkCount, long parkedTime) {
+        this.poolIndex = poolIndex;
+        this.shared = shared;
+        this.ownerName = ownerName;
+        this.queuedTaskCount = queuedTaskCount;
+        this.maxQueuedTaskCount = maxQueuedTaskCount;
+        this.pushCount = pushCount;
+        this.stealCount = stealCount;
+        this.emptyScanCount = emptyScanCount;
+        this.parkCount = parkCount;
+        this.unparkCount = unparkCount;
+        this.parkedTime = parkedTime;
+    }
+
+    /**
+     * Returns the index of the queue in the pool.  Queues of worker
+     * threads have odd indices and shared queues even indices.
+     *
+     * @return the index of the queue in the pool
+     */
+    public int getPoolIndex() {
+        return poolIndex;
+    }
+
+    /**
+     * Returns {@code true} if the queue is a shared queue holding tasks
+     * submitted by threads other than the workers of the pool.
+     *
+     * @return {@code true} if the queue is shared
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Returns the name of the worker thread owning the queue.
+     *
+     * @return the name of the owning worker thread, or {@code null} if
+     *         the queue is shared
+     */
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    /**
+     * Returns an estimate of the number of tasks in the queue.
+     *
+     * @return the number of tasks in the queue
+     */
+    public int getQueuedTaskCount() {
+        return queuedTaskCount;
+    }
+
+    /**
+     * Returns the largest number of tasks observed in the queue when a
+     * task was pushed.
+     *
+     * @return the largest number of tasks observed in the queue
+     */
+    public int getMaxQueuedTaskCount() {
+        return maxQueuedTaskCount;
+    }
+
+    /**
+     * Returns the number of tasks pushed onto the queue, by its owner
+     * or, for a shared queue, by submitting threads.
+     *
+     * @return the number of tasks pushed onto the queue
+     */
+    public long getPushCount() {
+        return pushCount;
+    }
+
+    /**
+     * Returns the number of tasks that the owner of the queue has taken
+     * from the queues of the pool when scanning for work.
+     *
+     * @return the number of tasks stolen by the owner
+     */
+    public long getStealCount() {
+        return stealCount;
+    }
+
+    /**
+     * Returns the number of times that the owner of the queue scanned
+     * the queues of the pool without finding a task, and so went on to
+     * await work.
+     *
+     * @return the number of scans that found no task
+     */
+    public long getEmptyScanCount() {
+        return emptyScanCount;
+    }
+
+    /**
+     * Returns the number of times that the owner of the queue parked
+     * waiting for work.
+     *
+     * @return the number of times the owner parked
+     */
+    public long getParkCount() {
+        return parkCount;
+    }
+
+    /**
+     * Returns the number of times that the owner of the queue was
+     * unparked by another thread signalling the availability of work,
+     * as opposed to timing out.
+     *
+     * @return the number of times the owner was signalled
+     */
+    public long getUnparkCount() {
+        return unparkCount;
+    }
+
+    /**
+     * Returns the total time that the owner of the queue has spent
+     * parked waiting for work.
+     *
+     * @return the time spent parked, in nanoseconds
+     */
+    public long getParkedTime() {
+        return parkedTime;
+    }
+
+    /**
+     * Returns a {@code WorkQueueInfo} object represented by the
+     * given {@code CompositeData}.
+     * The given {@code CompositeData} must contain the following attributes:
+     * <blockquote>
+     * <table border summary="The attributes and the types the given CompositeData contains">
+     * <tr>
+     *   <th align=left>Attribute Name</th>
+     *   <th align=left>Type</th>
+     * </tr>
+     * <tr>
+     *   <td>poolIndex</td>
+     *   <td><tt>java.lang.Integer</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>shared</td>
+     *   <td><tt>java.lang.Boolean</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>ownerName</td>
+     *   <td><tt>java.lang.String</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>queuedTaskCount</td>
+     *   <td><tt>java.lang.Integer</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>maxQueuedTaskCount</td>
+     *   <td><tt>java.lang.Integer</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>pushCount</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>stealCount</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>emptyScanCount</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>parkCount</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>unparkCount</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * <tr>
+     *   <td>parkedTime</td>
+     *   <td><tt>java.lang.Long</tt></td>
+     * </tr>
+     * </table>
+     * </blockquote>
+     *
+     * @param cd {@code CompositeData} representing a {@code WorkQueueInfo}
+     *
+     * @throws IllegalArgumentException if {@code cd} does not
+     *   represent a {@code WorkQueueInfo} with the attributes described
+     *   above.
+     * @return a {@code WorkQueueInfo} object represented
+     *         by {@code cd} if {@code cd} is not {@code null};
+     *         {@code null} otherwise.
+     */
+    public static WorkQueueInfo from(CompositeData cd) {
+        if (cd == null) {
+            return null;
+        }
+
+        try {
+            return new WorkQueueInfo((Integer) cd.get("poolIndex"),
+                                     (Boolean) cd.get("shared"),
+                                     (String) cd.get("ownerName"),
+                                     (Integer) cd.get("queuedTaskCount"),
+                                     (Integer) cd.get("maxQueuedTaskCount"),
+                                     (Long) cd.get("pushCount"),
+                                     (Long) cd.get("stealCount"),
+                                     (Long) cd.get("emptyScanCount"),
+                                     (Long) cd.get("parkCount"),
+                                     (Long) cd.get("unparkCount"),
+                                     (Long) cd.get("parkedTime"));
+        } catch (InvalidKeyException | ClassCastException |
+                 NullPointerException e) {
+            throw new IllegalArgumentException(
+                "Unexpected composite type for WorkQueueInfo", e);
+        }
+    }
+
+    /**
+     * Returns a string representation of this work queue information.
+     *
+     * @return a string representation of this work queue information
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder("WorkQueue ");
+        sb.append(poolIndex);
+        if (shared) {
+            sb.append(" (shared)");
+        } else {
+            sb.append(" (").append(ownerName).append(')');
+        }
+        sb.append(": queued = ").append(queuedTaskCount);
+        sb.append(", maxQueued = ").append(maxQueuedTaskCount);
+        sb.append(", pushes = ").append(pushCount);
+        sb.append(", steals = ").append(stealCount);
+        sb.append(", emptyScans = ").append(emptyScanCount);
+        sb.append(", parks = ").append(parkCount);
+        sb.append(", unparks = ").append(unparkCount);
+        sb.append(", parkedTime = ").append(parkedTime).append("ns");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.nio.file;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A file-based lines spliterator, leveraging a shared file channel and
+ * splitting at line boundaries found by byte-wise search.
+ *
+ * <p>Splitting is supported only for charsets in which the line feed and
+ * carriage return characters are always encoded as the single bytes
+ * {@code '\n'} and {@code '\r'}, and those bytes never occur as part of
+ * the encoding of another character.  A split point can then be found by
+ * examining raw bytes, without decoding.  UTF-8, ISO-8859-1 and US-ASCII
+ * have this property; UTF-16, for example, does not.
+ *
+ * <p>A spliterator covers a range of byte positions of the file.  When
+ * split, it searches for a line separator near the middle of its range,
+ * and the prefix up to and including the separator is covered by the
+ * returned spliterator.  Once traversal of a spliterator has started it
+ * may no longer be split.  Traversal decodes the bytes of the range
+ * through a {@link BufferedReader} reading from the shared channel by
+ * position, so many spliterators of the same file may be traversed
+ * concurrently.
+ *
+ * <p>The range of the top-level spliterator is fixed by the size of the
+ * file when it is created; bytes appended afterwards are not read.
+ */
+final class FileChannelLinesSpliterator implements Spliterator<String> {
+
+    static final Set<String> SUPPORTED_CHARSET_NAMES;
+    static {
+        SUPPORTED_CHARSET_NAMES = new HashSet<>();
+        SUPPORTED_CHARSET_NAMES.add(StandardCharsets.UTF_8.name());
+        SUPPORTED_CHARSET_NAMES.add(StandardCharsets.ISO_8859_1.name());
+        SUPPORTED_CHARSET_NAMES.add(StandardCharsets.US_ASCII.name());
+    }
+
+    /** Minimum number of bytes a spliterator must cover to be split */
+    static final int MIN_SPLIT_SIZE = 1 << 12;
+
+    /** Number of bytes read at a time when searching for a split point */
+    static final int SCAN_BUFFER_SIZE = 1 << 12;
+
+    private final FileChannel fc;
+    private final Charset cs;
+    private long index;
+    private final long fence;
+
+    // Non-null when traversing
+    private BufferedReader reader;
+
+    FileChannelLinesSpliterator(FileChannel fc, Charset cs, long index, long fence) {
+        this.fc = fc;
+        this.cs = cs;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        String line = readLine();
+        if (line != null) {
+            action.accept(line);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super String> action) {
+        String line;
+        while ((line = readLine()) != null) {
+            action.accept(line);
+        }
+    }
+
+    private BufferedReader getBufferedReader() {
+        /**
+         * A readable byte channel that reads bytes from the underlying
+         * file channel over a specified range.
+         */
+        ReadableByteChannel rrbc = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                long bytesToRead = fence - index;
+                if (bytesToRead <= 0)
+                    return -1;
+
+                int bytesRead;
+                if (bytesToRead < dst.remaining()) {
+                    // The number of bytes to read is less than remaining
+                    // bytes in the buffer
+                    // Snapshot the limit, reduce it, read, then restore
+                    int oldLimit = dst.limit();
+                    dst.limit((int) (dst.position() + bytesToRead));
+                    bytesRead = fc.read(dst, index);
+                    dst.limit(oldLimit);
+                } else {
+                    bytesRead = fc.read(dst, index);
+                }
+                if (bytesRead == -1) {
+                    // The file was truncated
+                    index = fence;
+                    return bytesRead;
+                }
+
+                index += bytesRead;
+                return bytesRead;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return fc.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                fc.close();
+            }
+        };
+        return new BufferedReader(Channels.newReader(rrbc, cs.newDecoder(), -1));
+    }
+
+    private String readLine() {
+        if (reader == null) {
+            reader = getBufferedReader();
+        }
+
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<String> trySplit() {
+        // Cannot split after partial traverse
+        if (reader != null)
+            return null;
+
+        long lo = index, hi = fence;
+        if (hi - lo < MIN_SPLIT_SIZE)
+            return null;
+
+        // Find a line boundary after the mid point, or failing that
+        // before it
+        long mid = (lo + hi) >>> 1;
+        long s;
+        try {
+            if ((s = scanForward(mid, hi)) < 0L &&
+                (s = scanBackward(lo, mid)) < 0L)
+                return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // The split point is the start of the line following the separator
+        return new FileChannelLinesSpliterator(fc, cs, lo, index = s);
+    }
+
+    /**
+     * Returns the position following the first line separator in the
+     * range [from, to), such that the position is less than {@code to},
+     * or -1 if there is none.  A carriage return followed by a line
+     * feed is treated as a single separator.
+     */
+    private long scanForward(long from, long to) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        boolean cr = false;
+        long pos = from;
+        while (pos < to) {
+            b.clear();
+            if (to - pos < b.capacity())
+                b.limit((int) (to - pos));
+            int n = fc.read(b, pos);
+            if (n <= 0)
+                return -1L;
+            for (int i = 0; i < n; i++, pos++) {
+                byte c = b.get(i);
+                if (cr)
+                    return (c == '\n') ? ((pos + 1 < to) ? pos + 1 : -1L) : pos;
+                if (c == '\n')
+                    return (pos + 1 < to) ? pos + 1 : -1L;
+                cr = (c == '\r');
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Returns the position following the last line separator in the
+     * range [from, to), such that the position is greater than
+     * {@code from}, or -1 if there is none.  A carriage return at the
+     * end of the range is not taken as a separator, since a line feed
+     * may follow it.
+     */
+    private long scanBackward(long from, long to) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long end = to;
+        while (end > from) {
+            long start = Math.max(from, end - b.capacity());
+            b.clear();
+            b.limit((int) (end - start));
+            int n = 0;
+            while (b.hasRemaining()) {
+                int r = fc.read(b, start + n);
+                if (r <= 0)
+                    return -1L;
+                n += r;
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                byte c = b.get(i);
+                long p = start + i + 1;
+                if (c == '\n' || (c == '\r' && p < to))
+                    return p;
+            }
+            end = start;
+        }
+        return -1L;
+    }
+
+    @Override
+    public long estimateSize() {
+        // Use the number of bytes as an estimate.
+        // We could divide by a constant that is the average number of
+        // characters per-line, but that constant will be factored out.
+        return fence - index;
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return -1;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+}
@@ -27,6 +27,9 @@ package java.util;
 
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
 
 /**
@@ -1457,4 +1460,37 @@ public class ArrayList<E> extends AbstractList<E>
         }
         modCount++;
     }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+        final int expectedModCount = modCount;
+        Arrays.sortByIntKey((E[]) elementData, 0, size, keyExtractor);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+        final int expectedModCount = modCount;
+        Arrays.sortByLongKey((E[]) elementData, 0, size, keyExtractor);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+        final int expectedModCount = modCount;
+        Arrays.sortByDoubleKey((E[]) elementData, 0, size, keyExtractor);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
 }
@@ -36,6 +36,9 @@ import java.util.function.IntToDoubleFunction;
 import java.util.function.IntToLongFunction;
 import java.util.function.IntUnaryOperator;
 import java.util.function.LongBinaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
 import java.util.stream.DoubleStream;
 import java.util.stream.IntStream;
@@ -136,7 +139,8 @@ public class Arrays {
      * by Vladimir Yaroslavskiy, Jon Bentley, and Joshua Bloch. This algorithm
      * offers O(n log(n)) performance on many data sets that cause other
      * quicksorts to degrade to quadratic performance, and is typically
-     * faster than traditional (one-pivot) Quicksort implementations.
+     * faster than traditional (one-pivot) Quicksort implementations. Large
+     * arrays that are not nearly sorted are sorted by a radix sort.
      *
      * @param a the array to be sorted
      */
@@ -154,7 +158,8 @@ public class Arrays {
      * by Vladimir Yaroslavskiy, Jon Bentley, and Joshua Bloch. This algorithm
      * offers O(n log(n)) performance on many data sets that cause other
      * quicksorts to degrade to quadratic performance, and is typically
-     * faster than traditional (one-pivot) Quicksort implementations.
+     * faster than traditional (one-pivot) Quicksort implementations. Large
+     * arrays that are not nearly sorted are sorted by a radix sort.
      *
      * @param a the array to be sorted
      * @param fromIndex the index of the first element, inclusive, to be sorted
@@ -176,7 +181,8 @@ public class Arrays {
      * by Vladimir Yaroslavskiy, Jon Bentley, and Joshua Bloch. This algorithm
      * offers O(n log(n)) performance on many data sets that cause other
      * quicksorts to degrade to quadratic performance, and is typically
-     * faster than traditional (one-pivot) Quicksort implementations.
+     * faster than traditional (one-pivot) Quicksort implementations. Large
+     * arrays that are not nearly sorted are sorted by a radix sort.
      *
      * @param a the array to be sorted
      */
@@ -194,7 +200,8 @@ public class Arrays {
      * by Vladimir Yaroslavskiy, Jon Bentley, and Joshua Bloch. This algorithm
      * offers O(n log(n)) performance on many data sets that cause other
      * quicksorts to degrade to quadratic performance, and is typically
-     * faster than traditional (one-pivot) Quicksort implementations.
+     * faster than traditional (one-pivot) Quicksort implementations. Large
+     * arrays that are not nearly sorted are sorted by a radix sort.
      *
      * @param a the array to be sorted
      * @param fromIndex the index of the first element, inclusive, to be sorted
@@ -344,7 +351,8 @@ public class Arrays {
      * by Vladimir Yaroslavskiy, Jon Bentley, and Joshua Bloch. This algorithm
      * offers O(n log(n)) performance on many data sets that cause other
      * quicksorts to degrade to quadratic performance, and is typically
-     * faster than traditional (one-pivot) Quicksort implementations.
+     * faster than traditional (one-pivot) Quicksort implementations. Large
+     * arrays that are not nearly sorted are sorted by a radix sort.
      *
      * @param a the array to be sorted
      */
@@ -370,7 +378,8 @@ public class Arrays {
      * by Vladimir Yaroslavskiy, Jon Bentley, and Joshua Bloch. This algorithm
      * offers O(n log(n)) performance on many data sets that cause other
      * quicksorts to degrade to quadratic performance, and is typically
-     * faster than traditional (one-pivot) Quicksort implementations.
+     * faster than traditional (one-pivot) Quicksort implementations. Large
+     * arrays that are not nearly sorted are sorted by a radix sort.
      *
      * @param a the array to be sorted
      * @param fromIndex the index of the first element, inclusive, to be sorted
@@ -400,7 +409,8 @@ public class Arrays {
      * by Vladimir Yaroslavskiy, Jon Bentley, and Joshua Bloch. This algorithm
      * offers O(n log(n)) performance on many data sets that cause other
      * quicksorts to degrade to quadratic performance, and is typically
-     * faster than traditional (one-pivot) Quicksort implementations.
+     * faster than traditional (one-pivot) Quicksort implementations. Large
+     * arrays that are not nearly sorted are sorted by a radix sort.
      *
      * @param a the array to be sorted
      */
@@ -426,7 +436,8 @@ public class Arrays {
      * by Vladimir Yaroslavskiy, Jon Bentley, and Joshua Bloch. This algorithm
      * offers O(n log(n)) performance on many data sets that cause other
      * quicksorts to degrade to quadratic performance, and is typically
-     * faster than traditional (one-pivot) Quicksort implementations.
+     * faster than traditional (one-pivot) Quicksort implementations. Large
+     * arrays that are not nearly sorted are sorted by a radix sort.
      *
      * @param a the array to be sorted
      * @param fromIndex the index of the first element, inclusive, to be sorted
@@ -664,6 +675,7 @@ public class Arrays {
      * working space no greater than the size of the original array. The
      * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
      * execute any parallel tasks.
+     * Arrays of at least 65536 elements are sorted by a parallel radix sort.
      *
      * @param a the array to be sorted
      *
@@ -674,6 +686,8 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             DualPivotQuicksort.sort(a, 0, n - 1, null, 0, 0);
+        else if (n >= RadixSort.MIN_PARALLEL_SORT_SIZE)
+            RadixSort.parallelSort(a, 0, n - 1);
         else
             new ArraysParallelSortHelpers.FJInt.Sorter
                 (null, a, new int[n], 0, n, 0,
@@ -697,6 +711,7 @@ public class Arrays {
      * space no greater than the size of the specified range of the original
      * array. The {@link ForkJoinPool#commonPool() ForkJoin common pool} is
      * used to execute any parallel tasks.
+     * Arrays of at least 65536 elements are sorted by a parallel radix sort.
      *
      * @param a the array to be sorted
      * @param fromIndex the index of the first element, inclusive, to be sorted
@@ -714,6 +729,8 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             DualPivotQuicksort.sort(a, fromIndex, toIndex - 1, null, 0, 0);
+        else if (n >= RadixSort.MIN_PARALLEL_SORT_SIZE)
+            RadixSort.parallelSort(a, fromIndex, toIndex - 1);
         else
             new ArraysParallelSortHelpers.FJInt.Sorter
                 (null, a, new int[n], fromIndex, n, 0,
@@ -734,6 +751,7 @@ public class Arrays {
      * working space no greater than the size of the original array. The
      * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
      * execute any parallel tasks.
+     * Arrays of at least 65536 elements are sorted by a parallel radix sort.
      *
      * @param a the array to be sorted
      *
@@ -744,6 +762,8 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             DualPivotQuicksort.sort(a, 0, n - 1, null, 0, 0);
+        else if (n >= RadixSort.MIN_PARALLEL_SORT_SIZE)
+            RadixSort.parallelSort(a, 0, n - 1);
         else
             new ArraysParallelSortHelpers.FJLong.Sorter
                 (null, a, new long[n], 0, n, 0,
@@ -767,6 +787,7 @@ public class Arrays {
      * space no greater than the size of the specified range of the original
      * array. The {@link ForkJoinPool#commonPool() ForkJoin common pool} is
      * used to execute any parallel tasks.
+     * Arrays of at least 65536 elements are sorted by a parallel radix sort.
      *
      * @param a the array to be sorted
      * @param fromIndex the index of the first element, inclusive, to be sorted
@@ -784,6 +805,8 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             DualPivotQuicksort.sort(a, fromIndex, toIndex - 1, null, 0, 0);
+        else if (n >= RadixSort.MIN_PARALLEL_SORT_SIZE)
+            RadixSort.parallelSort(a, fromIndex, toIndex - 1);
         else
             new ArraysParallelSortHelpers.FJLong.Sorter
                 (null, a, new long[n], fromIndex, n, 0,
@@ -812,6 +835,7 @@ public class Arrays {
      * working space no greater than the size of the original array. The
      * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
      * execute any parallel tasks.
+     * Arrays of at least 65536 elements are sorted by a parallel radix sort.
      *
      * @param a the array to be sorted
      *
@@ -822,6 +846,8 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             DualPivotQuicksort.sort(a, 0, n - 1, null, 0, 0);
+        else if (n >= RadixSort.MIN_PARALLEL_SORT_SIZE)
+            RadixSort.parallelSort(a, 0, n - 1);
         else
             new ArraysParallelSortHelpers.FJFloat.Sorter
                 (null, a, new float[n], 0, n, 0,
@@ -853,6 +879,7 @@ public class Arrays {
      * space no greater than the size of the specified range of the original
      * array. The {@link ForkJoinPool#commonPool() ForkJoin common pool} is
      * used to execute any parallel tasks.
+     * Arrays of at least 65536 elements are sorted by a parallel radix sort.
      *
      * @param a the array to be sorted
      * @param fromIndex the index of the first element, inclusive, to be sorted
@@ -870,6 +897,8 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             DualPivotQuicksort.sort(a, fromIndex, toIndex - 1, null, 0, 0);
+        else if (n >= RadixSort.MIN_PARALLEL_SORT_SIZE)
+            RadixSort.parallelSort(a, fromIndex, toIndex - 1);
         else
             new ArraysParallelSortHelpers.FJFloat.Sorter
                 (null, a, new float[n], fromIndex, n, 0,
@@ -898,6 +927,7 @@ public class Arrays {
      * working space no greater than the size of the original array. The
      * {@link ForkJoinPool#commonPool() ForkJoin common pool} is used to
      * execute any parallel tasks.
+     * Arrays of at least 65536 elements are sorted by a parallel radix sort.
      *
      * @param a the array to be sorted
      *
@@ -908,6 +938,8 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             DualPivotQuicksort.sort(a, 0, n - 1, null, 0, 0);
+        else if (n >= RadixSort.MIN_PARALLEL_SORT_SIZE)
+            RadixSort.parallelSort(a, 0, n - 1);
         else
             new ArraysParallelSortHelpers.FJDouble.Sorter
                 (null, a, new double[n], 0, n, 0,
@@ -939,6 +971,7 @@ public class Arrays {
      * space no greater than the size of the specified range of the original
      * array. The {@link ForkJoinPool#commonPool() ForkJoin common pool} is
      * used to execute any parallel tasks.
+     * Arrays of at least 65536 elements are sorted by a parallel radix sort.
      *
      * @param a the array to be sorted
      * @param fromIndex the index of the first element, inclusive, to be sorted
@@ -956,6 +989,8 @@ public class Arrays {
         if (n <= MIN_ARRAY_SORT_GRAN ||
             (p = ForkJoinPool.getCommonPoolParallelism()) == 1)
             DualPivotQuicksort.sort(a, fromIndex, toIndex - 1, null, 0, 0);
+        else if (n >= RadixSort.MIN_PARALLEL_SORT_SIZE)
+            RadixSort.parallelSort(a, fromIndex, toIndex - 1);
         else
             new ArraysParallelSortHelpers.FJDouble.Sorter
                 (null, a, new double[n], fromIndex, n, 0,
@@ -1571,6 +1606,235 @@ public class Arrays {
         }
     }
 
+    // Sorting by key
+
+    /**
+     * Sorts the specified array of objects according to the {@code int}
+     * keys extracted from them by the given function.  The result is the
+     * same as that of {@code sort(a, Comparator.comparingInt(keyExtractor))},
+     * but the key of each element is extracted only once, and the elements
+     * are not compared with one another.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.  If the function
+     * throws an exception, the array is left unmodified.
+     *
+     * <p>Implementation note: The keys are extracted into an array and
+     * the permutation that sorts them is computed by a radix sort, which
+     * makes a pass over the keys for each byte in which they differ;
+     * the elements are then moved into place.  Temporary storage of a
+     * few arrays of the length of the array is required.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @since 1.8
+     */
+    public static <T> void sortByIntKey(T[] a, ToIntFunction<? super T> keyExtractor) {
+        sortByIntKey(a, 0, a.length, keyExtractor);
+    }
+
+    /**
+     * Sorts the specified range of the specified array of objects according
+     * to the {@code int} keys extracted from them by the given function.
+     * The range to be sorted extends from index {@code fromIndex},
+     * inclusive, to index {@code toIndex}, exclusive.  (If
+     * {@code fromIndex==toIndex}, the range to be sorted is empty.)  The
+     * result is the same as that of
+     * {@code sort(a, fromIndex, toIndex, Comparator.comparingInt(keyExtractor))},
+     * but the key of each element is extracted only once, and the elements
+     * are not compared with one another.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.  If the function
+     * throws an exception, the array is left unmodified.
+     *
+     * <p>Implementation note: The keys are extracted into an array and
+     * the permutation that sorts them is computed by a radix sort, which
+     * makes a pass over the keys for each byte in which they differ;
+     * the elements are then moved into place.  Temporary storage of a
+     * few arrays of the length of the range is required.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element (inclusive) to be
+     *        sorted
+     * @param toIndex the index of the last element (exclusive) to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException if {@code fromIndex < 0} or
+     *         {@code toIndex > a.length}
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @since 1.8
+     */
+    public static <T> void sortByIntKey(T[] a, int fromIndex, int toIndex,
+                                       ToIntFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        rangeCheck(a.length, fromIndex, toIndex);
+        int[] keys = new int[toIndex - fromIndex];
+        for (int i = fromIndex; i < toIndex; i++)
+            keys[i - fromIndex] = keyExtractor.applyAsInt(a[i]);
+        permute(a, fromIndex, RadixSort.order(keys));
+    }
+
+    /**
+     * Sorts the specified array of objects according to the {@code long}
+     * keys extracted from them by the given function.  The result is the
+     * same as that of {@code sort(a, Comparator.comparingLong(keyExtractor))},
+     * but the key of each element is extracted only once, and the elements
+     * are not compared with one another.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.  If the function
+     * throws an exception, the array is left unmodified.
+     *
+     * <p>Implementation note: The keys are extracted into an array and
+     * the permutation that sorts them is computed by a radix sort, which
+     * makes a pass over the keys for each byte in which they differ;
+     * the elements are then moved into place.  Temporary storage of a
+     * few arrays of the length of the array is required.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @since 1.8
+     */
+    public static <T> void sortByLongKey(T[] a, ToLongFunction<? super T> keyExtractor) {
+        sortByLongKey(a, 0, a.length, keyExtractor);
+    }
+
+    /**
+     * Sorts the specified range of the specified array of objects according
+     * to the {@code long} keys extracted from them by the given function.
+     * The range to be sorted extends from index {@code fromIndex},
+     * inclusive, to index {@code toIndex}, exclusive.  (If
+     * {@code fromIndex==toIndex}, the range to be sorted is empty.)  The
+     * result is the same as that of
+     * {@code sort(a, fromIndex, toIndex, Comparator.comparingLong(keyExtractor))},
+     * but the key of each element is extracted only once, and the elements
+     * are not compared with one another.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.  If the function
+     * throws an exception, the array is left unmodified.
+     *
+     * <p>Implementation note: The keys are extracted into an array and
+     * the permutation that sorts them is computed by a radix sort, which
+     * makes a pass over the keys for each byte in which they differ;
+     * the elements are then moved into place.  Temporary storage of a
+     * few arrays of the length of the range is required.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element (inclusive) to be
+     *        sorted
+     * @param toIndex the index of the last element (exclusive) to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException if {@code fromIndex < 0} or
+     *         {@code toIndex > a.length}
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @since 1.8
+     */
+    public static <T> void sortByLongKey(T[] a, int fromIndex, int toIndex,
+                                       ToLongFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        rangeCheck(a.length, fromIndex, toIndex);
+        long[] keys = new long[toIndex - fromIndex];
+        for (int i = fromIndex; i < toIndex; i++)
+            keys[i - fromIndex] = keyExtractor.applyAsLong(a[i]);
+        permute(a, fromIndex, RadixSort.order(keys));
+    }
+
+    /**
+     * Sorts the specified array of objects according to the {@code double}
+     * keys extracted from them by the given function.  The result is the
+     * same as that of {@code sort(a, Comparator.comparingDouble(keyExtractor))},
+     * but the key of each element is extracted only once, and the elements
+     * are not compared with one another.
+     * Keys are ordered as by {@link Double#compare}: {@code -0.0} is
+     * treated as less than {@code 0.0} and {@code Double.NaN} as greater
+     * than any other value.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.  If the function
+     * throws an exception, the array is left unmodified.
+     *
+     * <p>Implementation note: The keys are extracted into an array and
+     * the permutation that sorts them is computed by a radix sort, which
+     * makes a pass over the keys for each byte in which they differ;
+     * the elements are then moved into place.  Temporary storage of a
+     * few arrays of the length of the array is required.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @since 1.8
+     */
+    public static <T> void sortByDoubleKey(T[] a, ToDoubleFunction<? super T> keyExtractor) {
+        sortByDoubleKey(a, 0, a.length, keyExtractor);
+    }
+
+    /**
+     * Sorts the specified range of the specified array of objects according
+     * to the {@code double} keys extracted from them by the given function.
+     * The range to be sorted extends from index {@code fromIndex},
+     * inclusive, to index {@code toIndex}, exclusive.  (If
+     * {@code fromIndex==toIndex}, the range to be sorted is empty.)  The
+     * result is the same as that of
+     * {@code sort(a, fromIndex, toIndex, Comparator.comparingDouble(keyExtractor))},
+     * but the key of each element is extracted only once, and the elements
+     * are not compared with one another.
+     * Keys are ordered as by {@link Double#compare}: {@code -0.0} is
+     * treated as less than {@code 0.0} and {@code Double.NaN} as greater
+     * than any other value.
+     *
+     * <p>This sort is guaranteed to be <i>stable</i>:  elements with equal
+     * keys will not be reordered as a result of the sort.  If the function
+     * throws an exception, the array is left unmodified.
+     *
+     * <p>Implementation note: The keys are extracted into an array and
+     * the permutation that sorts them is computed by a radix sort, which
+     * makes a pass over the keys for each byte in which they differ;
+     * the elements are then moved into place.  Temporary storage of a
+     * few arrays of the length of the range is required.
+     *
+     * @param <T> the class of the objects to be sorted
+     * @param a the array to be sorted
+     * @param fromIndex the index of the first element (inclusive) to be
+     *        sorted
+     * @param toIndex the index of the last element (exclusive) to be sorted
+     * @param keyExtractor the function used to extract the sort key
+     * @throws IllegalArgumentException if {@code fromIndex > toIndex}
+     * @throws ArrayIndexOutOfBoundsException if {@code fromIndex < 0} or
+     *         {@code toIndex > a.length}
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @since 1.8
+     */
+    public static <T> void sortByDoubleKey(T[] a, int fromIndex, int toIndex,
+                                       ToDoubleFunction<? super T> keyExtractor) {
+        Objects.requireNonNull(keyExtractor);
+        rangeCheck(a.length, fromIndex, toIndex);
+        double[] keys = new double[toIndex - fromIndex];
+        for (int i = fromIndex; i < toIndex; i++)
+            keys[i - fromIndex] = keyExtractor.applyAsDouble(a[i]);
+        permute(a, fromIndex, RadixSort.order(keys));
+    }
+
+    /**
+     * Rearranges the elements of the range of the array starting at
+     * fromIndex, such that the element at fromIndex + i is the one that
+     * was at fromIndex + order[i].
+     */
+    private static void permute(Object[] a, int fromIndex, int[] order) {
+        Object[] aux = copyOfRange(a, fromIndex, fromIndex + order.length);
+        for (int i = 0; i < order.length; i++)
+            a[fromIndex + i] = aux[order[i]];
+    }
+
     // Parallel prefix
 
     /**
@@ -3894,6 +4158,21 @@ public class Arrays {
         public void sort(Comparator<? super E> c) {
             Arrays.sort(a, c);
         }
+
+        @Override
+        public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+            Arrays.sortByIntKey(a, keyExtractor);
+        }
+
+        @Override
+        public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+            Arrays.sortByLongKey(a, keyExtractor);
+        }
+
+        @Override
+        public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+            Arrays.sortByDoubleKey(a, keyExtractor);
+        }
     }
 
     /**
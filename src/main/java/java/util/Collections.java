@@ -33,6 +33,9 @@ import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -1330,6 +1333,18 @@ public class Collections {
         public void sort(Comparator<? super E> c) {
             throw new UnsupportedOperationException();
         }
+        @Override
+        public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+            throw new UnsupportedOperationException();
+        }
+        @Override
+        public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+            throw new UnsupportedOperationException();
+        }
 
         public ListIterator<E> listIterator()   {return listIterator(0);}
 
@@ -2460,6 +2475,18 @@ public class Collections {
         public void sort(Comparator<? super E> c) {
             synchronized (mutex) {list.sort(c);}
         }
+        @Override
+        public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+            synchronized (mutex) {list.sortByIntKey(keyExtractor);}
+        }
+        @Override
+        public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+            synchronized (mutex) {list.sortByLongKey(keyExtractor);}
+        }
+        @Override
+        public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+            synchronized (mutex) {list.sortByDoubleKey(keyExtractor);}
+        }
 
         /**
          * SynchronizedRandomAccessList instances are serialized as
@@ -3494,6 +3521,18 @@ public class Collections {
         public void sort(Comparator<? super E> c) {
             list.sort(c);
         }
+        @Override
+        public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+            list.sortByIntKey(keyExtractor);
+        }
+        @Override
+        public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+            list.sortByLongKey(keyExtractor);
+        }
+        @Override
+        public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+            list.sortByDoubleKey(keyExtractor);
+        }
     }
 
     /**
@@ -4472,6 +4511,15 @@ public class Collections {
         @Override
         public void sort(Comparator<? super E> c) {
         }
+        @Override
+        public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+        }
+        @Override
+        public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+        }
+        @Override
+        public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+        }
 
         // Override default methods in Collection
         @Override
@@ -4833,6 +4881,15 @@ public class Collections {
         public void sort(Comparator<? super E> c) {
         }
         @Override
+        public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+        }
+        @Override
+        public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+        }
+        @Override
+        public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+        }
+        @Override
         public Spliterator<E> spliterator() {
             return singletonSpliterator(element);
         }
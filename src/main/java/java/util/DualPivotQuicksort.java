@@ -139,10 +139,15 @@ final class DualPivotQuicksort {
 
             /*
              * The array is not highly structured,
+             * use radix sort on large arrays, otherwise
              * use Quicksort instead of merge sort.
              */
             if (++count == MAX_RUN_COUNT) {
-                sort(a, left, right, true);
+                if (right - left >= RadixSort.RADIX_SORT_THRESHOLD) {
+                    RadixSort.sort(a, left, right, work, workBase, workLen);
+                } else {
+                    sort(a, left, right, true);
+                }
                 return;
             }
         }
@@ -587,10 +592,15 @@ final class DualPivotQuicksort {
 
             /*
              * The array is not highly structured,
+             * use radix sort on large arrays, otherwise
              * use Quicksort instead of merge sort.
              */
             if (++count == MAX_RUN_COUNT) {
-                sort(a, left, right, true);
+                if (right - left >= RadixSort.RADIX_SORT_THRESHOLD_FOR_LONG) {
+                    RadixSort.sort(a, left, right, work, workBase, workLen);
+                } else {
+                    sort(a, left, right, true);
+                }
                 return;
             }
         }
@@ -2135,10 +2145,15 @@ final class DualPivotQuicksort {
 
             /*
              * The array is not highly structured,
+             * use radix sort on large arrays, otherwise
              * use Quicksort instead of merge sort.
              */
             if (++count == MAX_RUN_COUNT) {
-                sort(a, left, right, true);
+                if (right - left >= RadixSort.RADIX_SORT_THRESHOLD) {
+                    RadixSort.sort(a, left, right, work, workBase, workLen);
+                } else {
+                    sort(a, left, right, true);
+                }
                 return;
             }
         }
@@ -2674,10 +2689,15 @@ final class DualPivotQuicksort {
 
             /*
              * The array is not highly structured,
+             * use radix sort on large arrays, otherwise
              * use Quicksort instead of merge sort.
              */
             if (++count == MAX_RUN_COUNT) {
-                sort(a, left, right, true);
+                if (right - left >= RadixSort.RADIX_SORT_THRESHOLD_FOR_LONG) {
+                    RadixSort.sort(a, left, right, work, workBase, workLen);
+                } else {
+                    sort(a, left, right, true);
+                }
                 return;
             }
         }
@@ -25,6 +25,9 @@
 
 package java.util;
 
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
 
 /**
@@ -483,6 +486,109 @@ public interface List<E> extends Collection<E> {
         }
     }
 
+    /**
+     * Sorts this list according to the {@code int} keys extracted from its
+     * elements by the given function.  The result is the same as that of
+     * {@link #sort(Comparator) sort(Comparator.comparingInt(keyExtractor))}, but
+     * the key of each element is extracted only once.
+     *
+     * <p>This sort is stable: elements with equal keys will not be
+     * reordered as a result of the sort.  This list must be modifiable,
+     * but need not be resizable.
+     *
+     * @implSpec
+     * The default implementation obtains an array containing all elements in
+     * this list, sorts the array with
+     * {@link Arrays#sortByIntKey(Object[], ToIntFunction)}, and iterates over this
+     * list resetting each element from the corresponding position in the
+     * array.
+     *
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @throws UnsupportedOperationException if the list's list-iterator does
+     *         not support the {@code set} operation
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    default void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+        Object[] a = this.toArray();
+        Arrays.sortByIntKey(a, (ToIntFunction<Object>) keyExtractor);
+        ListIterator<E> i = this.listIterator();
+        for (Object e : a) {
+            i.next();
+            i.set((E) e);
+        }
+    }
+
+    /**
+     * Sorts this list according to the {@code long} keys extracted from its
+     * elements by the given function.  The result is the same as that of
+     * {@link #sort(Comparator) sort(Comparator.comparingLong(keyExtractor))}, but
+     * the key of each element is extracted only once.
+     *
+     * <p>This sort is stable: elements with equal keys will not be
+     * reordered as a result of the sort.  This list must be modifiable,
+     * but need not be resizable.
+     *
+     * @implSpec
+     * The default implementation obtains an array containing all elements in
+     * this list, sorts the array with
+     * {@link Arrays#sortByLongKey(Object[], ToLongFunction)}, and iterates over this
+     * list resetting each element from the corresponding position in the
+     * array.
+     *
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @throws UnsupportedOperationException if the list's list-iterator does
+     *         not support the {@code set} operation
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    default void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+        Object[] a = this.toArray();
+        Arrays.sortByLongKey(a, (ToLongFunction<Object>) keyExtractor);
+        ListIterator<E> i = this.listIterator();
+        for (Object e : a) {
+            i.next();
+            i.set((E) e);
+        }
+    }
+
+    /**
+     * Sorts this list according to the {@code double} keys extracted from its
+     * elements by the given function.  The result is the same as that of
+     * {@link #sort(Comparator) sort(Comparator.comparingDouble(keyExtractor))}, but
+     * the key of each element is extracted only once.
+     * Keys are ordered as by {@link Double#compare}.
+     *
+     * <p>This sort is stable: elements with equal keys will not be
+     * reordered as a result of the sort.  This list must be modifiable,
+     * but need not be resizable.
+     *
+     * @implSpec
+     * The default implementation obtains an array containing all elements in
+     * this list, sorts the array with
+     * {@link Arrays#sortByDoubleKey(Object[], ToDoubleFunction)}, and iterates over this
+     * list resetting each element from the corresponding position in the
+     * array.
+     *
+     * @param keyExtractor the function used to extract the sort key
+     * @throws NullPointerException if {@code keyExtractor} is null
+     * @throws UnsupportedOperationException if the list's list-iterator does
+     *         not support the {@code set} operation
+     * @since 1.8
+     */
+    @SuppressWarnings("unchecked")
+    default void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+        Object[] a = this.toArray();
+        Arrays.sortByDoubleKey(a, (ToDoubleFunction<Object>) keyExtractor);
+        ListIterator<E> i = this.listIterator();
+        for (Object e : a) {
+            i.next();
+            i.set((E) e);
+        }
+    }
+
     /**
      * Removes all of the elements from this list (optional operation).
      * The list will be empty after this call returns.
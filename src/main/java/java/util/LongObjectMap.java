@@ -0,0 +1,859 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Serializable;
+import java.util.function.BiFunction;
+import java.util.function.LongFunction;
+import java.util.function.LongObjConsumer;
+
+/**
+ * Hash table mapping primitive {@code long} keys to object values.
+ * Unlike {@code HashMap<Long,V>}, this class neither boxes keys nor
+ * allocates a node per mapping: keys and values are held in two
+ * parallel arrays and collisions are resolved by open addressing
+ * (linear probing).  This typically reduces the footprint of a large
+ * index several times over, and produces no garbage on insertion other
+ * than when the table is resized.
+ *
+ * <p>This class permits {@code null} values.  As in {@link HashMap}, a
+ * return value of {@code null} from {@link #get get} does not
+ * necessarily indicate that the map contains no mapping for the key;
+ * the {@link #containsKey containsKey} operation may be used to
+ * distinguish these two cases.
+ *
+ * <p>The {@link #computeIfAbsent computeIfAbsent}, {@link #merge merge}
+ * and {@link #forEach forEach} methods follow the contracts of their
+ * {@code Map} counterparts, but take functional interfaces from
+ * {@code java.util.function} that accept the key as a primitive.
+ *
+ * <p>An instance of {@code LongObjectMap} has two parameters that affect
+ * its performance: <i>initial capacity</i> and <i>load factor</i>, with
+ * the same meaning as for {@link HashMap}.  Since open-addressed tables
+ * degrade more quickly than chained ones as they fill up, load factors
+ * above the default (.75) are not recommended.
+ *
+ * <p><strong>Note that this implementation is not synchronized.</strong>
+ * If multiple threads access a {@code LongObjectMap} concurrently, and at
+ * least one of the threads modifies the map structurally, it <i>must</i>
+ * be synchronized externally.
+ *
+ * @param <V> the type of mapped values
+ *
+ * @see     HashMap
+ * @see     IntHashMap
+ * @see     LongObjectMap
+ * @since   1.8
+ */
+public class LongObjectMap<V> implements Cloneable, Serializable {
+
+    private static final long serialVersionUID = -2907613914532170745L;
+
+    /*
+     * Implementation notes.
+     *
+     * Keys and values live in two parallel arrays whose length is a
+     * power of two.  A slot is free when its key is zero, so the key
+     * zero itself cannot be stored in the table and is instead kept
+     * in the fields hasZeroKey/zeroValue.  Lookups probe linearly
+     * from the slot selected by the (spread) hash until either the
+     * key or a free slot is found.
+     *
+     * Removal uses backward-shift deletion rather than tombstones:
+     * after freeing a slot, subsequent entries of the same probe run
+     * that would no longer be reachable are moved back into the gap.
+     * This keeps probe sequences short under heavy churn and means
+     * that the table never needs to be rebuilt other than to grow.
+     */
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    static final int DEFAULT_INITIAL_CAPACITY = 1 << 4;
+
+    /**
+     * The maximum capacity, used if a higher value is implicitly specified
+     * by either of the constructors with arguments.
+     * MUST be a power of two <= 1<<30.
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The load factor used when none specified in constructor.
+     */
+    static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * The keys, or zero for free slots.  Allocated on first use;
+     * length is always a power of two.
+     */
+    transient long[] keys;
+
+    /**
+     * The values, parallel to keys.
+     */
+    transient Object[] values;
+
+    /**
+     * Whether the key zero is mapped.
+     */
+    transient boolean hasZeroKey;
+
+    /**
+     * The value mapped to the key zero, if hasZeroKey.
+     */
+    transient Object zeroValue;
+
+    /**
+     * The number of key-value mappings contained in this map.
+     */
+    transient int size;
+
+    /**
+     * The number of times this map has been structurally modified.
+     */
+    transient int modCount;
+
+    /**
+     * The next size value at which to resize (capacity * load factor).
+     * Before the table is allocated, holds the initial capacity.
+     *
+     * @serial
+     */
+    int threshold;
+
+    /**
+     * The load factor for the hash table.
+     *
+     * @serial
+     */
+    final float loadFactor;
+
+    /* ---------------- Static utilities -------------- */
+
+    /**
+     * Spreads the bits of a key.  Consecutive keys are common, so the
+     * key is first multiplied by the 64-bit golden ratio to scatter
+     * them across the table, and the higher bits are then folded down
+     * since the table uses power-of-two masking.
+     */
+    static final int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        int x = (int)(h ^ (h >>> 32));
+        return x ^ (x >>> 16);
+    }
+
+    /**
+     * Returns a power of two size for the given target capacity.
+     */
+    static final int tableSizeFor(int cap) {
+        int n = cap - 1;
+        n |= n >>> 1;
+        n |= n >>> 2;
+        n |= n >>> 4;
+        n |= n >>> 8;
+        n |= n >>> 16;
+        return (n < 0) ? 1 : (n >= MAXIMUM_CAPACITY) ? MAXIMUM_CAPACITY : n + 1;
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Constructs an empty {@code LongObjectMap} with the specified initial
+     * capacity and load factor.
+     *
+     * @param  initialCapacity the initial capacity
+     * @param  loadFactor      the load factor
+     * @throws IllegalArgumentException if the initial capacity is negative
+     *         or the load factor is nonpositive or not less than one
+     */
+    public LongObjectMap(int initialCapacity, float loadFactor) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " +
+                                               initialCapacity);
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            initialCapacity = MAXIMUM_CAPACITY;
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new IllegalArgumentException("Illegal load factor: " +
+                                               loadFactor);
+        this.loadFactor = loadFactor;
+        this.threshold = tableSizeFor(initialCapacity);
+    }
+
+    /**
+     * Constructs an empty {@code LongObjectMap} with the specified initial
+     * capacity and the default load factor (0.75).
+     *
+     * @param  initialCapacity the initial capacity.
+     * @throws IllegalArgumentException if the initial capacity is negative.
+     */
+    public LongObjectMap(int initialCapacity) {
+        this(initialCapacity, DEFAULT_LOAD_FACTOR);
+    }
+
+    /**
+     * Constructs an empty {@code LongObjectMap} with the default initial
+     * capacity (16) and the default load factor (0.75).
+     */
+    public LongObjectMap() {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+        this.threshold = DEFAULT_INITIAL_CAPACITY;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.
+     *
+     * @return the number of key-value mappings in this map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the index of the slot holding the given nonzero key, or
+     * -1 if the key is not present.
+     */
+    final int indexOf(long key) {
+        long[] ks; int n;
+        if ((ks = keys) != null && (n = ks.length) > 0) {
+            int mask = n - 1; long k;
+            for (int i = hash(key) & mask; (k = ks[i]) != 0; i = (i + 1) & mask) {
+                if (k == key)
+                    return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         {@code null} if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == 0)
+            return (V)zeroValue;
+        int i = indexOf(key);
+        return (i < 0) ? null : (V)values[i];
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or
+     * {@code defaultValue} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the default mapping of the key
+     * @return the value to which the specified key is mapped, or
+     *         {@code defaultValue} if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        if (key == 0)
+            return hasZeroKey ? (V)zeroValue : defaultValue;
+        int i = indexOf(key);
+        return (i < 0) ? defaultValue : (V)values[i];
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param   key   The key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the specified
+     *         key.
+     */
+    public boolean containsKey(long key) {
+        return (key == 0) ? hasZeroKey : indexOf(key) >= 0;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value.  This operation requires time linear in the
+     * capacity of the map.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the
+     *         specified value
+     */
+    public boolean containsValue(Object value) {
+        if (hasZeroKey && Objects.equals(zeroValue, value))
+            return true;
+        long[] ks; Object[] vs;
+        if (size > 0 && (ks = keys) != null) {
+            vs = values;
+            for (int i = 0; i < ks.length; ++i) {
+                if (ks[i] != 0 && Objects.equals(vs[i], value))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     */
+    public V put(long key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * If the specified key is not already associated with a value (or is
+     * mapped to {@code null}) associates it with the given value and
+     * returns {@code null}, else returns the current value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key, or
+     *         {@code null} if there was no mapping for the key.
+     */
+    public V putIfAbsent(long key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /**
+     * Implements put and putIfAbsent.
+     *
+     * @param onlyIfAbsent if true, don't change existing non-null value
+     * @return previous value, or null if none
+     */
+    @SuppressWarnings("unchecked")
+    final V putVal(long key, V value, boolean onlyIfAbsent) {
+        if (key == 0) {
+            V old = (V)zeroValue;
+            if (!onlyIfAbsent || old == null)
+                zeroValue = value;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                ++modCount;
+                ++size;
+            }
+            return old;
+        }
+        int i = insertionIndex(key);
+        Object[] vs = values;
+        if (i < 0) {
+            V old = (V)vs[i = ~i];
+            if (!onlyIfAbsent || old == null)
+                vs[i] = value;
+            return old;
+        }
+        keys[i] = key;
+        vs[i] = value;
+        afterInsertion();
+        return null;
+    }
+
+    /**
+     * If the specified key is not already associated with a value (or
+     * is mapped to {@code null}), attempts to compute its value using
+     * the given mapping function and enters it into this map unless
+     * {@code null}.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param mappingFunction the function to compute a value
+     * @return the current (existing or computed) value associated with
+     *         the specified key, or null if the computed value is null
+     * @throws NullPointerException if the mapping function is null
+     * @throws ConcurrentModificationException if it is detected that the
+     *         mapping function modified this map
+     */
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long key,
+                             LongFunction<? extends V> mappingFunction) {
+        if (mappingFunction == null)
+            throw new NullPointerException();
+        V old;
+        if (key == 0) {
+            if ((old = (V)zeroValue) != null)
+                return old;
+            int mc = modCount;
+            V v = mappingFunction.apply(key);
+            if (mc != modCount)
+                throw new ConcurrentModificationException();
+            if (v != null) {
+                zeroValue = v;
+                if (!hasZeroKey) {
+                    hasZeroKey = true;
+                    ++modCount;
+                    ++size;
+                }
+            }
+            return v;
+        }
+        int i = insertionIndex(key);
+        if (i < 0 && (old = (V)values[~i]) != null)
+            return old;
+        int mc = modCount;
+        V v = mappingFunction.apply(key);
+        if (mc != modCount)
+            throw new ConcurrentModificationException();
+        if (v != null) {
+            if (i < 0)
+                values[~i] = v;
+            else {
+                keys[i] = key;
+                values[i] = v;
+                afterInsertion();
+            }
+        }
+        return v;
+    }
+
+    /**
+     * If the specified key is not already associated with a value or is
+     * associated with null, associates it with the given non-null value.
+     * Otherwise, replaces the associated value with the results of the
+     * given remapping function, or removes if the result is {@code null}.
+     *
+     * @param key key with which the resulting value is to be associated
+     * @param value the non-null value to be merged with the existing value
+     *        associated with the key or, if no existing value or a null value
+     *        is associated with the key, to be associated with the key
+     * @param remappingFunction the function to recompute a value if present
+     * @return the new value associated with the specified key, or null if no
+     *         value is associated with the key
+     * @throws NullPointerException if the value or remapping function is null
+     */
+    @SuppressWarnings("unchecked")
+    public V merge(long key, V value,
+                   BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        if (value == null)
+            throw new NullPointerException();
+        if (remappingFunction == null)
+            throw new NullPointerException();
+        V old, v;
+        if (key == 0) {
+            if ((old = (V)zeroValue) == null)
+                v = value;
+            else if ((v = remappingFunction.apply(old, value)) == null) {
+                remove(key);
+                return null;
+            }
+            zeroValue = v;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                ++modCount;
+                ++size;
+            }
+            return v;
+        }
+        int i = insertionIndex(key);
+        Object[] vs = values;
+        if (i < 0) {
+            i = ~i;
+            if ((old = (V)vs[i]) == null)
+                v = value;
+            else if ((v = remappingFunction.apply(old, value)) == null) {
+                removeAt(i);
+                return null;
+            }
+            vs[i] = v;
+            return v;
+        }
+        keys[i] = key;
+        vs[i] = value;
+        afterInsertion();
+        return value;
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param  key key whose mapping is to be removed from the map
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}.
+     *         (A {@code null} return can also indicate that the map
+     *         previously associated {@code null} with {@code key}.)
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return null;
+            V old = (V)zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            ++modCount;
+            --size;
+            return old;
+        }
+        int i = indexOf(key);
+        if (i < 0)
+            return null;
+        V old = (V)values[i];
+        removeAt(i);
+        return old;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     * The map will be empty after this call returns.
+     */
+    public void clear() {
+        long[] ks;
+        ++modCount;
+        if ((ks = keys) != null && size > 0) {
+            Arrays.fill(ks, 0);
+            Arrays.fill(values, null);
+        }
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    /**
+     * Performs the given action for each entry in this map until all
+     * entries have been processed or the action throws an exception.
+     * Entries are processed in an unspecified order.
+     *
+     * @param action The action to be performed for each entry
+     * @throws NullPointerException if the specified action is null
+     * @throws ConcurrentModificationException if an entry is found to be
+     *         removed or added during iteration
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(LongObjConsumer<? super V> action) {
+        long[] ks; Object[] vs;
+        if (action == null)
+            throw new NullPointerException();
+        if (size > 0) {
+            int mc = modCount;
+            if (hasZeroKey)
+                action.accept(0L, (V)zeroValue);
+            if ((ks = keys) != null) {
+                vs = values;
+                for (int i = 0; i < ks.length && modCount == mc; ++i) {
+                    long k;
+                    if ((k = ks[i]) != 0)
+                        action.accept(k, (V)vs[i]);
+                }
+            }
+            if (modCount != mc)
+                throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Returns a newly allocated array containing all of the keys in
+     * this map, in an unspecified order.
+     *
+     * @return an array of the keys in this map
+     */
+    public long[] keys() {
+        long[] a = new long[size], ks;
+        int j = 0;
+        if (hasZeroKey)
+            ++j;
+        if ((ks = keys) != null) {
+            for (long k : ks) {
+                if (k != 0)
+                    a[j++] = k;
+            }
+        }
+        return a;
+    }
+
+    /* ---------------- Table maintenance -------------- */
+
+    /**
+     * Returns the index of a free slot at which the nonzero key may be
+     * inserted, or the ones' complement of the index of the slot
+     * already holding the key.  Grows the table first if needed.
+     */
+    final int insertionIndex(long key) {
+        long[] ks = keys;
+        if (ks == null || size >= threshold)
+            ks = resize();
+        int mask = ks.length - 1, i; long k;
+        for (i = hash(key) & mask; (k = ks[i]) != 0; i = (i + 1) & mask) {
+            if (k == key)
+                return ~i;
+        }
+        return i;
+    }
+
+    /**
+     * Records the insertion of a new mapping into a free slot.
+     */
+    final void afterInsertion() {
+        ++modCount;
+        ++size;
+    }
+
+    /**
+     * Initializes or doubles table size.  Since the table is a power of
+     * two, entries are simply reinserted in slot order.
+     *
+     * @return the table
+     */
+    final long[] resize() {
+        long[] oldKeys = keys; Object[] oldValues = values;
+        int oldCap = (oldKeys == null) ? 0 : oldKeys.length;
+        int newCap;
+        if (oldCap > 0) {
+            if (oldCap >= MAXIMUM_CAPACITY) {
+                if (size >= oldCap - 1)
+                    throw new IllegalStateException("Capacity exceeded");
+                threshold = oldCap - 1;
+                return oldKeys;
+            }
+            newCap = oldCap << 1;
+        }
+        else
+            newCap = Math.max(threshold, 2);
+        long[] ks = new long[newCap]; Object[] vs = new Object[newCap];
+        int mask = newCap - 1;
+        for (int j = 0; j < oldCap; ++j) {
+            long k;
+            if ((k = oldKeys[j]) != 0) {
+                int i = hash(k) & mask;
+                while (ks[i] != 0)
+                    i = (i + 1) & mask;
+                ks[i] = k;
+                vs[i] = oldValues[j];
+            }
+        }
+        float ft = (float)newCap * loadFactor;
+        threshold = (newCap < MAXIMUM_CAPACITY) ? (int)ft : newCap - 1;
+        keys = ks;
+        values = vs;
+        return ks;
+    }
+
+    /**
+     * Frees the slot at index i, shifting back any later entries of
+     * the same probe run whose home slot is at or before the gap.
+     */
+    final void removeAt(int i) {
+        long[] ks = keys; Object[] vs = values;
+        int mask = ks.length - 1; long k;
+        for (int j = (i + 1) & mask; (k = ks[j]) != 0; j = (j + 1) & mask) {
+            int h = hash(k) & mask;
+            // move back unless home slot h lies cyclically in (i, j]
+            if (((j - h) & mask) >= ((j - i) & mask)) {
+                ks[i] = k;
+                vs[i] = vs[j];
+                i = j;
+            }
+        }
+        ks[i] = 0;
+        vs[i] = null;
+        ++modCount;
+        --size;
+    }
+
+    /* ------------------------------------------------------------ */
+    // Comparison and hashing
+
+    /**
+     * Compares the specified object with this map for equality.
+     * Returns {@code true} if the given object is also a
+     * {@code LongObjectMap} and the two maps represent the same mappings.
+     *
+     * @param o object to be compared for equality with this map
+     * @return {@code true} if the specified object is equal to this map
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (!(o instanceof LongObjectMap))
+            return false;
+        LongObjectMap<?> m = (LongObjectMap<?>)o;
+        if (m.size != size)
+            return false;
+        if (hasZeroKey &&
+            (!m.hasZeroKey || !Objects.equals(m.zeroValue, zeroValue)))
+            return false;
+        long[] ks = keys; Object[] vs = values;
+        if (ks != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                long k; int j;
+                if ((k = ks[i]) != 0 &&
+                    ((j = m.indexOf(k)) < 0 ||
+                     !Objects.equals(m.values[j], vs[i])))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the hash code value for this map, defined as the sum of
+     * {@code Long.hashCode(key) ^ Objects.hashCode(value)} over all
+     * mappings, in the manner of {@link Map#hashCode}.
+     *
+     * @return the hash code value for this map
+     */
+    public int hashCode() {
+        int h = hasZeroKey ? Objects.hashCode(zeroValue) : 0;
+        long[] ks = keys; Object[] vs = values;
+        if (ks != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                long k;
+                if ((k = ks[i]) != 0)
+                    h += Long.hashCode(k) ^ Objects.hashCode(vs[i]);
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Returns a string representation of this map, in the same format
+     * as {@link AbstractMap#toString}.
+     *
+     * @return a string representation of this map
+     */
+    public String toString() {
+        if (size == 0)
+            return "{}";
+        StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        if (hasZeroKey)
+            sb.append(0).append('=')
+                .append(zeroValue == this ? "(this Map)" : zeroValue);
+        long[] ks = keys; Object[] vs = values;
+        if (ks != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                long k; Object v;
+                if ((k = ks[i]) != 0) {
+                    if (sb.length() > 1)
+                        sb.append(',').append(' ');
+                    sb.append(k).append('=')
+                        .append((v = vs[i]) == this ? "(this Map)" : v);
+                }
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    /* ------------------------------------------------------------ */
+    // Cloning and serialization
+
+    /**
+     * Returns a shallow copy of this {@code LongObjectMap} instance: the
+     * values themselves are not cloned.
+     *
+     * @return a shallow copy of this map
+     */
+    @SuppressWarnings("unchecked")
+    public LongObjectMap<V> clone() {
+        LongObjectMap<V> result;
+        try {
+            result = (LongObjectMap<V>)super.clone();
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError(e);
+        }
+        if (keys != null) {
+            result.keys = keys.clone();
+            result.values = values.clone();
+        }
+        result.modCount = 0;
+        return result;
+    }
+
+    /**
+     * Save the state of the {@code LongObjectMap} instance to a stream (i.e.,
+     * serialize it).
+     *
+     * @serialData The <i>size</i> of the map (the number of key-value
+     *             mappings) is emitted (int), followed by the key (long)
+     *             and value (Object) for each key-value mapping.
+     *             The key-value mappings are emitted in no particular
+     *             order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws IOException {
+        s.defaultWriteObject();
+        s.writeInt(size);
+        if (hasZeroKey) {
+            s.writeLong(0L);
+            s.writeObject(zeroValue);
+        }
+        long[] ks = keys; Object[] vs = values;
+        if (ks != null) {
+            for (int i = 0; i < ks.length; ++i) {
+                long k;
+                if ((k = ks[i]) != 0) {
+                    s.writeLong(k);
+                    s.writeObject(vs[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reconstitute the {@code LongObjectMap} instance from a stream (i.e.,
+     * deserialize it).
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (!(loadFactor > 0.0f && loadFactor < 1.0f))
+            throw new InvalidObjectException("Illegal load factor: " +
+                                             loadFactor);
+        int mappings = s.readInt();
+        if (mappings < 0)
+            throw new InvalidObjectException("Illegal mappings count: " +
+                                             mappings);
+        float fc = (float)mappings / loadFactor + 1.0f;
+        threshold = ((fc < DEFAULT_INITIAL_CAPACITY) ?
+                     DEFAULT_INITIAL_CAPACITY :
+                     (fc >= MAXIMUM_CAPACITY) ?
+                     MAXIMUM_CAPACITY :
+                     tableSizeFor((int)fc));
+        for (int i = 0; i < mappings; i++) {
+            long key = s.readLong();
+            @SuppressWarnings("unchecked")
+                V value = (V) s.readObject();
+            put(key, value);
+        }
+    }
+}
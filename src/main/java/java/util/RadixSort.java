@@ -0,0 +1,1054 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class implements least-significant-digit radix sorts of int,
+ * long, float and double arrays, and parallel versions that first
+ * distribute elements by their most significant differing digit.
+ *
+ * Elements are ordered by unsigned integer keys: the two's complement
+ * value with its sign bit flipped for int and long, and for float and
+ * double the raw bits with the sign bit flipped for non-negative values
+ * and all bits flipped for negative ones.  The keys order floating-point
+ * values as does {@link Float#compareTo} and {@link Double#compareTo},
+ * except that NaNs must be removed from the range beforehand.  The sort
+ * makes one stable counting pass per eight-bit digit of the keys, but
+ * only over the digits in which the keys of the range differ, so that
+ * arrays of values confined to a narrow range, such as identifiers or
+ * timestamps, take only a few passes.  A workspace array of the length
+ * of the range is required.
+ *
+ * Unlike Dual-Pivot Quicksort the running time is linear in the length
+ * of the range, which pays off for large arrays of random values; it
+ * does not benefit from runs of presorted elements, which
+ * DualPivotQuicksort detects before choosing this sort.
+ *
+ * All exposed methods are package-private, designed to be invoked
+ * from DualPivotQuicksort and from public methods in class Arrays after
+ * performing any necessary array bounds checks and expanding parameters
+ * into the required forms.
+ *
+ * @since 1.8
+ */
+final class RadixSort {
+
+    /**
+     * Prevents instantiation.
+     */
+    private RadixSort() {}
+
+    /*
+     * Tuning parameters.
+     */
+
+    /**
+     * If the length of an int or float array to be sorted, which is not
+     * highly structured, is greater than this constant, radix sort is
+     * used in preference to Quicksort.
+     */
+    static final int RADIX_SORT_THRESHOLD = 1 << 10;
+
+    /**
+     * If the length of a long or double array to be sorted, which is not
+     * highly structured, is greater than this constant, radix sort is
+     * used in preference to Quicksort.
+     */
+    static final int RADIX_SORT_THRESHOLD_FOR_LONG = 1 << 11;
+
+    /**
+     * The minimum length of an array range sorted by the parallel
+     * radix sort.  Smaller ranges are sorted sequentially.
+     */
+    static final int MIN_PARALLEL_SORT_SIZE = 1 << 16;
+
+    /**
+     * The minimum number of elements processed by one task of a
+     * parallel pass.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 13;
+
+    /**
+     * The number of bits in a digit of a sequential pass.
+     */
+    private static final int DIGIT_BITS = 8;
+
+    /**
+     * The number of buckets of a sequential pass.
+     */
+    private static final int RADIX = 1 << DIGIT_BITS;
+
+    private static final int MASK = RADIX - 1;
+
+    /**
+     * The number of bits in the most significant digit, by which the
+     * parallel sorts distribute elements into buckets that are then
+     * sorted independently.
+     */
+    private static final int MSD_DIGIT_BITS = 10;
+
+    /*
+     * Keys.
+     */
+
+    private static int key(int x) {
+        return x ^ Integer.MIN_VALUE;
+    }
+
+    private static long key(long x) {
+        return x ^ Long.MIN_VALUE;
+    }
+
+    private static int key(float x) {
+        int bits = Float.floatToRawIntBits(x);
+        return bits ^ ((bits >> 31) | Integer.MIN_VALUE);
+    }
+
+    private static long key(double x) {
+        long bits = Double.doubleToRawLongBits(x);
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+
+    /*
+     * Parallel loops.
+     */
+
+    /**
+     * The body of a parallel loop, applied to each index of the loop.
+     */
+    private abstract static class Body {
+        abstract void apply(int i);
+    }
+
+    /**
+     * Applies a body to a range of indices, splitting the range in half
+     * until single indices remain.
+     */
+    private static final class Loop extends RecursiveAction {
+        private static final long serialVersionUID = 2938151340315479117L;
+        final Body body;
+        final int lo, hi;
+
+        Loop(Body body, int lo, int hi) {
+            this.body = body; this.lo = lo; this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Loop(body, lo, mid), new Loop(body, mid, hi));
+            } else if (hi > lo) {
+                body.apply(lo);
+            }
+        }
+    }
+
+    /**
+     * Applies the body to each index from 0 to n - 1 in parallel, in the
+     * current ForkJoinPool or else the common pool, and returns when all
+     * have completed.
+     */
+    private static void forEach(int n, Body body) {
+        new Loop(body, 0, n).invoke();
+    }
+
+    /**
+     * Returns the number of chunks into which the parallel passes divide
+     * a range of n elements.
+     */
+    private static int chunks(int n) {
+        int p = ForkJoinPool.getCommonPoolParallelism() << 2;
+        return Math.max(1, Math.min(p, n / MIN_CHUNK_SIZE));
+    }
+
+    /*
+     * Sorting methods for int.
+     */
+
+    /**
+     * Sorts the specified range of the array, using the given workspace
+     * array slice if possible.
+     *
+     * @param a the array to be sorted
+     * @param left the index of the first element, inclusive, to be sorted
+     * @param right the index of the last element, inclusive, to be sorted
+     * @param work a workspace array (slice)
+     * @param workBase origin of usable space in work array
+     * @param workLen usable size of work array
+     */
+    static void sort(int[] a, int left, int right,
+                     int[] work, int workBase, int workLen) {
+        int n = right - left + 1;
+        if (n < 2) {
+            return;
+        }
+
+        // Find the bits in which the keys differ
+        int first = key(a[left]), diff = 0;
+        for (int i = left + 1; i <= right; ++i) {
+            diff |= key(a[i]) ^ first;
+        }
+        if (diff == 0) {
+            return;
+        }
+
+        if (work == null || workLen < n || workBase + n > work.length) {
+            work = new int[n];
+            workBase = 0;
+        }
+        sort(a, left, work, workBase, n, 32 - Integer.numberOfLeadingZeros(diff), false);
+    }
+
+    /**
+     * Sorts n elements by the given number of low-order bits of their
+     * keys, by one counting pass per digit, skipping digits that all
+     * keys share.  The elements are taken from a[ao, ao + n), b[bo, bo +
+     * n) is used as workspace, and the sorted elements are left in b if
+     * toB is true, otherwise in a.
+     */
+    private static void sort(int[] a, int ao, int[] b, int bo,
+                             int n, int bits, boolean toB) {
+        int passes = (bits + DIGIT_BITS - 1) / DIGIT_BITS;
+        int[] count = new int[passes << DIGIT_BITS];
+        for (int i = ao, end = ao + n; i < end; ++i) {
+            int k = key(a[i]);
+            for (int c = 0; c < count.length; c += RADIX, k >>>= DIGIT_BITS) {
+                ++count[c + (k & MASK)];
+            }
+        }
+
+        int[] src = a, dst = b;
+        int so = ao, dso = bo;
+        for (int c = 0, shift = 0; c < count.length; c += RADIX, shift += DIGIT_BITS) {
+            // Skip the digit if it is the same in all keys
+            if (count[c + ((key(src[so]) >>> shift) & MASK)] == n) {
+                continue;
+            }
+            for (int d = c, end = c + RADIX, sum = dso; d < end; ++d) {
+                int t = count[d];
+                count[d] = sum;
+                sum += t;
+            }
+            for (int i = so, end = so + n; i < end; ++i) {
+                int x = src[i];
+                dst[count[c + ((key(x) >>> shift) & MASK)]++] = x;
+            }
+            int[] t = src; src = dst; dst = t;
+            int o = so; so = dso; dso = o;
+        }
+
+        if (src == a && toB) {
+            System.arraycopy(a, ao, b, bo, n);
+        } else if (src == b && !toB) {
+            System.arraycopy(b, bo, a, ao, n);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel.
+     *
+     * @param a the array to be sorted
+     * @param left the index of the first element, inclusive, to be sorted
+     * @param right the index of the last element, inclusive, to be sorted
+     */
+    static void parallelSort(final int[] a, int left, int right) {
+        final int n = right - left + 1, lo = left;
+        final int chunks = chunks(n);
+        final int chunkSize = (n + chunks - 1) / chunks;
+
+        // Find the bits in which the keys differ
+        final int first = key(a[lo]);
+        final int[] diffs = new int[chunks];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int diff = 0;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    diff |= key(a[i]) ^ first;
+                }
+                diffs[c] = diff;
+            }
+        });
+        int diff = 0;
+        for (int d : diffs) {
+            diff |= d;
+        }
+        if (diff == 0) {
+            return;
+        }
+
+        // Distribute by the most significant differing digit
+        final int bits = 32 - Integer.numberOfLeadingZeros(diff);
+        final int shift = Math.max(0, bits - MSD_DIGIT_BITS);
+        final int radix = 1 << (bits - shift);
+        final int[] count = new int[chunks * radix];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int base = c * radix;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    ++count[base + ((key(a[i]) >>> shift) & (radix - 1))];
+                }
+            }
+        });
+        final int[] bucket = new int[radix + 1];
+        for (int d = 0, sum = 0; d < radix; ++d) {
+            bucket[d] = sum;
+            for (int c = d, end = chunks * radix; c < end; c += radix) {
+                int t = count[c];
+                count[c] = sum;
+                sum += t;
+            }
+        }
+        bucket[radix] = n;
+
+        final int[] work = new int[n];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int base = c * radix;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    int x = a[i];
+                    work[count[base + ((key(x) >>> shift) & (radix - 1))]++] = x;
+                }
+            }
+        });
+
+        // Sort the buckets by the remaining digits, back into the array
+        forEach(radix, new Body() {
+            void apply(int d) {
+                int from = bucket[d], len = bucket[d + 1] - from;
+                if (shift == 0 || len < 2) {
+                    System.arraycopy(work, from, a, lo + from, len);
+                } else {
+                    sort(work, from, a, lo + from, len, shift, true);
+                }
+            }
+        });
+    }
+
+    /*
+     * Sorting methods for long.
+     */
+
+    /**
+     * Sorts the specified range of the array, using the given workspace
+     * array slice if possible.
+     *
+     * @param a the array to be sorted
+     * @param left the index of the first element, inclusive, to be sorted
+     * @param right the index of the last element, inclusive, to be sorted
+     * @param work a workspace array (slice)
+     * @param workBase origin of usable space in work array
+     * @param workLen usable size of work array
+     */
+    static void sort(long[] a, int left, int right,
+                     long[] work, int workBase, int workLen) {
+        int n = right - left + 1;
+        if (n < 2) {
+            return;
+        }
+
+        // Find the bits in which the keys differ
+        long first = key(a[left]), diff = 0;
+        for (int i = left + 1; i <= right; ++i) {
+            diff |= key(a[i]) ^ first;
+        }
+        if (diff == 0) {
+            return;
+        }
+
+        if (work == null || workLen < n || workBase + n > work.length) {
+            work = new long[n];
+            workBase = 0;
+        }
+        sort(a, left, work, workBase, n, 64 - Long.numberOfLeadingZeros(diff), false);
+    }
+
+    /**
+     * Sorts n elements by the given number of low-order bits of their
+     * keys, by one counting pass per digit, skipping digits that all
+     * keys share.  The elements are taken from a[ao, ao + n), b[bo, bo +
+     * n) is used as workspace, and the sorted elements are left in b if
+     * toB is true, otherwise in a.
+     */
+    private static void sort(long[] a, int ao, long[] b, int bo,
+                             int n, int bits, boolean toB) {
+        int passes = (bits + DIGIT_BITS - 1) / DIGIT_BITS;
+        int[] count = new int[passes << DIGIT_BITS];
+        for (int i = ao, end = ao + n; i < end; ++i) {
+            long k = key(a[i]);
+            for (int c = 0; c < count.length; c += RADIX, k >>>= DIGIT_BITS) {
+                ++count[c + ((int) k & MASK)];
+            }
+        }
+
+        long[] src = a, dst = b;
+        int so = ao, dso = bo;
+        for (int c = 0, shift = 0; c < count.length; c += RADIX, shift += DIGIT_BITS) {
+            // Skip the digit if it is the same in all keys
+            if (count[c + ((int) (key(src[so]) >>> shift) & MASK)] == n) {
+                continue;
+            }
+            for (int d = c, end = c + RADIX, sum = dso; d < end; ++d) {
+                int t = count[d];
+                count[d] = sum;
+                sum += t;
+            }
+            for (int i = so, end = so + n; i < end; ++i) {
+                long x = src[i];
+                dst[count[c + ((int) (key(x) >>> shift) & MASK)]++] = x;
+            }
+            long[] t = src; src = dst; dst = t;
+            int o = so; so = dso; dso = o;
+        }
+
+        if (src == a && toB) {
+            System.arraycopy(a, ao, b, bo, n);
+        } else if (src == b && !toB) {
+            System.arraycopy(b, bo, a, ao, n);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel.
+     *
+     * @param a the array to be sorted
+     * @param left the index of the first element, inclusive, to be sorted
+     * @param right the index of the last element, inclusive, to be sorted
+     */
+    static void parallelSort(final long[] a, int left, int right) {
+        final int n = right - left + 1, lo = left;
+        final int chunks = chunks(n);
+        final int chunkSize = (n + chunks - 1) / chunks;
+
+        // Find the bits in which the keys differ
+        final long first = key(a[lo]);
+        final long[] diffs = new long[chunks];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                long diff = 0;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    diff |= key(a[i]) ^ first;
+                }
+                diffs[c] = diff;
+            }
+        });
+        long diff = 0;
+        for (long d : diffs) {
+            diff |= d;
+        }
+        if (diff == 0) {
+            return;
+        }
+
+        // Distribute by the most significant differing digit
+        final int bits = 64 - Long.numberOfLeadingZeros(diff);
+        final int shift = Math.max(0, bits - MSD_DIGIT_BITS);
+        final int radix = 1 << (bits - shift);
+        final int[] count = new int[chunks * radix];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int base = c * radix;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    ++count[base + ((int) (key(a[i]) >>> shift) & (radix - 1))];
+                }
+            }
+        });
+        final int[] bucket = new int[radix + 1];
+        for (int d = 0, sum = 0; d < radix; ++d) {
+            bucket[d] = sum;
+            for (int c = d, end = chunks * radix; c < end; c += radix) {
+                int t = count[c];
+                count[c] = sum;
+                sum += t;
+            }
+        }
+        bucket[radix] = n;
+
+        final long[] work = new long[n];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int base = c * radix;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    long x = a[i];
+                    work[count[base + ((int) (key(x) >>> shift) & (radix - 1))]++] = x;
+                }
+            }
+        });
+
+        // Sort the buckets by the remaining digits, back into the array
+        forEach(radix, new Body() {
+            void apply(int d) {
+                int from = bucket[d], len = bucket[d + 1] - from;
+                if (shift == 0 || len < 2) {
+                    System.arraycopy(work, from, a, lo + from, len);
+                } else {
+                    sort(work, from, a, lo + from, len, shift, true);
+                }
+            }
+        });
+    }
+
+    /*
+     * Sorting methods for float.
+     */
+
+    /**
+     * Sorts the specified range of the array, using the given workspace
+     * array slice if possible.
+     * The range must not contain NaNs.
+     *
+     * @param a the array to be sorted
+     * @param left the index of the first element, inclusive, to be sorted
+     * @param right the index of the last element, inclusive, to be sorted
+     * @param work a workspace array (slice)
+     * @param workBase origin of usable space in work array
+     * @param workLen usable size of work array
+     */
+    static void sort(float[] a, int left, int right,
+                     float[] work, int workBase, int workLen) {
+        int n = right - left + 1;
+        if (n < 2) {
+            return;
+        }
+
+        // Find the bits in which the keys differ
+        int first = key(a[left]), diff = 0;
+        for (int i = left + 1; i <= right; ++i) {
+            diff |= key(a[i]) ^ first;
+        }
+        if (diff == 0) {
+            return;
+        }
+
+        if (work == null || workLen < n || workBase + n > work.length) {
+            work = new float[n];
+            workBase = 0;
+        }
+        sort(a, left, work, workBase, n, 32 - Integer.numberOfLeadingZeros(diff), false);
+    }
+
+    /**
+     * Sorts n elements by the given number of low-order bits of their
+     * keys, by one counting pass per digit, skipping digits that all
+     * keys share.  The elements are taken from a[ao, ao + n), b[bo, bo +
+     * n) is used as workspace, and the sorted elements are left in b if
+     * toB is true, otherwise in a.
+     */
+    private static void sort(float[] a, int ao, float[] b, int bo,
+                             int n, int bits, boolean toB) {
+        int passes = (bits + DIGIT_BITS - 1) / DIGIT_BITS;
+        int[] count = new int[passes << DIGIT_BITS];
+        for (int i = ao, end = ao + n; i < end; ++i) {
+            int k = key(a[i]);
+            for (int c = 0; c < count.length; c += RADIX, k >>>= DIGIT_BITS) {
+                ++count[c + (k & MASK)];
+            }
+        }
+
+        float[] src = a, dst = b;
+        int so = ao, dso = bo;
+        for (int c = 0, shift = 0; c < count.length; c += RADIX, shift += DIGIT_BITS) {
+            // Skip the digit if it is the same in all keys
+            if (count[c + ((key(src[so]) >>> shift) & MASK)] == n) {
+                continue;
+            }
+            for (int d = c, end = c + RADIX, sum = dso; d < end; ++d) {
+                int t = count[d];
+                count[d] = sum;
+                sum += t;
+            }
+            for (int i = so, end = so + n; i < end; ++i) {
+                float x = src[i];
+                dst[count[c + ((key(x) >>> shift) & MASK)]++] = x;
+            }
+            float[] t = src; src = dst; dst = t;
+            int o = so; so = dso; dso = o;
+        }
+
+        if (src == a && toB) {
+            System.arraycopy(a, ao, b, bo, n);
+        } else if (src == b && !toB) {
+            System.arraycopy(b, bo, a, ao, n);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel.
+     * NaNs are moved to the end of the range, and the remaining
+     * elements are ordered by their keys.
+     *
+     * @param a the array to be sorted
+     * @param left the index of the first element, inclusive, to be sorted
+     * @param right the index of the last element, inclusive, to be sorted
+     */
+    static void parallelSort(final float[] a, int left, int right) {
+        /*
+         * Move NaNs to the end of the array.
+         */
+        while (left <= right && Float.isNaN(a[right])) {
+            --right;
+        }
+        for (int k = right; --k >= left; ) {
+            float ak = a[k];
+            if (ak != ak) { // a[k] is NaN
+                a[k] = a[right];
+                a[right] = ak;
+                --right;
+            }
+        }
+        if (right - left < MIN_PARALLEL_SORT_SIZE) {
+            sort(a, left, right, null, 0, 0);
+            return;
+        }
+
+        final int n = right - left + 1, lo = left;
+        final int chunks = chunks(n);
+        final int chunkSize = (n + chunks - 1) / chunks;
+
+        // Find the bits in which the keys differ
+        final int first = key(a[lo]);
+        final int[] diffs = new int[chunks];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int diff = 0;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    diff |= key(a[i]) ^ first;
+                }
+                diffs[c] = diff;
+            }
+        });
+        int diff = 0;
+        for (int d : diffs) {
+            diff |= d;
+        }
+        if (diff == 0) {
+            return;
+        }
+
+        // Distribute by the most significant differing digit
+        final int bits = 32 - Integer.numberOfLeadingZeros(diff);
+        final int shift = Math.max(0, bits - MSD_DIGIT_BITS);
+        final int radix = 1 << (bits - shift);
+        final int[] count = new int[chunks * radix];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int base = c * radix;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    ++count[base + ((key(a[i]) >>> shift) & (radix - 1))];
+                }
+            }
+        });
+        final int[] bucket = new int[radix + 1];
+        for (int d = 0, sum = 0; d < radix; ++d) {
+            bucket[d] = sum;
+            for (int c = d, end = chunks * radix; c < end; c += radix) {
+                int t = count[c];
+                count[c] = sum;
+                sum += t;
+            }
+        }
+        bucket[radix] = n;
+
+        final float[] work = new float[n];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int base = c * radix;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    float x = a[i];
+                    work[count[base + ((key(x) >>> shift) & (radix - 1))]++] = x;
+                }
+            }
+        });
+
+        // Sort the buckets by the remaining digits, back into the array
+        forEach(radix, new Body() {
+            void apply(int d) {
+                int from = bucket[d], len = bucket[d + 1] - from;
+                if (shift == 0 || len < 2) {
+                    System.arraycopy(work, from, a, lo + from, len);
+                } else {
+                    sort(work, from, a, lo + from, len, shift, true);
+                }
+            }
+        });
+    }
+
+    /*
+     * Sorting methods for double.
+     */
+
+    /**
+     * Sorts the specified range of the array, using the given workspace
+     * array slice if possible.
+     * The range must not contain NaNs.
+     *
+     * @param a the array to be sorted
+     * @param left the index of the first element, inclusive, to be sorted
+     * @param right the index of the last element, inclusive, to be sorted
+     * @param work a workspace array (slice)
+     * @param workBase origin of usable space in work array
+     * @param workLen usable size of work array
+     */
+    static void sort(double[] a, int left, int right,
+                     double[] work, int workBase, int workLen) {
+        int n = right - left + 1;
+        if (n < 2) {
+            return;
+        }
+
+        // Find the bits in which the keys differ
+        long first = key(a[left]), diff = 0;
+        for (int i = left + 1; i <= right; ++i) {
+            diff |= key(a[i]) ^ first;
+        }
+        if (diff == 0) {
+            return;
+        }
+
+        if (work == null || workLen < n || workBase + n > work.length) {
+            work = new double[n];
+            workBase = 0;
+        }
+        sort(a, left, work, workBase, n, 64 - Long.numberOfLeadingZeros(diff), false);
+    }
+
+    /**
+     * Sorts n elements by the given number of low-order bits of their
+     * keys, by one counting pass per digit, skipping digits that all
+     * keys share.  The elements are taken from a[ao, ao + n), b[bo, bo +
+     * n) is used as workspace, and the sorted elements are left in b if
+     * toB is true, otherwise in a.
+     */
+    private static void sort(double[] a, int ao, double[] b, int bo,
+                             int n, int bits, boolean toB) {
+        int passes = (bits + DIGIT_BITS - 1) / DIGIT_BITS;
+        int[] count = new int[passes << DIGIT_BITS];
+        for (int i = ao, end = ao + n; i < end; ++i) {
+            long k = key(a[i]);
+            for (int c = 0; c < count.length; c += RADIX, k >>>= DIGIT_BITS) {
+                ++count[c + ((int) k & MASK)];
+            }
+        }
+
+        double[] src = a, dst = b;
+        int so = ao, dso = bo;
+        for (int c = 0, shift = 0; c < count.length; c += RADIX, shift += DIGIT_BITS) {
+            // Skip the digit if it is the same in all keys
+            if (count[c + ((int) (key(src[so]) >>> shift) & MASK)] == n) {
+                continue;
+            }
+            for (int d = c, end = c + RADIX, sum = dso; d < end; ++d) {
+                int t = count[d];
+                count[d] = sum;
+                sum += t;
+            }
+            for (int i = so, end = so + n; i < end; ++i) {
+                double x = src[i];
+                dst[count[c + ((int) (key(x) >>> shift) & MASK)]++] = x;
+            }
+            double[] t = src; src = dst; dst = t;
+            int o = so; so = dso; dso = o;
+        }
+
+        if (src == a && toB) {
+            System.arraycopy(a, ao, b, bo, n);
+        } else if (src == b && !toB) {
+            System.arraycopy(b, bo, a, ao, n);
+        }
+    }
+
+    /**
+     * Sorts the specified range of the array in parallel.
+     * NaNs are moved to the end of the range, and the remaining
+     * elements are ordered by their keys.
+     *
+     * @param a the array to be sorted
+     * @param left the index of the first element, inclusive, to be sorted
+     * @param right the index of the last element, inclusive, to be sorted
+     */
+    static void parallelSort(final double[] a, int left, int right) {
+        /*
+         * Move NaNs to the end of the array.
+         */
+        while (left <= right && Double.isNaN(a[right])) {
+            --right;
+        }
+        for (int k = right; --k >= left; ) {
+            double ak = a[k];
+            if (ak != ak) { // a[k] is NaN
+                a[k] = a[right];
+                a[right] = ak;
+                --right;
+            }
+        }
+        if (right - left < MIN_PARALLEL_SORT_SIZE) {
+            sort(a, left, right, null, 0, 0);
+            return;
+        }
+
+        final int n = right - left + 1, lo = left;
+        final int chunks = chunks(n);
+        final int chunkSize = (n + chunks - 1) / chunks;
+
+        // Find the bits in which the keys differ
+        final long first = key(a[lo]);
+        final long[] diffs = new long[chunks];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                long diff = 0;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    diff |= key(a[i]) ^ first;
+                }
+                diffs[c] = diff;
+            }
+        });
+        long diff = 0;
+        for (long d : diffs) {
+            diff |= d;
+        }
+        if (diff == 0) {
+            return;
+        }
+
+        // Distribute by the most significant differing digit
+        final int bits = 64 - Long.numberOfLeadingZeros(diff);
+        final int shift = Math.max(0, bits - MSD_DIGIT_BITS);
+        final int radix = 1 << (bits - shift);
+        final int[] count = new int[chunks * radix];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int base = c * radix;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    ++count[base + ((int) (key(a[i]) >>> shift) & (radix - 1))];
+                }
+            }
+        });
+        final int[] bucket = new int[radix + 1];
+        for (int d = 0, sum = 0; d < radix; ++d) {
+            bucket[d] = sum;
+            for (int c = d, end = chunks * radix; c < end; c += radix) {
+                int t = count[c];
+                count[c] = sum;
+                sum += t;
+            }
+        }
+        bucket[radix] = n;
+
+        final double[] work = new double[n];
+        forEach(chunks, new Body() {
+            void apply(int c) {
+                int base = c * radix;
+                for (int i = lo + c * chunkSize, end = Math.min(lo + n, i + chunkSize); i < end; ++i) {
+                    double x = a[i];
+                    work[count[base + ((int) (key(x) >>> shift) & (radix - 1))]++] = x;
+                }
+            }
+        });
+
+        // Sort the buckets by the remaining digits, back into the array
+        forEach(radix, new Body() {
+            void apply(int d) {
+                int from = bucket[d], len = bucket[d + 1] - from;
+                if (shift == 0 || len < 2) {
+                    System.arraycopy(work, from, a, lo + from, len);
+                } else {
+                    sort(work, from, a, lo + from, len, shift, true);
+                }
+            }
+        });
+    }
+
+    /*
+     * Sorting of indices by keys.
+     */
+
+    /**
+     * Returns the permutation that stably sorts the given keys, that is,
+     * the indices from 0 to keys.length - 1 ordered by the keys at those
+     * indices, and by index among equal keys.  The array is overwritten.
+     *
+     * @param keys the keys
+     * @return the indices of the keys in sorted order
+     */
+    static int[] order(int[] keys) {
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = key(keys[i]);
+        }
+        return orderUnsigned(keys);
+    }
+
+    /**
+     * Returns the permutation that stably sorts the given keys, that is,
+     * the indices from 0 to keys.length - 1 ordered by the keys at those
+     * indices, and by index among equal keys.  The array is overwritten.
+     *
+     * @param keys the keys
+     * @return the indices of the keys in sorted order
+     */
+    static int[] order(long[] keys) {
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = key(keys[i]);
+        }
+        return orderUnsigned(keys);
+    }
+
+    /**
+     * Returns the permutation that stably sorts the given keys, that is,
+     * the indices from 0 to keys.length - 1 ordered by the keys at those
+     * indices as by {@link Double#compare}, and by index among equal keys.
+     *
+     * @param keys the keys
+     * @return the indices of the keys in sorted order
+     */
+    static int[] order(double[] keys) {
+        long[] k = new long[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            // Collapse NaNs, which all compare equal, to one key
+            long bits = Double.doubleToLongBits(keys[i]);
+            k[i] = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+        }
+        return orderUnsigned(k);
+    }
+
+    /**
+     * Returns the permutation that stably sorts the given keys, that is,
+     * the indices from 0 to n - 1 ordered by the keys at those indices,
+     * and by index among equal keys.  The keys are the unsigned values
+     * of the array, which is overwritten.
+     */
+    private static int[] orderUnsigned(int[] k) {
+        int n = k.length;
+        int[] index = new int[n];
+        for (int i = 0; i < n; ++i) {
+            index[i] = i;
+        }
+        if (n < 2) {
+            return index;
+        }
+
+        // Find the bits in which the keys differ
+        int first = k[0], diff = 0;
+        for (int i = 1; i < n; ++i) {
+            diff |= k[i] ^ first;
+        }
+        if (diff == 0) {
+            return index;
+        }
+
+        int passes = (32 - Integer.numberOfLeadingZeros(diff) + DIGIT_BITS - 1) / DIGIT_BITS;
+        int[] count = new int[passes << DIGIT_BITS];
+        for (int i = 0; i < n; ++i) {
+            int x = k[i];
+            for (int c = 0; c < count.length; c += RADIX, x >>>= DIGIT_BITS) {
+                ++count[c + (x & MASK)];
+            }
+        }
+
+        int[] k2 = new int[n];
+        int[] index2 = new int[n];
+        for (int c = 0, shift = 0; c < count.length; c += RADIX, shift += DIGIT_BITS) {
+            // Skip the digit if it is the same in all keys
+            if (count[c + ((k[0] >>> shift) & MASK)] == n) {
+                continue;
+            }
+            for (int d = c, end = c + RADIX, sum = 0; d < end; ++d) {
+                int t = count[d];
+                count[d] = sum;
+                sum += t;
+            }
+            for (int i = 0; i < n; ++i) {
+                int x = k[i];
+                int j = count[c + ((x >>> shift) & MASK)]++;
+                k2[j] = x;
+                index2[j] = index[i];
+            }
+            int[] t = k; k = k2; k2 = t;
+            int[] u = index; index = index2; index2 = u;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the permutation that stably sorts the given keys, that is,
+     * the indices from 0 to n - 1 ordered by the keys at those indices,
+     * and by index among equal keys.  The keys are the unsigned values
+     * of the array, which is overwritten.
+     */
+    private static int[] orderUnsigned(long[] k) {
+        int n = k.length;
+        int[] index = new int[n];
+        for (int i = 0; i < n; ++i) {
+            index[i] = i;
+        }
+        if (n < 2) {
+            return index;
+        }
+
+        // Find the bits in which the keys differ
+        long first = k[0], diff = 0;
+        for (int i = 1; i < n; ++i) {
+            diff |= k[i] ^ first;
+        }
+        if (diff == 0) {
+            return index;
+        }
+
+        int passes = (64 - Long.numberOfLeadingZeros(diff) + DIGIT_BITS - 1) / DIGIT_BITS;
+        int[] count = new int[passes << DIGIT_BITS];
+        for (int i = 0; i < n; ++i) {
+            long x = k[i];
+            for (int c = 0; c < count.length; c += RADIX, x >>>= DIGIT_BITS) {
+                ++count[c + ((int) x & MASK)];
+            }
+        }
+
+        long[] k2 = new long[n];
+        int[] index2 = new int[n];
+        for (int c = 0, shift = 0; c < count.length; c += RADIX, shift += DIGIT_BITS) {
+            // Skip the digit if it is the same in all keys
+            if (count[c + ((int) (k[0] >>> shift) & MASK)] == n) {
+                continue;
+            }
+            for (int d = c, end = c + RADIX, sum = 0; d < end; ++d) {
+                int t = count[d];
+                count[d] = sum;
+                sum += t;
+            }
+            for (int i = 0; i < n; ++i) {
+                long x = k[i];
+                int j = count[c + ((int) (x >>> shift) & MASK)]++;
+                k2[j] = x;
+                index2[j] = index[i];
+            }
+            long[] t = k; k = k2; k2 = t;
+            int[] u = index; index = index2; index2 = u;
+        }
+        return index;
+    }
+}
@@ -27,6 +27,9 @@ package java.util;
 
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
 import java.util.function.UnaryOperator;
 
 /**
@@ -1323,6 +1326,39 @@ public class Vector<E>
         modCount++;
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+        final int expectedModCount = modCount;
+        Arrays.sortByIntKey((E[]) elementData, 0, elementCount, keyExtractor);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+        final int expectedModCount = modCount;
+        Arrays.sortByLongKey((E[]) elementData, 0, elementCount, keyExtractor);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public synchronized void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+        final int expectedModCount = modCount;
+        Arrays.sortByDoubleKey((E[]) elementData, 0, elementCount, keyExtractor);
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        modCount++;
+    }
+
     /**
      * Creates a <em><a href="Spliterator.html#binding">late-binding</a></em>
      * and <em>fail-fast</em> {@link Spliterator} over the elements in this
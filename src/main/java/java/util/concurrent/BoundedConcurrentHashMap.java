@@ -0,0 +1,1394 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A concurrent hash map that holds at most a given total weight of
+ * mappings, evicting mappings according to a replacement {@link Policy}
+ * once that bound is exceeded, and optionally expiring mappings a fixed
+ * time after they were last written.  By default every mapping weighs
+ * one, so the bound is a maximum size.
+ *
+ * <p>Retrievals and updates proceed with the concurrency of the
+ * underlying {@link ConcurrentHashMap}.  Rather than updating the
+ * replacement policy on every access, which would serialize readers,
+ * accesses are recorded in striped, lossy buffers (selected per thread
+ * in the same manner as the cells of {@link
+ * java.util.concurrent.atomic.LongAdder}) and updates in a queue; both
+ * are replayed against the policy in batches by whichever thread
+ * manages to acquire the eviction lock.  The bound may therefore be
+ * exceeded briefly while a batch is pending, and the policy may not
+ * see every read under heavy contention.
+ *
+ * <p>Expiry is enforced on every retrieval: a mapping older than the
+ * time-to-live is never returned, even before it is removed.  Expired
+ * mappings are removed during maintenance, which is run periodically on
+ * the {@link ScheduledExecutorService} supplied at construction, so
+ * that memory is reclaimed even when the map is idle.
+ *
+ * <p>The {@link #getHitCount hit}, {@link #getMissCount miss} and
+ * {@link #getEvictionCount eviction} counts are maintained with
+ * {@link LongAdder}s.  A hit or miss is recorded by each call to
+ * {@link #get get}, {@link #getOrDefault getOrDefault} and {@link
+ * #computeIfAbsent computeIfAbsent}.
+ *
+ * <p>Like {@code ConcurrentHashMap}, this class does <em>not</em>
+ * allow {@code null} to be used as a key or value.  Iterators and the
+ * views are weakly consistent, and {@link #size} may include expired
+ * mappings that have not yet been removed.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see java.util.LinkedHashMap#removeEldestEntry
+ * @since 1.8
+ */
+public class BoundedConcurrentHashMap<K,V> extends AbstractMap<K,V>
+    implements ConcurrentMap<K,V> {
+
+    /*
+     * Overview:
+     *
+     * Mappings are held as Nodes in a ConcurrentHashMap.  A Node's
+     * value is updated in place under the Node's monitor; a Node is
+     * "retired" (under its monitor) when it is removed from the table,
+     * after which it is never updated again.  Retrieval touches only
+     * the table and then offers the Node to a ReadBuffer.  Insertions,
+     * updates and removals enqueue a small task describing the change
+     * on writeBuffer.  All policy state -- the access-order deques,
+     * frequency sketch and counts, write-order deque and total weight
+     * -- is confined to the holder of evictionLock, which replays the
+     * buffers (drainBuffers) and then expires and evicts as needed.
+     *
+     * Tasks for the same Node can be replayed in a different order
+     * than the table operations they describe (for example the
+     * removal's task may be dequeued before the insertion's).  The
+     * Node field "linked" says whether the Node is currently part of
+     * the policy and counted in weightedSize; an AddTask links a Node
+     * only if it has not yet been retired, and a RemovalTask unlinks
+     * it only if linked, so every interleaving leaves the accounting
+     * consistent.
+     *
+     * A ReadBuffer is a small ring whose slots are claimed by CAS on
+     * a write counter and emptied by the drainer.  When a ring is
+     * full, further reads are dropped: they only affect the quality
+     * of replacement decisions, never correctness.  Rings are chosen
+     * by ThreadLocalRandom's probe as in Striped64, and are padded
+     * with @Contended.
+     *
+     * The policies:
+     *
+     * LRU keeps one deque in access order and evicts from its head.
+     *
+     * LFU keeps Nodes in a list of frequency buckets (the O(1) scheme
+     * of Shah, Mitra and Matani), each an access-ordered deque, and
+     * evicts the least recently used Node of the lowest frequency.
+     *
+     * TINY_LFU is "W-TinyLFU" (Einziger, Friedman and Manes): new
+     * Nodes enter a small LRU window (1% of the bound); Nodes leaving
+     * the window become candidates for the main space, a segmented
+     * LRU of probation and protected (80%) deques.  When the main
+     * space is full, a candidate is admitted only if a 4-bit
+     * count-min sketch estimates it to be more frequently used than
+     * the victim at the head of probation.  The sketch is halved
+     * periodically so that it tracks recent history.
+     */
+
+    /**
+     * Replacement policies.
+     *
+     * @since 1.8
+     */
+    public enum Policy {
+        /**
+         * Evicts the least recently used mapping.
+         */
+        LRU,
+        /**
+         * Evicts the least frequently used mapping, breaking ties by
+         * recency.
+         */
+        LFU,
+        /**
+         * Window TinyLFU: admits mappings to the main space only if
+         * they are estimated to be used more often than the mappings
+         * they would displace, which protects the map from one-off
+         * scans while adapting to recency-biased workloads.
+         */
+        TINY_LFU
+    }
+
+    /* ---------------- Constants -------------- */
+
+    /** Number of CPUS, to place bounds on some sizings */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** The maximum number of read buffers; a power of two. */
+    static final int MAX_READ_BUFFERS = 64;
+
+    /** The number of slots in each read buffer; a power of two. */
+    static final int READ_BUFFER_SIZE = 16;
+
+    /** The number of recorded reads in a buffer triggering a drain. */
+    static final int READ_DRAIN_THRESHOLD = READ_BUFFER_SIZE >>> 1;
+
+    /** The largest number of write tasks replayed per drain. */
+    static final int WRITE_DRAIN_LIMIT = 1 << 12;
+
+    /** Percentage of the bound given to the TINY_LFU window. */
+    static final int WINDOW_PERCENT = 1;
+
+    /** Percentage of the TINY_LFU main space that is protected. */
+    static final int PROTECTED_PERCENT = 80;
+
+    /** Node.queue values */
+    static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    /* ---------------- Fields -------------- */
+
+    final ConcurrentHashMap<K,Node<K,V>> data;
+    final long maximumWeight;
+    final ToIntBiFunction<? super K, ? super V> weigher;
+    final Policy policy;
+    final long expireAfterWriteNanos;   // zero if no expiry
+
+    final ReadBuffer[] readBuffers;
+    final ConcurrentLinkedQueue<Runnable> writeBuffer;
+    final ReentrantLock evictionLock;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    /** Future of the periodic cleanup task, if any. */
+    final ScheduledFuture<?> cleanupFuture;
+
+    // Fields below are guarded by evictionLock
+
+    /** Total weight of linked nodes */
+    long weightedSize;
+    /** Access-order deques; LRU uses only probation */
+    final Deque<K,V> window = new Deque<K,V>();
+    final Deque<K,V> probation = new Deque<K,V>();
+    final Deque<K,V> protectedDeque = new Deque<K,V>();
+    long windowWeight, protectedWeight;
+    final long windowMaximum, protectedMaximum;
+    /** Write-order deque, used only with expiry */
+    Node<K,V> writeHead, writeTail;
+    /** Lowest LFU frequency bucket */
+    FrequencyBucket<K,V> lowestBucket;
+    /** TINY_LFU frequency sketch */
+    final FrequencySketch sketch;
+
+    // views
+    private transient EntrySetView<K,V> entrySet;
+
+    /* ---------------- Nodes -------------- */
+
+    /**
+     * A mapping.  Fields other than key, value, weight, writeTime and
+     * retired are guarded by evictionLock.
+     */
+    static final class Node<K,V> {
+        final K key;
+        volatile V value;
+        volatile int weight;
+        volatile long writeTime;
+        volatile boolean retired;     // removed from table; set under monitor
+
+        boolean linked;               // part of policy and weightedSize
+        int policyWeight;             // weight as last seen by policy
+        int queue;                    // WINDOW, PROBATION or PROTECTED
+        Node<K,V> prev, next;         // access order
+        Node<K,V> writePrev, writeNext; // write order
+        FrequencyBucket<K,V> bucket;  // LFU bucket
+
+        Node(K key, V value, int weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * A doubly-linked deque threaded through Node.prev/next.
+     */
+    static final class Deque<K,V> {
+        Node<K,V> head, tail;
+
+        void linkLast(Node<K,V> n) {
+            Node<K,V> t = tail;
+            n.prev = t;
+            n.next = null;
+            if (t == null)
+                head = n;
+            else
+                t.next = n;
+            tail = n;
+        }
+
+        void unlink(Node<K,V> n) {
+            Node<K,V> p = n.prev, s = n.next;
+            if (p == null)
+                head = s;
+            else
+                p.next = s;
+            if (s == null)
+                tail = p;
+            else
+                s.prev = p;
+            n.prev = n.next = null;
+        }
+
+        void moveToBack(Node<K,V> n) {
+            if (n != tail) {
+                unlink(n);
+                linkLast(n);
+            }
+        }
+
+        boolean isEmpty() { return head == null; }
+    }
+
+    /**
+     * A bucket of LFU nodes sharing the same access frequency.
+     */
+    static final class FrequencyBucket<K,V> {
+        final long frequency;
+        final Deque<K,V> nodes = new Deque<K,V>();
+        FrequencyBucket<K,V> prev, next;
+        FrequencyBucket(long frequency) { this.frequency = frequency; }
+    }
+
+    /**
+     * A lossy ring buffer of recent reads.
+     */
+    @sun.misc.Contended static final class ReadBuffer {
+        final AtomicReferenceArray<Node<?,?>> ring =
+            new AtomicReferenceArray<Node<?,?>>(READ_BUFFER_SIZE);
+        final AtomicLong writeCount = new AtomicLong();
+        volatile long readCount;  // written only under evictionLock
+
+        /**
+         * Records a read, returning true if the buffer should be drained.
+         */
+        boolean offer(Node<?,?> n) {
+            long w = writeCount.get(), r = readCount;
+            if (w - r >= READ_BUFFER_SIZE)
+                return true;               // full; drop
+            if (writeCount.compareAndSet(w, w + 1))
+                ring.lazySet((int)w & (READ_BUFFER_SIZE - 1), n);
+            return w - r >= READ_DRAIN_THRESHOLD;
+        }
+    }
+
+    /**
+     * A 4-bit count-min sketch with periodic aging.
+     */
+    static final class FrequencySketch {
+        static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        static final long RESET_MASK = 0x7777777777777777L;
+        static final long ONE_MASK = 0x1111111111111111L;
+
+        final long[] table;
+        final int tableMask;
+        final int sampleSize;
+        int size;
+
+        FrequencySketch(long maximumSize) {
+            int n = (int)Math.min(Math.max(maximumSize, 8L), 1L << 30);
+            n = Integer.highestOneBit(n - 1) << 1;
+            table = new long[n];
+            tableMask = n - 1;
+            sampleSize = (int)Math.min(10L * n, Integer.MAX_VALUE);
+        }
+
+        static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+
+        int indexOf(int item, int i) {
+            long hash = (item + SEEDS[i]) * SEEDS[i];
+            hash += hash >>> 32;
+            return ((int)hash) & tableMask;
+        }
+
+        int frequency(Object e) {
+            int hash = spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int count = (int)((table[index] >>> ((start + i) << 2)) & 0xfL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(Object e) {
+            int hash = spread(e.hashCode());
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++) {
+                int index = indexOf(hash, i);
+                int offset = (start + i) << 2;
+                long mask = 0xfL << offset;
+                if ((table[index] & mask) != mask) {
+                    table[index] += 1L << offset;
+                    added = true;
+                }
+            }
+            if (added && ++size == sampleSize)
+                reset();
+        }
+
+        void reset() {
+            int count = 0;
+            for (int i = 0; i < table.length; i++) {
+                count += Long.bitCount(table[i] & ONE_MASK);
+                table[i] = (table[i] >>> 1) & RESET_MASK;
+            }
+            size = (size >>> 1) - (count >>> 2);
+        }
+    }
+
+    /* ---------------- Construction -------------- */
+
+    /**
+     * Creates a new, empty map holding at most the given number of
+     * mappings, evicting by the {@link Policy#TINY_LFU TINY_LFU} policy.
+     *
+     * @param maximumSize the maximum number of mappings
+     * @throws IllegalArgumentException if maximumSize is negative
+     */
+    public BoundedConcurrentHashMap(long maximumSize) {
+        this(maximumSize, null, Policy.TINY_LFU, 0L, null, null);
+    }
+
+    /**
+     * Creates a new, empty map holding at most the given number of
+     * mappings, evicting by the given policy.
+     *
+     * @param maximumSize the maximum number of mappings
+     * @param policy the replacement policy
+     * @throws IllegalArgumentException if maximumSize is negative
+     * @throws NullPointerException if policy is null
+     */
+    public BoundedConcurrentHashMap(long maximumSize, Policy policy) {
+        this(maximumSize, null, policy, 0L, null, null);
+    }
+
+    /**
+     * Creates a new, empty map bounded by the total weight of its
+     * mappings, evicting by the given policy, and optionally expiring
+     * mappings a fixed time after their last update.
+     *
+     * @param maximumWeight the maximum total weight of mappings
+     * @param weigher the function giving the weight of a mapping, which
+     *        must be nonnegative and should be cheap to compute, or
+     *        {@code null} to weigh every mapping as one
+     * @param policy the replacement policy
+     * @param expireAfterWrite the time after which a mapping expires,
+     *        measured from its creation or the most recent replacement
+     *        of its value, or zero if mappings do not expire
+     * @param unit the time unit of {@code expireAfterWrite}, which may
+     *        be null if it is zero
+     * @param scheduler the executor on which expired mappings are
+     *        periodically removed, which may be null if
+     *        {@code expireAfterWrite} is zero
+     * @throws IllegalArgumentException if maximumWeight or
+     *         expireAfterWrite is negative
+     * @throws NullPointerException if policy is null, or if
+     *         expireAfterWrite is positive and unit or scheduler is null
+     */
+    public BoundedConcurrentHashMap(long maximumWeight,
+                                    ToIntBiFunction<? super K, ? super V> weigher,
+                                    Policy policy,
+                                    long expireAfterWrite, TimeUnit unit,
+                                    ScheduledExecutorService scheduler) {
+        if (maximumWeight < 0L || expireAfterWrite < 0L)
+            throw new IllegalArgumentException();
+        if (policy == null)
+            throw new NullPointerException();
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.policy = policy;
+        this.data = new ConcurrentHashMap<K,Node<K,V>>(
+            (int)Math.min(maximumWeight, 1 << 16));
+        this.writeBuffer = new ConcurrentLinkedQueue<Runnable>();
+        this.evictionLock = new ReentrantLock();
+        int n = 1;
+        while (n < NCPU && n < MAX_READ_BUFFERS)
+            n <<= 1;
+        ReadBuffer[] rbs = new ReadBuffer[n];
+        for (int i = 0; i < n; ++i)
+            rbs[i] = new ReadBuffer();
+        this.readBuffers = rbs;
+        if (policy == Policy.TINY_LFU) {
+            long w = Math.max(1L, maximumWeight * WINDOW_PERCENT / 100);
+            this.windowMaximum = Math.min(w, maximumWeight);
+            this.protectedMaximum =
+                (maximumWeight - windowMaximum) * PROTECTED_PERCENT / 100;
+            this.sketch = new FrequencySketch(maximumWeight);
+        }
+        else {
+            this.windowMaximum = 0L;
+            this.protectedMaximum = 0L;
+            this.sketch = null;
+        }
+        if (expireAfterWrite > 0L) {
+            if (unit == null || scheduler == null)
+                throw new NullPointerException();
+            long nanos = unit.toNanos(expireAfterWrite);
+            this.expireAfterWriteNanos = nanos;
+            long period = Math.max(nanos >>> 1, 1000000L);
+            this.cleanupFuture = scheduler.scheduleWithFixedDelay(
+                new CleanupTask(this), period, period, TimeUnit.NANOSECONDS);
+        }
+        else {
+            this.expireAfterWriteNanos = 0L;
+            this.cleanupFuture = null;
+        }
+    }
+
+    /**
+     * Periodic maintenance, referring to the map only weakly so that
+     * an abandoned map can be collected, upon which the task cancels
+     * itself.
+     */
+    static final class CleanupTask implements Runnable {
+        final WeakReference<BoundedConcurrentHashMap<?,?>> ref;
+        CleanupTask(BoundedConcurrentHashMap<?,?> map) {
+            ref = new WeakReference<BoundedConcurrentHashMap<?,?>>(map);
+        }
+        public void run() {
+            BoundedConcurrentHashMap<?,?> map = ref.get();
+            if (map != null)
+                map.cleanUp();
+            else
+                throw new CancellationException(); // suppresses reruns
+        }
+    }
+
+    /* ---------------- Internal utilities -------------- */
+
+    final int weigh(K key, V value) {
+        ToIntBiFunction<? super K, ? super V> w;
+        if ((w = weigher) == null)
+            return 1;
+        int weight = w.applyAsInt(key, value);
+        if (weight < 0)
+            throw new IllegalArgumentException("Negative weight");
+        return weight;
+    }
+
+    final long now() {
+        return (expireAfterWriteNanos == 0L) ? 0L : System.nanoTime();
+    }
+
+    final boolean hasExpired(Node<K,V> n, long now) {
+        return expireAfterWriteNanos != 0L &&
+            now - n.writeTime >= expireAfterWriteNanos;
+    }
+
+    /**
+     * Records a read of the given node, draining if the buffer is
+     * filling up.
+     */
+    final void afterRead(Node<K,V> n) {
+        int h;
+        if ((h = ThreadLocalRandom.getProbe()) == 0) {
+            ThreadLocalRandom.localInit();
+            h = ThreadLocalRandom.getProbe();
+        }
+        ReadBuffer[] rbs = readBuffers;
+        if (rbs[h & (rbs.length - 1)].offer(n))
+            tryDrain();
+    }
+
+    /**
+     * Enqueues a write task and drains.
+     */
+    final void afterWrite(Runnable task) {
+        writeBuffer.offer(task);
+        tryDrain();
+    }
+
+    /**
+     * Performs maintenance if the eviction lock is free.  Rechecks the
+     * write buffer after releasing the lock, since a writer may have
+     * failed to acquire it just before.
+     */
+    final void tryDrain() {
+        final ReentrantLock lock = evictionLock;
+        do {
+            if (!lock.tryLock())
+                return;
+            try {
+                maintenance();
+            } finally {
+                lock.unlock();
+            }
+        } while (!writeBuffer.isEmpty());
+    }
+
+    /**
+     * Replays buffers, expires and evicts.  Must hold evictionLock.
+     */
+    final void maintenance() {
+        drainReadBuffers();
+        drainWriteBuffer();
+        if (expireAfterWriteNanos != 0L)
+            expireEntries();
+        evictEntries();
+    }
+
+    @SuppressWarnings("unchecked")
+    final void drainReadBuffers() {
+        for (ReadBuffer rb : readBuffers) {
+            long r = rb.readCount, w = rb.writeCount.get();
+            AtomicReferenceArray<Node<?,?>> ring = rb.ring;
+            for (; r < w; ++r) {
+                int i = (int)r & (READ_BUFFER_SIZE - 1);
+                Node<?,?> n = ring.get(i);
+                if (n == null)
+                    break;          // claimed but not yet written
+                ring.lazySet(i, null);
+                onAccess((Node<K,V>)n);
+            }
+            rb.readCount = r;
+        }
+    }
+
+    final void drainWriteBuffer() {
+        for (int i = 0; i < WRITE_DRAIN_LIMIT; ++i) {
+            Runnable task = writeBuffer.poll();
+            if (task == null)
+                break;
+            task.run();
+        }
+    }
+
+    /** Links a new node into the policy, unless already retired. */
+    final class AddTask implements Runnable {
+        final Node<K,V> node;
+        AddTask(Node<K,V> node) { this.node = node; }
+        public void run() {
+            Node<K,V> n = node;
+            if (n.retired || n.linked)
+                return;
+            n.linked = true;
+            n.policyWeight = n.weight;
+            weightedSize += n.policyWeight;
+            onAdd(n);
+            if (expireAfterWriteNanos != 0L)
+                linkWriteOrder(n);
+        }
+    }
+
+    /** Unlinks a removed node from the policy. */
+    final class RemovalTask implements Runnable {
+        final Node<K,V> node;
+        RemovalTask(Node<K,V> node) { this.node = node; }
+        public void run() {
+            if (node.linked)
+                unlinkNode(node);
+        }
+    }
+
+    /** Applies a value update to the policy. */
+    final class UpdateTask implements Runnable {
+        final Node<K,V> node;
+        UpdateTask(Node<K,V> node) { this.node = node; }
+        public void run() {
+            Node<K,V> n = node;
+            if (!n.linked)
+                return;
+            int w = n.weight, delta = w - n.policyWeight;
+            n.policyWeight = w;
+            weightedSize += delta;
+            if (policy == Policy.TINY_LFU) {
+                if (n.queue == WINDOW)
+                    windowWeight += delta;
+                else if (n.queue == PROTECTED)
+                    protectedWeight += delta;
+            }
+            onAccess(n);
+            if (expireAfterWriteNanos != 0L) {
+                unlinkWriteOrder(n);
+                linkWriteOrder(n);
+            }
+        }
+    }
+
+    /* ---------------- Policy -------------- */
+
+    final void onAdd(Node<K,V> n) {
+        switch (policy) {
+        case LRU:
+            probation.linkLast(n);
+            break;
+        case LFU:
+            FrequencyBucket<K,V> b = lowestBucket;
+            if (b == null || b.frequency != 1L) {
+                FrequencyBucket<K,V> nb = new FrequencyBucket<K,V>(1L);
+                if ((nb.next = b) != null)
+                    b.prev = nb;
+                lowestBucket = b = nb;
+            }
+            n.bucket = b;
+            b.nodes.linkLast(n);
+            break;
+        default:
+            sketch.increment(n.key);
+            n.queue = WINDOW;
+            window.linkLast(n);
+            windowWeight += n.policyWeight;
+        }
+    }
+
+    final void onAccess(Node<K,V> n) {
+        if (!n.linked)
+            return;
+        switch (policy) {
+        case LRU:
+            probation.moveToBack(n);
+            break;
+        case LFU:
+            FrequencyBucket<K,V> b = n.bucket, nb = b.next;
+            if (b.frequency == Long.MAX_VALUE) {
+                b.nodes.moveToBack(n);
+                break;
+            }
+            if (nb == null || nb.frequency != b.frequency + 1) {
+                FrequencyBucket<K,V> c = new FrequencyBucket<K,V>(b.frequency + 1);
+                c.prev = b;
+                if ((c.next = nb) != null)
+                    nb.prev = c;
+                b.next = nb = c;
+            }
+            b.nodes.unlink(n);
+            n.bucket = nb;
+            nb.nodes.linkLast(n);
+            if (b.nodes.isEmpty())
+                unlinkBucket(b);
+            break;
+        default:
+            sketch.increment(n.key);
+            if (n.queue == WINDOW)
+                window.moveToBack(n);
+            else if (n.queue == PROBATION) {
+                probation.unlink(n);
+                n.queue = PROTECTED;
+                protectedDeque.linkLast(n);
+                protectedWeight += n.policyWeight;
+                Node<K,V> d;
+                while (protectedWeight > protectedMaximum &&
+                       (d = protectedDeque.head) != null && d != n) {
+                    protectedDeque.unlink(d);
+                    protectedWeight -= d.policyWeight;
+                    d.queue = PROBATION;
+                    probation.linkLast(d);
+                }
+            }
+            else
+                protectedDeque.moveToBack(n);
+        }
+    }
+
+    final void unlinkBucket(FrequencyBucket<K,V> b) {
+        FrequencyBucket<K,V> p = b.prev, s = b.next;
+        if (p == null)
+            lowestBucket = s;
+        else
+            p.next = s;
+        if (s != null)
+            s.prev = p;
+    }
+
+    /**
+     * Removes a linked node from all policy structures and the
+     * weighted size.
+     */
+    final void unlinkNode(Node<K,V> n) {
+        switch (policy) {
+        case LRU:
+            probation.unlink(n);
+            break;
+        case LFU:
+            FrequencyBucket<K,V> b = n.bucket;
+            b.nodes.unlink(n);
+            n.bucket = null;
+            if (b.nodes.isEmpty())
+                unlinkBucket(b);
+            break;
+        default:
+            if (n.queue == WINDOW) {
+                window.unlink(n);
+                windowWeight -= n.policyWeight;
+            }
+            else if (n.queue == PROBATION)
+                probation.unlink(n);
+            else {
+                protectedDeque.unlink(n);
+                protectedWeight -= n.policyWeight;
+            }
+        }
+        if (expireAfterWriteNanos != 0L)
+            unlinkWriteOrder(n);
+        n.linked = false;
+        weightedSize -= n.policyWeight;
+    }
+
+    final void linkWriteOrder(Node<K,V> n) {
+        Node<K,V> t = writeTail;
+        n.writePrev = t;
+        n.writeNext = null;
+        if (t == null)
+            writeHead = n;
+        else
+            t.writeNext = n;
+        writeTail = n;
+    }
+
+    final void unlinkWriteOrder(Node<K,V> n) {
+        Node<K,V> p = n.writePrev, s = n.writeNext;
+        if (p == null)
+            writeHead = s;
+        else
+            p.writeNext = s;
+        if (s == null)
+            writeTail = p;
+        else
+            s.writePrev = p;
+        n.writePrev = n.writeNext = null;
+    }
+
+    /**
+     * Removes linked nodes whose time-to-live has elapsed, oldest
+     * first.
+     */
+    final void expireEntries() {
+        long now = System.nanoTime();
+        Node<K,V> n;
+        while ((n = writeHead) != null && hasExpired(n, now)) {
+            if (retire(n))
+                data.remove(n.key, n);
+            unlinkNode(n);
+        }
+    }
+
+    /**
+     * Evicts linked nodes until the weighted size is within bounds.
+     */
+    final void evictEntries() {
+        if (policy != Policy.TINY_LFU) {
+            Node<K,V> victim;
+            while (weightedSize > maximumWeight &&
+                   (victim = (policy == Policy.LRU) ? probation.head :
+                    (lowestBucket == null) ? null :
+                    lowestBucket.nodes.head) != null)
+                evict(victim);
+            return;
+        }
+        // move overflow of window to probation as candidates
+        Node<K,V> candidate = null, n;
+        while (windowWeight > windowMaximum && (n = window.head) != null) {
+            window.unlink(n);
+            windowWeight -= n.policyWeight;
+            n.queue = PROBATION;
+            probation.linkLast(n);
+            if (candidate == null)
+                candidate = n;
+        }
+        while (weightedSize > maximumWeight) {
+            Node<K,V> victim = probation.head;
+            if (victim == null) {
+                if ((victim = protectedDeque.head) == null &&
+                    (victim = window.head) == null)
+                    break;
+                evict(victim);
+            }
+            else if (candidate == null)
+                evict(victim);
+            else if (candidate == victim) {
+                candidate = candidate.next;
+                evict(victim);
+            }
+            else if (sketch.frequency(candidate.key) >
+                     sketch.frequency(victim.key))
+                evict(victim);
+            else {
+                Node<K,V> c = candidate;
+                candidate = c.next;
+                evict(c);
+            }
+        }
+    }
+
+    /**
+     * Evicts a linked node, removing it from the table unless it has
+     * already been removed.
+     */
+    final void evict(Node<K,V> n) {
+        if (retire(n)) {
+            data.remove(n.key, n);
+            evictions.increment();
+        }
+        unlinkNode(n);
+    }
+
+    /**
+     * Marks a node as retired, returning false if it already was.
+     */
+    static <K,V> boolean retire(Node<K,V> n) {
+        synchronized (n) {
+            if (n.retired)
+                return false;
+            n.retired = true;
+            return true;
+        }
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Returns the number of mappings, including any that have expired
+     * but have not yet been removed.
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns the number of mappings, as a long, including any that
+     * have expired but have not yet been removed.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        return data.mappingCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+        return data.isEmpty();
+    }
+
+    /**
+     * Returns the maximum total weight of mappings.
+     *
+     * @return the maximum total weight
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Returns the total weight of mappings as last seen by the
+     * replacement policy.
+     *
+     * @return the weighted size
+     */
+    public long getWeightedSize() {
+        final ReentrantLock lock = evictionLock;
+        lock.lock();
+        try {
+            maintenance();
+            return weightedSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of retrievals that found a live mapping.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of retrievals that found no live mapping.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of mappings evicted to enforce the bound,
+     * not counting expired mappings.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Performs any pending maintenance: replays recorded accesses and
+     * updates, removes expired mappings and evicts as needed.  This is
+     * done automatically; calling it is only necessary to observe a
+     * fully up-to-date state.
+     */
+    public void cleanUp() {
+        final ReentrantLock lock = evictionLock;
+        lock.lock();
+        try {
+            maintenance();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all mappings, and cancels the periodic removal of
+     * expired mappings.  The map remains usable, but expired mappings
+     * are subsequently removed only as a side effect of other
+     * operations.
+     */
+    public void shutdown() {
+        ScheduledFuture<?> f;
+        if ((f = cleanupFuture) != null)
+            f.cancel(false);
+        clear();
+    }
+
+    /**
+     * Returns the live node for the key, or null, recording a hit or
+     * miss.
+     */
+    final Node<K,V> getNode(Object key, boolean recordStats) {
+        Node<K,V> n = data.get(key);
+        if (n == null) {
+            if (recordStats)
+                misses.increment();
+            return null;
+        }
+        if (hasExpired(n, now())) {
+            if (recordStats)
+                misses.increment();
+            if (data.remove(key, n) && retire(n))
+                afterWrite(new RemovalTask(n));
+            return null;
+        }
+        if (recordStats)
+            hits.increment();
+        afterRead(n);
+        return n;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no live mapping for the key.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        Node<K,V> n = getNode(key, true);
+        return (n == null) ? null : n.value;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        V v = get(key);
+        return (v == null) ? defaultValue : v;
+    }
+
+    /**
+     * Tests whether the specified key is mapped, without counting as an
+     * access for the purpose of the replacement policy or statistics.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        Node<K,V> n = data.get(key);
+        return n != null && !hasExpired(n, now());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        long now = now();
+        for (Node<K,V> n : data.values()) {
+            if (value.equals(n.value) && !hasExpired(n, now))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Maps the specified key to the specified value, possibly evicting
+     * other mappings.
+     *
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no live mapping for {@code key}
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no live mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /** Implementation for put and putIfAbsent */
+    final V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) throw new NullPointerException();
+        int weight = weigh(key, value);
+        Node<K,V> node = null;
+        for (;;) {
+            long now = now();
+            Node<K,V> prior = data.get(key);
+            if (prior == null) {
+                if (node == null)
+                    node = new Node<K,V>(key, value, weight, now);
+                if ((prior = data.putIfAbsent(key, node)) == null) {
+                    afterWrite(new AddTask(node));
+                    return null;
+                }
+            }
+            if (hasExpired(prior, now)) {
+                if (data.remove(key, prior) && retire(prior))
+                    afterWrite(new RemovalTask(prior));
+                continue;
+            }
+            V old;
+            synchronized (prior) {
+                if (prior.retired)
+                    continue;
+                old = prior.value;
+                if (!onlyIfAbsent) {
+                    prior.value = value;
+                    prior.weight = weight;
+                    prior.writeTime = now;
+                }
+            }
+            if (onlyIfAbsent)
+                afterRead(prior);
+            else
+                afterWrite(new UpdateTask(prior));
+            return old;
+        }
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     *
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no live mapping for {@code key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        Node<K,V> n = data.remove(key);
+        if (n == null)
+            return null;
+        V old;
+        synchronized (n) {
+            if (n.retired)              // concurrently evicted
+                return null;
+            old = n.value;
+            n.retired = true;
+        }
+        afterWrite(new RemovalTask(n));
+        return hasExpired(n, now()) ? null : old;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        Node<K,V> n;
+        if (value == null || (n = data.get(key)) == null ||
+            hasExpired(n, now()))
+            return false;
+        synchronized (n) {
+            if (n.retired || !value.equals(n.value) ||
+                !data.remove(key, n))
+                return false;
+            n.retired = true;
+        }
+        afterWrite(new RemovalTask(n));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null)
+            throw new NullPointerException();
+        int weight = weigh(key, newValue);
+        long now = now();
+        Node<K,V> n;
+        if ((n = data.get(key)) == null || hasExpired(n, now))
+            return false;
+        synchronized (n) {
+            if (n.retired || !oldValue.equals(n.value))
+                return false;
+            n.value = newValue;
+            n.weight = weight;
+            n.writeTime = now;
+        }
+        afterWrite(new UpdateTask(n));
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no live mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        int weight = weigh(key, value);
+        long now = now();
+        Node<K,V> n;
+        V old;
+        if ((n = data.get(key)) == null || hasExpired(n, now))
+            return null;
+        synchronized (n) {
+            if (n.retired)
+                return null;
+            old = n.value;
+            n.value = value;
+            n.weight = weight;
+            n.writeTime = now;
+        }
+        afterWrite(new UpdateTask(n));
+        return old;
+    }
+
+    /**
+     * If the specified key is not already associated with a live value,
+     * attempts to compute its value using the given mapping function
+     * and enters it into this map unless {@code null}.  The entire
+     * method invocation is performed atomically, so the function is
+     * applied at most once per key.
+     *
+     * @throws NullPointerException if the specified key or
+     *         mappingFunction is null
+     */
+    public V computeIfAbsent(K key,
+                             Function<? super K, ? extends V> mappingFunction) {
+        if (key == null || mappingFunction == null)
+            throw new NullPointerException();
+        Node<K,V> n = getNode(key, false);
+        if (n != null) {
+            hits.increment();
+            return n.value;
+        }
+        misses.increment();
+        @SuppressWarnings("unchecked")
+        final Node<K,V>[] changed = (Node<K,V>[])new Node<?,?>[2];
+        final long now = now();
+        Node<K,V> result = data.compute(key, (k, prior) -> {
+            if (prior != null && !prior.retired && !hasExpired(prior, now))
+                return prior;
+            changed[0] = prior;
+            V v = mappingFunction.apply(k);
+            return (v == null) ? null :
+                (changed[1] = new Node<K,V>(k, v, weigh(k, v), now));
+        });
+        Node<K,V> r, a;
+        if ((r = changed[0]) != null && retire(r))
+            writeBuffer.offer(new RemovalTask(r));
+        if ((a = changed[1]) != null)
+            afterWrite(new AddTask(a));
+        else if (r != null)
+            tryDrain();
+        return (result == null) ? null : result.value;
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        final ReentrantLock lock = evictionLock;
+        lock.lock();
+        try {
+            for (Iterator<Node<K,V>> it = data.values().iterator();
+                 it.hasNext(); ) {
+                Node<K,V> n = it.next();
+                if (data.remove(n.key, n) && retire(n))
+                    writeBuffer.offer(new RemovalTask(n));
+            }
+            maintenance();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a {@link Set} view of the live mappings contained in this
+     * map.  The set is backed by the map and supports removal, but not
+     * addition; its iterators are weakly consistent, do not count as
+     * accesses, and return entries that write through to the map on
+     * {@code setValue}.
+     *
+     * @return the set view
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySetView<K,V> es;
+        return (es = entrySet) != null ? es : (entrySet = new EntrySetView<K,V>(this));
+    }
+
+    static final class EntrySetView<K,V> extends AbstractSet<Map.Entry<K,V>> {
+        final BoundedConcurrentHashMap<K,V> map;
+        EntrySetView(BoundedConcurrentHashMap<K,V> map) { this.map = map; }
+        public int size() { return map.size(); }
+        public void clear() { map.clear(); }
+        public boolean contains(Object o) {
+            Object k, v; Map.Entry<?,?> e; Node<K,V> n;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    (n = map.data.get(k)) != null &&
+                    !map.hasExpired(n, map.now()) &&
+                    v.equals(n.value));
+        }
+        public boolean remove(Object o) {
+            Object k, v; Map.Entry<?,?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    map.remove(k, v));
+        }
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator<K,V>(map);
+        }
+    }
+
+    static final class EntryIterator<K,V> implements Iterator<Map.Entry<K,V>> {
+        final BoundedConcurrentHashMap<K,V> map;
+        final Iterator<Node<K,V>> it;
+        Node<K,V> next, last;
+
+        EntryIterator(BoundedConcurrentHashMap<K,V> map) {
+            this.map = map;
+            this.it = map.data.values().iterator();
+            advance();
+        }
+
+        private void advance() {
+            long now = map.now();
+            next = null;
+            while (it.hasNext()) {
+                Node<K,V> n = it.next();
+                if (!map.hasExpired(n, now)) {
+                    next = n;
+                    break;
+                }
+            }
+        }
+
+        public boolean hasNext() { return next != null; }
+
+        public Map.Entry<K,V> next() {
+            Node<K,V> n;
+            if ((n = next) == null)
+                throw new NoSuchElementException();
+            last = n;
+            advance();
+            return new WriteThroughEntry<K,V>(n.key, n.value, map);
+        }
+
+        public void remove() {
+            Node<K,V> n;
+            if ((n = last) == null)
+                throw new IllegalStateException();
+            last = null;
+            map.remove(n.key);
+        }
+    }
+
+    static final class WriteThroughEntry<K,V> extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = -3165212316413766742L;
+        final transient BoundedConcurrentHashMap<K,V> map;
+        WriteThroughEntry(K key, V val, BoundedConcurrentHashMap<K,V> map) {
+            super(key, val);
+            this.map = map;
+        }
+        public V setValue(V value) {
+            if (value == null) throw new NullPointerException();
+            V v = super.setValue(value);
+            map.put(getKey(), value);
+            return v;
+        }
+    }
+}
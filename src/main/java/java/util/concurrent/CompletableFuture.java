@@ -181,8 +181,17 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
      *   deal with races across both while pushing actions.  The
      *   second completion is a CoCompletion pointing to the first,
      *   shared so that at most one performs the action.  The
-     *   multiple-arity methods allOf and anyOf do this pairwise to
-     *   form trees of completions.
+     *   multiple-arity methods allOf and anyOf instead push one small
+     *   Completion to each source: for allOf these count down a
+     *   shared AllOf, and for anyOf each tries to relay its source's
+     *   result, so no intermediate futures are created.
+     *
+     * Executors returned by batchingExecutor run tasks submitted from
+     * their own tasks in the submitting thread (see class Batch), so
+     * a chain of async stages using one runs as a single task of the
+     * underlying executor.  Blocking methods hand off the rest of the
+     * current thread's batch before blocking, since it may include
+     * the task that would complete the awaited future.
      *
      * Note that the generic type parameters of methods vary according
      * to whether "this" is a source, dependent, or completion.
@@ -416,6 +425,103 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return e;
     }
 
+    /**
+     * Executor returned by batchingExecutor. A task submitted by a
+     * thread running a batch of the same executor is appended to that
+     * batch rather than submitted to the underlying executor.
+     */
+    static final class BatchingExecutor implements Executor {
+        final Executor executor;
+        BatchingExecutor(Executor executor) { this.executor = executor; }
+        public void execute(Runnable task) {
+            if (task == null) throw new NullPointerException();
+            Batch b = Batch.current.get();
+            if (b == null || b.owner != this || !b.add(task))
+                executor.execute(new Batch(this, task));
+        }
+    }
+
+    /**
+     * A sequence of tasks run as one task of the underlying executor
+     * of a BatchingExecutor.
+     */
+    static final class Batch implements Runnable, AsynchronousCompletionTask {
+        /** The batch being run by the current thread, if any */
+        static final ThreadLocal<Batch> current = new ThreadLocal<Batch>();
+
+        /**
+         * The maximum number of tasks run in one batch, after which
+         * the remaining tasks are submitted as a new batch so that
+         * other tasks of the executor are not starved.
+         */
+        static final int MAX_BATCH_SIZE = 1 << 10;
+
+        final BatchingExecutor owner;
+        Runnable first;                // the task this batch was created for
+        java.util.ArrayDeque<Runnable> rest; // tasks added while running
+        int count;                     // tasks run or queued so far
+
+        Batch(BatchingExecutor owner, Runnable first) {
+            this.owner = owner; this.first = first; this.count = 1;
+        }
+
+        /** Appends a task submitted while this batch is running. */
+        boolean add(Runnable task) {
+            if (count >= MAX_BATCH_SIZE)
+                return false;
+            java.util.ArrayDeque<Runnable> q;
+            if ((q = rest) == null)
+                rest = q = new java.util.ArrayDeque<Runnable>();
+            q.addLast(task);
+            ++count;
+            return true;
+        }
+
+        public void run() {
+            Batch prev = current.get();
+            current.set(this);
+            try {
+                Runnable t = first;
+                first = null;
+                java.util.ArrayDeque<Runnable> q;
+                while (t != null) {
+                    try {
+                        t.run();
+                    } catch (Throwable ex) {
+                        resubmit();
+                        throw ex;
+                    }
+                    t = ((q = rest) == null) ? null : q.pollFirst();
+                }
+            } finally {
+                current.set(prev);
+            }
+        }
+
+        /** Submits any queued tasks as a new batch. */
+        void resubmit() {
+            java.util.ArrayDeque<Runnable> q; Runnable t;
+            if ((q = rest) != null && (t = q.pollFirst()) != null) {
+                Batch b = new Batch(owner, t);
+                b.rest = q;
+                b.count = q.size() + 1;
+                rest = null;
+                owner.executor.execute(b);
+            }
+        }
+
+        /**
+         * Called before the current thread blocks awaiting a result:
+         * if it is running a batch, hands the queued tasks, one of
+         * which may produce the result, to another thread.
+         */
+        static void flushCurrent() {
+            Batch b = current.get();
+            if (b != null)
+                b.resubmit();
+        }
+    }
+
     // Modes for Completion.tryFire. Signedness matters.
     static final int SYNC   =  0;
     static final int ASYNC  =  1;
@@ -1256,63 +1362,6 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return d;
     }
 
-    @SuppressWarnings("serial")
-    static final class BiRelay<T,U> extends BiCompletion<T,U,Void> { // for And
-        BiRelay(CompletableFuture<Void> dep,
-                CompletableFuture<T> src,
-                CompletableFuture<U> snd) {
-            super(null, dep, src, snd);
-        }
-        final CompletableFuture<Void> tryFire(int mode) {
-            CompletableFuture<Void> d;
-            CompletableFuture<T> a;
-            CompletableFuture<U> b;
-            if ((d = dep) == null || !d.biRelay(a = src, b = snd))
-                return null;
-            src = null; snd = null; dep = null;
-            return d.postFire(a, b, mode);
-        }
-    }
-
-    boolean biRelay(CompletableFuture<?> a, CompletableFuture<?> b) {
-        Object r, s; Throwable x;
-        if (a == null || (r = a.result) == null ||
-            b == null || (s = b.result) == null)
-            return false;
-        if (result == null) {
-            if (r instanceof AltResult && (x = ((AltResult)r).ex) != null)
-                completeThrowable(x, r);
-            else if (s instanceof AltResult && (x = ((AltResult)s).ex) != null)
-                completeThrowable(x, s);
-            else
-                completeNull();
-        }
-        return true;
-    }
-
-    /** Recursively constructs a tree of completions. */
-    static CompletableFuture<Void> andTree(CompletableFuture<?>[] cfs,
-                                           int lo, int hi) {
-        CompletableFuture<Void> d = new CompletableFuture<Void>();
-        if (lo > hi) // empty
-            d.result = NIL;
-        else {
-            CompletableFuture<?> a, b;
-            int mid = (lo + hi) >>> 1;
-            if ((a = (lo == mid ? cfs[lo] :
-                      andTree(cfs, lo, mid))) == null ||
-                (b = (lo == hi ? a : (hi == mid+1) ? cfs[hi] :
-                      andTree(cfs, mid+1, hi)))  == null)
-                throw new NullPointerException();
-            if (!d.biRelay(a, b)) {
-                BiRelay<?,?> c = new BiRelay<>(d, a, b);
-                a.bipush(b, c);
-                c.tryFire(SYNC);
-            }
-        }
-        return d;
-    }
-
     /* ------------- Projected (Ored) BiCompletions -------------- */
 
     /** Pushes completion to this and b unless either done. */
@@ -1519,51 +1568,152 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return d;
     }
 
-    @SuppressWarnings("serial")
-    static final class OrRelay<T,U> extends BiCompletion<T,U,Object> { // for Or
-        OrRelay(CompletableFuture<Object> dep, CompletableFuture<T> src,
-                CompletableFuture<U> snd) {
-            super(null, dep, src, snd);
+    /* ------------- Counted (bulk) Completions -------------- */
+
+    /**
+     * Shared state of allOf: the dependent, the sources, and a count of
+     * sources not yet known to be done, plus one held while the
+     * Completions are being pushed.
+     */
+    static final class AllOf {
+        final CompletableFuture<Void> dep;
+        CompletableFuture<?>[] cfs;    // nulled on completion
+        volatile int pending;
+
+        AllOf(CompletableFuture<Void> dep, CompletableFuture<?>[] cfs) {
+            this.dep = dep; this.cfs = cfs; this.pending = cfs.length + 1;
         }
-        final CompletableFuture<Object> tryFire(int mode) {
-            CompletableFuture<Object> d;
-            CompletableFuture<T> a;
-            CompletableFuture<U> b;
-            if ((d = dep) == null || !d.orRelay(a = src, b = snd))
+
+        /**
+         * Records that k more sources are done, completing the
+         * dependent if none remain.  Reports the exception of the
+         * first source, in array order, that completed exceptionally.
+         * Returns the dependent if completed here, else null.
+         */
+        CompletableFuture<Void> release(int k) {
+            if (UNSAFE.getAndAddInt(this, PENDING, -k) != k)
                 return null;
-            src = null; snd = null; dep = null;
-            return d.postFire(a, b, mode);
+            CompletableFuture<Void> d = dep;
+            CompletableFuture<?>[] as = cfs;
+            cfs = null;
+            Object r = null; Throwable x = null;
+            for (CompletableFuture<?> a : as) {
+                if ((r = a.result) instanceof AltResult &&
+                    (x = ((AltResult)r).ex) != null)
+                    break;
+            }
+            if (x != null)
+                d.completeThrowable(x, r);
+            else
+                d.completeNull();
+            return d;
         }
     }
 
-    final boolean orRelay(CompletableFuture<?> a, CompletableFuture<?> b) {
-        Object r;
-        if (a == null || b == null ||
-            ((r = a.result) == null && (r = b.result) == null))
-            return false;
-        if (result == null)
-            completeRelay(r);
-        return true;
+    @SuppressWarnings("serial")
+    static final class AllOfCompletion extends Completion { // for allOf
+        AllOf all;                     // nulled when fired
+        AllOfCompletion(AllOf all) { this.all = all; }
+        final CompletableFuture<?> tryFire(int mode) {
+            AllOf a; CompletableFuture<Void> d;
+            if ((a = all) == null ||
+                !compareAndSetForkJoinTaskTag((short)0, (short)1))
+                return null;
+            all = null;
+            if ((d = a.release(1)) == null)
+                return null;
+            if (mode < 0)
+                return d;
+            d.postComplete();
+            return null;
+        }
+        final boolean isLive() { return all != null; }
+    }
+
+    /**
+     * Implements allOf with one small Completion per incomplete source,
+     * counting down to completion of the dependent, rather than a tree
+     * of intermediate futures.
+     */
+    static CompletableFuture<Void> andAll(CompletableFuture<?>[] cfs) {
+        CompletableFuture<Void> d = new CompletableFuture<Void>();
+        int n = cfs.length;
+        for (int i = 0; i < n; ++i) {
+            if (cfs[i] == null)
+                throw new NullPointerException();
+        }
+        AllOf all = new AllOf(d, cfs.clone());
+        int done = 1;                  // include the registration hold
+        for (CompletableFuture<?> a : all.cfs) {
+            if (a.result != null)
+                ++done;
+            else {
+                Completion c = new AllOfCompletion(all);
+                while (a.result == null && !a.tryPushStack(c))
+                    lazySetNext(c, null); // clear on failure
+                if (a.result != null)
+                    c.tryFire(SYNC);
+            }
+        }
+        all.release(done);
+        return d;
+    }
+
+    @SuppressWarnings("serial")
+    static final class AnyOfCompletion extends Completion { // for anyOf
+        CompletableFuture<Object> dep; // nulled when fired
+        CompletableFuture<?> src;
+        AnyOfCompletion(CompletableFuture<Object> dep,
+                        CompletableFuture<?> src) {
+            this.dep = dep; this.src = src;
+        }
+        final CompletableFuture<?> tryFire(int mode) {
+            CompletableFuture<Object> d; CompletableFuture<?> a; Object r;
+            if ((d = dep) == null || (a = src) == null ||
+                (r = a.result) == null)
+                return null;
+            dep = null; src = null;
+            if (!d.completeRelay(r))
+                return null;
+            if (mode < 0)
+                return d;
+            d.postComplete();
+            return null;
+        }
+        final boolean isLive() {
+            CompletableFuture<Object> d;
+            return (d = dep) != null && d.result == null;
+        }
     }
 
-    /** Recursively constructs a tree of completions. */
-    static CompletableFuture<Object> orTree(CompletableFuture<?>[] cfs,
-                                            int lo, int hi) {
+    /**
+     * Implements anyOf with one small Completion per source, each
+     * trying to relay its result to the dependent, rather than a tree
+     * of intermediate futures.
+     */
+    static CompletableFuture<Object> orAny(CompletableFuture<?>[] cfs) {
         CompletableFuture<Object> d = new CompletableFuture<Object>();
-        if (lo <= hi) {
-            CompletableFuture<?> a, b;
-            int mid = (lo + hi) >>> 1;
-            if ((a = (lo == mid ? cfs[lo] :
-                      orTree(cfs, lo, mid))) == null ||
-                (b = (lo == hi ? a : (hi == mid+1) ? cfs[hi] :
-                      orTree(cfs, mid+1, hi)))  == null)
+        for (CompletableFuture<?> a : cfs) {
+            if (a == null)
                 throw new NullPointerException();
-            if (!d.orRelay(a, b)) {
-                OrRelay<?,?> c = new OrRelay<>(d, a, b);
-                a.orpush(b, c);
-                c.tryFire(SYNC);
+        }
+        for (CompletableFuture<?> a : cfs) {
+            Object r;
+            if ((r = a.result) != null) {
+                d.result = encodeRelay(r);
+                return d;
             }
         }
+        for (CompletableFuture<?> a : cfs) {
+            if (d.result != null)
+                break;
+            Completion c = new AnyOfCompletion(d, a);
+            while (a.result == null && d.result == null &&
+                   !a.tryPushStack(c))
+                lazySetNext(c, null); // clear on failure
+            if (a.result != null)
+                c.tryFire(SYNC);
+        }
         return d;
     }
 
@@ -1715,8 +1865,10 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
                 if (ThreadLocalRandom.nextSecondarySeed() >= 0)
                     --spins;
             }
-            else if (q == null)
+            else if (q == null) {
+                Batch.flushCurrent();
                 q = new Signaller(interruptible, 0L, 0L);
+            }
             else if (!queued)
                 queued = tryPushStack(q);
             else if (interruptible && q.interruptControl < 0) {
@@ -1755,6 +1907,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         if (nanos <= 0L)
             throw new TimeoutException();
         long d = System.nanoTime() + nanos;
+        Batch.flushCurrent();
         Signaller q = new Signaller(true, nanos, d == 0L ? 1L : d); // avoid 0
         boolean queued = false;
         Object r;
@@ -1870,6 +2023,35 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
         return new CompletableFuture<U>((value == null) ? NIL : value);
     }
 
+    /**
+     * Returns an Executor that runs tasks using the given Executor, but
+     * runs each task submitted by a thread that is itself running a
+     * task of the returned Executor in that same thread, after the
+     * current task, instead of submitting a new task.  When a chain of
+     * <em>async</em> stages uses the returned Executor, completion of
+     * one stage submits the next from the thread that completed it, so
+     * the whole chain runs as a single task of the given Executor, in
+     * order, without a hand-off between threads for each stage.
+     *
+     * <p>Tasks run this way are run sequentially, so work that should
+     * proceed in parallel should be submitted from other threads or to
+     * a different Executor.  If a task awaits the result of a
+     * CompletableFuture, using methods such as {@link #join} or {@link
+     * #get}, any tasks queued behind it are first submitted to the
+     * given Executor, so they may run meanwhile; tasks that block in
+     * other ways should not await the effects of tasks they submitted
+     * to the returned Executor.  A bounded number of tasks is run
+     * before the remaining ones are resubmitted.
+     *
+     * @param executor the executor to use
+     * @return an Executor batching tasks submitted from its own tasks
+     * @throws NullPointerException if executor is null
+     * @since 1.8
+     */
+    public static Executor batchingExecutor(Executor executor) {
+        return new BatchingExecutor(screenExecutor(executor));
+    }
+
     /**
      * Returns {@code true} if completed in any fashion: normally,
      * exceptionally, or via cancellation.
@@ -2222,7 +2404,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
      * {@code null}
      */
     public static CompletableFuture<Void> allOf(CompletableFuture<?>... cfs) {
-        return andTree(cfs, 0, cfs.length - 1);
+        return andAll(cfs);
     }
 
     /**
@@ -2241,7 +2423,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
      * {@code null}
      */
     public static CompletableFuture<Object> anyOf(CompletableFuture<?>... cfs) {
-        return orTree(cfs, 0, cfs.length - 1);
+        return orAny(cfs);
     }
 
     /* ------------- Control and status methods -------------- */
@@ -2369,6 +2551,7 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
     private static final long RESULT;
     private static final long STACK;
     private static final long NEXT;
+    private static final long PENDING;
     static {
         try {
             final sun.misc.Unsafe u;
@@ -2378,6 +2561,8 @@ public class CompletableFuture<T> implements Future<T>, CompletionStage<T> {
             STACK = u.objectFieldOffset(k.getDeclaredField("stack"));
             NEXT = u.objectFieldOffset
                 (Completion.class.getDeclaredField("next"));
+            PENDING = u.objectFieldOffset
+                (AllOf.class.getDeclaredField("pending"));
         } catch (Exception x) {
             throw new Error(x);
         }
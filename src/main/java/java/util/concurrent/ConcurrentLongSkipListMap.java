@@ -0,0 +1,1134 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.io.Serializable;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A scalable concurrent sorted map from primitive {@code long} keys to
+ * values, intended for large maps indexed by quantities such as
+ * timestamps or sequence numbers, and for access to ranges of keys.
+ *
+ * <p>Like {@link ConcurrentSkipListMap}, this class is based on a
+ * concurrent skip list, providing expected average <i>log(n)</i> time
+ * cost for the {@code containsKey}, {@code get}, {@code put} and
+ * {@code remove} operations.  Unlike it, keys are not boxed, and the
+ * base level of the list holds keys and values in sorted arrays of
+ * several dozen entries each, so that the index is correspondingly
+ * smaller, and the map uses much less memory per entry.
+ *
+ * <p>Ranges of keys are processed a chunk of entries at a time.
+ * Methods {@link #forEachKeyInRange}, {@link #forEachInRange} and
+ * {@link #countInRange} pass over a range without allocating per
+ * entry, and {@link #removeRange} removes a range of entries, unlinking
+ * whole chunks that fall within it, in time proportional to the number
+ * of chunks rather than of entries.
+ *
+ * <p>Lookups and traversals do not block.  Updates lock only the chunk
+ * or chunks they modify, so updates of distant keys proceed in
+ * parallel, while updates of keys held in the same chunk serialize.
+ * Traversals are <a href="package-summary.html#Weakly"><i>weakly
+ * consistent</i></a>: each chunk is read atomically, but entries of
+ * different chunks are read at different times, so a traversal may or
+ * may not reflect concurrent updates.  Actions passed to traversal
+ * methods are never invoked while a lock is held.
+ *
+ * <p>Beware that, unlike in most collections, the {@code size} method
+ * is <em>not</em> a constant-time operation, although it needs to
+ * visit only chunks, not entries.  The bulk operations {@code
+ * removeRange} and {@code clear} are <em>not</em> guaranteed to be
+ * performed atomically.
+ *
+ * <p>This class does not permit the use of {@code null} values, and
+ * does not implement the {@link java.util.Map} interface.
+ *
+ * @param <V> the type of mapped values
+ * @see ConcurrentSkipListMap
+ * @since 1.8
+ */
+public class ConcurrentLongSkipListMap<V> implements Serializable {
+    private static final long serialVersionUID = -5209154426451412834L;
+
+    /*
+     * The base level of the skip list is a linked list of Chunks in
+     * key order.  Each chunk holds up to CAPACITY entries in sorted
+     * parallel arrays, and covers the keys from its fixed lower bound
+     * "low" up to (but excluding) the low of its successor, so that
+     * every key belongs to exactly one chunk.  The first chunk, which
+     * is never removed, has low Long.MIN_VALUE.  The index levels
+     * are as in ConcurrentSkipListMap, with Index nodes referring to
+     * chunks, ordered by low, and the same lock-free insertion and
+     * lazy unlinking of index nodes, here of those referring to dead
+     * chunks.  Because a chunk's low is fixed, and a chunk is found
+     * as the last one whose low does not exceed a key, index nodes
+     * need never be corrected other than by removal.
+     *
+     * Each chunk has a lock (its monitor), which guards its entries,
+     * its size, and its next link.  The base list is changed only
+     * while holding the lock of the chunk whose next link changes:
+     *
+     *  - A put into a full chunk splits it, moving the upper half of
+     *    its entries (with the new one if it belongs there) into a
+     *    new chunk, fully initialized before being linked in, whose
+     *    low is the least key moved.
+     *
+     *  - A remove that leaves a chunk less than a quarter full merges
+     *    its successor into it if the two fit in half a chunk,
+     *    additionally holding the successor's lock.  A chunk left
+     *    empty is unlinked, holding its predecessor's lock and then
+     *    its own.  Chunks whose keys lie entirely within a range
+     *    being removed are unlinked in the same way.
+     *
+     * Locks are always acquired in key order, so cannot deadlock.  A
+     * chunk removed from the list is marked dead while locked, and
+     * every update rechecks, once holding the lock of the chunk it
+     * located, that the chunk is not dead and still covers the key,
+     * retrying otherwise.
+     *
+     * Readers do not lock.  Each chunk carries a version, which is
+     * odd while a writer modifies it, as in a seqlock or the
+     * optimistic reads of StampedLock: a reader reads the version,
+     * then the fields it needs, then (after a load fence) rereads the
+     * version, and retries if either read was odd or they differ.
+     * Readers must therefore cope with inconsistent values within an
+     * attempt, so chunk arrays are never replaced and indices are
+     * clamped to bounds.  Since all writes to a chunk occur between
+     * version updates, a validated read also safely publishes the
+     * values it returns.
+     *
+     * Traversals copy the entries of each chunk in range into a
+     * buffer allocated once per traversal, validate, and then invoke
+     * the action on the copies.  They continue from the low of the
+     * successor read in the same validated snapshot.
+     */
+
+    /** The greatest number of entries held in a chunk */
+    static final int CAPACITY = 32;
+
+    /** Merge with successor if no more than this many entries remain */
+    static final int MERGE_THRESHOLD = CAPACITY >>> 2;
+
+    /* ---------------- Chunks and indexes -------------- */
+
+    /**
+     * A base-level node holding a sorted run of entries.
+     */
+    static final class Chunk<V> {
+        final long low;
+        final long[] keys;
+        final Object[] vals;
+        int size;
+        volatile Chunk<V> next;
+        volatile int version;
+        volatile boolean dead;
+
+        Chunk(long low, Chunk<V> next) {
+            this.low = low;
+            this.keys = new long[CAPACITY];
+            this.vals = new Object[CAPACITY];
+            this.next = next;
+        }
+
+        /** Marks the start of a modification; requires lock */
+        final void beginWrite() {
+            version = version + 1;
+            U.storeFence();
+        }
+
+        /** Marks the end of a modification; requires lock */
+        final void endWrite() {
+            version = version + 1;
+        }
+
+        /** Inserts entry at index i; requires lock and room */
+        final void insert(int i, long key, Object value) {
+            int s = size;
+            System.arraycopy(keys, i, keys, i + 1, s - i);
+            System.arraycopy(vals, i, vals, i + 1, s - i);
+            keys[i] = key;
+            vals[i] = value;
+            size = s + 1;
+        }
+
+        /** Deletes entries [i, j); requires lock */
+        final void delete(int i, int j) {
+            int s = size;
+            System.arraycopy(keys, j, keys, i, s - j);
+            System.arraycopy(vals, j, vals, i, s - j);
+            int t = s - (j - i);
+            for (int k = t; k < s; ++k)
+                vals[k] = null;
+            size = t;
+        }
+    }
+
+    /**
+     * Index nodes, as in ConcurrentSkipListMap.
+     */
+    static class Index<V> {
+        final Chunk<V> node;
+        final Index<V> down;
+        volatile Index<V> right;
+
+        Index(Chunk<V> node, Index<V> down, Index<V> right) {
+            this.node = node;
+            this.down = down;
+            this.right = right;
+        }
+
+        final boolean casRight(Index<V> cmp, Index<V> val) {
+            return U.compareAndSwapObject(this, RIGHT, cmp, val);
+        }
+
+        /**
+         * Tries to CAS newSucc as successor, unless the chunk this
+         * indexes is dead.
+         */
+        final boolean link(Index<V> succ, Index<V> newSucc) {
+            newSucc.right = succ;
+            return !node.dead && casRight(succ, newSucc);
+        }
+
+        /**
+         * Tries to CAS right field to skip over apparent successor
+         * succ, unless the chunk this indexes is dead.
+         */
+        final boolean unlink(Index<V> succ) {
+            return !node.dead && casRight(succ, succ.right);
+        }
+    }
+
+    /**
+     * Nodes heading each level keep track of their level.
+     */
+    static final class HeadIndex<V> extends Index<V> {
+        final int level;
+        HeadIndex(Chunk<V> node, Index<V> down, Index<V> right, int level) {
+            super(node, down, right);
+            this.level = level;
+        }
+    }
+
+    /** The topmost head index of the skip list */
+    private transient volatile HeadIndex<V> head;
+
+    /**
+     * Creates a new, empty map.
+     */
+    public ConcurrentLongSkipListMap() {
+        initialize();
+    }
+
+    private void initialize() {
+        head = new HeadIndex<V>(new Chunk<V>(Long.MIN_VALUE, null),
+                                null, null, 1);
+    }
+
+    private boolean casHead(HeadIndex<V> cmp, HeadIndex<V> val) {
+        return U.compareAndSwapObject(this, HEAD, cmp, val);
+    }
+
+    /**
+     * Returns the index of key in keys[0, n), or -(insertion point
+     * + 1) if absent, as by Arrays.binarySearch.
+     */
+    static int search(long[] keys, int n, long key) {
+        int lo = 0, hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = keys[mid];
+            if (k < key)
+                lo = mid + 1;
+            else if (k > key)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Returns the index of the first key in keys[0, n) not less than
+     * key, or n if none.
+     */
+    static int lowerBound(long[] keys, int n, long key) {
+        int i = search(keys, n, key);
+        return (i >= 0) ? i : -(i + 1);
+    }
+
+    /**
+     * Clamps a size read racily to the bounds of chunk arrays.
+     */
+    static int clamp(int s) {
+        return (s < 0) ? 0 : (s > CAPACITY) ? CAPACITY : s;
+    }
+
+    /* ---------------- Traversal -------------- */
+
+    /**
+     * Returns a base-level chunk with low not greater than key,
+     * unlinking indexes to dead chunks found along the way.  Callers
+     * rely on this side-effect to clear indexes to dead chunks.
+     */
+    private Chunk<V> findPredecessor(long key) {
+        for (;;) {
+            for (Index<V> q = head, r = q.right, d;;) {
+                if (r != null) {
+                    Chunk<V> n = r.node;
+                    if (n.dead) {
+                        if (!q.unlink(r))
+                            break;           // restart
+                        r = q.right;         // reread r
+                        continue;
+                    }
+                    if (n.low <= key) {
+                        q = r;
+                        r = r.right;
+                        continue;
+                    }
+                }
+                if ((d = q.down) == null)
+                    return q.node;
+                q = d;
+                r = d.right;
+            }
+        }
+    }
+
+    /**
+     * Returns the chunk apparently covering key.  The chunk was not
+     * dead when checked, but callers must revalidate.
+     */
+    final Chunk<V> findChunk(long key) {
+        outer: for (;;) {
+            for (Chunk<V> c = findPredecessor(key), n;;) {
+                if (c.dead)
+                    continue outer;
+                if ((n = c.next) == null || n.low > key)
+                    return c;
+                c = n;
+            }
+        }
+    }
+
+    /**
+     * Possibly reduces head level if it has no nodes, as in
+     * ConcurrentSkipListMap.
+     */
+    private void tryReduceLevel() {
+        HeadIndex<V> h = head;
+        HeadIndex<V> d;
+        HeadIndex<V> e;
+        if (h.level > 3 &&
+            (d = (HeadIndex<V>)h.down) != null &&
+            (e = (HeadIndex<V>)d.down) != null &&
+            e.right == null &&
+            d.right == null &&
+            h.right == null &&
+            casHead(h, d) && // try to set
+            h.right != null) // recheck
+            casHead(d, h);   // try to backout
+    }
+
+    /**
+     * Clears index nodes of a chunk that has been removed.
+     */
+    private void cleanIndex(Chunk<V> z) {
+        findPredecessor(z.low);
+        if (head.right == null)
+            tryReduceLevel();
+    }
+
+    /* ---------------- Insertion -------------- */
+
+    /**
+     * Main insertion method.  Adds element if not present, or
+     * replaces value if present and onlyIfAbsent is false.
+     *
+     * @return the old value, or null if newly inserted
+     */
+    private V doPut(long key, V value, boolean onlyIfAbsent) {
+        if (value == null)
+            throw new NullPointerException();
+        Chunk<V> z = null;            // chunk created by split
+        for (;;) {
+            Chunk<V> c = findChunk(key);
+            synchronized (c) {
+                Chunk<V> n;
+                if (c.dead || ((n = c.next) != null && n.low <= key))
+                    continue;
+                int s = c.size, i = search(c.keys, s, key);
+                if (i >= 0) {
+                    @SuppressWarnings("unchecked") V v = (V)c.vals[i];
+                    if (!onlyIfAbsent) {
+                        c.beginWrite();
+                        c.vals[i] = value;
+                        c.endWrite();
+                    }
+                    return v;
+                }
+                i = -(i + 1);
+                if (s < CAPACITY) {
+                    c.beginWrite();
+                    c.insert(i, key, value);
+                    c.endWrite();
+                }
+                else
+                    z = split(c, i, key, value);
+                break;
+            }
+        }
+        if (z != null)
+            addIndex(z);
+        return null;
+    }
+
+    /**
+     * Splits full chunk c, inserting the given entry at index i of
+     * the combined entries.  Requires lock of c.
+     *
+     * @return the new chunk
+     */
+    private Chunk<V> split(Chunk<V> c, int i, long key, Object value) {
+        final int mid = CAPACITY >>> 1, m = CAPACITY - mid;
+        Chunk<V> z = new Chunk<V>(c.keys[mid], c.next);
+        System.arraycopy(c.keys, mid, z.keys, 0, m);
+        System.arraycopy(c.vals, mid, z.vals, 0, m);
+        z.size = m;
+        if (i > mid)
+            z.insert(i - mid, key, value);
+        c.beginWrite();
+        c.next = z;
+        c.delete(mid, CAPACITY);
+        if (i <= mid)
+            c.insert(i, key, value);
+        c.endWrite();
+        return z;
+    }
+
+    /**
+     * Adds index nodes for a new chunk with a random level, as in
+     * ConcurrentSkipListMap.doPut.
+     */
+    private void addIndex(Chunk<V> z) {
+        final long key = z.low;
+        int rnd = ThreadLocalRandom.nextSecondarySeed();
+        if ((rnd & 0x80000001) != 0) // test highest and lowest bits
+            return;
+        int level = 1, max;
+        while (((rnd >>>= 1) & 1) != 0)
+            ++level;
+        Index<V> idx = null;
+        HeadIndex<V> h = head;
+        if (level <= (max = h.level)) {
+            for (int i = 1; i <= level; ++i)
+                idx = new Index<V>(z, idx, null);
+        }
+        else { // try to grow by one level
+            level = max + 1; // hold in array and later pick the one to use
+            @SuppressWarnings("unchecked")Index<V>[] idxs =
+                (Index<V>[])new Index<?>[level+1];
+            for (int i = 1; i <= level; ++i)
+                idxs[i] = idx = new Index<V>(z, idx, null);
+            for (;;) {
+                h = head;
+                int oldLevel = h.level;
+                if (level <= oldLevel) // lost race to add level
+                    break;
+                HeadIndex<V> newh = h;
+                Chunk<V> oldbase = h.node;
+                for (int j = oldLevel+1; j <= level; ++j)
+                    newh = new HeadIndex<V>(oldbase, newh, idxs[j], j);
+                if (casHead(h, newh)) {
+                    h = newh;
+                    idx = idxs[level = oldLevel];
+                    break;
+                }
+            }
+        }
+        // find insertion points and splice in
+        splice: for (int insertionLevel = level;;) {
+            int j = h.level;
+            for (Index<V> q = h, r = q.right, t = idx;;) {
+                if (q == null || t == null)
+                    break splice;
+                if (r != null) {
+                    Chunk<V> n = r.node;
+                    if (n.dead) {
+                        if (!q.unlink(r))
+                            break;
+                        r = q.right;
+                        continue;
+                    }
+                    if (key > n.low) {
+                        q = r;
+                        r = r.right;
+                        continue;
+                    }
+                }
+
+                if (j == insertionLevel) {
+                    if (!q.link(r, t))
+                        break; // restart
+                    if (t.node.dead) {
+                        findPredecessor(key);
+                        break splice;
+                    }
+                    if (--insertionLevel == 0)
+                        break splice;
+                }
+
+                if (--j >= insertionLevel && j < level)
+                    t = t.down;
+                q = q.down;
+                r = q.right;
+            }
+        }
+    }
+
+    /* ---------------- Deletion -------------- */
+
+    /**
+     * Main deletion method.  Removes the entry for key, if present and,
+     * if value is non-null, mapped to an equal value.
+     *
+     * @return the old value, or null if none removed
+     */
+    private V doRemove(long key, Object value) {
+        Chunk<V> c, dead = null;
+        V v;
+        for (;;) {
+            c = findChunk(key);
+            synchronized (c) {
+                Chunk<V> n;
+                if (c.dead || ((n = c.next) != null && n.low <= key))
+                    continue;
+                int i = search(c.keys, c.size, key);
+                if (i < 0)
+                    return null;
+                @SuppressWarnings("unchecked") V cv = (V)c.vals[i];
+                if (value != null && !value.equals(cv))
+                    return null;
+                c.beginWrite();
+                c.delete(i, i + 1);
+                c.endWrite();
+                v = cv;
+                if (c.size <= MERGE_THRESHOLD)
+                    dead = tryMergeNext(c);
+                break;
+            }
+        }
+        if (dead != null)
+            cleanIndex(dead);
+        if (c.size == 0)
+            unlinkEmpty(c);
+        return v;
+    }
+
+    /**
+     * Merges the successor of c into c if they fit within half a
+     * chunk.  Requires lock of c.
+     *
+     * @return the merged successor, or null if none
+     */
+    private Chunk<V> tryMergeNext(Chunk<V> c) {
+        Chunk<V> n = c.next;
+        if (n == null || c.size + n.size > CAPACITY >>> 1)
+            return null;
+        synchronized (n) {
+            int s = c.size, m = n.size;
+            if (s + m > CAPACITY >>> 1)
+                return null;
+            c.beginWrite();
+            n.beginWrite();
+            System.arraycopy(n.keys, 0, c.keys, s, m);
+            System.arraycopy(n.vals, 0, c.vals, s, m);
+            c.size = s + m;
+            n.dead = true;
+            c.next = n.next;
+            n.endWrite();
+            c.endWrite();
+        }
+        return n;
+    }
+
+    /**
+     * Unlinks c from the list if it is still empty, unless it is the
+     * first chunk.
+     */
+    private void unlinkEmpty(Chunk<V> c) {
+        if (c.low == Long.MIN_VALUE)
+            return;
+        while (!c.dead && c.size == 0) {
+            Chunk<V> p = findChunk(c.low - 1L);
+            synchronized (p) {
+                if (p.dead || p.next != c)
+                    continue;
+                synchronized (c) {
+                    if (c.dead || c.size != 0)
+                        return;
+                    p.beginWrite();
+                    c.beginWrite();
+                    c.dead = true;
+                    p.next = c.next;
+                    c.endWrite();
+                    p.endWrite();
+                }
+            }
+            cleanIndex(c);
+            return;
+        }
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @return the value to which the specified key is mapped, or
+     *         {@code null} if this map contains no mapping for the key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (Chunk<V> c = findChunk(key);;) {
+            int ver = c.version;
+            Chunk<V> n = c.next;
+            boolean dead = c.dead;
+            int i = search(c.keys, clamp(c.size), key);
+            Object v = (i >= 0) ? c.vals[i] : null;
+            U.loadFence();
+            if ((ver & 1) != 0 || c.version != ver) {
+                Thread.yield();
+                continue;
+            }
+            if (dead || (n != null && n.low <= key)) {
+                c = findChunk(key);
+                continue;
+            }
+            return (V)v;
+        }
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or the given defaultValue if this map contains no mapping for
+     * the key.
+     *
+     * @param key the key
+     * @param defaultValue the value to return if this map contains
+     * no mapping for the given key
+     * @return the mapping for the key, if present; else the defaultValue
+     */
+    public V getOrDefault(long key, V defaultValue) {
+        V v;
+        return (v = get(key)) == null ? defaultValue : v;
+    }
+
+    /**
+     * Returns {@code true} if this map contains a mapping for the
+     * specified key.
+     *
+     * @param key key whose presence in this map is to be tested
+     * @return {@code true} if this map contains a mapping for the
+     *         specified key
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates the specified value with the specified key in this map.
+     * If the map previously contained a mapping for the key, the old
+     * value is replaced.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key, or
+     *         {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified value is null
+     */
+    public V put(long key, V value) {
+        return doPut(key, value, false);
+    }
+
+    /**
+     * If the specified key is not already associated with a value,
+     * associates it with the given value.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified value is null
+     */
+    public V putIfAbsent(long key, V value) {
+        return doPut(key, value, true);
+    }
+
+    /**
+     * Removes the mapping for the specified key from this map if present.
+     *
+     * @param  key key for which mapping should be removed
+     * @return the previous value associated with the specified key, or
+     *         {@code null} if there was no mapping for the key
+     */
+    public V remove(long key) {
+        return doRemove(key, null);
+    }
+
+    /**
+     * Removes the entry for a key only if currently mapped to a given
+     * value.
+     *
+     * @param key key with which the specified value is associated
+     * @param value value expected to be associated with the specified key
+     * @return {@code true} if the value was removed
+     */
+    public boolean remove(long key, Object value) {
+        return value != null && doRemove(key, value) != null;
+    }
+
+    /**
+     * Returns the number of key-value mappings in this map.  If this map
+     * contains more than {@code Integer.MAX_VALUE} elements, it
+     * returns {@code Integer.MAX_VALUE}.
+     *
+     * <p>Beware that this method requires a traversal of the chunks of
+     * the map, and may report inaccurate results if the map is
+     * modified during the traversal.
+     *
+     * @return the number of elements in this map
+     * @see #mappingCount
+     */
+    public int size() {
+        long n = mappingCount();
+        return (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+    }
+
+    /**
+     * Returns the number of mappings.  This method should be used
+     * instead of {@link #size} because a {@code ConcurrentLongSkipListMap}
+     * may contain more mappings than can be represented as an int.
+     * The value returned is an estimate; the actual count may differ
+     * if there are concurrent insertions or removals.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        long count = 0L;
+        for (Chunk<V> c = head.node; c != null; c = c.next) {
+            if (!c.dead)
+                count += clamp(c.size);
+        }
+        return count;
+    }
+
+    /**
+     * Returns {@code true} if this map contains no key-value mappings.
+     *
+     * @return {@code true} if this map contains no key-value mappings
+     */
+    public boolean isEmpty() {
+        for (Chunk<V> c = head.node; c != null; c = c.next) {
+            if (!c.dead && c.size > 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first (lowest) key currently in this map.
+     *
+     * @return the first (lowest) key currently in this map
+     * @throws NoSuchElementException if this map is empty
+     */
+    public long firstKey() {
+        outer: for (;;) {
+            for (Chunk<V> c = head.node;;) {
+                int ver = c.version;
+                Chunk<V> n = c.next;
+                boolean dead = c.dead;
+                int s = clamp(c.size);
+                long k = c.keys[0];
+                U.loadFence();
+                if ((ver & 1) != 0 || c.version != ver) {
+                    Thread.yield();
+                    continue;
+                }
+                if (dead)
+                    continue outer;
+                if (s > 0)
+                    return k;
+                if (n == null)
+                    throw new NoSuchElementException();
+                c = n;
+            }
+        }
+    }
+
+    /**
+     * Returns the last (highest) key currently in this map.
+     *
+     * @return the last (highest) key currently in this map
+     * @throws NoSuchElementException if this map is empty
+     */
+    public long lastKey() {
+        for (long hi = Long.MAX_VALUE;;) {
+            Chunk<V> c = findChunk(hi);
+            int ver = c.version;
+            Chunk<V> n = c.next;
+            boolean dead = c.dead;
+            int s = clamp(c.size);
+            long k = c.keys[(s > 0) ? s - 1 : 0];
+            U.loadFence();
+            if ((ver & 1) != 0 || c.version != ver) {
+                Thread.yield();
+                continue;
+            }
+            if (dead || (n != null && n.low <= hi))
+                continue;
+            if (s > 0)
+                return k;
+            if (c.low == Long.MIN_VALUE)
+                throw new NoSuchElementException();
+            hi = c.low - 1L;
+        }
+    }
+
+    /* ---------------- Range operations -------------- */
+
+    /**
+     * Performs the given action for each key in the range from
+     * {@code fromKey}, inclusive, to {@code toKey}, exclusive, in
+     * ascending order.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys
+     * @param toKey high endpoint (exclusive) of the keys
+     * @param action the action to be performed for each key
+     * @throws NullPointerException if the action is null
+     */
+    public void forEachKeyInRange(long fromKey, long toKey,
+                                  LongConsumer action) {
+        if (action == null)
+            throw new NullPointerException();
+        if (fromKey < toKey)
+            scan(fromKey, toKey - 1L, action, null);
+    }
+
+    /**
+     * Performs the given action for each entry with a key in the range
+     * from {@code fromKey}, inclusive, to {@code toKey}, exclusive, in
+     * ascending order of keys.  The action is passed the value and the
+     * key of each entry.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys
+     * @param toKey high endpoint (exclusive) of the keys
+     * @param action the action to be performed for each entry
+     * @throws NullPointerException if the action is null
+     */
+    public void forEachInRange(long fromKey, long toKey,
+                               ObjLongConsumer<? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        if (fromKey < toKey)
+            scan(fromKey, toKey - 1L, null, action);
+    }
+
+    /**
+     * Performs the given action for each entry of this map, in
+     * ascending order of keys.  The action is passed the value and the
+     * key of each entry.
+     *
+     * @param action the action to be performed for each entry
+     * @throws NullPointerException if the action is null
+     */
+    public void forEach(ObjLongConsumer<? super V> action) {
+        if (action == null)
+            throw new NullPointerException();
+        scan(Long.MIN_VALUE, Long.MAX_VALUE, null, action);
+    }
+
+    /**
+     * Passes the keys, or entries, in [lo, hi] to the given action.
+     */
+    @SuppressWarnings("unchecked")
+    private void scan(long lo, long hi, LongConsumer keyAction,
+                      ObjLongConsumer<? super V> entryAction) {
+        final long[] ks = new long[CAPACITY];
+        final Object[] vs = (entryAction == null) ? null : new Object[CAPACITY];
+        for (long k = lo;;) {
+            Chunk<V> c = findChunk(k);
+            int ver = c.version;
+            Chunk<V> n = c.next;
+            boolean dead = c.dead;
+            int s = clamp(c.size);
+            int i = lowerBound(c.keys, s, k);
+            int j = (hi == Long.MAX_VALUE) ? s : lowerBound(c.keys, s, hi + 1L);
+            int m = (j > i) ? j - i : 0;
+            System.arraycopy(c.keys, i, ks, 0, m);
+            if (vs != null)
+                System.arraycopy(c.vals, i, vs, 0, m);
+            U.loadFence();
+            if ((ver & 1) != 0 || c.version != ver) {
+                Thread.yield();
+                continue;
+            }
+            if (dead || (n != null && n.low <= k))
+                continue;
+            if (vs == null) {
+                for (int t = 0; t < m; ++t)
+                    keyAction.accept(ks[t]);
+            }
+            else {
+                for (int t = 0; t < m; ++t) {
+                    Object v = vs[t];
+                    vs[t] = null;
+                    entryAction.accept((V)v, ks[t]);
+                }
+            }
+            if (n == null || n.low > hi)
+                return;
+            k = n.low;
+        }
+    }
+
+    /**
+     * Returns the number of keys in the range from {@code fromKey},
+     * inclusive, to {@code toKey}, exclusive.  The value returned is an
+     * estimate if there are concurrent insertions or removals.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys
+     * @param toKey high endpoint (exclusive) of the keys
+     * @return the number of keys in the range
+     */
+    public long countInRange(long fromKey, long toKey) {
+        long count = 0L;
+        if (fromKey >= toKey)
+            return count;
+        final long hi = toKey - 1L;
+        for (long k = fromKey;;) {
+            Chunk<V> c = findChunk(k);
+            int ver = c.version;
+            Chunk<V> n = c.next;
+            boolean dead = c.dead;
+            int s = clamp(c.size);
+            int i = lowerBound(c.keys, s, k);
+            int j = lowerBound(c.keys, s, toKey);
+            U.loadFence();
+            if ((ver & 1) != 0 || c.version != ver) {
+                Thread.yield();
+                continue;
+            }
+            if (dead || (n != null && n.low <= k))
+                continue;
+            if (j > i)
+                count += j - i;
+            if (n == null || n.low > hi)
+                return count;
+            k = n.low;
+        }
+    }
+
+    /**
+     * Removes all of the mappings with keys in the range from
+     * {@code fromKey}, inclusive, to {@code toKey}, exclusive.  Chunks
+     * of entries whose keys all lie in the range are unlinked as a
+     * whole.  The removal is not atomic: concurrent operations may
+     * observe some of the range removed and some not, and keys
+     * inserted into the range during the removal may or may not be
+     * removed.
+     *
+     * @param fromKey low endpoint (inclusive) of the keys
+     * @param toKey high endpoint (exclusive) of the keys
+     * @return the number of mappings removed
+     */
+    public long removeRange(long fromKey, long toKey) {
+        return (fromKey < toKey) ? removeRangeInclusive(fromKey, toKey - 1L) : 0L;
+    }
+
+    /**
+     * Removes all of the mappings from this map.  The removal is not
+     * atomic.
+     */
+    public void clear() {
+        removeRangeInclusive(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Removes entries with keys in [lo, hi], one chunk covering lo at
+     * a time, together with any following chunks lying within the
+     * range.
+     */
+    private long removeRangeInclusive(long lo, long hi) {
+        long removed = 0L;
+        for (long k = lo;;) {
+            Chunk<V> c = findChunk(k), n;
+            Chunk<V> dead = null;   // last unlinked chunk; cleaning its
+                                    // index also clears those before it
+            boolean more = false;
+            synchronized (c) {
+                if (c.dead || ((n = c.next) != null && n.low <= k))
+                    continue;
+                int s = c.size;
+                int i = lowerBound(c.keys, s, k);
+                int j = (hi == Long.MAX_VALUE) ? s : lowerBound(c.keys, s, hi + 1L);
+                if (j > i) {
+                    c.beginWrite();
+                    c.delete(i, j);
+                    c.endWrite();
+                    removed += j - i;
+                }
+                while ((n = c.next) != null && n.low <= hi) {
+                    synchronized (n) {
+                        int m = n.size;
+                        if (m > 0 && n.keys[m - 1] > hi)
+                            break;  // n extends beyond range
+                        c.beginWrite();
+                        n.beginWrite();
+                        n.dead = true;
+                        c.next = n.next;
+                        n.endWrite();
+                        c.endWrite();
+                        removed += m;
+                        dead = n;
+                    }
+                }
+                if (n != null && n.low <= hi) {
+                    more = true;
+                    k = n.low;
+                }
+            }
+            if (dead != null)
+                cleanIndex(dead);
+            if (c.size == 0)
+                unlinkEmpty(c);
+            if (!more)
+                return removed;
+        }
+    }
+
+    /**
+     * Returns a string representation of this map, in the form of
+     * {@link java.util.AbstractMap#toString}, in ascending order of
+     * keys.
+     *
+     * @return a string representation of this map
+     */
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append('{');
+        forEach(new ObjLongConsumer<V>() {
+            public void accept(V v, long k) {
+                if (sb.length() > 1)
+                    sb.append(',').append(' ');
+                sb.append(k).append('=').append(v);
+            }
+        });
+        return sb.append('}').toString();
+    }
+
+    /* ---------------- Serialization -------------- */
+
+    /**
+     * Saves this map to a stream (that is, serializes it).
+     *
+     * @param s the stream
+     * @throws java.io.IOException if an I/O error occurs
+     * @serialData Each key (long) and value (Object), preceded by the
+     * boolean {@code true}, in ascending order of keys, followed by
+     * the boolean {@code false}.
+     */
+    private void writeObject(final java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        s.defaultWriteObject();
+        final long[] ks = new long[CAPACITY];
+        final Object[] vs = new Object[CAPACITY];
+        for (long k = Long.MIN_VALUE;;) {
+            Chunk<V> c = findChunk(k);
+            int m, ver;
+            Chunk<V> n;
+            synchronized (c) {
+                if (c.dead || ((n = c.next) != null && n.low <= k))
+                    continue;
+                m = c.size;
+                System.arraycopy(c.keys, 0, ks, 0, m);
+                System.arraycopy(c.vals, 0, vs, 0, m);
+            }
+            for (int t = 0; t < m; ++t) {
+                s.writeBoolean(true);
+                s.writeLong(ks[t]);
+                s.writeObject(vs[t]);
+                vs[t] = null;
+            }
+            if (n == null)
+                break;
+            k = n.low;
+        }
+        s.writeBoolean(false);
+    }
+
+    /**
+     * Reconstitutes this map from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(final java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        initialize();
+        while (s.readBoolean()) {
+            long k = s.readLong();
+            Object v = s.readObject();
+            if (v == null)
+                throw new NullPointerException();
+            doPut(k, (V)v, false);
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long HEAD;
+    private static final long RIGHT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            HEAD = U.objectFieldOffset
+                (ConcurrentLongSkipListMap.class.getDeclaredField("head"));
+            RIGHT = U.objectFieldOffset
+                (Index.class.getDeclaredField("right"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,1402 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe variant of {@link java.util.ArrayList} in which all
+ * mutative operations produce a new version of the list, as in
+ * {@link CopyOnWriteArrayList}, but versions share structure instead
+ * of each being a fresh copy of an array.
+ *
+ * <p>Elements are held in a persistent vector: a tree of arrays of 32
+ * elements or children, with the last elements held separately in a
+ * "tail" array.  An update copies only the arrays on the path from the
+ * root to the affected element, so that {@code get}, {@code set},
+ * {@code add} at the end, and removal of the last element take
+ * <i>O(log<sub>32</sub>n)</i> time, which is effectively constant.
+ * Insertion or removal at an index {@code i} shares all arrays holding
+ * elements before {@code i}, and copies only the elements after it.
+ * This makes the class usable for large tables, such as of listeners or
+ * routes, that are updated too often for {@code CopyOnWriteArrayList},
+ * which copies every element on each update.
+ *
+ * <p>As with {@code CopyOnWriteArrayList}, iterators and spliterators
+ * use a reference to the version of the list current when they were
+ * created.  That version never changes, so interference is impossible
+ * and iterators never throw {@code ConcurrentModificationException};
+ * they do not reflect later additions, removals, or changes, and do not
+ * support the element-changing operations {@code remove}, {@code set},
+ * and {@code add}.  The version itself is available, at no cost, from
+ * {@link #snapshot}, which returns an immutable list that may be
+ * retained, shared and read without synchronization.
+ *
+ * <p>Mutative operations are serialized by a lock; reads never block.
+ * All elements are permitted, including {@code null}.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code CopyOnWriteTrieList}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code CopyOnWriteTrieList} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @param <E> the type of elements held in this collection
+ * @see CopyOnWriteTrieMap
+ * @since 1.8
+ */
+public class CopyOnWriteTrieList<E>
+    implements List<E>, RandomAccess, Cloneable, java.io.Serializable {
+    private static final long serialVersionUID = -3427735187385213630L;
+
+    /** Number of bits of an index used at each level */
+    static final int BITS = 5;
+
+    /** Number of elements or children of each full array */
+    static final int WIDTH = 1 << BITS;
+
+    static final int MASK = WIDTH - 1;
+
+    static final Object[] EMPTY_ARRAY = new Object[0];
+
+    /** The lock protecting all mutators */
+    final transient ReentrantLock lock = new ReentrantLock();
+
+    /** The current version */
+    private transient volatile Trie<E> trie;
+
+    /**
+     * Creates an empty list.
+     */
+    public CopyOnWriteTrieList() {
+        trie = Trie.empty();
+    }
+
+    /**
+     * Creates a list containing the elements of the specified
+     * collection, in the order they are returned by the collection's
+     * iterator.
+     *
+     * @param c the collection of initially held elements
+     * @throws NullPointerException if the specified collection is null
+     */
+    @SuppressWarnings("unchecked")
+    public CopyOnWriteTrieList(Collection<? extends E> c) {
+        if (c instanceof CopyOnWriteTrieList)
+            trie = ((CopyOnWriteTrieList<E>)c).trie;
+        else {
+            Object[] a = c.toArray();
+            trie = Trie.build(null, 0, a, a.length);
+        }
+    }
+
+    /**
+     * An immutable version of the list.  The root holds arrays of
+     * children (of arrays, and so on) down to arrays of elements,
+     * which are full except perhaps the last; the child of a node at
+     * level {@code shift} that covers index i is at position
+     * {@code (i >>> shift) & MASK}.  Interior arrays are only as long
+     * as the number of children they have.  The last 1 to 32 elements
+     * are held in the tail rather than in the tree, so that most
+     * appends copy only the tail.  This is the persistent vector of
+     * Clojure and Scala, without transients or relaxed radix nodes.
+     */
+    static final class Trie<E> extends AbstractList<E>
+        implements RandomAccess, java.io.Serializable {
+        private static final long serialVersionUID = 3093744417311424591L;
+
+        static final Trie<Object> EMPTY =
+            new Trie<Object>(0, BITS, EMPTY_ARRAY, EMPTY_ARRAY);
+
+        final int size;
+        final int shift;
+        final Object[] root;
+        final Object[] tail;
+
+        Trie(int size, int shift, Object[] root, Object[] tail) {
+            this.size = size;
+            this.shift = shift;
+            this.root = root;
+            this.tail = tail;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <E> Trie<E> empty() {
+            return (Trie<E>)EMPTY;
+        }
+
+        /** Returns the index of the first element held in the tail */
+        final int tailOffset() {
+            return (size < WIDTH) ? 0 : ((size - 1) >>> BITS) << BITS;
+        }
+
+        /** Returns the array holding element i, assumed in range */
+        final Object[] leafFor(int i) {
+            if (i >= tailOffset())
+                return tail;
+            Object[] node = root;
+            for (int level = shift; level > 0; level -= BITS)
+                node = (Object[])node[(i >>> level) & MASK];
+            return node;
+        }
+
+        private void rangeCheck(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index +
+                                                    ", Size: " + size);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            rangeCheck(index);
+            return (E)leafFor(index)[index & MASK];
+        }
+
+        /** Returns a version with element i replaced */
+        final Trie<E> with(int i, Object e) {
+            if (i >= tailOffset()) {
+                Object[] t = tail.clone();
+                t[i & MASK] = e;
+                return new Trie<E>(size, shift, root, t);
+            }
+            return new Trie<E>(size, shift, assoc(shift, root, i, e), tail);
+        }
+
+        private static Object[] assoc(int level, Object[] node,
+                                      int i, Object e) {
+            Object[] r = node.clone();
+            if (level == 0)
+                r[i & MASK] = e;
+            else {
+                int j = (i >>> level) & MASK;
+                r[j] = assoc(level - BITS, (Object[])node[j], i, e);
+            }
+            return r;
+        }
+
+        /** Returns a version with e appended */
+        final Trie<E> plus(Object e) {
+            int n = size, ts = n - tailOffset();
+            if (ts < WIDTH) {
+                Object[] t = Arrays.copyOf(tail, ts + 1);
+                t[ts] = e;
+                return new Trie<E>(n + 1, shift, root, t);
+            }
+            // tail is full; push it into the tree
+            Object[] r;
+            int s = shift;
+            if ((n >>> BITS) > (1 << s)) {      // root overflow
+                r = new Object[] { root, newPath(s, tail) };
+                s += BITS;
+            }
+            else
+                r = pushTail(n, s, root, tail);
+            return new Trie<E>(n + 1, s, r, new Object[] { e });
+        }
+
+        private static Object[] newPath(int level, Object[] node) {
+            return (level == 0) ? node :
+                new Object[] { newPath(level - BITS, node) };
+        }
+
+        private static Object[] pushTail(int n, int level, Object[] parent,
+                                         Object[] tail) {
+            int j = ((n - 1) >>> level) & MASK;
+            Object[] r = Arrays.copyOf(parent, Math.max(parent.length, j + 1));
+            if (level == BITS)
+                r[j] = tail;
+            else if (j < parent.length)
+                r[j] = pushTail(n, level - BITS, (Object[])parent[j], tail);
+            else
+                r[j] = newPath(level - BITS, tail);
+            return r;
+        }
+
+        /** Returns a version without the last element; requires size > 0 */
+        final Trie<E> minusLast() {
+            int n = size;
+            if (n == 1)
+                return empty();
+            int ts = n - tailOffset();
+            if (ts > 1)
+                return new Trie<E>(n - 1, shift, root,
+                                   Arrays.copyOf(tail, ts - 1));
+            Object[] t = leafFor(n - 2);
+            Object[] r = popTail(n, shift, root);
+            int s = shift;
+            if (r == null)
+                r = EMPTY_ARRAY;
+            else if (s > BITS && r.length == 1) {
+                r = (Object[])r[0];
+                s -= BITS;
+            }
+            return new Trie<E>(n - 1, s, r, t);
+        }
+
+        private static Object[] popTail(int n, int level, Object[] node) {
+            int j = ((n - 2) >>> level) & MASK;
+            if (level > BITS) {
+                Object[] c = popTail(n, level - BITS, (Object[])node[j]);
+                if (c == null && j == 0)
+                    return null;
+                Object[] r = Arrays.copyOf(node, (c == null) ? j : j + 1);
+                if (c != null)
+                    r[j] = c;
+                return r;
+            }
+            return (j == 0) ? null : Arrays.copyOf(node, j);
+        }
+
+        /**
+         * Returns the number of leading elements, a multiple of WIDTH
+         * not exceeding i, whose arrays can be shared by a version
+         * changing the elements from index i on.
+         */
+        final int sharedPrefix(int i) {
+            return Math.min((i >>> BITS) << BITS, tailOffset());
+        }
+
+        /** Copies elements [from, to) into a, starting at a[off] */
+        final void copyTo(int from, int to, Object[] a, int off) {
+            while (from < to) {
+                Object[] leaf = leafFor(from);
+                int i = from & MASK;
+                int n = Math.min(to - from, leaf.length - i);
+                System.arraycopy(leaf, i, a, off, n);
+                from += n;
+                off += n;
+            }
+        }
+
+        /**
+         * Returns a version holding the first keep elements of t (or
+         * none if t is null), where keep is a multiple of WIDTH not
+         * exceeding t.tailOffset(), followed by a[0, n).  The arrays
+         * holding the kept elements are shared with t.
+         */
+        static <E> Trie<E> build(Trie<?> t, int keep, Object[] a, int n) {
+            int size = keep + n;
+            if (size == 0)
+                return empty();
+            if (n == 0) {               // last kept array becomes the tail
+                keep -= WIDTH;
+                a = t.leafFor(keep);
+                n = WIDTH;
+            }
+            int tailOff = (size < WIDTH) ? 0 : ((size - 1) >>> BITS) << BITS;
+            Object[] level = new Object[tailOff >>> BITS];
+            int j = 0;
+            for (; (j << BITS) < keep; ++j)
+                level[j] = t.leafFor(j << BITS);
+            for (; j < level.length; ++j) {
+                int from = (j << BITS) - keep;
+                level[j] = Arrays.copyOfRange(a, from, from + WIDTH);
+            }
+            int s = BITS;
+            while (level.length > WIDTH) {
+                int m = (level.length + MASK) >>> BITS;
+                Object[] up = new Object[m];
+                for (int k = 0; k < m; ++k)
+                    up[k] = Arrays.copyOfRange
+                        (level, k << BITS,
+                         Math.min((k + 1) << BITS, level.length));
+                level = up;
+                s += BITS;
+            }
+            Object[] tail = Arrays.copyOfRange(a, tailOff - keep, n);
+            return new Trie<E>(size, s, level, tail);
+        }
+
+        /** Returns a version with e inserted at index i */
+        final Trie<E> insert(int i, Object e) {
+            if (i == size)
+                return plus(e);
+            int keep = sharedPrefix(i), n = size - keep;
+            Object[] a = new Object[n + 1];
+            copyTo(keep, i, a, 0);
+            a[i - keep] = e;
+            copyTo(i, size, a, i - keep + 1);
+            return build(this, keep, a, n + 1);
+        }
+
+        /** Returns a version without element i */
+        final Trie<E> delete(int i) {
+            if (i == size - 1)
+                return minusLast();
+            int keep = sharedPrefix(i), n = size - keep;
+            Object[] a = new Object[n - 1];
+            copyTo(keep, i, a, 0);
+            copyTo(i + 1, size, a, i - keep);
+            return build(this, keep, a, n - 1);
+        }
+
+        /** Returns a version without elements [from, to) */
+        final Trie<E> delete(int from, int to) {
+            if (from == to)
+                return this;
+            int keep = sharedPrefix(from), n = size - keep - (to - from);
+            Object[] a = new Object[n];
+            copyTo(keep, from, a, 0);
+            copyTo(to, size, a, from - keep);
+            return build(this, keep, a, n);
+        }
+
+        /** Returns a version with elements a[0, n) appended */
+        final Trie<E> plusAll(Object[] b, int m) {
+            int keep = tailOffset(), n = size - keep;
+            Object[] a = new Object[n + m];
+            copyTo(keep, size, a, 0);
+            System.arraycopy(b, 0, a, n, m);
+            return build(this, keep, a, n + m);
+        }
+
+        /** Returns index of o in [from, to), or -1 */
+        final int indexOf(Object o, int from, int to) {
+            while (from < to) {
+                Object[] leaf = leafFor(from);
+                int base = from & ~MASK;
+                int end = Math.min(to - base, leaf.length);
+                for (int i = from - base; i < end; ++i) {
+                    if (Objects.equals(o, leaf[i]))
+                        return base + i;
+                }
+                from = base + end;
+            }
+            return -1;
+        }
+
+        /** Returns index of last o in [from, to), or -1 */
+        final int lastIndexOf(Object o, int from, int to) {
+            while (to > from) {
+                Object[] leaf = leafFor(to - 1);
+                int base = (to - 1) & ~MASK;
+                int start = Math.max(from - base, 0);
+                for (int i = to - 1 - base; i >= start; --i) {
+                    if (Objects.equals(o, leaf[i]))
+                        return base + i;
+                }
+                to = base;
+            }
+            return -1;
+        }
+
+        public int indexOf(Object o) {
+            return indexOf(o, 0, size);
+        }
+
+        public int lastIndexOf(Object o) {
+            return lastIndexOf(o, 0, size);
+        }
+
+        public boolean contains(Object o) {
+            return indexOf(o, 0, size) >= 0;
+        }
+
+        public Object[] toArray() {
+            Object[] a = new Object[size];
+            copyTo(0, size, a, 0);
+            return a;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T[] toArray(T[] a) {
+            int n = size;
+            T[] r = (a.length >= n) ? a :
+                (T[])java.lang.reflect.Array.newInstance
+                (a.getClass().getComponentType(), n);
+            copyTo(0, n, r, 0);
+            if (r.length > n)
+                r[n] = null;
+            return r;
+        }
+
+        public Iterator<E> iterator() {
+            return new Itr<E>(this, 0, size);
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEach(Consumer<? super E> action) {
+            if (action == null) throw new NullPointerException();
+            for (int i = 0, n = size; i < n; ) {
+                Object[] leaf = leafFor(i);
+                int end = Math.min(leaf.length, n - i);
+                for (int j = 0; j < end; ++j)
+                    action.accept((E)leaf[j]);
+                i += end;
+            }
+        }
+
+        public Spliterator<E> spliterator() {
+            return Spliterators.spliterator
+                (this, Spliterator.IMMUTABLE | Spliterator.ORDERED);
+        }
+    }
+
+    /**
+     * Iterator over elements [index, fence) of an immutable version,
+     * reading an array of elements at a time.
+     */
+    static final class Itr<E> implements Iterator<E> {
+        final Trie<E> trie;
+        final int fence;
+        int index;
+        Object[] leaf;
+
+        Itr(Trie<E> trie, int index, int fence) {
+            this.trie = trie;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        public boolean hasNext() {
+            return index < fence;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            int i = index;
+            if (i >= fence)
+                throw new NoSuchElementException();
+            if (leaf == null || (i & MASK) == 0)
+                leaf = trie.leafFor(i);
+            index = i + 1;
+            return (E)leaf[i & MASK];
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super E> action) {
+            Objects.requireNonNull(action);
+            for (int i = index, n = fence; i < n; ) {
+                Object[] a = trie.leafFor(i);
+                int end = Math.min(a.length, n - (i & ~MASK));
+                for (int j = i & MASK; j < end; ++j)
+                    action.accept((E)a[j]);
+                i = (i & ~MASK) + end;
+            }
+            index = fence;
+        }
+    }
+
+    /**
+     * Returns an immutable list of the elements of this list, as of
+     * the time of invocation.  The snapshot shares its structure with
+     * this list and is obtained in constant time.
+     *
+     * @return an immutable snapshot of this list
+     */
+    public List<E> snapshot() {
+        return trie;
+    }
+
+    /**
+     * Returns the number of elements in this list.
+     *
+     * @return the number of elements in this list
+     */
+    public int size() {
+        return trie.size;
+    }
+
+    /**
+     * Returns {@code true} if this list contains no elements.
+     *
+     * @return {@code true} if this list contains no elements
+     */
+    public boolean isEmpty() {
+        return trie.size == 0;
+    }
+
+    /**
+     * Returns {@code true} if this list contains the specified element.
+     *
+     * @param o element whose presence in this list is to be tested
+     * @return {@code true} if this list contains the specified element
+     */
+    public boolean contains(Object o) {
+        return trie.contains(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int indexOf(Object o) {
+        return trie.indexOf(o);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int lastIndexOf(Object o) {
+        return trie.lastIndexOf(o);
+    }
+
+    /**
+     * Returns a shallow copy of this list.  (The elements themselves
+     * are not copied.)  This takes constant time, as the copy shares
+     * its structure with this list.
+     *
+     * @return a clone of this list
+     */
+    public Object clone() {
+        try {
+            @SuppressWarnings("unchecked")
+            CopyOnWriteTrieList<E> clone =
+                (CopyOnWriteTrieList<E>) super.clone();
+            clone.resetLock();
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list
+     * in proper sequence (from first to last element).
+     *
+     * @return an array containing all the elements in this list
+     */
+    public Object[] toArray() {
+        return trie.toArray();
+    }
+
+    /**
+     * Returns an array containing all of the elements in this list in
+     * proper sequence (from first to last element); the runtime type of
+     * the returned array is that of the specified array, as by
+     * {@link CopyOnWriteArrayList#toArray(Object[])}.
+     *
+     * @param a the array into which the elements of the list are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose.
+     * @return an array containing all the elements in this list
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this list
+     * @throws NullPointerException if the specified array is null
+     */
+    public <T> T[] toArray(T a[]) {
+        return trie.toArray(a);
+    }
+
+    // Positional Access Operations
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E get(int index) {
+        return trie.get(index);
+    }
+
+    /**
+     * Replaces the element at the specified position in this list with the
+     * specified element.
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E set(int index, E element) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            E oldValue = t.get(index);
+            if (oldValue != element)
+                trie = t.with(index, element);
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the specified element to the end of this list.
+     *
+     * @param e element to be appended to this list
+     * @return {@code true} (as specified by {@link Collection#add})
+     */
+    public boolean add(E e) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            trie = trie.plus(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the specified element at the specified position in this
+     * list. Shifts the element currently at that position (if any) and
+     * any subsequent elements to the right (adds one to their indices).
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public void add(int index, E element) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            if (index > t.size || index < 0)
+                throw new IndexOutOfBoundsException("Index: " + index +
+                                                    ", Size: " + t.size);
+            trie = t.insert(index, element);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element at the specified position in this list.
+     * Shifts any subsequent elements to the left (subtracts one from their
+     * indices).  Returns the element that was removed from the list.
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public E remove(int index) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            E oldValue = t.get(index);
+            trie = t.delete(index);
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the first occurrence of the specified element from this list,
+     * if it is present.  If this list does not contain the element, it is
+     * unchanged.
+     *
+     * @param o element to be removed from this list, if present
+     * @return {@code true} if this list contained the specified element
+     */
+    public boolean remove(Object o) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            int index = t.indexOf(o);
+            if (index < 0)
+                return false;
+            trie = t.delete(index);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes from this list all of the elements whose index is between
+     * {@code fromIndex}, inclusive, and {@code toIndex}, exclusive.
+     *
+     * @param fromIndex index of first element to be removed
+     * @param toIndex index after last element to be removed
+     * @throws IndexOutOfBoundsException if fromIndex or toIndex out of range
+     *         ({@code fromIndex < 0 || toIndex > size() || toIndex < fromIndex})
+     */
+    void removeRange(int fromIndex, int toIndex) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            if (fromIndex < 0 || toIndex > t.size || toIndex < fromIndex)
+                throw new IndexOutOfBoundsException();
+            trie = t.delete(fromIndex, toIndex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends the element, if not present.
+     *
+     * @param e element to be added to this list, if absent
+     * @return {@code true} if the element was added
+     */
+    public boolean addIfAbsent(E e) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            if (t.indexOf(e) >= 0)
+                return false;
+            trie = t.plus(e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if this list contains all of the elements of the
+     * specified collection.
+     *
+     * @param c collection to be checked for containment in this list
+     * @return {@code true} if this list contains all of the elements of the
+     *         specified collection
+     * @throws NullPointerException if the specified collection is null
+     * @see #contains(Object)
+     */
+    public boolean containsAll(Collection<?> c) {
+        Trie<E> t = trie;
+        for (Object e : c) {
+            if (!t.contains(e))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes from this list all of its elements that are contained in
+     * the specified collection.
+     *
+     * @param c collection containing elements to be removed from this list
+     * @return {@code true} if this list changed as a result of the call
+     * @throws NullPointerException if the specified collection is null
+     * @see #remove(Object)
+     */
+    public boolean removeAll(Collection<?> c) {
+        if (c == null) throw new NullPointerException();
+        return bulkRemove(new Predicate<Object>() {
+            public boolean test(Object e) { return c.contains(e); }
+        });
+    }
+
+    /**
+     * Retains only the elements in this list that are contained in the
+     * specified collection.
+     *
+     * @param c collection containing elements to be retained in this list
+     * @return {@code true} if this list changed as a result of the call
+     * @throws NullPointerException if the specified collection is null
+     * @see #remove(Object)
+     */
+    public boolean retainAll(Collection<?> c) {
+        if (c == null) throw new NullPointerException();
+        return bulkRemove(new Predicate<Object>() {
+            public boolean test(Object e) { return !c.contains(e); }
+        });
+    }
+
+    public boolean removeIf(Predicate<? super E> filter) {
+        if (filter == null) throw new NullPointerException();
+        return bulkRemove(filter);
+    }
+
+    /**
+     * Removes the elements satisfying the filter, sharing the arrays
+     * holding elements before the first one removed.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean bulkRemove(Predicate<? super E> filter) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            int n = t.size, first = -1;
+            for (int i = 0; i < n; ++i) {
+                if (filter.test(t.get(i))) {
+                    first = i;
+                    break;
+                }
+            }
+            if (first < 0)
+                return false;
+            int keep = t.sharedPrefix(first), m = first - keep;
+            Object[] a = new Object[n - keep];
+            t.copyTo(keep, first, a, 0);
+            for (int i = first + 1; i < n; ++i) {
+                E e = t.get(i);
+                if (!filter.test(e))
+                    a[m++] = e;
+            }
+            trie = Trie.build(t, keep, a, m);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all of the elements from this list.
+     * The list will be empty after this call returns.
+     */
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            trie = Trie.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends all of the elements in the specified collection to the end
+     * of this list, in the order that they are returned by the specified
+     * collection's iterator.
+     *
+     * @param c collection containing elements to be added to this list
+     * @return {@code true} if this list changed as a result of the call
+     * @throws NullPointerException if the specified collection is null
+     * @see #add(Object)
+     */
+    public boolean addAll(Collection<? extends E> c) {
+        Object[] cs = c.toArray();
+        if (cs.length == 0)
+            return false;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            trie = trie.plusAll(cs, cs.length);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts all of the elements in the specified collection into this
+     * list, starting at the specified position.  Shifts the element
+     * currently at that position (if any) and any subsequent elements to
+     * the right (increases their indices).  The new elements will appear
+     * in this list in the order that they are returned by the
+     * specified collection's iterator.
+     *
+     * @param index index at which to insert the first element
+     *        from the specified collection
+     * @param c collection containing elements to be added to this list
+     * @return {@code true} if this list changed as a result of the call
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     * @throws NullPointerException if the specified collection is null
+     * @see #add(int,Object)
+     */
+    public boolean addAll(int index, Collection<? extends E> c) {
+        Object[] cs = c.toArray();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            int n = t.size;
+            if (index > n || index < 0)
+                throw new IndexOutOfBoundsException("Index: " + index +
+                                                    ", Size: " + n);
+            if (cs.length == 0)
+                return false;
+            int keep = t.sharedPrefix(index);
+            Object[] a = new Object[n - keep + cs.length];
+            t.copyTo(keep, index, a, 0);
+            System.arraycopy(cs, 0, a, index - keep, cs.length);
+            t.copyTo(index, n, a, index - keep + cs.length);
+            trie = Trie.build(t, keep, a, a.length);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void forEach(Consumer<? super E> action) {
+        trie.forEach(action);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void replaceAll(UnaryOperator<E> operator) {
+        if (operator == null) throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = trie.toArray();
+            for (int i = 0; i < a.length; ++i)
+                a[i] = operator.apply((E)a[i]);
+            trie = Trie.build(null, 0, a, a.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void sort(Comparator<? super E> c) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = trie.toArray();
+            Arrays.sort(a, (Comparator<Object>)c);
+            trie = Trie.build(null, 0, a, a.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = trie.toArray();
+            Arrays.sortByIntKey(a, (ToIntFunction<Object>)keyExtractor);
+            trie = Trie.build(null, 0, a, a.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = trie.toArray();
+            Arrays.sortByLongKey(a, (ToLongFunction<Object>)keyExtractor);
+            trie = Trie.build(null, 0, a, a.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Object[] a = trie.toArray();
+            Arrays.sortByDoubleKey(a, (ToDoubleFunction<Object>)keyExtractor);
+            trie = Trie.build(null, 0, a, a.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Saves this list to a stream (that is, serializes it).
+     *
+     * @param s the stream
+     * @throws java.io.IOException if an I/O error occurs
+     * @serialData The number of elements (int), followed by all of
+     *             the elements (each an Object) in the proper order.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+
+        s.defaultWriteObject();
+
+        Trie<E> t = trie;
+        s.writeInt(t.size);
+        for (Iterator<E> it = t.iterator(); it.hasNext(); )
+            s.writeObject(it.next());
+    }
+
+    /**
+     * Reconstitutes this list from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+
+        s.defaultReadObject();
+
+        // bind to new lock
+        resetLock();
+
+        int len = s.readInt();
+        Object[] elements = new Object[len];
+        for (int i = 0; i < len; i++)
+            elements[i] = s.readObject();
+        trie = Trie.build(null, 0, elements, len);
+    }
+
+    /**
+     * Returns a string representation of this list, as by
+     * {@link CopyOnWriteArrayList#toString}.
+     *
+     * @return a string representation of this list
+     */
+    public String toString() {
+        return trie.toString();
+    }
+
+    /**
+     * Compares the specified object with this list for equality, as
+     * specified by {@link List#equals}.
+     *
+     * @param o the object to be compared for equality with this list
+     * @return {@code true} if the specified object is equal to this list
+     */
+    public boolean equals(Object o) {
+        if (o == this)
+            return true;
+        if (o instanceof CopyOnWriteTrieList)
+            o = ((CopyOnWriteTrieList<?>)o).trie;
+        return trie.equals(o);
+    }
+
+    /**
+     * Returns the hash code value for this list, as specified by
+     * {@link List#hashCode}.
+     *
+     * @return the hash code value for this list
+     */
+    public int hashCode() {
+        return trie.hashCode();
+    }
+
+    /**
+     * Returns an iterator over the elements in this list in proper sequence.
+     *
+     * <p>The returned iterator provides a snapshot of the state of the list
+     * when the iterator was constructed. No synchronization is needed while
+     * traversing the iterator. The iterator does <em>NOT</em> support the
+     * {@code remove} method.
+     *
+     * @return an iterator over the elements in this list in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return trie.iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned iterator provides a snapshot of the state of the list
+     * when the iterator was constructed. No synchronization is needed while
+     * traversing the iterator. The iterator does <em>NOT</em> support the
+     * {@code remove}, {@code set} or {@code add} methods.
+     */
+    public ListIterator<E> listIterator() {
+        return trie.listIterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The returned iterator provides a snapshot of the state of the list
+     * when the iterator was constructed. No synchronization is needed while
+     * traversing the iterator. The iterator does <em>NOT</em> support the
+     * {@code remove}, {@code set} or {@code add} methods.
+     *
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public ListIterator<E> listIterator(int index) {
+        return trie.listIterator(index);
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the elements in this list.
+     *
+     * <p>The {@code Spliterator} reports {@link Spliterator#IMMUTABLE},
+     * {@link Spliterator#ORDERED}, {@link Spliterator#SIZED}, and
+     * {@link Spliterator#SUBSIZED}.
+     *
+     * <p>The spliterator provides a snapshot of the state of the list
+     * when the spliterator was constructed. No synchronization is needed while
+     * operating on the spliterator.
+     *
+     * @return a {@code Spliterator} over the elements in this list
+     */
+    public Spliterator<E> spliterator() {
+        return trie.spliterator();
+    }
+
+    /**
+     * Returns a view of the portion of this list between
+     * {@code fromIndex}, inclusive, and {@code toIndex}, exclusive.
+     * As with {@link CopyOnWriteArrayList#subList}, the semantics of
+     * the returned list become undefined if the backing list is
+     * modified other than through the returned list, and operations
+     * on it then throw {@code ConcurrentModificationException}.
+     *
+     * @param fromIndex low endpoint (inclusive) of the subList
+     * @param toIndex high endpoint (exclusive) of the subList
+     * @return a view of the specified range within this list
+     * @throws IndexOutOfBoundsException {@inheritDoc}
+     */
+    public List<E> subList(int fromIndex, int toIndex) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Trie<E> t = trie;
+            if (fromIndex < 0 || toIndex > t.size || fromIndex > toIndex)
+                throw new IndexOutOfBoundsException();
+            return new SubList<E>(this, t, fromIndex, toIndex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sublist for CopyOnWriteTrieList, as for CopyOnWriteArrayList.
+     * Each operation checks, holding the lock of the backing list,
+     * that the backing list is at the version this sublist last saw
+     * or made.
+     */
+    private static class SubList<E>
+        extends AbstractList<E>
+        implements RandomAccess
+    {
+        private final CopyOnWriteTrieList<E> l;
+        private final int offset;
+        private int size;
+        private Trie<E> expected;
+
+        SubList(CopyOnWriteTrieList<E> list, Trie<E> t,
+                int fromIndex, int toIndex) {
+            l = list;
+            expected = t;
+            offset = fromIndex;
+            size = toIndex - fromIndex;
+        }
+
+        // only call this holding l's lock
+        private void checkForComodification() {
+            if (l.trie != expected)
+                throw new ConcurrentModificationException();
+        }
+
+        // only call this holding l's lock
+        private void rangeCheck(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index +
+                                                    ",Size: " + size);
+        }
+
+        public E set(int index, E element) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                rangeCheck(index);
+                checkForComodification();
+                E x = l.set(index + offset, element);
+                expected = l.trie;
+                return x;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public E get(int index) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                rangeCheck(index);
+                checkForComodification();
+                return l.get(index + offset);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int size() {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void add(int index, E element) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                if (index < 0 || index > size)
+                    throw new IndexOutOfBoundsException();
+                l.add(index + offset, element);
+                expected = l.trie;
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void clear() {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                l.removeRange(offset, offset + size);
+                expected = l.trie;
+                size = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public E remove(int index) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                rangeCheck(index);
+                checkForComodification();
+                E result = l.remove(index + offset);
+                expected = l.trie;
+                size--;
+                return result;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public void sort(Comparator<? super E> c) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                Object[] a = expected.toArray();
+                Arrays.sort(a, offset, offset + size, (Comparator<Object>)c);
+                l.trie = expected = Trie.build(null, 0, a, a.length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public void sortByIntKey(ToIntFunction<? super E> keyExtractor) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                Object[] a = expected.toArray();
+                Arrays.sortByIntKey(a, offset, offset + size,
+                                    (ToIntFunction<Object>)keyExtractor);
+                l.trie = expected = Trie.build(null, 0, a, a.length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public void sortByLongKey(ToLongFunction<? super E> keyExtractor) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                Object[] a = expected.toArray();
+                Arrays.sortByLongKey(a, offset, offset + size,
+                                     (ToLongFunction<Object>)keyExtractor);
+                l.trie = expected = Trie.build(null, 0, a, a.length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public void sortByDoubleKey(ToDoubleFunction<? super E> keyExtractor) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                Object[] a = expected.toArray();
+                Arrays.sortByDoubleKey(a, offset, offset + size,
+                                       (ToDoubleFunction<Object>)keyExtractor);
+                l.trie = expected = Trie.build(null, 0, a, a.length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Iterator<E> iterator() {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                return new Itr<E>(expected, offset, offset + size);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public List<E> subList(int fromIndex, int toIndex) {
+            final ReentrantLock lock = l.lock;
+            lock.lock();
+            try {
+                checkForComodification();
+                if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+                    throw new IndexOutOfBoundsException();
+                return new SubList<E>(l, expected, fromIndex + offset,
+                                      toIndex + offset);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Support for resetting lock while deserializing
+    private void resetLock() {
+        UNSAFE.putObjectVolatile(this, lockOffset, new ReentrantLock());
+    }
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long lockOffset;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = CopyOnWriteTrieList.class;
+            lockOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("lock"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
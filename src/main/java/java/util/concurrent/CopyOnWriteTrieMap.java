@@ -0,0 +1,1118 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe {@link ConcurrentMap} in which all mutative operations
+ * produce a new, immutable version of the map, sharing structure with
+ * the previous one, in the manner of {@link CopyOnWriteTrieList}.
+ *
+ * <p>Mappings are held in a hash array mapped trie: a tree of nodes
+ * each selecting among up to 32 children by five bits of the key's
+ * hash, and holding only the children present, as indicated by a
+ * bitmap.  An update copies only the nodes on the path from the root
+ * to the affected mapping, so {@code put} and {@code remove} take
+ * <i>O(log<sub>32</sub>n)</i> time, as do lookups, which never block.
+ * Keys with equal hashes are held together in collision nodes.
+ *
+ * <p>Iterators of the views of this map, and their spliterators, use
+ * the version of the map current when they were created.  They never
+ * throw {@code ConcurrentModificationException}, do not reflect later
+ * changes, and do not support removal.  The views' own removal
+ * methods are supported and act on the current version.  The version
+ * itself is available, at no cost, from {@link #snapshot}, which
+ * returns an immutable map that may be retained, shared and read
+ * without synchronization.
+ *
+ * <p>Mutative operations are serialized by a lock, so this class is
+ * suited to maps that are read far more often than they are updated,
+ * such as routing tables and registries, where readers need a
+ * consistent view of the whole map.  Like {@link ConcurrentHashMap},
+ * this class does <em>not</em> allow {@code null} to be used as a key
+ * or value.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code CopyOnWriteTrieMap}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that object from
+ * the {@code CopyOnWriteTrieMap} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see CopyOnWriteTrieList
+ * @since 1.8
+ */
+public class CopyOnWriteTrieMap<K,V> extends AbstractMap<K,V>
+    implements ConcurrentMap<K,V>, Cloneable, java.io.Serializable {
+    private static final long serialVersionUID = 2187331066473816437L;
+
+    /*
+     * Nodes are immutable.  A BitmapNode holds, for each bit set in
+     * its bitmap, in increasing bit order, a pair of slots in its
+     * array: a key and value for a mapping, or null and a child node.
+     * Children of a node at shift s select by hash bits (s + 5) and
+     * up; hashes are used in full, as spread by spread().  Keys whose
+     * hashes are equal in all bits are held in a CollisionNode,
+     * holding key/value pairs in an array.  A node made to hold a
+     * single mapping by a removal is replaced in its parent by that
+     * mapping, so that the trie stays as shallow as its keys allow.
+     *
+     * Update methods return the node itself when nothing changed,
+     * letting callers avoid copying, and report other outcomes in a
+     * Result.
+     */
+
+    static final int BITS = 5;
+    static final int MASK = (1 << BITS) - 1;
+
+    static final Object[] EMPTY_ARRAY = new Object[0];
+
+    /** The lock protecting all mutators */
+    final transient ReentrantLock lock = new ReentrantLock();
+
+    /** The current version */
+    private transient volatile Snapshot<K,V> snapshot;
+
+    /**
+     * Spreads higher bits of hash codes lower, as in HashMap.
+     */
+    static final int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Outcome of an update, other than the new node.
+     */
+    static final class Result {
+        Object oldValue;        // previous value, or null
+        int delta;              // change in size
+    }
+
+    /**
+     * Base of trie nodes.
+     */
+    abstract static class Node {
+        /** Returns value for key with given hash, or null */
+        abstract Object find(int shift, int hash, Object key);
+
+        /** Returns a node with key mapped to value */
+        abstract Node put(int shift, int hash, Object key, Object value,
+                          boolean onlyIfAbsent, Result r);
+
+        /**
+         * Returns a node without the mapping for key, if mapped (to
+         * value, if non-null), or null if that leaves the node empty.
+         */
+        abstract Node remove(int shift, int hash, Object key, Object value,
+                             Result r);
+
+        /** Returns the array of key/node pairs, for traversal */
+        abstract Object[] array();
+
+        /** Returns true if the node holds a single key/value pair */
+        abstract boolean isSingleton();
+    }
+
+    static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, EMPTY_ARRAY);
+
+        final int bitmap;
+        final Object[] array;
+
+        BitmapNode(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        Object[] array() {
+            return array;
+        }
+
+        boolean isSingleton() {
+            return array.length == 2 && array[0] != null;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1)) << 1;
+        }
+
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return null;
+            int i = index(bit);
+            Object k = array[i], v = array[i + 1];
+            if (k == null)
+                return ((Node)v).find(shift + BITS, hash, key);
+            return (k == key || key.equals(k)) ? v : null;
+        }
+
+        Node put(int shift, int hash, Object key, Object value,
+                 boolean onlyIfAbsent, Result r) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                int n = array.length;
+                Object[] a = new Object[n + 2];
+                System.arraycopy(array, 0, a, 0, i);
+                a[i] = key;
+                a[i + 1] = value;
+                System.arraycopy(array, i, a, i + 2, n - i);
+                r.delta = 1;
+                return new BitmapNode(bitmap | bit, a);
+            }
+            Object k = array[i], v = array[i + 1];
+            Object x;
+            if (k == null) {
+                Node c = (Node)v;
+                if ((x = c.put(shift + BITS, hash, key, value,
+                               onlyIfAbsent, r)) == c)
+                    return this;
+            }
+            else if (k == key || key.equals(k)) {
+                r.oldValue = v;
+                if (onlyIfAbsent || v == value)
+                    return this;
+                Object[] a = array.clone();
+                a[i + 1] = value;
+                return new BitmapNode(bitmap, a);
+            }
+            else {
+                r.delta = 1;
+                x = pair(shift + BITS, k, v, hash, key, value);
+            }
+            Object[] a = array.clone();
+            a[i] = null;
+            a[i + 1] = x;
+            return new BitmapNode(bitmap, a);
+        }
+
+        /** Returns a node holding two mappings with distinct keys */
+        private static Node pair(int shift, Object k1, Object v1,
+                                 int h2, Object k2, Object v2) {
+            int h1 = spread(k1.hashCode());
+            if (h1 == h2)
+                return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+            Result r = new Result();
+            return EMPTY.put(shift, h1, k1, v1, false, r)
+                .put(shift, h2, k2, v2, false, r);
+        }
+
+        Node remove(int shift, int hash, Object key, Object value,
+                    Result r) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0)
+                return this;
+            int i = index(bit);
+            Object k = array[i], v = array[i + 1];
+            if (k == null) {
+                Node c = (Node)v, x;
+                if ((x = c.remove(shift + BITS, hash, key, value, r)) == c)
+                    return this;
+                if (x != null) {
+                    Object[] a = array.clone();
+                    if (x.isSingleton()) {  // pull up the remaining mapping
+                        Object[] xa = x.array();
+                        a[i] = xa[0];
+                        a[i + 1] = xa[1];
+                    }
+                    else
+                        a[i + 1] = x;
+                    return new BitmapNode(bitmap, a);
+                }
+            }
+            else if ((k == key || key.equals(k)) &&
+                     (value == null || value.equals(v))) {
+                r.oldValue = v;
+                r.delta = -1;
+            }
+            else
+                return this;
+            if (bitmap == bit)
+                return null;
+            int n = array.length;
+            Object[] a = new Object[n - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, n - i - 2);
+            return new BitmapNode(bitmap ^ bit, a);
+        }
+    }
+
+    static final class CollisionNode extends Node {
+        final int hash;
+        final Object[] array;
+
+        CollisionNode(int hash, Object[] array) {
+            this.hash = hash;
+            this.array = array;
+        }
+
+        Object[] array() {
+            return array;
+        }
+
+        boolean isSingleton() {
+            return array.length == 2;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                Object k = array[i];
+                if (k == key || key.equals(k))
+                    return i;
+            }
+            return -1;
+        }
+
+        Object find(int shift, int hash, Object key) {
+            int i;
+            return (hash == this.hash && (i = indexOf(key)) >= 0) ?
+                array[i + 1] : null;
+        }
+
+        Node put(int shift, int hash, Object key, Object value,
+                 boolean onlyIfAbsent, Result r) {
+            if (hash != this.hash) {    // nest in a bitmap node
+                int bit = 1 << ((this.hash >>> shift) & MASK);
+                return new BitmapNode(bit, new Object[] { null, this })
+                    .put(shift, hash, key, value, onlyIfAbsent, r);
+            }
+            int i = indexOf(key);
+            if (i >= 0) {
+                Object v = array[i + 1];
+                r.oldValue = v;
+                if (onlyIfAbsent || v == value)
+                    return this;
+                Object[] a = array.clone();
+                a[i + 1] = value;
+                return new CollisionNode(hash, a);
+            }
+            int n = array.length;
+            Object[] a = Arrays.copyOf(array, n + 2);
+            a[n] = key;
+            a[n + 1] = value;
+            r.delta = 1;
+            return new CollisionNode(hash, a);
+        }
+
+        Node remove(int shift, int hash, Object key, Object value,
+                    Result r) {
+            int i;
+            if (hash != this.hash || (i = indexOf(key)) < 0)
+                return this;
+            Object v = array[i + 1];
+            if (value != null && !value.equals(v))
+                return this;
+            r.oldValue = v;
+            r.delta = -1;
+            int n = array.length;
+            if (n == 2)
+                return null;
+            Object[] a = new Object[n - 2];
+            System.arraycopy(array, 0, a, 0, i);
+            System.arraycopy(array, i + 2, a, i, n - i - 2);
+            return new CollisionNode(hash, a);
+        }
+    }
+
+    /**
+     * An immutable version of the map.
+     */
+    static final class Snapshot<K,V> extends AbstractMap<K,V>
+        implements java.io.Serializable {
+        private static final long serialVersionUID = -4096338815305433271L;
+
+        static final Snapshot<Object,Object> EMPTY =
+            new Snapshot<Object,Object>(BitmapNode.EMPTY, 0);
+
+        final transient Node root;
+        final transient int size;
+        private transient Set<Map.Entry<K,V>> entrySet;
+
+        Snapshot(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        static <K,V> Snapshot<K,V> empty() {
+            return (Snapshot<K,V>)EMPTY;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            return (key == null) ? null :
+                (V)root.find(0, spread(key.hashCode()), key);
+        }
+
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEach(BiConsumer<? super K, ? super V> action) {
+            if (action == null) throw new NullPointerException();
+            forEach(root.array(), action);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void forEach(Object[] a,
+                             BiConsumer<? super K, ? super V> action) {
+            for (int i = 0; i < a.length; i += 2) {
+                Object k = a[i];
+                if (k == null)
+                    forEach(((Node)a[i + 1]).array(), action);
+                else
+                    action.accept((K)k, (V)a[i + 1]);
+            }
+        }
+
+        /**
+         * Saves this map to a stream (that is, serializes it).
+         *
+         * @param s the stream
+         * @throws java.io.IOException if an I/O error occurs
+         * @serialData The number of mappings (int), followed by the key
+         * (Object) and value (Object) for each key-value mapping.
+         */
+        private void writeObject(java.io.ObjectOutputStream s)
+            throws java.io.IOException {
+            s.defaultWriteObject();
+            writeMappings(s, this);
+        }
+
+        /**
+         * Reconstitutes this map from a stream (that is, deserializes it).
+         * @param s the stream
+         * @throws ClassNotFoundException if the class of a serialized object
+         *         could not be found
+         * @throws java.io.IOException if an I/O error occurs
+         */
+        private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+            s.defaultReadObject();
+            Snapshot<K,V> m = readMappings(s);
+            UNSAFE.putObjectVolatile(this, rootOffset, m.root);
+            UNSAFE.putIntVolatile(this, sizeOffset, m.size);
+        }
+
+        public Set<Map.Entry<K,V>> entrySet() {
+            Set<Map.Entry<K,V>> es;
+            return (es = entrySet) != null ? es :
+                (entrySet = new AbstractSet<Map.Entry<K,V>>() {
+                    public Iterator<Map.Entry<K,V>> iterator() {
+                        return new EntryIterator<K,V>(root);
+                    }
+                    public int size() {
+                        return size;
+                    }
+                });
+        }
+    }
+
+    /**
+     * Depth-first traversal of an immutable trie.  The stack holds
+     * the arrays of the nodes on the path to the next mapping, and
+     * positions in them.
+     */
+    abstract static class BaseIterator<K,V,T> implements Iterator<T> {
+        // depth of trie is at most 7 bitmap levels plus a collision node
+        final Object[][] stack = new Object[8][];
+        final int[] pos = new int[8];
+        int depth;
+        Object nextKey, nextValue;
+
+        BaseIterator(Node root) {
+            stack[0] = root.array();
+            advance();
+        }
+
+        private void advance() {
+            for (int d = depth; d >= 0; ) {
+                Object[] a = stack[d];
+                int i = pos[d];
+                if (i >= a.length) {
+                    --d;
+                    continue;
+                }
+                pos[d] = i + 2;
+                Object k = a[i];
+                if (k == null) {
+                    stack[++d] = ((Node)a[i + 1]).array();
+                    pos[d] = 0;
+                }
+                else {
+                    depth = d;
+                    nextKey = k;
+                    nextValue = a[i + 1];
+                    return;
+                }
+            }
+            nextKey = null;
+            nextValue = null;
+        }
+
+        public final boolean hasNext() {
+            return nextKey != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public final T next() {
+            Object k = nextKey, v = nextValue;
+            if (k == null)
+                throw new NoSuchElementException();
+            advance();
+            return make((K)k, (V)v);
+        }
+
+        abstract T make(K k, V v);
+    }
+
+    static final class EntryIterator<K,V>
+        extends BaseIterator<K,V,Map.Entry<K,V>> {
+        EntryIterator(Node root) { super(root); }
+        Map.Entry<K,V> make(K k, V v) {
+            return new AbstractMap.SimpleImmutableEntry<K,V>(k, v);
+        }
+    }
+
+    static final class KeyIterator<K,V> extends BaseIterator<K,V,K> {
+        KeyIterator(Node root) { super(root); }
+        K make(K k, V v) { return k; }
+    }
+
+    static final class ValueIterator<K,V> extends BaseIterator<K,V,V> {
+        ValueIterator(Node root) { super(root); }
+        V make(K k, V v) { return v; }
+    }
+
+    /**
+     * Creates a new, empty map.
+     */
+    public CopyOnWriteTrieMap() {
+        snapshot = Snapshot.empty();
+    }
+
+    /**
+     * Creates a new map with the same mappings as the given map.
+     *
+     * @param m the map
+     * @throws NullPointerException if the specified map is null, or
+     *         contains a null key or value
+     */
+    @SuppressWarnings("unchecked")
+    public CopyOnWriteTrieMap(Map<? extends K, ? extends V> m) {
+        if (m instanceof CopyOnWriteTrieMap)
+            snapshot = ((CopyOnWriteTrieMap<K,V>)m).snapshot;
+        else {
+            snapshot = Snapshot.empty();
+            putAll(m);
+        }
+    }
+
+    /**
+     * Returns an immutable map of the mappings of this map, as of the
+     * time of invocation.  The snapshot shares its structure with this
+     * map and is obtained in constant time.
+     *
+     * @return an immutable snapshot of this map
+     */
+    public Map<K,V> snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Applies an update to the current version, holding the lock.
+     *
+     * @return the previous value, as reported by the update
+     */
+    @SuppressWarnings("unchecked")
+    private V update(Object key, Object value, Object expect,
+                     boolean remove, boolean onlyIfAbsent) {
+        if (key == null || (!remove && value == null))
+            throw new NullPointerException();
+        int h = spread(key.hashCode());
+        Result r = new Result();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Snapshot<K,V> s = snapshot;
+            Node root = s.root, x;
+            if (remove)
+                x = root.remove(0, h, key, expect, r);
+            else if (expect != null) {
+                Object v = root.find(0, h, key);
+                if (v == null || !expect.equals(v))
+                    return null;
+                x = root.put(0, h, key, value, false, r);
+            }
+            else
+                x = root.put(0, h, key, value, onlyIfAbsent, r);
+            if (x != root) {
+                if (x == null)
+                    x = BitmapNode.EMPTY;
+                snapshot = new Snapshot<K,V>(x, s.size + r.delta);
+            }
+            return (V)r.oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    public boolean isEmpty() {
+        return snapshot.size == 0;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        return (V)snapshot.root.find(0, spread(key.hashCode()), key);
+    }
+
+    /**
+     * Tests if the specified object is a key in this map.
+     *
+     * @param  key possible key
+     * @return {@code true} if and only if the specified object
+     *         is a key in this map
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value. Note: This method requires a full traversal.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the
+     *         specified value
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        for (Iterator<V> it = new ValueIterator<K,V>(snapshot.root);
+             it.hasNext(); ) {
+            if (value.equals(it.next()))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Maps the specified key to the specified value in this map.
+     * Neither the key nor the value can be null.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V put(K key, V value) {
+        return update(key, value, null, false, false);
+    }
+
+    /**
+     * Copies all of the mappings from the specified map to this one,
+     * publishing a single new version of this map.
+     *
+     * @param m mappings to be stored in this map
+     * @throws NullPointerException if the specified map is null, or
+     *         contains a null key or value
+     */
+    public void putAll(Map<? extends K, ? extends V> m) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Snapshot<K,V> s = snapshot;
+            Node root = s.root;
+            int size = s.size;
+            Result r = new Result();
+            for (Map.Entry<? extends K, ? extends V> e : m.entrySet()) {
+                Object k = e.getKey(), v = e.getValue();
+                if (k == null || v == null)
+                    throw new NullPointerException();
+                r.delta = 0;
+                root = root.put(0, spread(k.hashCode()), k, v, false, r);
+                size += r.delta;
+            }
+            if (root != s.root)
+                snapshot = new Snapshot<K,V>(root, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     * This method does nothing if the key is not in the map.
+     *
+     * @param  key the key that needs to be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        return update(key, null, null, true, false);
+    }
+
+    /**
+     * Removes all of the mappings from this map.
+     */
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            snapshot = Snapshot.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return update(key, value, null, false, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        return value != null && update(key, null, value, true, false) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (oldValue == null)
+            throw new NullPointerException();
+        return update(key, newValue, oldValue, false, false) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (get(key) == null) ? null : put(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        snapshot.forEach(action);
+    }
+
+    /**
+     * Removes the mappings whose entries satisfy the filter, holding
+     * the lock, and publishes a single new version of this map.  Used
+     * by the bulk removal methods of the views.
+     *
+     * @return true if any mapping was removed
+     */
+    boolean removeEntryIf(Predicate<? super Map.Entry<K,V>> filter) {
+        if (filter == null)
+            throw new NullPointerException();
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            Snapshot<K,V> s = snapshot;
+            Node root = s.root;
+            int size = s.size;
+            Result r = new Result();
+            for (Iterator<Map.Entry<K,V>> it = new EntryIterator<K,V>(s.root);
+                 it.hasNext(); ) {
+                Map.Entry<K,V> e = it.next();
+                if (filter.test(e)) {
+                    Object k = e.getKey();
+                    r.delta = 0;
+                    root = root.remove(0, spread(k.hashCode()), k, null, r);
+                    size += r.delta;
+                    if (root == null)
+                        root = BitmapNode.EMPTY;
+                }
+            }
+            if (root == s.root)
+                return false;
+            snapshot = new Snapshot<K,V>(root, size);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private transient KeySetView<K,V> keySet;
+    private transient ValuesView<K,V> values;
+    private transient EntrySetView<K,V> entrySet;
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map.
+     * Removal from the set removes the corresponding mapping from
+     * this map; the set does not support addition.  Iterators of the
+     * set traverse the map as of their creation, and do not support
+     * removal.
+     *
+     * @return the set view
+     */
+    public Set<K> keySet() {
+        KeySetView<K,V> ks;
+        return (ks = keySet) != null ? ks : (keySet = new KeySetView<K,V>(this));
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this
+     * map.  Removal from the collection removes the corresponding
+     * mappings from this map; the collection does not support
+     * addition.  Iterators of the collection traverse the map as of
+     * their creation, and do not support removal.
+     *
+     * @return the collection view
+     */
+    public Collection<V> values() {
+        ValuesView<K,V> vs;
+        return (vs = values) != null ? vs : (values = new ValuesView<K,V>(this));
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     * Removal from the set removes the corresponding mapping from
+     * this map; the set does not support addition.  Iterators of the
+     * set traverse the map as of their creation, and do not support
+     * removal.  Their entries do not support {@code setValue}.
+     *
+     * @return the set view
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySetView<K,V> es;
+        return (es = entrySet) != null ? es : (entrySet = new EntrySetView<K,V>(this));
+    }
+
+    static final class KeySetView<K,V> extends AbstractSet<K> {
+        final CopyOnWriteTrieMap<K,V> map;
+        KeySetView(CopyOnWriteTrieMap<K,V> map) { this.map = map; }
+        public Iterator<K> iterator() {
+            return new KeyIterator<K,V>(map.snapshot.root);
+        }
+        public int size() { return map.size(); }
+        public boolean contains(Object o) { return map.containsKey(o); }
+        public boolean remove(Object o) { return map.remove(o) != null; }
+        public void clear() { map.clear(); }
+        public boolean removeIf(final Predicate<? super K> filter) {
+            if (filter == null) throw new NullPointerException();
+            return map.removeEntryIf(new Predicate<Map.Entry<K,V>>() {
+                public boolean test(Map.Entry<K,V> e) {
+                    return filter.test(e.getKey());
+                }
+            });
+        }
+        public boolean removeAll(final Collection<?> c) {
+            if (c == null) throw new NullPointerException();
+            return map.removeEntryIf(new Predicate<Map.Entry<K,V>>() {
+                public boolean test(Map.Entry<K,V> e) {
+                    return c.contains(e.getKey());
+                }
+            });
+        }
+        public boolean retainAll(final Collection<?> c) {
+            if (c == null) throw new NullPointerException();
+            return map.removeEntryIf(new Predicate<Map.Entry<K,V>>() {
+                public boolean test(Map.Entry<K,V> e) {
+                    return !c.contains(e.getKey());
+                }
+            });
+        }
+    }
+
+    static final class ValuesView<K,V> extends AbstractCollection<V> {
+        final CopyOnWriteTrieMap<K,V> map;
+        ValuesView(CopyOnWriteTrieMap<K,V> map) { this.map = map; }
+        public Iterator<V> iterator() {
+            return new ValueIterator<K,V>(map.snapshot.root);
+        }
+        public int size() { return map.size(); }
+        public boolean contains(Object o) { return map.containsValue(o); }
+        public void clear() { map.clear(); }
+        public boolean remove(Object o) {
+            if (o == null)
+                return false;
+            final ReentrantLock lock = map.lock;
+            lock.lock();
+            try {
+                for (Iterator<Map.Entry<K,V>> it =
+                         new EntryIterator<K,V>(map.snapshot.root);
+                     it.hasNext(); ) {
+                    Map.Entry<K,V> e = it.next();
+                    if (o.equals(e.getValue())) {
+                        map.remove(e.getKey());
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+        public boolean removeIf(final Predicate<? super V> filter) {
+            if (filter == null) throw new NullPointerException();
+            return map.removeEntryIf(new Predicate<Map.Entry<K,V>>() {
+                public boolean test(Map.Entry<K,V> e) {
+                    return filter.test(e.getValue());
+                }
+            });
+        }
+        public boolean removeAll(final Collection<?> c) {
+            if (c == null) throw new NullPointerException();
+            return map.removeEntryIf(new Predicate<Map.Entry<K,V>>() {
+                public boolean test(Map.Entry<K,V> e) {
+                    return c.contains(e.getValue());
+                }
+            });
+        }
+        public boolean retainAll(final Collection<?> c) {
+            if (c == null) throw new NullPointerException();
+            return map.removeEntryIf(new Predicate<Map.Entry<K,V>>() {
+                public boolean test(Map.Entry<K,V> e) {
+                    return !c.contains(e.getValue());
+                }
+            });
+        }
+    }
+
+    static final class EntrySetView<K,V> extends AbstractSet<Map.Entry<K,V>> {
+        final CopyOnWriteTrieMap<K,V> map;
+        EntrySetView(CopyOnWriteTrieMap<K,V> map) { this.map = map; }
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator<K,V>(map.snapshot.root);
+        }
+        public int size() { return map.size(); }
+        public boolean contains(Object o) {
+            Object k, v, r; Map.Entry<?,?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (r = map.get(k)) != null &&
+                    (v = e.getValue()) != null &&
+                    (v == r || v.equals(r)));
+        }
+        public boolean remove(Object o) {
+            Object k, v; Map.Entry<?,?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    map.remove(k, v));
+        }
+        public void clear() { map.clear(); }
+        public boolean removeIf(Predicate<? super Map.Entry<K,V>> filter) {
+            return map.removeEntryIf(filter);
+        }
+        public boolean removeAll(final Collection<?> c) {
+            if (c == null) throw new NullPointerException();
+            return map.removeEntryIf(new Predicate<Map.Entry<K,V>>() {
+                public boolean test(Map.Entry<K,V> e) {
+                    return c.contains(e);
+                }
+            });
+        }
+        public boolean retainAll(final Collection<?> c) {
+            if (c == null) throw new NullPointerException();
+            return map.removeEntryIf(new Predicate<Map.Entry<K,V>>() {
+                public boolean test(Map.Entry<K,V> e) {
+                    return !c.contains(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns a shallow copy of this map.  (The keys and values
+     * themselves are not cloned.)  This takes constant time, as the
+     * copy shares its structure with this map.
+     *
+     * @return a clone of this map
+     */
+    @SuppressWarnings("unchecked")
+    public Object clone() {
+        try {
+            CopyOnWriteTrieMap<K,V> clone =
+                (CopyOnWriteTrieMap<K,V>) super.clone();
+            clone.keySet = null;
+            clone.values = null;
+            clone.entrySet = null;
+            clone.resetLock();
+            return clone;
+        } catch (CloneNotSupportedException e) {
+            // this shouldn't happen, since we are Cloneable
+            throw new InternalError();
+        }
+    }
+
+    /**
+     * Saves this map to a stream (that is, serializes it).
+     *
+     * @param s the stream
+     * @throws java.io.IOException if an I/O error occurs
+     * @serialData The number of mappings (int), followed by the key
+     * (Object) and value (Object) for each key-value mapping.
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+        s.defaultWriteObject();
+        writeMappings(s, snapshot);
+    }
+
+    /**
+     * Reconstitutes this map from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        resetLock();
+        snapshot = readMappings(s);
+    }
+
+    /**
+     * Writes the number of mappings of the given snapshot, followed by
+     * each key and value.
+     */
+    static void writeMappings(java.io.ObjectOutputStream s,
+                              Snapshot<?,?> snap)
+        throws java.io.IOException {
+        s.writeInt(snap.size);
+        for (Iterator<? extends Map.Entry<?,?>> it =
+                 new EntryIterator<Object,Object>(snap.root);
+             it.hasNext(); ) {
+            Map.Entry<?,?> e = it.next();
+            s.writeObject(e.getKey());
+            s.writeObject(e.getValue());
+        }
+    }
+
+    /**
+     * Reads mappings written by writeMappings into a new snapshot.
+     */
+    static <K,V> Snapshot<K,V> readMappings(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        Node root = BitmapNode.EMPTY;
+        int size = 0;
+        Result r = new Result();
+        for (int n = s.readInt(); n > 0; --n) {
+            Object k = s.readObject(), v = s.readObject();
+            if (k == null || v == null)
+                throw new java.io.InvalidObjectException("null key or value");
+            r.delta = 0;
+            root = root.put(0, spread(k.hashCode()), k, v, false, r);
+            size += r.delta;
+        }
+        return new Snapshot<K,V>(root, size);
+    }
+
+    // Support for resetting lock while deserializing
+    private void resetLock() {
+        UNSAFE.putObjectVolatile(this, lockOffset, new ReentrantLock());
+    }
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long lockOffset;
+    private static final long rootOffset;
+    private static final long sizeOffset;
+    static {
+        try {
+            UNSAFE = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = CopyOnWriteTrieMap.class;
+            lockOffset = UNSAFE.objectFieldOffset
+                (k.getDeclaredField("lock"));
+            Class<?> sk = Snapshot.class;
+            rootOffset = UNSAFE.objectFieldOffset
+                (sk.getDeclaredField("root"));
+            sizeOffset = UNSAFE.objectFieldOffset
+                (sk.getDeclaredField("size"));
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
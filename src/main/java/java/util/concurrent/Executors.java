@@ -154,6 +154,61 @@ public class Executors {
                                       threadFactory);
     }
 
+    /**
+     * Creates a thread pool that reuses a fixed number of threads
+     * operating off a shared bounded {@link RingBlockingQueue}, in which
+     * producers and consumers claim slots without locking.  At any
+     * point, at most {@code nThreads} threads will be active processing
+     * tasks.  If additional tasks are submitted when all threads are
+     * active, they will wait in the queue until a thread is available;
+     * tasks submitted when the queue is full are rejected with a
+     * {@link RejectedExecutionException}.  If any thread terminates due
+     * to a failure during execution prior to shutdown, a new one will
+     * take its place if needed to execute subsequent tasks.  The
+     * threads in the pool will exist until it is explicitly {@link
+     * ExecutorService#shutdown shutdown}.
+     *
+     * @param nThreads the number of threads in the pool
+     * @param capacity the minimum capacity of the queue, which is
+     *        rounded up to a power of two
+     * @return the newly created thread pool
+     * @throws IllegalArgumentException if {@code nThreads <= 0} or
+     *         {@code capacity <= 0}
+     * @since 1.8
+     */
+    public static ExecutorService newFixedRingThreadPool(int nThreads,
+                                                         int capacity) {
+        return new ThreadPoolExecutor(nThreads, nThreads,
+                                      0L, TimeUnit.MILLISECONDS,
+                                      new RingBlockingQueue<Runnable>(capacity));
+    }
+
+    /**
+     * Creates a thread pool that reuses a fixed number of threads
+     * operating off a shared bounded {@link RingBlockingQueue}, using
+     * the provided ThreadFactory to create new threads when needed.
+     * Other than the thread factory, the pool behaves as one created
+     * by {@link #newFixedRingThreadPool(int, int)}.
+     *
+     * @param nThreads the number of threads in the pool
+     * @param capacity the minimum capacity of the queue, which is
+     *        rounded up to a power of two
+     * @param threadFactory the factory to use when creating new threads
+     * @return the newly created thread pool
+     * @throws NullPointerException if threadFactory is null
+     * @throws IllegalArgumentException if {@code nThreads <= 0} or
+     *         {@code capacity <= 0}
+     * @since 1.8
+     */
+    public static ExecutorService newFixedRingThreadPool(int nThreads,
+                                                         int capacity,
+                                                         ThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(nThreads, nThreads,
+                                      0L, TimeUnit.MILLISECONDS,
+                                      new RingBlockingQueue<Runnable>(capacity),
+                                      threadFactory);
+    }
+
     /**
      * Creates an Executor that uses a single worker thread operating
      * off an unbounded queue. (Note however that if this single
@@ -301,6 +356,65 @@ public class Executors {
         return new ScheduledThreadPoolExecutor(corePoolSize, threadFactory);
     }
 
+    /**
+     * Creates a thread pool that can schedule commands to run after a
+     * given delay, or to execute periodically, keeping scheduled
+     * commands in a hierarchical timing wheel of the given tick
+     * duration.  Scheduling and cancellation take constant time, but
+     * delayed commands may run up to one tick late.  Cancelled
+     * commands are removed from the queue immediately (see {@link
+     * ScheduledThreadPoolExecutor#setRemoveOnCancelPolicy}).  This is
+     * suited to large numbers of timeouts, most of which are cancelled
+     * before they expire.
+     *
+     * @param corePoolSize the number of threads to keep in the pool,
+     * even if they are idle
+     * @param tickDuration the resolution of the timing wheel
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @return a newly created scheduled thread pool
+     * @throws IllegalArgumentException if {@code corePoolSize < 0} or
+     * {@code tickDuration} is not positive
+     * @throws NullPointerException if unit is null
+     * @see ScheduledThreadPoolExecutor#ScheduledThreadPoolExecutor(int, long, TimeUnit)
+     * @since 1.8
+     */
+    public static ScheduledExecutorService newTimingWheelScheduledThreadPool(
+            int corePoolSize, long tickDuration, TimeUnit unit) {
+        ScheduledThreadPoolExecutor e =
+            new ScheduledThreadPoolExecutor(corePoolSize, tickDuration, unit);
+        e.setRemoveOnCancelPolicy(true);
+        return e;
+    }
+
+    /**
+     * Creates a thread pool that can schedule commands to run after a
+     * given delay, or to execute periodically, keeping scheduled
+     * commands in a hierarchical timing wheel of the given tick
+     * duration, as described for {@link
+     * #newTimingWheelScheduledThreadPool(int, long, TimeUnit)}.
+     *
+     * @param corePoolSize the number of threads to keep in the pool,
+     * even if they are idle
+     * @param tickDuration the resolution of the timing wheel
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @param threadFactory the factory to use when the executor
+     * creates a new thread
+     * @return a newly created scheduled thread pool
+     * @throws IllegalArgumentException if {@code corePoolSize < 0} or
+     * {@code tickDuration} is not positive
+     * @throws NullPointerException if unit or threadFactory is null
+     * @since 1.8
+     */
+    public static ScheduledExecutorService newTimingWheelScheduledThreadPool(
+            int corePoolSize, long tickDuration, TimeUnit unit,
+            ThreadFactory threadFactory) {
+        ScheduledThreadPoolExecutor e =
+            new ScheduledThreadPoolExecutor(corePoolSize, tickDuration, unit,
+                                            threadFactory);
+        e.setRemoveOnCancelPolicy(true);
+        return e;
+    }
+
     /**
      * Returns an object that delegates all defined {@link
      * ExecutorService} methods to the given executor, but not any
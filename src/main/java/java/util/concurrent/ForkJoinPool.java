@@ -134,7 +134,7 @@ import java.security.Permissions;
  * </table>
  *
  * <p>The common pool is by default constructed with default
- * parameters, but these may be controlled by setting three
+ * parameters, but these may be controlled by setting the following
  * {@linkplain System#getProperty system properties}:
  * <ul>
  * <li>{@code java.util.concurrent.ForkJoinPool.common.parallelism}
@@ -143,6 +143,8 @@ import java.security.Permissions;
  * - the class name of a {@link ForkJoinWorkerThreadFactory}
  * <li>{@code java.util.concurrent.ForkJoinPool.common.exceptionHandler}
  * - the class name of a {@link UncaughtExceptionHandler}
+ * <li>{@code java.util.concurrent.ForkJoinPool.common.metrics}
+ * - {@code true} to {@linkplain #setMetricsEnabled enable metrics}
  * </ul>
  * If a {@link SecurityManager} is present and no factory is
  * specified, then the default pool uses a factory supplying
@@ -154,6 +156,16 @@ import java.security.Permissions;
  * using a factory that may return {@code null}. However doing so may
  * cause unjoined tasks to never be executed.
  *
+ * <p>In addition to the monitoring methods, a pool can maintain
+ * per-queue metrics, which are disabled by default since they add a
+ * little overhead to pushing, stealing and parking.  While
+ * {@linkplain #setMetricsEnabled enabled} they are reported by
+ * {@link #getWorkQueueMetrics}, and, together with the monitoring
+ * values, by the pool's management interface (see {@link
+ * java.lang.management.ManagementFactory#getForkJoinPoolMXBean
+ * ManagementFactory.getForkJoinPoolMXBean}); that of the common pool
+ * is also available from the platform {@code MBeanServer}.
+ *
  * <p><b>Implementation notes</b>: This implementation restricts the
  * maximum number of running threads to 32767. Attempts to create
  * pools with greater than the maximum number result in
@@ -812,12 +824,15 @@ public class ForkJoinPool extends AbstractExecutorService {
         volatile Thread parker;    // == owner during call to park; else null
         volatile ForkJoinTask<?> currentJoin;  // task being joined in awaitJoin
         volatile ForkJoinTask<?> currentSteal; // mainly used by helpStealer
+        QueueMetrics metrics;      // null unless metrics enabled
 
         WorkQueue(ForkJoinPool pool, ForkJoinWorkerThread owner) {
             this.pool = pool;
             this.owner = owner;
             // Place indices in the center of array (that is not yet allocated)
             base = top = INITIAL_QUEUE_CAPACITY >>> 1;
+            if (pool != null && pool.metricsEnabled)
+                metrics = new QueueMetrics();
         }
 
         /**
@@ -857,12 +872,14 @@ public class ForkJoinPool extends AbstractExecutorService {
          * @throws RejectedExecutionException if array cannot be resized
          */
         final void push(ForkJoinTask<?> task) {
-            ForkJoinTask<?>[] a; ForkJoinPool p;
+            ForkJoinTask<?>[] a; ForkJoinPool p; QueueMetrics qm;
             int b = base, s = top, n;
             if ((a = array) != null) {    // ignore if queue removed
                 int m = a.length - 1;     // fenced write for task visibility
                 U.putOrderedObject(a, ((m & s) << ASHIFT) + ABASE, task);
                 U.putOrderedInt(this, QTOP, s + 1);
+                if ((qm = metrics) != null)
+                    qm.recordPush(s + 1 - b);
                 if ((n = s - b) <= 1) {
                     if ((p = pool) != null)
                         p.signalWork(p.workQueues, this);
@@ -1245,6 +1262,28 @@ public class ForkJoinPool extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Counters maintained for a WorkQueue while metrics are enabled.
+     * Each is written only by the owner of the queue, or for a shared
+     * queue by the submitter holding its lock, so plain writes suffice;
+     * other threads may read stale values, as with nsteals.
+     */
+    static final class QueueMetrics {
+        long pushes;               // tasks pushed
+        long steals;               // tasks taken in top-level scans
+        long emptyScans;           // top-level scans finding no task
+        long parks;                // parks awaiting work
+        long unparks;              // parks ended by a signal
+        long parkedNanos;          // total time parked
+        int maxQueued;             // largest queue size seen on push
+
+        void recordPush(int size) {
+            ++pushes;
+            if (size > maxQueued)
+                maxQueued = size;
+        }
+    }
+
     // static fields (initialized in static initializer below)
 
     /**
@@ -1396,6 +1435,7 @@ public class ForkJoinPool extends AbstractExecutorService {
     final UncaughtExceptionHandler ueh;  // per-worker UEH
     final String workerNamePrefix;       // to create worker name string
     volatile AtomicLong stealCounter;    // also used as sync monitor
+    volatile boolean metricsEnabled;     // create WorkQueue metrics
 
     /**
      * Acquires the runState lock; returns current (locked) runState.
@@ -1688,10 +1728,15 @@ public class ForkJoinPool extends AbstractExecutorService {
         int seed = w.hint;               // initially holds randomization hint
         int r = (seed == 0) ? 1 : seed;  // avoid 0 for xorShift
         for (ForkJoinTask<?> t;;) {
+            QueueMetrics qm;
             if ((t = scan(w, r)) != null)
                 w.runTask(t);
-            else if (!awaitWork(w, r))
-                break;
+            else {
+                if ((qm = w.metrics) != null)
+                    ++qm.emptyScans;
+                if (!awaitWork(w, r))
+                    break;
+            }
             r ^= r << 13; r ^= r >>> 17; r ^= r << 5; // xorshift
         }
     }
@@ -1728,7 +1773,10 @@ public class ForkJoinPool extends AbstractExecutorService {
                             q.base == b) {
                             if (ss >= 0) {
                                 if (U.compareAndSwapObject(a, i, t, null)) {
+                                    QueueMetrics qm;
                                     q.base = b + 1;
+                                    if ((qm = w.metrics) != null)
+                                        ++qm.steals;
                                     if (n < -1)       // signal others
                                         signalWork(ws, q);
                                     return t;
@@ -1820,8 +1868,19 @@ public class ForkJoinPool extends AbstractExecutorService {
                 Thread wt = Thread.currentThread();
                 U.putObject(wt, PARKBLOCKER, this);   // emulate LockSupport
                 w.parker = wt;
-                if (w.scanState < 0 && ctl == c)      // recheck before park
-                    U.park(false, parkTime);
+                if (w.scanState < 0 && ctl == c) {    // recheck before park
+                    QueueMetrics qm = w.metrics;
+                    if (qm == null)
+                        U.park(false, parkTime);
+                    else {
+                        ++qm.parks;
+                        long start = System.nanoTime();
+                        U.park(false, parkTime);
+                        qm.parkedNanos += System.nanoTime() - start;
+                        if (w.scanState >= 0)
+                            ++qm.unparks;
+                    }
+                }
                 U.putOrderedObject(w, QPARKER, null);
                 U.putObject(wt, PARKBLOCKER, null);
                 if (w.scanState >= 0)
@@ -2358,6 +2417,9 @@ public class ForkJoinPool extends AbstractExecutorService {
                             int j = (((a.length - 1) & s) << ASHIFT) + ABASE;
                             U.putOrderedObject(a, j, task);
                             U.putOrderedInt(q, QTOP, s + 1);
+                            QueueMetrics qm;
+                            if ((qm = q.metrics) != null)
+                                qm.recordPush(s + 1 - q.base);
                             submitted = true;
                         }
                     } finally {
@@ -2407,8 +2469,11 @@ public class ForkJoinPool extends AbstractExecutorService {
             if ((a = q.array) != null &&
                 (am = a.length - 1) > (n = (s = q.top) - q.base)) {
                 int j = ((am & s) << ASHIFT) + ABASE;
+                QueueMetrics qm;
                 U.putOrderedObject(a, j, task);
                 U.putOrderedInt(q, QTOP, s + 1);
+                if ((qm = q.metrics) != null)
+                    qm.recordPush(n + 1);
                 U.putIntVolatile(q, QLOCK, 0);
                 if (n <= 1)
                     signalWork(ws, q);
@@ -2973,6 +3038,144 @@ public class ForkJoinPool extends AbstractExecutorService {
         return count;
     }
 
+    /**
+     * Returns {@code true} if this pool maintains per-queue metrics.
+     *
+     * @return {@code true} if metrics are enabled
+     * @see #setMetricsEnabled
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Enables or disables the maintenance of per-queue metrics: for
+     * each work queue, the number of tasks pushed and the largest
+     * queue size seen, and for each worker thread, the number of tasks
+     * stolen, of scans for tasks that found none, and of parks while
+     * awaiting work, and the time spent parked.  The metrics are
+     * reported by {@link #getWorkQueueMetrics}.  Counters start from
+     * zero when metrics are enabled, and are discarded when they are
+     * disabled.  Workers may continue to update or ignore counters for
+     * a short time after a change.
+     *
+     * @param enable {@code true} to enable metrics; {@code false} to
+     *        disable them
+     * @throws SecurityException if a security manager exists and
+     *         the caller is not permitted to modify threads
+     *         because it does not hold {@link
+     *         java.lang.RuntimePermission}{@code ("modifyThread")}
+     */
+    public void setMetricsEnabled(boolean enable) {
+        checkPermission();
+        metricsEnabled = enable;
+        WorkQueue[] ws; WorkQueue w;
+        if ((ws = workQueues) != null) {
+            for (int i = 0; i < ws.length; ++i) {
+                if ((w = ws[i]) != null) {
+                    if (!enable)
+                        w.metrics = null;
+                    else if (w.metrics == null)
+                        w.metrics = new QueueMetrics();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of each of the work queues of this pool,
+     * including those of worker threads and the shared queues holding
+     * external submissions.  The queue sizes are estimates, and the
+     * counters are those maintained while metrics were enabled; they
+     * are zero if metrics are disabled.
+     *
+     * @return the metrics of each work queue of this pool
+     * @see #setMetricsEnabled
+     * @since 1.8
+     */
+    public WorkQueueMetrics[] getWorkQueueMetrics() {
+        List<WorkQueueMetrics> list = new ArrayList<>();
+        WorkQueue[] ws; WorkQueue w;
+        if ((ws = workQueues) != null) {
+            for (int i = 0; i < ws.length; ++i) {
+                if ((w = ws[i]) != null)
+                    list.add(new WorkQueueMetrics(i, w));
+            }
+        }
+        return list.toArray(new WorkQueueMetrics[list.size()]);
+    }
+
+    /**
+     * A snapshot of the state and metrics of a work queue, as
+     * returned by {@link ForkJoinPool#getWorkQueueMetrics}.  Queues of
+     * worker threads have odd indices and shared queues even indices.
+     * Times are in nanoseconds.
+     *
+     * @since 1.8
+     */
+    public static final class WorkQueueMetrics {
+        private final int poolIndex;
+        private final String ownerName;
+        private final int queuedTaskCount;
+        private final int maxQueuedTaskCount;
+        private final long pushCount;
+        private final long stealCount;
+        private final long emptyScanCount;
+        private final long parkCount;
+        private final long unparkCount;
+        private final long parkedTime;
+
+        WorkQueueMetrics(int poolIndex, WorkQueue w) {
+            ForkJoinWorkerThread wt = w.owner;
+            QueueMetrics qm = w.metrics;
+            if (qm == null)
+                qm = new QueueMetrics();
+            this.poolIndex = poolIndex;
+            this.ownerName = (wt == null) ? null : wt.getName();
+            this.queuedTaskCount = w.queueSize();
+            this.maxQueuedTaskCount = qm.maxQueued;
+            this.pushCount = qm.pushes;
+            this.stealCount = qm.steals;
+            this.emptyScanCount = qm.emptyScans;
+            this.parkCount = qm.parks;
+            this.unparkCount = qm.unparks;
+            this.parkedTime = qm.parkedNanos;
+        }
+
+        /** Returns the index of the queue in the pool. */
+        public int getPoolIndex() { return poolIndex; }
+
+        /** Returns {@code true} if the queue holds external submissions. */
+        public boolean isShared() { return (poolIndex & 1) == 0; }
+
+        /** Returns the name of the owning worker, or null if shared. */
+        public String getOwnerName() { return ownerName; }
+
+        /** Returns an estimate of the number of tasks in the queue. */
+        public int getQueuedTaskCount() { return queuedTaskCount; }
+
+        /** Returns the largest number of tasks seen in the queue. */
+        public int getMaxQueuedTaskCount() { return maxQueuedTaskCount; }
+
+        /** Returns the number of tasks pushed onto the queue. */
+        public long getPushCount() { return pushCount; }
+
+        /** Returns the number of tasks the owner took from other queues. */
+        public long getStealCount() { return stealCount; }
+
+        /** Returns the number of scans by the owner that found no task. */
+        public long getEmptyScanCount() { return emptyScanCount; }
+
+        /** Returns the number of times the owner parked awaiting work. */
+        public long getParkCount() { return parkCount; }
+
+        /** Returns the number of those parks ended by a signal. */
+        public long getUnparkCount() { return unparkCount; }
+
+        /** Returns the total time the owner has spent parked. */
+        public long getParkedTime() { return parkedTime; }
+    }
+
     /**
      * Returns a string identifying this pool, as well as its state,
      * including indications of run state, parallelism level, and
@@ -3408,6 +3611,7 @@ public class ForkJoinPool extends AbstractExecutorService {
         int parallelism = -1;
         ForkJoinWorkerThreadFactory factory = null;
         UncaughtExceptionHandler handler = null;
+        boolean metrics = false;
         try {  // ignore exceptions in accessing/parsing properties
             String pp = System.getProperty
                 ("java.util.concurrent.ForkJoinPool.common.parallelism");
@@ -3415,6 +3619,8 @@ public class ForkJoinPool extends AbstractExecutorService {
                 ("java.util.concurrent.ForkJoinPool.common.threadFactory");
             String hp = System.getProperty
                 ("java.util.concurrent.ForkJoinPool.common.exceptionHandler");
+            metrics = Boolean.parseBoolean(System.getProperty
+                ("java.util.concurrent.ForkJoinPool.common.metrics"));
             if (pp != null)
                 parallelism = Integer.parseInt(pp);
             if (fp != null)
@@ -3436,8 +3642,11 @@ public class ForkJoinPool extends AbstractExecutorService {
             parallelism = 1;
         if (parallelism > MAX_CAP)
             parallelism = MAX_CAP;
-        return new ForkJoinPool(parallelism, factory, handler, LIFO_QUEUE,
-                                "ForkJoinPool.commonPool-worker-");
+        ForkJoinPool pool =
+            new ForkJoinPool(parallelism, factory, handler, LIFO_QUEUE,
+                             "ForkJoinPool.commonPool-worker-");
+        pool.metricsEnabled = metrics;
+        return pool;
     }
 
     /**
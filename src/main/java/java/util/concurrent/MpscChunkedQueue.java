@@ -0,0 +1,549 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/**
+ * An unbounded {@linkplain Queue queue} that may be added to by any
+ * number of threads, but from which elements may be retrieved by only
+ * one thread at a time, such as the mailbox of an actor or the task
+ * queue of an event loop.  This queue orders elements FIFO
+ * (first-in-first-out).  Like most other concurrent collection
+ * implementations, this class does not permit the use of {@code null}
+ * elements.
+ *
+ * <p>Elements are held in a linked list of fixed-size arrays, or
+ * <em>chunks</em>, so that one node is allocated per chunk rather than
+ * per element.  An {@code offer} claims a position by atomically
+ * incrementing a counter, and never retries: it is wait-free but for
+ * appending a new chunk when the queue grows past the last one, which
+ * is lock-free.  Consumer methods use plain reads and writes of their
+ * own state, and the single atomic read of each element's slot.
+ * {@link #drain} retrieves a batch of elements in one call.
+ *
+ * <p>The consumer methods {@link #poll}, {@link #peek}, {@link
+ * #remove()}, {@link #element}, {@link #clear} and {@link #drain}
+ * must not be invoked concurrently with each other; if they are
+ * invoked by more than one thread, callers must arrange that each
+ * invocation <a
+ * href="package-summary.html#MemoryVisibility"><i>happens-before</i></a>
+ * the next, for example by running them all in one event loop.
+ * Other methods may be invoked by any thread.
+ *
+ * <p>An element whose {@code offer} has claimed its position but not
+ * yet stored it is counted by {@link #size} and {@link #isEmpty}.
+ * {@code poll} and {@code peek} wait for such an element, which takes
+ * at most a few instructions unless the producer is descheduled,
+ * whereas {@code drain} returns instead.
+ *
+ * <p>Iterators are <i>weakly consistent</i>, returning elements
+ * reflecting the state of the queue at some point at or since the
+ * creation of the iterator.  They do <em>not</em> throw {@link
+ * java.util.ConcurrentModificationException}, and do not support
+ * {@code remove}.  Neither does the {@code remove(Object)} method of
+ * this queue.  The bulk operations inherited from {@link
+ * java.util.AbstractQueue} are <em>not</em> guaranteed to be
+ * performed atomically.
+ *
+ * <p>Memory consistency effects: As with other concurrent
+ * collections, actions in a thread prior to placing an object into a
+ * {@code MpscChunkedQueue}
+ * <a href="package-summary.html#MemoryVisibility"><i>happen-before</i></a>
+ * actions subsequent to the access or removal of that element from
+ * the {@code MpscChunkedQueue} in another thread.
+ *
+ * <p>This class is a member of the
+ * <a href="{@docRoot}/../technotes/guides/collections/index.html">
+ * Java Collections Framework</a>.
+ *
+ * @param <E> the type of elements held in this collection
+ * @see ConcurrentLinkedQueue
+ * @since 1.8
+ */
+public class MpscChunkedQueue<E> extends AbstractQueue<E>
+        implements Queue<E>, java.io.Serializable {
+    private static final long serialVersionUID = -2530727011823373396L;
+
+    /*
+     * Each element is assigned a position by getAndAdd of
+     * producerIndex, so every position is claimed by exactly one
+     * producer.  Position p lives in slot (p & mask) of the chunk
+     * with index (p >>> shift).  Chunks are linked forward by next,
+     * and backward by prev.  The producer that needs a chunk that
+     * does not exist yet appends it by CAS of the last chunk's next
+     * field; others needing it use the winner's.
+     *
+     * producerChunk is a hint: a recent chunk used by a producer,
+     * from which a producer finds its own by following next or prev
+     * links.  It only moves forward.  A producer may have to walk
+     * backward if it was delayed between claiming a position and
+     * locating its chunk.  Its chunk cannot have been consumed (the
+     * consumer waits for the slot to be filled), and the consumer
+     * clears only the prev link of the chunk it moves to, pointing
+     * to the chunk it has finished, so every chunk a producer can
+     * need remains reachable.
+     *
+     * The consumer owns consumerIndex and consumerChunk, and reads
+     * them with plain Unsafe loads; they are written with ordered
+     * stores and are volatile only so that isEmpty(), size() and
+     * iterators in other threads can read them.  A slot that is null at a claimed position means
+     * that its producer has not yet stored the element.  Consumed
+     * slots are nulled, so the consumer never retains elements.
+     *
+     * The two indices are kept on separate cache lines from each
+     * other and from the rest of the queue.
+     */
+
+    /** Default number of elements per chunk */
+    static final int DEFAULT_CHUNK_SIZE = 128;
+
+    /** Largest number of elements per chunk */
+    static final int MAXIMUM_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * A fixed-size array of slots, holding the positions from
+     * index << shift.
+     */
+    static final class Chunk {
+        final long index;
+        final Object[] slots;
+        volatile Chunk next;
+        volatile Chunk prev;
+
+        Chunk(long index, int size, Chunk prev) {
+            this.index = index;
+            this.slots = new Object[size];
+            this.prev = prev;
+        }
+
+        final boolean casNext(Chunk cmp, Chunk val) {
+            return U.compareAndSwapObject(this, NEXT, cmp, val);
+        }
+    }
+
+    /** log2 of the chunk size */
+    private final int shift;
+
+    /** The next position to be claimed by a producer */
+    @sun.misc.Contended("p")
+    private transient volatile long producerIndex;
+
+    /** A recent chunk used by a producer */
+    @sun.misc.Contended("p")
+    private transient volatile Chunk producerChunk;
+
+    /** The next position to be consumed */
+    @sun.misc.Contended("c")
+    private transient volatile long consumerIndex;
+
+    /** The chunk holding, or preceding, consumerIndex */
+    @sun.misc.Contended("c")
+    private transient volatile Chunk consumerChunk;
+
+    /**
+     * Creates a {@code MpscChunkedQueue} that is initially empty,
+     * with the default chunk size (128).
+     */
+    public MpscChunkedQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a {@code MpscChunkedQueue} that is initially empty,
+     * allocating space for elements in chunks of at least the given
+     * size.  Larger chunks reduce allocation, and smaller chunks
+     * reduce the footprint of queues that are usually short.
+     *
+     * @param chunkSize the number of elements per chunk, rounded up to
+     *        a power of two not exceeding 2<sup>20</sup>
+     * @throws IllegalArgumentException if {@code chunkSize} is less
+     *         than 2
+     */
+    public MpscChunkedQueue(int chunkSize) {
+        if (chunkSize < 2)
+            throw new IllegalArgumentException();
+        int size = (chunkSize >= MAXIMUM_CHUNK_SIZE) ? MAXIMUM_CHUNK_SIZE :
+            Integer.highestOneBit(chunkSize - 1) << 1;
+        this.shift = Integer.numberOfTrailingZeros(size);
+        initialize();
+    }
+
+    private void initialize() {
+        Chunk c = new Chunk(0L, 1 << shift, null);
+        producerChunk = c;
+        consumerChunk = c;
+    }
+
+    /**
+     * Returns the chunk with the given index, starting from c, a chunk
+     * preceding or following it, and appending chunks if necessary.
+     */
+    private Chunk chunkFor(Chunk c, long index) {
+        while (c.index > index)
+            c = c.prev;
+        while (c.index < index) {
+            Chunk n = c.next;
+            if (n == null) {
+                n = new Chunk(c.index + 1L, 1 << shift, c);
+                if (!c.casNext(null, n))
+                    n = c.next;
+            }
+            c = n;
+        }
+        // advance the hint
+        for (Chunk h; (h = producerChunk).index < index; ) {
+            if (U.compareAndSwapObject(this, PCHUNK, h, c))
+                break;
+        }
+        return c;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue.
+     * As the queue is unbounded, this method will never return {@code false}.
+     *
+     * @return {@code true} (as specified by {@link Queue#offer})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null)
+            throw new NullPointerException();
+        final int s = shift;
+        long p = U.getAndAddLong(this, PINDEX, 1L);
+        long index = p >>> s;
+        Chunk c = producerChunk;
+        if (c.index != index)
+            c = chunkFor(c, index);
+        U.putOrderedObject(c.slots, slotOffset((int)p & ((1 << s) - 1)), e);
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue.
+     * As the queue is unbounded, this method will never throw
+     * {@link IllegalStateException} or return {@code false}.
+     *
+     * @return {@code true} (as specified by {@link java.util.Collection#add})
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        return offer(e);
+    }
+
+    /**
+     * Returns the consumer's chunk for position c, moving to the next
+     * chunk if c is its first position, or null if that chunk does not
+     * exist yet and wait is false.  Called only by the consumer.
+     */
+    private Chunk consumerChunkFor(long c, boolean wait) {
+        Chunk ch = (Chunk)U.getObject(this, CCHUNK);
+        if (ch.index == (c >>> shift))
+            return ch;
+        Chunk n;
+        while ((n = ch.next) == null) {
+            if (!wait)
+                return null;
+            Thread.yield();
+        }
+        n.prev = null;              // unlink consumed chunk
+        U.putOrderedObject(this, CCHUNK, n);
+        return n;
+    }
+
+    /**
+     * Returns the element stored at position c of chunk ch, waiting
+     * for its producer if it has claimed the position but not stored
+     * it, or null if the queue is empty.  Called only by the consumer.
+     */
+    private Object elementAt(Chunk ch, long c) {
+        long off = slotOffset((int)c & ((1 << shift) - 1));
+        Object e = U.getObjectVolatile(ch.slots, off);
+        if (e == null && c != producerIndex) {
+            while ((e = U.getObjectVolatile(ch.slots, off)) == null)
+                Thread.yield();
+        }
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long c = U.getLong(this, CINDEX);
+        if (c == producerIndex)
+            return null;
+        Chunk ch = consumerChunkFor(c, true);
+        Object e = elementAt(ch, c);
+        U.putObject(ch.slots, slotOffset((int)c & ((1 << shift) - 1)), null);
+        U.putOrderedLong(this, CINDEX, c + 1L);
+        return (E)e;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        long c = U.getLong(this, CINDEX);
+        if (c == producerIndex)
+            return null;
+        return (E)elementAt(consumerChunkFor(c, true), c);
+    }
+
+    /**
+     * Removes up to {@code limit} elements from the head of this queue,
+     * passing each in turn to the given action.  This method does not
+     * wait for producers that have claimed positions but not yet stored
+     * their elements; it returns upon reaching such a position.  The
+     * action must not invoke consumer methods of this queue.  If the
+     * action throws an exception, the element passed to it has already
+     * been removed, and the exception is relayed to the caller.
+     *
+     * @param action the action to be performed on each element
+     * @param limit the maximum number of elements to remove
+     * @return the number of elements removed
+     * @throws NullPointerException if the action is null
+     * @throws IllegalArgumentException if limit is negative
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        if (action == null)
+            throw new NullPointerException();
+        if (limit < 0)
+            throw new IllegalArgumentException();
+        final int mask = (1 << shift) - 1;
+        long c = U.getLong(this, CINDEX);
+        int n = 0;
+        while (n < limit) {
+            Chunk ch = consumerChunkFor(c, false);
+            if (ch == null)
+                break;
+            final Object[] slots = ch.slots;
+            long off = slotOffset((int)c & mask);
+            Object e = U.getObjectVolatile(slots, off);
+            if (e == null)
+                break;
+            U.putObject(slots, off, null);
+            U.putOrderedLong(this, CINDEX, ++c);
+            ++n;
+            action.accept((E)e);
+        }
+        return n;
+    }
+
+    /**
+     * Removes all of the elements from this queue, as if by repeated
+     * {@code poll}.  This is a consumer method.
+     */
+    public void clear() {
+        while (poll() != null)
+            ;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains no elements.
+     *
+     * @return {@code true} if this queue contains no elements
+     */
+    public boolean isEmpty() {
+        return consumerIndex == producerIndex;
+    }
+
+    /**
+     * Returns the number of elements in this queue.  If this queue
+     * contains more than {@code Integer.MAX_VALUE} elements, returns
+     * {@code Integer.MAX_VALUE}.  This is a constant-time operation,
+     * but reports only an estimate if there are concurrent
+     * insertions or removals.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        for (;;) {
+            long c = consumerIndex, p = producerIndex;
+            if (c == consumerIndex) {   // consistent snapshot
+                long n = p - c;
+                return (n <= 0L) ? 0 :
+                    (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int)n;
+            }
+        }
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The elements will be returned in order from first
+     * (head) to last (tail).
+     *
+     * <p>The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>,
+     * and does not support {@code remove}.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Iterator over the positions from the consumer's at creation to
+     * the producers' at creation, skipping those found consumed or not
+     * yet stored.
+     */
+    private class Itr implements Iterator<E> {
+        private final long fence;
+        private long index;
+        private Chunk chunk;
+        private Object nextItem;
+
+        Itr() {
+            long c = consumerIndex;
+            Chunk ch = consumerChunk;
+            fence = producerIndex;
+            long first = ch.index << shift;
+            index = (c > first) ? c : first;
+            chunk = ch;
+            advance();
+        }
+
+        private void advance() {
+            final int mask = (1 << shift) - 1;
+            Object x = null;
+            Chunk ch = chunk;
+            long i = index;
+            while (i < fence) {
+                if (ch.index != (i >>> shift)) {
+                    if ((ch = ch.next) == null)
+                        break;
+                    continue;
+                }
+                x = U.getObjectVolatile(ch.slots, slotOffset((int)i & mask));
+                ++i;
+                if (x != null)
+                    break;
+            }
+            chunk = ch;
+            index = i;
+            nextItem = x;
+        }
+
+        public boolean hasNext() {
+            return nextItem != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            Object x = nextItem;
+            if (x == null)
+                throw new NoSuchElementException();
+            advance();
+            return (E)x;
+        }
+    }
+
+    /**
+     * Saves this queue to a stream (that is, serializes it).  This
+     * should be invoked only while there is no concurrent consumer.
+     *
+     * @param s the stream
+     * @throws java.io.IOException if an I/O error occurs
+     * @serialData All of the elements (each an {@code E}) in
+     * the proper order, followed by a null
+     */
+    private void writeObject(java.io.ObjectOutputStream s)
+        throws java.io.IOException {
+
+        // Write out any hidden stuff
+        s.defaultWriteObject();
+
+        // Write out all elements in the proper order.
+        for (Iterator<E> it = iterator(); it.hasNext(); )
+            s.writeObject(it.next());
+
+        // Use trailing null as sentinel
+        s.writeObject(null);
+    }
+
+    /**
+     * Reconstitutes this queue from a stream (that is, deserializes it).
+     * @param s the stream
+     * @throws ClassNotFoundException if the class of a serialized object
+     *         could not be found
+     * @throws java.io.IOException if an I/O error occurs
+     */
+    private void readObject(java.io.ObjectInputStream s)
+        throws java.io.IOException, ClassNotFoundException {
+        s.defaultReadObject();
+        if (shift < 1 || (1 << shift) > MAXIMUM_CHUNK_SIZE)
+            throw new java.io.InvalidObjectException("invalid chunk size");
+        initialize();
+
+        // Read in elements until trailing null sentinel found
+        Object item;
+        while ((item = s.readObject()) != null) {
+            @SuppressWarnings("unchecked")
+            E e = (E) item;
+            offer(e);
+        }
+    }
+
+    private static long slotOffset(int i) {
+        return ((long)i << ASHIFT) + ABASE;
+    }
+
+    // Unsafe mechanics
+
+    private static final sun.misc.Unsafe U;
+    private static final long PINDEX;
+    private static final long PCHUNK;
+    private static final long CINDEX;
+    private static final long CCHUNK;
+    private static final long NEXT;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = MpscChunkedQueue.class;
+            PINDEX = U.objectFieldOffset
+                (k.getDeclaredField("producerIndex"));
+            PCHUNK = U.objectFieldOffset
+                (k.getDeclaredField("producerChunk"));
+            CINDEX = U.objectFieldOffset
+                (k.getDeclaredField("consumerIndex"));
+            CCHUNK = U.objectFieldOffset
+                (k.getDeclaredField("consumerChunk"));
+            NEXT = U.objectFieldOffset
+                (Chunk.class.getDeclaredField("next"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
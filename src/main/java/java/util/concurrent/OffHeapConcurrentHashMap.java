@@ -0,0 +1,1512 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import sun.misc.Cleaner;
+import sun.nio.ch.DirectBuffer;
+
+/**
+ * A hash table supporting full concurrency of retrievals and high
+ * expected concurrency for updates, whose mappings are stored in
+ * serialized form outside of the garbage-collected heap.  Keys and
+ * values are converted to and from bytes by {@link Codec}s supplied at
+ * construction, and are held in direct {@link ByteBuffer} slabs, so a
+ * table holding many gigabytes of data contributes only a few small
+ * objects per segment to the heap and does not lengthen collector
+ * pauses.
+ *
+ * <p>This class obeys the same functional specification as {@link
+ * ConcurrentHashMap}, with the following differences.  Keys are
+ * located by {@code hashCode} and compared by {@code equals} after
+ * decoding, so every retrieval decodes at least the matching key and
+ * value; values returned are therefore fresh copies, and modifying
+ * them has no effect on the map.  Like {@code ConcurrentHashMap},
+ * this class does <em>not</em> allow {@code null} to be used as a key
+ * or value.
+ *
+ * <p>The table is divided into a fixed number of segments, chosen from
+ * the {@code concurrencyLevel} constructor argument.  Each segment owns
+ * a bucket table and a slab, both off-heap, and guards them with its
+ * own lock: retrievals of different keys in the same segment proceed
+ * concurrently, and updates contend only with other operations on the
+ * same segment.  Space freed by removals and replacements is reclaimed
+ * by compacting the slab when it fills up.
+ *
+ * <p>Iterators, and the bulk operations {@link #forEach(long,
+ * BiConsumer) forEach}, {@link #search search} and {@link #reduce
+ * reduce}, are <i>weakly consistent</i> in the same sense as for
+ * {@code ConcurrentHashMap}: they traverse each mapping present
+ * throughout the traversal exactly once, may reflect concurrent
+ * updates, and never throw {@link
+ * java.util.ConcurrentModificationException}.  The bulk operations
+ * accept a {@code parallelismThreshold} with the same meaning as in
+ * {@code ConcurrentHashMap}, and run in the {@link
+ * ForkJoinPool#commonPool()} when it is exceeded.  Functions passed to
+ * them are invoked without holding any segment lock, and so may
+ * themselves update the map.
+ *
+ * <p>Memory held by a slab is released when the slab is compacted or
+ * replaced, or when the map is {@linkplain #clear cleared}; the slabs
+ * of an unreachable map are released when their buffers are collected.
+ *
+ * @param <K> the type of keys maintained by this map
+ * @param <V> the type of mapped values
+ * @see ConcurrentHashMap
+ * @since 1.8
+ */
+public class OffHeapConcurrentHashMap<K,V> extends AbstractMap<K,V>
+    implements ConcurrentMap<K,V> {
+
+    /*
+     * Overview:
+     *
+     * ConcurrentHashMap locks individual bins by synchronizing on
+     * their first node, which is not possible when the nodes are
+     * bytes in a buffer.  Instead the key space is split by the high
+     * bits of the hash into a power-of-two number of Segments, each a
+     * StampedLock guarding a small self-contained hash table: lookups
+     * take the read lock and updates the write lock, so readers never
+     * block each other and writers only block their own segment.
+     *
+     * Within a segment, the bucket table is an int array in a direct
+     * buffer holding the slab offset of the first entry of each
+     * chain (zero for an empty bucket).  Each entry in the slab is
+     *
+     *   int hash; int next; int keyLength; int valueLength;
+     *   byte[keyLength] key; byte[valueLength] value;
+     *
+     * padded to a multiple of eight bytes.  Offset zero is never used
+     * for an entry, so that zero can terminate chains.  New entries
+     * are bump-allocated at "top"; entries that are removed or
+     * replaced by ones of a different size simply become garbage.
+     * When an allocation does not fit, the live entries are copied
+     * into a fresh slab, which is doubled in size as needed to keep
+     * it at most half full after compaction.
+     *
+     * Bucket tables are doubled as in ConcurrentHashMap.transfer,
+     * splitting each chain into "lo" and "hi" lists that preserve
+     * relative order.  Bucket tables never shrink, which lets
+     * traversals use a simple cursor: a traversal records the table
+     * length L it first saw in a segment, and then visits "base
+     * indices" b < L, each time collecting every bucket congruent to
+     * b modulo the current length L.  Since doubling only ever moves
+     * an entry between buckets congruent modulo L, every entry
+     * present throughout is seen exactly once, no matter how many
+     * resizes occur in between.  Entries of each base index are
+     * decoded under the read lock into a small batch and handed out
+     * after it is released.
+     */
+
+    /* ---------------- Codecs -------------- */
+
+    /**
+     * Converts keys or values to and from their serialized form in a
+     * slab.  Implementations must be stateless or thread-safe, since
+     * they are invoked concurrently by all threads using the map.
+     *
+     * <p>All three methods use absolute positions in the buffer and
+     * must not modify its position, limit or mark.  The buffer is
+     * owned by the map and may be released as soon as the method
+     * returns, so {@link #read read} must copy whatever it needs
+     * rather than retaining the buffer or a view of it.
+     *
+     * <p>Keys are compared by {@code equals} after decoding, so a key
+     * codec must decode equal objects from the bytes it wrote for
+     * equal objects, and the objects must define {@code equals} and
+     * {@code hashCode} by value.
+     *
+     * @param <T> the type of objects encoded
+     * @since 1.8
+     */
+    public interface Codec<T> {
+        /**
+         * Returns the exact number of bytes that {@link #write write}
+         * will produce for the given object.
+         *
+         * @param t the object, never null
+         * @return the encoded length in bytes
+         */
+        int sizeOf(T t);
+
+        /**
+         * Encodes the given object into exactly {@code sizeOf(t)} bytes
+         * of the buffer starting at the given index.
+         *
+         * @param t the object, never null
+         * @param buf the buffer
+         * @param index the index of the first byte to write
+         */
+        void write(T t, ByteBuffer buf, int index);
+
+        /**
+         * Decodes an object from {@code length} bytes of the buffer
+         * starting at the given index.
+         *
+         * @param buf the buffer
+         * @param index the index of the first byte to read
+         * @param length the number of bytes
+         * @return the decoded object, never null
+         */
+        T read(ByteBuffer buf, int index, int length);
+
+        /**
+         * Returns a codec for {@code Long} values as eight bytes.
+         *
+         * @return a codec for {@code Long} values
+         */
+        static Codec<Long> ofLong() {
+            return LongCodec.INSTANCE;
+        }
+
+        /**
+         * Returns a codec for strings in UTF-8.
+         *
+         * @return a codec for strings
+         */
+        static Codec<String> ofString() {
+            return StringCodec.INSTANCE;
+        }
+
+        /**
+         * Returns a codec that stores byte arrays verbatim.  Since
+         * arrays are compared by identity, this codec may be used
+         * only for values; the map constructors reject it as a key
+         * codec.
+         *
+         * @return a codec for byte array values
+         */
+        static Codec<byte[]> ofBytes() {
+            return BytesCodec.INSTANCE;
+        }
+    }
+
+    static final class LongCodec implements Codec<Long> {
+        static final LongCodec INSTANCE = new LongCodec();
+        public int sizeOf(Long t) { return 8; }
+        public void write(Long t, ByteBuffer buf, int index) {
+            buf.putLong(index, t);
+        }
+        public Long read(ByteBuffer buf, int index, int length) {
+            return buf.getLong(index);
+        }
+    }
+
+    static final class BytesCodec implements Codec<byte[]> {
+        static final BytesCodec INSTANCE = new BytesCodec();
+        public int sizeOf(byte[] t) { return t.length; }
+        public void write(byte[] t, ByteBuffer buf, int index) {
+            for (int i = 0; i < t.length; ++i)
+                buf.put(index + i, t[i]);
+        }
+        public byte[] read(ByteBuffer buf, int index, int length) {
+            byte[] b = new byte[length];
+            for (int i = 0; i < length; ++i)
+                b[i] = buf.get(index + i);
+            return b;
+        }
+    }
+
+    static final class StringCodec implements Codec<String> {
+        static final StringCodec INSTANCE = new StringCodec();
+        public int sizeOf(String t) {
+            int n = 0;
+            for (int i = 0, len = t.length(); i < len; ++i) {
+                char c = t.charAt(i);
+                if (c < 0x80)
+                    n += 1;
+                else if (c < 0x800)
+                    n += 2;
+                else if (Character.isHighSurrogate(c) && i + 1 < len &&
+                         Character.isLowSurrogate(t.charAt(i + 1))) {
+                    n += 4;
+                    ++i;
+                }
+                else
+                    n += 3;
+            }
+            return n;
+        }
+        public void write(String t, ByteBuffer buf, int index) {
+            byte[] b = t.getBytes(StandardCharsets.UTF_8);
+            BytesCodec.INSTANCE.write(b, buf, index);
+        }
+        public String read(ByteBuffer buf, int index, int length) {
+            return new String(BytesCodec.INSTANCE.read(buf, index, length),
+                              StandardCharsets.UTF_8);
+        }
+    }
+
+    /* ---------------- Constants -------------- */
+
+    /**
+     * The default number of segments; used when not otherwise
+     * specified in a constructor.
+     */
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * The largest possible number of segments.
+     */
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    /**
+     * The default initial table capacity.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The smallest and largest per-segment bucket table sizes.
+     */
+    private static final int MIN_BUCKETS = 2;
+    private static final int MAX_BUCKETS = 1 << 28;
+
+    /**
+     * The initial and largest slab sizes.  Offsets are ints, so a
+     * segment holds at most about 2GB of entries.
+     */
+    private static final int MIN_SLAB = 1 << 12;
+    private static final int MAX_SLAB = Integer.MAX_VALUE & ~7;
+
+    /*
+     * Layout of an entry in a slab.
+     */
+    static final int HASH = 0;
+    static final int NEXT = 4;
+    static final int KLEN = 8;
+    static final int VLEN = 12;
+    static final int HEADER = 16;
+
+    /**
+     * Offset of the first entry in a slab.  Must be nonzero.
+     */
+    static final int SLAB_BASE = 8;
+
+    /* ---------------- Fields -------------- */
+
+    final Codec<K> keyCodec;
+    final Codec<V> valueCodec;
+
+    /**
+     * The segments, indexed by the high bits of the hash.
+     */
+    final Segment<K,V>[] segments;
+
+    /**
+     * Shift and mask selecting the segment index from a hash.
+     */
+    final int segmentShift;
+    final int segmentMask;
+
+    // views
+    private transient KeySetView<K,V> keySet;
+    private transient ValuesView<K,V> values;
+    private transient EntrySetView<K,V> entrySet;
+
+    /* ---------------- Static utilities -------------- */
+
+    /**
+     * Spreads a key's hashCode.  Segments are selected by the high
+     * bits and buckets by the low bits of the result, so both must
+     * depend on all bits of the hashCode.
+     */
+    static final int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the number of slab bytes used by an entry.
+     */
+    static final int entrySize(int klen, int vlen) {
+        return (HEADER + klen + vlen + 7) & ~7;
+    }
+
+    /**
+     * Returns a power of two size for the given target capacity.
+     */
+    private static final int tableSizeFor(int c, int max) {
+        int n = c - 1;
+        n |= n >>> 1;
+        n |= n >>> 2;
+        n |= n >>> 4;
+        n |= n >>> 8;
+        n |= n >>> 16;
+        return (n < 0) ? 1 : (n >= max) ? max : n + 1;
+    }
+
+    /**
+     * Copies bytes between direct buffers.
+     */
+    static final void copy(ByteBuffer src, int srcIndex,
+                           ByteBuffer dst, int dstIndex, int length) {
+        U.copyMemory(((DirectBuffer)src).address() + srcIndex,
+                     ((DirectBuffer)dst).address() + dstIndex, length);
+    }
+
+    /**
+     * Releases the native memory of a direct buffer that is no longer
+     * referenced by any segment.
+     */
+    static final void free(ByteBuffer buf) {
+        Cleaner c = ((DirectBuffer)buf).cleaner();
+        if (c != null)
+            c.clean();
+    }
+
+    /* ---------------- Segments -------------- */
+
+    /**
+     * A lock-guarded hash table of entries stored in a slab.  All
+     * methods other than the constructor must be called with the lock
+     * held, in write mode unless otherwise noted.
+     */
+    static final class Segment<K,V> extends StampedLock {
+        private static final long serialVersionUID = -6346458735394580385L;
+
+        final Codec<K> keyCodec;
+        final Codec<V> valueCodec;
+
+        ByteBuffer table;   // slab offsets of chain heads
+        int buckets;        // table length, a power of two
+        int threshold;      // resize table when count reaches this
+        ByteBuffer slab;    // entries
+        int top;            // offset of first free byte in slab
+        int garbage;        // bytes used by unreachable entries
+        volatile int count; // number of mappings
+
+        Segment(int buckets, Codec<K> keyCodec, Codec<V> valueCodec) {
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+            this.buckets = buckets;
+            this.threshold = buckets - (buckets >>> 2);
+            this.table = ByteBuffer.allocateDirect(buckets << 2);
+            this.slab = ByteBuffer.allocateDirect(MIN_SLAB);
+            this.top = SLAB_BASE;
+        }
+
+        /** Decodes the key of entry e; read mode suffices. */
+        final K keyAt(int e) {
+            ByteBuffer s = slab;
+            return keyCodec.read(s, e + HEADER, s.getInt(e + KLEN));
+        }
+
+        /** Decodes the value of entry e; read mode suffices. */
+        final V valueAt(int e) {
+            ByteBuffer s = slab;
+            return valueCodec.read(s, e + HEADER + s.getInt(e + KLEN),
+                                   s.getInt(e + VLEN));
+        }
+
+        /**
+         * Returns the offset of the entry for the given key, or zero
+         * if none; read mode suffices.
+         */
+        final int find(int h, Object key) {
+            ByteBuffer s = slab;
+            for (int e = table.getInt((h & (buckets - 1)) << 2); e != 0;
+                 e = s.getInt(e + NEXT)) {
+                if (s.getInt(e + HASH) == h && key.equals(keyAt(e)))
+                    return e;
+            }
+            return 0;
+        }
+
+        /**
+         * Implementation for put and putIfAbsent.
+         */
+        final V putVal(int h, K key, int klen, V value, int vlen,
+                       boolean onlyIfAbsent) {
+            if (count >= threshold)
+                resizeTable();
+            ensureCapacity(entrySize(klen, vlen));
+            ByteBuffer s = slab;
+            int b = (h & (buckets - 1)) << 2;
+            for (int e = table.getInt(b), pred = 0; e != 0;
+                 pred = e, e = s.getInt(e + NEXT)) {
+                if (s.getInt(e + HASH) == h && key.equals(keyAt(e))) {
+                    V oldVal = valueAt(e);
+                    if (!onlyIfAbsent)
+                        replaceValue(b, pred, e, value, vlen);
+                    return oldVal;
+                }
+            }
+            int e = top;
+            s.putInt(e + HASH, h);
+            s.putInt(e + NEXT, table.getInt(b));
+            s.putInt(e + KLEN, klen);
+            s.putInt(e + VLEN, vlen);
+            keyCodec.write(key, s, e + HEADER);
+            valueCodec.write(value, s, e + HEADER + klen);
+            top = e + entrySize(klen, vlen);
+            table.putInt(b, e);
+            count = count + 1;
+            return null;
+        }
+
+        /**
+         * Implementation for the four public remove/replace methods:
+         * Replaces node value with v, conditional upon match of cv if
+         * non-null.  If resulting value is null, delete.
+         */
+        final V replaceNode(int h, Object key, V value, int vlen, Object cv) {
+            if (value != null) {
+                // reserve space for a relocated copy before scanning
+                int e = find(h, key);
+                if (e == 0)
+                    return null;
+                ensureCapacity(entrySize(slab.getInt(e + KLEN), vlen));
+            }
+            ByteBuffer s = slab;
+            int b = (h & (buckets - 1)) << 2;
+            for (int e = table.getInt(b), pred = 0; e != 0;
+                 pred = e, e = s.getInt(e + NEXT)) {
+                if (s.getInt(e + HASH) == h && key.equals(keyAt(e))) {
+                    V ev = valueAt(e);
+                    if (cv != null && !cv.equals(ev))
+                        return null;
+                    if (value != null)
+                        replaceValue(b, pred, e, value, vlen);
+                    else {
+                        int next = s.getInt(e + NEXT);
+                        if (pred == 0)
+                            table.putInt(b, next);
+                        else
+                            s.putInt(pred + NEXT, next);
+                        garbage += entrySize(s.getInt(e + KLEN),
+                                             s.getInt(e + VLEN));
+                        count = count - 1;
+                    }
+                    return ev;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Replaces the value of entry e, whose predecessor in bucket
+         * b is pred (or zero if first).  Values of unchanged length
+         * are overwritten in place; otherwise the entry is copied to
+         * the top of the slab with the new value and relinked.  The
+         * caller must have reserved space for the copy.
+         */
+        private void replaceValue(int b, int pred, int e, V value, int vlen) {
+            ByteBuffer s = slab;
+            int klen = s.getInt(e + KLEN), ovlen = s.getInt(e + VLEN);
+            if (ovlen == vlen)
+                valueCodec.write(value, s, e + HEADER + klen);
+            else {
+                int ne = top;
+                s.putInt(ne + HASH, s.getInt(e + HASH));
+                s.putInt(ne + NEXT, s.getInt(e + NEXT));
+                s.putInt(ne + KLEN, klen);
+                s.putInt(ne + VLEN, vlen);
+                copy(s, e + HEADER, s, ne + HEADER, klen);
+                valueCodec.write(value, s, ne + HEADER + klen);
+                top = ne + entrySize(klen, vlen);
+                if (pred == 0)
+                    table.putInt(b, ne);
+                else
+                    s.putInt(pred + NEXT, ne);
+                garbage += entrySize(klen, ovlen);
+            }
+        }
+
+        /**
+         * Ensures that an entry of the given size can be allocated at
+         * top, compacting the slab into a new one, enlarged so as to
+         * be at most half full, if it cannot.
+         */
+        private void ensureCapacity(int size) {
+            ByteBuffer s = slab;
+            int cap = s.capacity();
+            if (size <= cap - top)
+                return;
+            long need = (long)top - garbage + size;
+            if (need > MAX_SLAB)
+                throw new IllegalStateException("Segment capacity exceeded");
+            long n = cap;
+            while (n < (need << 1) && n < MAX_SLAB)
+                n <<= 1;
+            relocate((int)Math.min(n, MAX_SLAB));
+        }
+
+        /**
+         * Copies all reachable entries, bucket by bucket, into a new
+         * slab of the given capacity, and releases the old one.
+         */
+        private void relocate(int capacity) {
+            ByteBuffer os = slab, ns = ByteBuffer.allocateDirect(capacity);
+            ByteBuffer tab = table;
+            int t = SLAB_BASE;
+            for (int b = 0, n = buckets; b < n; ++b) {
+                int pred = 0;
+                for (int e = tab.getInt(b << 2); e != 0;
+                     e = os.getInt(e + NEXT)) {
+                    int size = entrySize(os.getInt(e + KLEN),
+                                         os.getInt(e + VLEN));
+                    copy(os, e, ns, t, size);
+                    ns.putInt(t + NEXT, 0);
+                    if (pred == 0)
+                        tab.putInt(b << 2, t);
+                    else
+                        ns.putInt(pred + NEXT, t);
+                    pred = t;
+                    t += size;
+                }
+            }
+            slab = ns;
+            top = t;
+            garbage = 0;
+            free(os);
+        }
+
+        /**
+         * Doubles the bucket table, splitting each chain into lo and
+         * hi lists in the manner of ConcurrentHashMap.transfer.
+         */
+        private void resizeTable() {
+            int n = buckets;
+            if (n >= MAX_BUCKETS) {
+                threshold = Integer.MAX_VALUE;
+                return;
+            }
+            int nn = n << 1;
+            ByteBuffer s = slab, ot = table;
+            ByteBuffer nt = ByteBuffer.allocateDirect(nn << 2);
+            for (int i = 0; i < n; ++i) {
+                int lo = 0, loTail = 0, hi = 0, hiTail = 0;
+                for (int e = ot.getInt(i << 2), next; e != 0; e = next) {
+                    next = s.getInt(e + NEXT);
+                    if ((s.getInt(e + HASH) & n) == 0) {
+                        if (loTail == 0)
+                            lo = e;
+                        else
+                            s.putInt(loTail + NEXT, e);
+                        loTail = e;
+                    }
+                    else {
+                        if (hiTail == 0)
+                            hi = e;
+                        else
+                            s.putInt(hiTail + NEXT, e);
+                        hiTail = e;
+                    }
+                }
+                if (loTail != 0) {
+                    s.putInt(loTail + NEXT, 0);
+                    nt.putInt(i << 2, lo);
+                }
+                if (hiTail != 0) {
+                    s.putInt(hiTail + NEXT, 0);
+                    nt.putInt((i + n) << 2, hi);
+                }
+            }
+            table = nt;
+            buckets = nn;
+            threshold = nn - (nn >>> 2);
+            free(ot);
+        }
+
+        /**
+         * Removes all entries, releasing all but a minimal slab.  The
+         * bucket table keeps its size, as traversals rely on tables
+         * never shrinking.
+         */
+        final void clear() {
+            ByteBuffer tab = table;
+            U.setMemory(((DirectBuffer)tab).address(), (long)buckets << 2,
+                        (byte)0);
+            if (slab.capacity() > MIN_SLAB) {
+                free(slab);
+                slab = ByteBuffer.allocateDirect(MIN_SLAB);
+            }
+            top = SLAB_BASE;
+            garbage = 0;
+            count = 0;
+        }
+
+        /**
+         * Adds to the given batch all entries in buckets congruent to
+         * the base index modulo the base size; read mode suffices.
+         */
+        final void collect(int baseIndex, int baseSize, Batch<K,V> batch) {
+            ByteBuffer s = slab, tab = table;
+            for (int i = baseIndex, n = buckets; i < n; i += baseSize) {
+                for (int e = tab.getInt(i << 2); e != 0;
+                     e = s.getInt(e + NEXT))
+                    batch.add(keyAt(e), valueAt(e));
+            }
+        }
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Creates a new, empty map with the default initial table size
+     * (16) and concurrency level (16).
+     *
+     * @param keyCodec the codec for keys
+     * @param valueCodec the codec for values
+     * @throws IllegalArgumentException if the key codec is {@link
+     * Codec#ofBytes}
+     * @throws NullPointerException if either codec is null
+     */
+    public OffHeapConcurrentHashMap(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(keyCodec, valueCodec, DEFAULT_CAPACITY, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Creates a new, empty map with an initial table size based on the
+     * given number of elements ({@code initialCapacity}) and number of
+     * concurrently updating threads ({@code concurrencyLevel}).
+     *
+     * @param keyCodec the codec for keys
+     * @param valueCodec the codec for values
+     * @param initialCapacity the initial capacity. The implementation
+     * performs internal sizing to accommodate this many elements.
+     * @param concurrencyLevel the estimated number of concurrently
+     * updating threads. The implementation uses this value as a
+     * sizing hint for the number of segments.
+     * @throws IllegalArgumentException if the initial capacity is
+     * negative, the concurrency level is nonpositive, or the key
+     * codec is {@link Codec#ofBytes}
+     * @throws NullPointerException if either codec is null
+     */
+    public OffHeapConcurrentHashMap(Codec<K> keyCodec, Codec<V> valueCodec,
+                                    int initialCapacity,
+                                    int concurrencyLevel) {
+        if (keyCodec == null || valueCodec == null)
+            throw new NullPointerException();
+        if (initialCapacity < 0 || concurrencyLevel <= 0 ||
+            keyCodec == BytesCodec.INSTANCE)
+            throw new IllegalArgumentException();
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        int ns = tableSizeFor(concurrencyLevel, MAX_SEGMENTS);
+        int sbits = Integer.numberOfTrailingZeros(ns);
+        this.segmentShift = 32 - sbits;
+        this.segmentMask = ns - 1;
+        long perSegment = (long)(1.0 + (double)initialCapacity / ns / 0.75);
+        int nb = tableSizeFor((int)Math.min(perSegment, MAX_BUCKETS),
+                              MAX_BUCKETS);
+        if (nb < MIN_BUCKETS)
+            nb = MIN_BUCKETS;
+        @SuppressWarnings("unchecked")
+        Segment<K,V>[] segs = (Segment<K,V>[])new Segment<?,?>[ns];
+        for (int i = 0; i < ns; ++i)
+            segs[i] = new Segment<K,V>(nb, keyCodec, valueCodec);
+        this.segments = segs;
+    }
+
+    /**
+     * Returns the segment for the given spread hash.
+     */
+    final Segment<K,V> segmentFor(int h) {
+        return segments[(segmentShift == 32) ? 0 : (h >>> segmentShift) &
+                        segmentMask];
+    }
+
+    /**
+     * Returns the sum of the segment counts.
+     */
+    final long sumCount() {
+        long sum = 0L;
+        for (Segment<K,V> s : segments)
+            sum += s.count;
+        return sum;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size() {
+        long n = sumCount();
+        return ((n < 0L) ? 0 :
+                (n > (long)Integer.MAX_VALUE) ? Integer.MAX_VALUE :
+                (int)n);
+    }
+
+    /**
+     * Returns the number of mappings. This method should be used
+     * instead of {@link #size} because a map of this size may contain
+     * more mappings than can be represented as an int. The value
+     * returned is an estimate; the actual count may differ if there
+     * are concurrent insertions or removals.
+     *
+     * @return the number of mappings
+     */
+    public long mappingCount() {
+        return sumCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEmpty() {
+        for (Segment<K,V> s : segments) {
+            if (s.count != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the total number of bytes of off-heap memory currently
+     * reserved by the bucket tables and slabs of this map.
+     *
+     * @return the number of off-heap bytes reserved
+     */
+    public long offHeapSize() {
+        long sum = 0L;
+        for (Segment<K,V> s : segments) {
+            long stamp = s.readLock();
+            try {
+                sum += s.table.capacity() + s.slab.capacity();
+            } finally {
+                s.unlockRead(stamp);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped,
+     * or {@code null} if this map contains no mapping for the key.
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public V get(Object key) {
+        int h = spread(key.hashCode());
+        Segment<K,V> s = segmentFor(h);
+        long stamp = s.readLock();
+        try {
+            int e = s.find(h, key);
+            return (e == 0) ? null : s.valueAt(e);
+        } finally {
+            s.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Tests if the specified object is a key in this table.
+     *
+     * @param  key possible key
+     * @return {@code true} if and only if the specified object
+     *         is a key in this table, as determined by the
+     *         {@code equals} method; {@code false} otherwise
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean containsKey(Object key) {
+        int h = spread(key.hashCode());
+        Segment<K,V> s = segmentFor(h);
+        long stamp = s.readLock();
+        try {
+            return s.find(h, key) != 0;
+        } finally {
+            s.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns {@code true} if this map maps one or more keys to the
+     * specified value. Note: This method may require a full traversal
+     * of the map, decoding every value, and is much slower than
+     * method {@code containsKey}.
+     *
+     * @param value value whose presence in this map is to be tested
+     * @return {@code true} if this map maps one or more keys to the
+     *         specified value
+     * @throws NullPointerException if the specified value is null
+     */
+    public boolean containsValue(Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        Traverser<K,V> it = new Traverser<K,V>(this, 0, segments.length);
+        while (it.advance()) {
+            if (value.equals(it.nextVal))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Maps the specified key to the specified value in this table.
+     * Neither the key nor the value can be null.
+     *
+     * @param key key with which the specified value is to be associated
+     * @param value value to be associated with the specified key
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key or value is null
+     * @throws IllegalStateException if the segment holding the key
+     *         cannot accommodate the new mapping
+     */
+    public V put(K key, V value) {
+        return putVal(key, value, false);
+    }
+
+    /** Implementation for put and putIfAbsent */
+    final V putVal(K key, V value, boolean onlyIfAbsent) {
+        if (key == null || value == null) throw new NullPointerException();
+        int klen = keyCodec.sizeOf(key), vlen = valueCodec.sizeOf(value);
+        if (klen < 0 || vlen < 0 || (long)klen + vlen > MAX_SLAB >>> 1)
+            throw new IllegalArgumentException("Mapping too large");
+        int h = spread(key.hashCode());
+        Segment<K,V> s = segmentFor(h);
+        long stamp = s.writeLock();
+        try {
+            return s.putVal(h, key, klen, value, vlen, onlyIfAbsent);
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes the key (and its corresponding value) from this map.
+     * This method does nothing if the key is not in the map.
+     *
+     * @param  key the key that needs to be removed
+     * @return the previous value associated with {@code key}, or
+     *         {@code null} if there was no mapping for {@code key}
+     * @throws NullPointerException if the specified key is null
+     */
+    public V remove(Object key) {
+        return replaceNode(key, null, null);
+    }
+
+    /**
+     * Implementation for the four public remove/replace methods.
+     */
+    final V replaceNode(Object key, V value, Object cv) {
+        int vlen = 0;
+        if (value != null &&
+            ((vlen = valueCodec.sizeOf(value)) < 0 || vlen > MAX_SLAB >>> 1))
+            throw new IllegalArgumentException("Mapping too large");
+        int h = spread(key.hashCode());
+        Segment<K,V> s = segmentFor(h);
+        long stamp = s.writeLock();
+        try {
+            return s.replaceNode(h, key, value, vlen, cv);
+        } finally {
+            s.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all of the mappings from this map, and releases all but
+     * a minimal amount of off-heap memory.
+     */
+    public void clear() {
+        for (Segment<K,V> s : segments) {
+            long stamp = s.writeLock();
+            try {
+                s.clear();
+            } finally {
+                s.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V putIfAbsent(K key, V value) {
+        return putVal(key, value, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if the specified key is null
+     */
+    public boolean remove(Object key, Object value) {
+        if (key == null)
+            throw new NullPointerException();
+        return value != null && replaceNode(key, null, value) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws NullPointerException if any of the arguments are null
+     */
+    public boolean replace(K key, V oldValue, V newValue) {
+        if (key == null || oldValue == null || newValue == null)
+            throw new NullPointerException();
+        return replaceNode(key, newValue, oldValue) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the previous value associated with the specified key,
+     *         or {@code null} if there was no mapping for the key
+     * @throws NullPointerException if the specified key or value is null
+     */
+    public V replace(K key, V value) {
+        if (key == null || value == null)
+            throw new NullPointerException();
+        return replaceNode(key, value, null);
+    }
+
+    /**
+     * Returns the value to which the specified key is mapped, or the
+     * given default value if this map contains no mapping for the
+     * key.
+     *
+     * @param key the key whose associated value is to be returned
+     * @param defaultValue the value to return if this map contains
+     * no mapping for the given key
+     * @return the mapping for the key, if present; else the default value
+     * @throws NullPointerException if the specified key is null
+     */
+    public V getOrDefault(Object key, V defaultValue) {
+        V v;
+        return (v = get(key)) == null ? defaultValue : v;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        if (action == null) throw new NullPointerException();
+        Traverser<K,V> it = new Traverser<K,V>(this, 0, segments.length);
+        while (it.advance())
+            action.accept(it.nextKey, it.nextVal);
+    }
+
+    /**
+     * Returns a {@link Set} view of the keys contained in this map.
+     * The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, but not addition.  Its iterators are weakly consistent.
+     *
+     * @return the set view
+     */
+    public Set<K> keySet() {
+        KeySetView<K,V> ks;
+        return (ks = keySet) != null ? ks : (keySet = new KeySetView<K,V>(this));
+    }
+
+    /**
+     * Returns a {@link Collection} view of the values contained in this
+     * map.  The collection is backed by the map, so changes to the map
+     * are reflected in the collection, and vice-versa.  The collection
+     * supports element removal, but not addition.  Its iterators are
+     * weakly consistent.
+     *
+     * @return the collection view
+     */
+    public Collection<V> values() {
+        ValuesView<K,V> vs;
+        return (vs = values) != null ? vs : (values = new ValuesView<K,V>(this));
+    }
+
+    /**
+     * Returns a {@link Set} view of the mappings contained in this map.
+     * The set is backed by the map, so changes to the map are
+     * reflected in the set, and vice-versa.  The set supports element
+     * removal, but not addition.  Its iterators are weakly consistent,
+     * and the entries they return write through to the map on
+     * {@code setValue}.
+     *
+     * @return the set view
+     */
+    public Set<Map.Entry<K,V>> entrySet() {
+        EntrySetView<K,V> es;
+        return (es = entrySet) != null ? es : (entrySet = new EntrySetView<K,V>(this));
+    }
+
+    /* ---------------- Bulk operations -------------- */
+
+    /**
+     * Computes initial batch value for bulk tasks, as in
+     * ConcurrentHashMap.batchFor.
+     */
+    final int batchFor(long b) {
+        long n;
+        if (b == Long.MAX_VALUE || (n = sumCount()) <= 1L || n < b)
+            return 0;
+        int sp = ForkJoinPool.getCommonPoolParallelism() << 2; // slack of 4
+        return (b <= 0L || (n /= b) >= sp) ? sp : (int)n;
+    }
+
+    /**
+     * Performs the given action for each (key, value).
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param action the action
+     */
+    public void forEach(long parallelismThreshold,
+                        BiConsumer<? super K,? super V> action) {
+        if (action == null) throw new NullPointerException();
+        new ForEachMappingTask<K,V>
+            (null, batchFor(parallelismThreshold), 0, segments.length, this,
+             action).invoke();
+    }
+
+    /**
+     * Returns a non-null result from applying the given search
+     * function on each (key, value), or null if none.  Upon
+     * success, further element processing is suppressed and the
+     * results of any other parallel invocations of the search
+     * function are ignored.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param searchFunction a function returning a non-null
+     * result on success, else null
+     * @param <U> the return type of the search function
+     * @return a non-null result from applying the given search
+     * function on each (key, value), or null if none
+     */
+    public <U> U search(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+        if (searchFunction == null) throw new NullPointerException();
+        return new SearchMappingsTask<K,V,U>
+            (null, batchFor(parallelismThreshold), 0, segments.length, this,
+             searchFunction, new AtomicReference<U>()).invoke();
+    }
+
+    /**
+     * Returns the result of accumulating the given transformation
+     * of all (key, value) pairs using the given reducer to
+     * combine values, or null if none.
+     *
+     * @param parallelismThreshold the (estimated) number of elements
+     * needed for this operation to be executed in parallel
+     * @param transformer a function returning the transformation
+     * for an element, or null if there is no transformation (in
+     * which case it is not combined)
+     * @param reducer a commutative associative combining function
+     * @param <U> the return type of the transformer
+     * @return the result of accumulating the given transformation
+     * of all (key, value) pairs
+     */
+    public <U> U reduce(long parallelismThreshold,
+                        BiFunction<? super K, ? super V, ? extends U> transformer,
+                        BiFunction<? super U, ? super U, ? extends U> reducer) {
+        if (transformer == null || reducer == null)
+            throw new NullPointerException();
+        return new MapReduceMappingsTask<K,V,U>
+            (null, batchFor(parallelismThreshold), 0, segments.length, this,
+             null, transformer, reducer).invoke();
+    }
+
+    /* ---------------- Traversal -------------- */
+
+    /**
+     * A reusable buffer of decoded mappings.
+     */
+    static final class Batch<K,V> {
+        Object[] keys = new Object[8];
+        Object[] vals = new Object[8];
+        int size;
+
+        void add(K k, V v) {
+            int n = size;
+            if (n == keys.length) {
+                keys = java.util.Arrays.copyOf(keys, n << 1);
+                vals = java.util.Arrays.copyOf(vals, n << 1);
+            }
+            keys[n] = k;
+            vals[n] = v;
+            size = n + 1;
+        }
+
+        void clear() {
+            java.util.Arrays.fill(keys, 0, size, null);
+            java.util.Arrays.fill(vals, 0, size, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * Encapsulates traversal of the segments in the range
+     * [segIndex, segLimit), as described in the overview.
+     */
+    static class Traverser<K,V> {
+        final OffHeapConcurrentHashMap<K,V> map;
+        final Batch<K,V> batch = new Batch<K,V>();
+        int segIndex;      // current segment
+        int segLimit;      // exclusive upper bound on segments
+        int baseSize;      // table length when segment first visited
+        int baseIndex;     // next base index within segment
+        int batchIndex;    // next mapping within batch
+        K nextKey;         // key of current mapping
+        V nextVal;         // value of current mapping
+
+        Traverser(OffHeapConcurrentHashMap<K,V> map, int index, int limit) {
+            this.map = map;
+            this.segIndex = index;
+            this.segLimit = limit;
+            this.baseSize = -1;
+        }
+
+        /**
+         * Advances to the next mapping, setting nextKey and nextVal,
+         * or returns false if there are no more.
+         */
+        @SuppressWarnings("unchecked")
+        final boolean advance() {
+            Batch<K,V> b = batch;
+            while (batchIndex >= b.size) {
+                b.clear();
+                batchIndex = 0;
+                if (segIndex >= segLimit) {
+                    nextKey = null;
+                    nextVal = null;
+                    return false;
+                }
+                Segment<K,V> s = map.segments[segIndex];
+                long stamp = s.readLock();
+                try {
+                    if (baseSize < 0)
+                        baseSize = s.buckets;
+                    s.collect(baseIndex, baseSize, b);
+                } finally {
+                    s.unlockRead(stamp);
+                }
+                if (++baseIndex >= baseSize) {
+                    ++segIndex;
+                    baseIndex = 0;
+                    baseSize = -1;
+                }
+            }
+            int i = batchIndex++;
+            nextKey = (K)b.keys[i];
+            nextVal = (V)b.vals[i];
+            return true;
+        }
+    }
+
+    /**
+     * Base of key, value, and entry Iterators.
+     */
+    static class BaseIterator<K,V> extends Traverser<K,V> {
+        K lastKey;
+        boolean hasNext;
+
+        BaseIterator(OffHeapConcurrentHashMap<K,V> map) {
+            super(map, 0, map.segments.length);
+            hasNext = advance();
+        }
+
+        public final boolean hasNext() { return hasNext; }
+
+        final void next0() {
+            if (!hasNext)
+                throw new NoSuchElementException();
+            lastKey = nextKey;
+        }
+
+        public final void remove() {
+            K k;
+            if ((k = lastKey) == null)
+                throw new IllegalStateException();
+            lastKey = null;
+            map.remove(k);
+        }
+    }
+
+    static final class KeyIterator<K,V> extends BaseIterator<K,V>
+        implements Iterator<K> {
+        KeyIterator(OffHeapConcurrentHashMap<K,V> map) { super(map); }
+        public K next() {
+            next0();
+            K k = nextKey;
+            hasNext = advance();
+            return k;
+        }
+    }
+
+    static final class ValueIterator<K,V> extends BaseIterator<K,V>
+        implements Iterator<V> {
+        ValueIterator(OffHeapConcurrentHashMap<K,V> map) { super(map); }
+        public V next() {
+            next0();
+            V v = nextVal;
+            hasNext = advance();
+            return v;
+        }
+    }
+
+    static final class EntryIterator<K,V> extends BaseIterator<K,V>
+        implements Iterator<Map.Entry<K,V>> {
+        EntryIterator(OffHeapConcurrentHashMap<K,V> map) { super(map); }
+        public Map.Entry<K,V> next() {
+            next0();
+            Map.Entry<K,V> e = new MapEntry<K,V>(nextKey, nextVal, map);
+            hasNext = advance();
+            return e;
+        }
+    }
+
+    /**
+     * Exported Entry for EntryIterator, writing through to the map
+     * on setValue as for ConcurrentHashMap.MapEntry.
+     */
+    static final class MapEntry<K,V> extends AbstractMap.SimpleEntry<K,V> {
+        private static final long serialVersionUID = 4230873391578374547L;
+        final transient OffHeapConcurrentHashMap<K,V> map;
+        MapEntry(K key, V val, OffHeapConcurrentHashMap<K,V> map) {
+            super(key, val);
+            this.map = map;
+        }
+        public V setValue(V value) {
+            if (value == null) throw new NullPointerException();
+            V v = super.setValue(value);
+            map.put(getKey(), value);
+            return v;
+        }
+    }
+
+    static final class KeySetView<K,V> extends AbstractSet<K> {
+        final OffHeapConcurrentHashMap<K,V> map;
+        KeySetView(OffHeapConcurrentHashMap<K,V> map) { this.map = map; }
+        public Iterator<K> iterator() { return new KeyIterator<K,V>(map); }
+        public int size() { return map.size(); }
+        public boolean isEmpty() { return map.isEmpty(); }
+        public void clear() { map.clear(); }
+        public boolean contains(Object o) { return map.containsKey(o); }
+        public boolean remove(Object o) { return map.remove(o) != null; }
+    }
+
+    static final class ValuesView<K,V> extends AbstractCollection<V> {
+        final OffHeapConcurrentHashMap<K,V> map;
+        ValuesView(OffHeapConcurrentHashMap<K,V> map) { this.map = map; }
+        public Iterator<V> iterator() { return new ValueIterator<K,V>(map); }
+        public int size() { return map.size(); }
+        public boolean isEmpty() { return map.isEmpty(); }
+        public void clear() { map.clear(); }
+        public boolean contains(Object o) { return map.containsValue(o); }
+    }
+
+    static final class EntrySetView<K,V> extends AbstractSet<Map.Entry<K,V>> {
+        final OffHeapConcurrentHashMap<K,V> map;
+        EntrySetView(OffHeapConcurrentHashMap<K,V> map) { this.map = map; }
+        public Iterator<Map.Entry<K,V>> iterator() {
+            return new EntryIterator<K,V>(map);
+        }
+        public int size() { return map.size(); }
+        public boolean isEmpty() { return map.isEmpty(); }
+        public void clear() { map.clear(); }
+        public boolean contains(Object o) {
+            Object k, v, r; Map.Entry<?,?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (r = map.get(k)) != null &&
+                    (v = e.getValue()) != null &&
+                    (v == r || v.equals(r)));
+        }
+        public boolean remove(Object o) {
+            Object k, v; Map.Entry<?,?> e;
+            return ((o instanceof Map.Entry) &&
+                    (k = (e = (Map.Entry<?,?>)o).getKey()) != null &&
+                    (v = e.getValue()) != null &&
+                    map.remove(k, v));
+        }
+    }
+
+    /* ---------------- Tasks -------------- */
+
+    /**
+     * Base class for bulk tasks, splitting the range of segments
+     * [baseIndex, baseLimit) in the manner of ConcurrentHashMap.BulkTask.
+     */
+    @SuppressWarnings("serial")
+    abstract static class BulkTask<K,V,R> extends CountedCompleter<R> {
+        final OffHeapConcurrentHashMap<K,V> map;
+        int batch;              // split control
+        int baseIndex;          // first segment
+        int baseLimit;          // exclusive segment limit
+
+        BulkTask(BulkTask<K,V,?> par, int b, int i, int f,
+                 OffHeapConcurrentHashMap<K,V> map) {
+            super(par);
+            this.batch = b;
+            this.baseIndex = i;
+            this.baseLimit = f;
+            this.map = map;
+        }
+
+        final Traverser<K,V> traverser() {
+            return new Traverser<K,V>(map, baseIndex, baseLimit);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class ForEachMappingTask<K,V>
+        extends BulkTask<K,V,Void> {
+        final BiConsumer<? super K, ? super V> action;
+        ForEachMappingTask
+            (BulkTask<K,V,?> p, int b, int i, int f,
+             OffHeapConcurrentHashMap<K,V> map,
+             BiConsumer<? super K,? super V> action) {
+            super(p, b, i, f, map);
+            this.action = action;
+        }
+        public final void compute() {
+            final BiConsumer<? super K, ? super V> action;
+            if ((action = this.action) != null) {
+                for (int i = baseIndex, f, h; batch > 0 &&
+                         (h = ((f = baseLimit) + i) >>> 1) > i;) {
+                    addToPendingCount(1);
+                    new ForEachMappingTask<K,V>
+                        (this, batch >>>= 1, baseLimit = h, f, map,
+                         action).fork();
+                }
+                Traverser<K,V> it = traverser();
+                while (it.advance())
+                    action.accept(it.nextKey, it.nextVal);
+                propagateCompletion();
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class SearchMappingsTask<K,V,U>
+        extends BulkTask<K,V,U> {
+        final BiFunction<? super K, ? super V, ? extends U> searchFunction;
+        final AtomicReference<U> result;
+        SearchMappingsTask
+            (BulkTask<K,V,?> p, int b, int i, int f,
+             OffHeapConcurrentHashMap<K,V> map,
+             BiFunction<? super K, ? super V, ? extends U> searchFunction,
+             AtomicReference<U> result) {
+            super(p, b, i, f, map);
+            this.searchFunction = searchFunction; this.result = result;
+        }
+        public final U getRawResult() { return result.get(); }
+        public final void compute() {
+            final BiFunction<? super K, ? super V, ? extends U> searchFunction;
+            final AtomicReference<U> result;
+            if ((searchFunction = this.searchFunction) != null &&
+                (result = this.result) != null) {
+                for (int i = baseIndex, f, h; batch > 0 &&
+                         (h = ((f = baseLimit) + i) >>> 1) > i;) {
+                    if (result.get() != null)
+                        return;
+                    addToPendingCount(1);
+                    new SearchMappingsTask<K,V,U>
+                        (this, batch >>>= 1, baseLimit = h, f, map,
+                         searchFunction, result).fork();
+                }
+                Traverser<K,V> it = traverser();
+                while (result.get() == null) {
+                    U u;
+                    if (!it.advance()) {
+                        propagateCompletion();
+                        break;
+                    }
+                    if ((u = searchFunction.apply(it.nextKey, it.nextVal)) != null) {
+                        if (result.compareAndSet(null, u))
+                            quietlyCompleteRoot();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class MapReduceMappingsTask<K,V,U>
+        extends BulkTask<K,V,U> {
+        final BiFunction<? super K, ? super V, ? extends U> transformer;
+        final BiFunction<? super U, ? super U, ? extends U> reducer;
+        U result;
+        MapReduceMappingsTask<K,V,U> rights, nextRight;
+        MapReduceMappingsTask
+            (BulkTask<K,V,?> p, int b, int i, int f,
+             OffHeapConcurrentHashMap<K,V> map,
+             MapReduceMappingsTask<K,V,U> nextRight,
+             BiFunction<? super K, ? super V, ? extends U> transformer,
+             BiFunction<? super U, ? super U, ? extends U> reducer) {
+            super(p, b, i, f, map); this.nextRight = nextRight;
+            this.transformer = transformer;
+            this.reducer = reducer;
+        }
+        public final U getRawResult() { return result; }
+        public final void compute() {
+            final BiFunction<? super K, ? super V, ? extends U> transformer;
+            final BiFunction<? super U, ? super U, ? extends U> reducer;
+            if ((transformer = this.transformer) != null &&
+                (reducer = this.reducer) != null) {
+                for (int i = baseIndex, f, h; batch > 0 &&
+                         (h = ((f = baseLimit) + i) >>> 1) > i;) {
+                    addToPendingCount(1);
+                    (rights = new MapReduceMappingsTask<K,V,U>
+                     (this, batch >>>= 1, baseLimit = h, f, map,
+                      rights, transformer, reducer)).fork();
+                }
+                U r = null;
+                Traverser<K,V> it = traverser();
+                while (it.advance()) {
+                    U u;
+                    if ((u = transformer.apply(it.nextKey, it.nextVal)) != null)
+                        r = (r == null) ? u : reducer.apply(r, u);
+                }
+                result = r;
+                CountedCompleter<?> c;
+                for (c = firstComplete(); c != null; c = c.nextComplete()) {
+                    @SuppressWarnings("unchecked")
+                    MapReduceMappingsTask<K,V,U>
+                        t = (MapReduceMappingsTask<K,V,U>)c,
+                        s = t.rights;
+                    while (s != null) {
+                        U tr, sr;
+                        if ((sr = s.result) != null)
+                            t.result = (((tr = t.result) == null) ? sr :
+                                        reducer.apply(tr, sr));
+                        s = t.rights = s.nextRight;
+                    }
+                }
+            }
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U = sun.misc.Unsafe.getUnsafe();
+}
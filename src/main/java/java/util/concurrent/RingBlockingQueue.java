@@ -0,0 +1,866 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded {@linkplain BlockingQueue blocking queue} backed by a ring
+ * of slots that producers and consumers claim with atomic operations
+ * rather than locks.  This queue orders elements FIFO
+ * (first-in-first-out).  Unlike {@link ArrayBlockingQueue}, which
+ * guards both ends with a single lock, and {@link LinkedBlockingQueue},
+ * which allocates a node per insertion and serializes producers on one
+ * lock, insertions and removals here proceed in parallel and allocate
+ * nothing, so the queue is suited for use as the work queue of a
+ * heavily loaded {@link ThreadPoolExecutor}.
+ *
+ * <p>The capacity is fixed at construction, and is rounded up to the
+ * nearest power of two.  Threads that must wait, because the queue is
+ * full or empty, do so according to a {@link WaitStrategy}.  Spinning
+ * or yielding strategies give the lowest latency when threads can be
+ * dedicated to producing and consuming; the default {@link
+ * WaitStrategy#PARK PARK} strategy spins briefly and then blocks,
+ * which is appropriate for thread pools.
+ *
+ * <p>Removal of an interior element, as by {@link #remove(Object)},
+ * marks its slot so that the element is skipped when the slot reaches
+ * the head of the queue.  Until then the slot continues to occupy
+ * capacity.
+ *
+ * <p>Iterators are <em>weakly consistent</em>: they traverse a snapshot
+ * of the elements present upon construction of the iterator.  The bulk
+ * operations and {@link #size} are not atomic.
+ *
+ * <p>This class and its iterator implement all of the
+ * <em>optional</em> methods of the {@link Collection} and {@link
+ * Iterator} interfaces.
+ *
+ * @since 1.8
+ * @param <E> the type of elements held in this collection
+ */
+public class RingBlockingQueue<E> extends AbstractQueue<E>
+        implements BlockingQueue<E> {
+
+    /*
+     * Slots are managed as in Vyukov's bounded MPMC queue.  Each slot
+     * has a sequence number, initially its index.  A producer at tail
+     * position t may fill slot (t & mask) only when its sequence
+     * equals t; it claims the position by CASing tail, stores the
+     * element, and releases the slot by setting its sequence to t+1.
+     * A consumer at head position h may take the slot when its
+     * sequence equals h+1; it claims the position by CASing head,
+     * takes the element, and sets the sequence to h+capacity, making
+     * the slot available to the producer one lap later.  A sequence
+     * smaller than expected means the queue is full (for producers)
+     * or empty (for consumers).  head and tail live on separate
+     * cache lines so that producers and consumers do not interfere.
+     *
+     * Interior removal CASes the element of a full slot to TOMBSTONE;
+     * consumers take elements with getAndSet so that exactly one of a
+     * racing removal and consumption succeeds, and discard tombstones.
+     *
+     * Blocking under PARK uses a lock and conditions only on the slow
+     * path.  A waiter increments its waiter count (a volatile write
+     * under the lock) before rechecking the queue; a thread that has
+     * just made progress possible issues a full fence before reading
+     * the count, so either the waiter sees the change or the
+     * signaller sees the waiter.  Signals are sent under the lock, so
+     * they cannot slip in between a waiter's recheck and its await.
+     */
+
+    /**
+     * Ways in which threads wait for space or elements.
+     *
+     * @since 1.8
+     */
+    public enum WaitStrategy {
+        /**
+         * Busy-spins.  Lowest latency, but occupies a processor for
+         * the whole wait; use only when waiting threads have
+         * processors to themselves.
+         */
+        SPIN,
+        /**
+         * Spins briefly, then repeatedly yields the processor.
+         */
+        YIELD,
+        /**
+         * Spins briefly, then blocks until signalled.
+         */
+        PARK
+    }
+
+    /** Number of CPUS, to place bounds on some sizings */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** Spins before yielding or blocking; zero on uniprocessors. */
+    static final int SPINS = (NCPU > 1) ? 1 << 7 : 0;
+
+    /** Yields before blocking under PARK. */
+    static final int YIELDS = 1 << 2;
+
+    /** The largest capacity, a power of two */
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    /** Marks an element removed by remove(Object) */
+    static final Object TOMBSTONE = new Object();
+
+    /** The queued items */
+    final Object[] items;
+
+    /** Sequence numbers of the slots */
+    final long[] sequences;
+
+    /** items.length - 1 */
+    final int mask;
+
+    /** How waiting is done */
+    final WaitStrategy waitStrategy;
+
+    /** Position of the next take */
+    @sun.misc.Contended("head") volatile long head;
+
+    /** Position of the next put */
+    @sun.misc.Contended("tail") volatile long tail;
+
+    /** Number of tombstones not yet consumed, for size estimates */
+    volatile int tombstones;
+
+    /** Lock and conditions used only under PARK */
+    final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+
+    /** Number of threads waiting under lock for each condition */
+    volatile int takeWaiters;
+    volatile int putWaiters;
+
+    /**
+     * Creates a {@code RingBlockingQueue} with at least the given
+     * capacity and the {@link WaitStrategy#PARK PARK} wait strategy.
+     *
+     * @param capacity the minimum capacity of this queue
+     * @throws IllegalArgumentException if {@code capacity < 1}
+     */
+    public RingBlockingQueue(int capacity) {
+        this(capacity, WaitStrategy.PARK);
+    }
+
+    /**
+     * Creates a {@code RingBlockingQueue} with at least the given
+     * capacity and the given wait strategy.
+     *
+     * @param capacity the minimum capacity of this queue
+     * @param waitStrategy the way in which threads wait for space
+     *        or elements
+     * @throws IllegalArgumentException if {@code capacity < 1} or
+     *         exceeds 2<sup>30</sup>
+     * @throws NullPointerException if waitStrategy is null
+     */
+    public RingBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1 || capacity > MAXIMUM_CAPACITY)
+            throw new IllegalArgumentException();
+        if (waitStrategy == null)
+            throw new NullPointerException();
+        int n = (capacity == 1) ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.items = new Object[n];
+        long[] seqs = new long[n];
+        for (int i = 0; i < n; ++i)
+            seqs[i] = i;
+        this.sequences = seqs;
+        this.mask = n - 1;
+        this.waitStrategy = waitStrategy;
+        if (waitStrategy == WaitStrategy.PARK) {
+            lock = new ReentrantLock();
+            notEmpty = lock.newCondition();
+            notFull = lock.newCondition();
+        }
+        else {
+            lock = null;
+            notEmpty = notFull = null;
+        }
+    }
+
+    /**
+     * Creates a {@code RingBlockingQueue} with at least the given
+     * capacity, the {@link WaitStrategy#PARK PARK} wait strategy, and
+     * initially containing the elements of the given collection, added
+     * in traversal order of the collection's iterator.
+     *
+     * @param capacity the minimum capacity of this queue
+     * @param c the collection of elements to initially contain
+     * @throws IllegalArgumentException if {@code capacity} is less than
+     *         1 or less than {@code c.size()}
+     * @throws NullPointerException if the specified collection or any
+     *         of its elements are null
+     */
+    public RingBlockingQueue(int capacity, Collection<? extends E> c) {
+        this(capacity, WaitStrategy.PARK);
+        if (capacity < c.size())
+            throw new IllegalArgumentException();
+        for (E e : c) {
+            if (!offer(e))
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /* ---------------- Slot operations -------------- */
+
+    private static long seqOffset(int i) {
+        return ((long)i << LSHIFT) + LBASE;
+    }
+
+    private static long itemOffset(int i) {
+        return ((long)i << ASHIFT) + ABASE;
+    }
+
+    /**
+     * Inserts the element if there is space.
+     */
+    private boolean tryOffer(Object e) {
+        final long[] seqs = sequences;
+        final int m = mask;
+        long t = tail;
+        for (;;) {
+            int i = (int)t & m;
+            long so = seqOffset(i);
+            long d = U.getLongVolatile(seqs, so) - t;
+            if (d == 0L) {
+                if (U.compareAndSwapLong(this, TAIL, t, t + 1L)) {
+                    U.putObject(items, itemOffset(i), e);
+                    U.putOrderedLong(seqs, so, t + 1L);
+                    return true;
+                }
+            }
+            else if (d < 0L)
+                return false;
+            t = tail;
+        }
+    }
+
+    /**
+     * Removes and returns the head element, or null if empty.
+     * Slots of removed elements skipped on the way are signalled
+     * here, since callers signal only for the element returned.
+     */
+    @SuppressWarnings("unchecked")
+    private E tryPoll() {
+        final long[] seqs = sequences;
+        final Object[] a = items;
+        final int m = mask;
+        long h = head;
+        for (;;) {
+            int i = (int)h & m;
+            long so = seqOffset(i);
+            long d = U.getLongVolatile(seqs, so) - (h + 1L);
+            if (d == 0L) {
+                if (U.compareAndSwapLong(this, HEAD, h, h + 1L)) {
+                    Object x = U.getAndSetObject(a, itemOffset(i), null);
+                    U.putOrderedLong(seqs, so, h + m + 1L);
+                    if (x != TOMBSTONE)
+                        return (E)x;
+                    U.getAndAddInt(this, TOMBSTONES, -1);
+                    signalNotFull();
+                }
+            }
+            else if (d < 0L)
+                return null;
+            h = head;
+        }
+    }
+
+    /**
+     * Returns the head element without removing it, or null if empty.
+     */
+    @SuppressWarnings("unchecked")
+    private E tryPeek() {
+        final long[] seqs = sequences;
+        final int m = mask;
+        for (long h = head; ; ) {
+            int i = (int)h & m;
+            long d = U.getLongVolatile(seqs, seqOffset(i)) - (h + 1L);
+            if (d == 0L) {
+                Object x = U.getObjectVolatile(items, itemOffset(i));
+                if (x != null && x != TOMBSTONE)
+                    return (E)x;
+                if (x == TOMBSTONE && head == h) {
+                    ++h;    // skip removed element
+                    continue;
+                }
+            }
+            else if (d < 0L)
+                return null;
+            h = head;
+        }
+    }
+
+    /**
+     * Wakes a thread waiting to take, if any, after an insertion.
+     */
+    private void signalNotEmpty() {
+        if (lock != null) {
+            U.fullFence();
+            if (takeWaiters != 0) {
+                final ReentrantLock lock = this.lock;
+                lock.lock();
+                try {
+                    notEmpty.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wakes a thread waiting to put, if any, after a removal.
+     */
+    private void signalNotFull() {
+        if (lock != null) {
+            U.fullFence();
+            if (putWaiters != 0) {
+                final ReentrantLock lock = this.lock;
+                lock.lock();
+                try {
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for space to insert the element.
+     *
+     * @param timed true if timed wait
+     * @param nanos the maximum wait, if timed
+     * @return true if inserted, false if timed out
+     */
+    private boolean awaitOffer(Object e, boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        final WaitStrategy ws = waitStrategy;
+        for (int spins = 0; ; ++spins) {
+            if (tryOffer(e))
+                return true;
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                return false;
+            if (spins < SPINS || ws == WaitStrategy.SPIN)
+                continue;
+            if (ws == WaitStrategy.YIELD || spins < SPINS + YIELDS) {
+                Thread.yield();
+                continue;
+            }
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                putWaiters = putWaiters + 1;
+                try {
+                    while (!tryOffer(e)) {
+                        if (!timed)
+                            notFull.await();
+                        else if (nanos <= 0L)
+                            return false;
+                        else
+                            nanos = notFull.awaitNanos(nanos);
+                    }
+                    return true;
+                } finally {
+                    putWaiters = putWaiters - 1;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for an element to take.
+     *
+     * @param timed true if timed wait
+     * @param nanos the maximum wait, if timed
+     * @return the element, or null if timed out
+     */
+    private E awaitPoll(boolean timed, long nanos)
+        throws InterruptedException {
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        final WaitStrategy ws = waitStrategy;
+        E x;
+        for (int spins = 0; ; ++spins) {
+            if ((x = tryPoll()) != null)
+                return x;
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (timed && (nanos = deadline - System.nanoTime()) <= 0L)
+                return null;
+            if (spins < SPINS || ws == WaitStrategy.SPIN)
+                continue;
+            if (ws == WaitStrategy.YIELD || spins < SPINS + YIELDS) {
+                Thread.yield();
+                continue;
+            }
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                takeWaiters = takeWaiters + 1;
+                try {
+                    while ((x = tryPoll()) == null) {
+                        if (!timed)
+                            notEmpty.await();
+                        else if (nanos <= 0L)
+                            return null;
+                        else
+                            nanos = notEmpty.awaitNanos(nanos);
+                    }
+                    return x;
+                } finally {
+                    takeWaiters = takeWaiters - 1;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /* ---------------- Public operations -------------- */
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and throwing an
+     * {@code IllegalStateException} if this queue is full.
+     *
+     * @param e the element to add
+     * @return {@code true} (as specified by {@link Collection#add})
+     * @throws IllegalStateException if this queue is full
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean add(E e) {
+        return super.add(e);
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue if it is
+     * possible to do so immediately without exceeding the queue's
+     * capacity, returning {@code true} upon success and {@code false}
+     * if this queue is full.
+     *
+     * @throws NullPointerException if the specified element is null
+     */
+    public boolean offer(E e) {
+        if (e == null) throw new NullPointerException();
+        if (!tryOffer(e))
+            return false;
+        signalNotEmpty();
+        return true;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * for space to become available if the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public void put(E e) throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        if (!tryOffer(e))
+            awaitOffer(e, false, 0L);
+        signalNotEmpty();
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue, waiting
+     * up to the specified wait time for space to become available if
+     * the queue is full.
+     *
+     * @throws InterruptedException {@inheritDoc}
+     * @throws NullPointerException {@inheritDoc}
+     */
+    public boolean offer(E e, long timeout, TimeUnit unit)
+        throws InterruptedException {
+        if (e == null) throw new NullPointerException();
+        if (!tryOffer(e) && !awaitOffer(e, true, unit.toNanos(timeout)))
+            return false;
+        signalNotEmpty();
+        return true;
+    }
+
+    public E poll() {
+        E x;
+        if ((x = tryPoll()) != null)
+            signalNotFull();
+        return x;
+    }
+
+    public E take() throws InterruptedException {
+        E x;
+        if ((x = tryPoll()) == null)
+            x = awaitPoll(false, 0L);
+        signalNotFull();
+        return x;
+    }
+
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E x;
+        if ((x = tryPoll()) == null &&
+            (x = awaitPoll(true, unit.toNanos(timeout))) == null)
+            return null;
+        signalNotFull();
+        return x;
+    }
+
+    public E peek() {
+        return tryPeek();
+    }
+
+    /**
+     * Returns the number of elements in this queue.  This is an
+     * estimate if the queue is being concurrently modified.
+     *
+     * @return the number of elements in this queue
+     */
+    public int size() {
+        long h = head, t = tail;
+        long n = t - h - tombstones;
+        return (n <= 0L) ? 0 : (n >= items.length) ? items.length : (int)n;
+    }
+
+    public boolean isEmpty() {
+        return tryPeek() == null;
+    }
+
+    /**
+     * Returns the number of additional elements that this queue can
+     * ideally (in the absence of memory or resource constraints) accept
+     * without blocking.  This is an estimate if the queue is being
+     * concurrently modified.
+     *
+     * <p>Note that you <em>cannot</em> always tell if an attempt to
+     * insert an element will succeed by inspecting
+     * {@code remainingCapacity} because it may be the case that
+     * another thread is about to insert or remove an element.
+     */
+    public int remainingCapacity() {
+        long h = head, t = tail;
+        long n = t - h;
+        return (n <= 0L) ? items.length :
+            (n >= items.length) ? 0 : items.length - (int)n;
+    }
+
+    /**
+     * Returns the capacity of this queue.
+     *
+     * @return the capacity of this queue, a power of two
+     */
+    public int capacity() {
+        return items.length;
+    }
+
+    /**
+     * Returns the wait strategy of this queue.
+     *
+     * @return the wait strategy
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /**
+     * Removes a single instance of the specified element from this
+     * queue, if it is present.  More formally, removes an element
+     * {@code e} such that {@code o.equals(e)}, if this queue contains
+     * one or more such elements.  Returns {@code true} if this queue
+     * contained the specified element (or equivalently, if this queue
+     * changed as a result of the call).
+     *
+     * @param o element to be removed from this queue, if present
+     * @return {@code true} if this queue changed as a result of the call
+     */
+    public boolean remove(Object o) {
+        return o != null && removeMatch(o, false);
+    }
+
+    /**
+     * Replaces the first element matching o by a tombstone.
+     *
+     * @param identity true if matching by identity rather than equals
+     */
+    boolean removeMatch(Object o, boolean identity) {
+        final long[] seqs = sequences;
+        final Object[] a = items;
+        final int m = mask;
+        for (long h = head, t = tail; h - t < 0L; ++h) {
+            int i = (int)h & m;
+            if (U.getLongVolatile(seqs, seqOffset(i)) != h + 1L)
+                continue;           // being filled or already taken
+            long io = itemOffset(i);
+            Object x = U.getObjectVolatile(a, io);
+            if (x != null && x != TOMBSTONE &&
+                (identity ? o == x : o.equals(x)) &&
+                U.compareAndSwapObject(a, io, x, TOMBSTONE)) {
+                U.getAndAddInt(this, TOMBSTONES, 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code true} if this queue contains the specified element.
+     * More formally, returns {@code true} if and only if this queue
+     * contains at least one element {@code e} such that
+     * {@code o.equals(e)}.
+     *
+     * @param o object to be checked for containment in this queue
+     * @return {@code true} if this queue contains the specified element
+     */
+    public boolean contains(Object o) {
+        if (o != null) {
+            for (Object x : toArray()) {
+                if (o.equals(x))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue, in
+     * proper sequence.  Elements inserted or removed during the call may
+     * or may not be included.
+     *
+     * @return an array containing all of the elements in this queue
+     */
+    public Object[] toArray() {
+        final long[] seqs = sequences;
+        final Object[] a = items;
+        final int m = mask;
+        ArrayList<Object> list = new ArrayList<Object>();
+        for (long h = head, t = tail; h - t < 0L; ++h) {
+            int i = (int)h & m;
+            if (U.getLongVolatile(seqs, seqOffset(i)) != h + 1L)
+                continue;
+            Object x = U.getObjectVolatile(a, itemOffset(i));
+            if (x != null && x != TOMBSTONE)
+                list.add(x);
+        }
+        return list.toArray();
+    }
+
+    /**
+     * Returns an array containing all of the elements in this queue, in
+     * proper sequence; the runtime type of the returned array is that of
+     * the specified array.
+     *
+     * @param a the array into which the elements of the queue are to
+     *          be stored, if it is big enough; otherwise, a new array of the
+     *          same runtime type is allocated for this purpose
+     * @return an array containing all of the elements in this queue
+     * @throws ArrayStoreException if the runtime type of the specified array
+     *         is not a supertype of the runtime type of every element in
+     *         this queue
+     * @throws NullPointerException if the specified array is null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        Object[] es = toArray();
+        int n = es.length;
+        if (a.length < n)
+            a = (T[])java.lang.reflect.Array.newInstance(
+                a.getClass().getComponentType(), n);
+        System.arraycopy(es, 0, a, 0, n);
+        if (a.length > n)
+            a[n] = null;
+        return a;
+    }
+
+    /**
+     * Removes all of the elements from this queue.  Elements inserted
+     * concurrently with this call may remain.
+     */
+    public void clear() {
+        for (int n = items.length; n > 0 && tryPoll() != null; --n)
+            ;
+        signalNotFull();
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @throws UnsupportedOperationException {@inheritDoc}
+     * @throws ClassCastException            {@inheritDoc}
+     * @throws NullPointerException          {@inheritDoc}
+     * @throws IllegalArgumentException      {@inheritDoc}
+     */
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null)
+            throw new NullPointerException();
+        if (c == this)
+            throw new IllegalArgumentException();
+        int n = 0;
+        E x;
+        while (n < maxElements && (x = tryPoll()) != null) {
+            c.add(x);
+            ++n;
+        }
+        if (n > 0)
+            signalNotFull();
+        return n;
+    }
+
+    public String toString() {
+        Object[] a = toArray();
+        int n = a.length;
+        if (n == 0)
+            return "[]";
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        for (int i = 0; i < n; ++i) {
+            Object e = a[i];
+            sb.append(e == this ? "(this Collection)" : e);
+            if (i != n - 1)
+                sb.append(',').append(' ');
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The iterator traverses the elements present when it
+     * was created.
+     *
+     * <p>The returned iterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     *
+     * @return an iterator over the elements in this queue in proper sequence
+     */
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * Snapshot iterator that works off copy of underlying q array.
+     */
+    final class Itr implements Iterator<E> {
+        final Object[] array; // Array of all elements
+        int cursor;           // index of next element to return
+        int lastRet;          // index of last element, or -1 if no such
+
+        Itr(Object[] array) {
+            lastRet = -1;
+            this.array = array;
+        }
+
+        public boolean hasNext() {
+            return cursor < array.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= array.length)
+                throw new NoSuchElementException();
+            lastRet = cursor;
+            return (E)array[cursor++];
+        }
+
+        public void remove() {
+            if (lastRet < 0)
+                throw new IllegalStateException();
+            removeMatch(array[lastRet], true);
+            lastRet = -1;
+        }
+    }
+
+    /**
+     * Returns a {@link Spliterator} over the elements in this queue.
+     *
+     * <p>The returned spliterator is
+     * <a href="package-summary.html#Weakly"><i>weakly consistent</i></a>.
+     *
+     * <p>The {@code Spliterator} reports {@link Spliterator#CONCURRENT},
+     * {@link Spliterator#ORDERED}, and {@link Spliterator#NONNULL}.
+     *
+     * @return a {@code Spliterator} over the elements in this queue
+     */
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator
+            (this, Spliterator.ORDERED | Spliterator.NONNULL |
+             Spliterator.CONCURRENT);
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long HEAD;
+    private static final long TAIL;
+    private static final long TOMBSTONES;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    private static final long LBASE;
+    private static final int LSHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = RingBlockingQueue.class;
+            HEAD = U.objectFieldOffset(k.getDeclaredField("head"));
+            TAIL = U.objectFieldOffset(k.getDeclaredField("tail"));
+            TOMBSTONES = U.objectFieldOffset
+                (k.getDeclaredField("tombstones"));
+            ABASE = U.arrayBaseOffset(Object[].class);
+            int scale = U.arrayIndexScale(Object[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            LBASE = U.arrayBaseOffset(long[].class);
+            int lscale = U.arrayIndexScale(long[].class);
+            if ((lscale & (lscale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            LSHIFT = 31 - Integer.numberOfLeadingZeros(lscale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
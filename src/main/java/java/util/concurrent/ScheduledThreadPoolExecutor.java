@@ -131,7 +131,8 @@ public class ScheduledThreadPoolExecutor
      *    ScheduledExecutorService methods) which are treated as
      *    delayed tasks with a delay of zero.
      *
-     * 2. Using a custom queue (DelayedWorkQueue), a variant of
+     * 2. Using a custom queue (DelayedWorkQueue, or TimingWheelQueue
+     *    if constructed with a tick duration), a variant of
      *    unbounded DelayQueue. The lack of capacity constraint and
      *    the fact that corePoolSize and maximumPoolSize are
      *    effectively identical simplifies some execution mechanics
@@ -202,6 +203,11 @@ public class ScheduledThreadPoolExecutor
          */
         int heapIndex;
 
+        /**
+         * Node in TimingWheelQueue while queued there, else null.
+         */
+        TimingWheelQueue.Node wheelNode;
+
         /**
          * Creates a one-shot action with given nanoTime-based trigger time.
          */
@@ -486,6 +492,62 @@ public class ScheduledThreadPoolExecutor
               new DelayedWorkQueue(), threadFactory, handler);
     }
 
+    /**
+     * Creates a new {@code ScheduledThreadPoolExecutor} with the
+     * given core pool size, whose tasks are held in a hierarchical
+     * timing wheel of the given tick duration rather than a heap.
+     * Scheduling and cancelling (with {@linkplain
+     * #setRemoveOnCancelPolicy removal on cancel}) then take constant
+     * time regardless of the number of scheduled tasks, which suits
+     * large numbers of timeouts that are mostly cancelled before they
+     * expire.  In exchange, delayed tasks are enabled at the end of
+     * the tick containing their trigger time: no sooner than with the
+     * default queue, but up to one tick later, and tasks whose trigger
+     * times fall within the same tick are enabled in FIFO order of
+     * submission rather than in order of trigger time.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the resolution of the timing wheel
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @throws IllegalArgumentException if {@code corePoolSize < 0} or
+     *         {@code tickDuration} is not positive
+     * @throws NullPointerException if {@code unit} is null
+     * @since 1.8
+     */
+    public ScheduledThreadPoolExecutor(int corePoolSize,
+                                       long tickDuration, TimeUnit unit) {
+        super(corePoolSize, Integer.MAX_VALUE, 0, NANOSECONDS,
+              new TimingWheelQueue(unit.toNanos(tickDuration)));
+    }
+
+    /**
+     * Creates a new {@code ScheduledThreadPoolExecutor} with the
+     * given initial parameters, whose tasks are held in a hierarchical
+     * timing wheel of the given tick duration rather than a heap, as
+     * described for {@link #ScheduledThreadPoolExecutor(int, long,
+     * TimeUnit)}.
+     *
+     * @param corePoolSize the number of threads to keep in the pool, even
+     *        if they are idle, unless {@code allowCoreThreadTimeOut} is set
+     * @param tickDuration the resolution of the timing wheel
+     * @param unit the time unit of the {@code tickDuration} argument
+     * @param threadFactory the factory to use when the executor
+     *        creates a new thread
+     * @throws IllegalArgumentException if {@code corePoolSize < 0} or
+     *         {@code tickDuration} is not positive
+     * @throws NullPointerException if {@code unit} or
+     *         {@code threadFactory} is null
+     * @since 1.8
+     */
+    public ScheduledThreadPoolExecutor(int corePoolSize,
+                                       long tickDuration, TimeUnit unit,
+                                       ThreadFactory threadFactory) {
+        super(corePoolSize, Integer.MAX_VALUE, 0, NANOSECONDS,
+              new TimingWheelQueue(unit.toNanos(tickDuration)),
+              threadFactory);
+    }
+
     /**
      * Returns the trigger time of a delayed action.
      */
@@ -1280,4 +1342,652 @@ public class ScheduledThreadPoolExecutor
             }
         }
     }
+
+    /**
+     * Specialized delay queue based on a hierarchical hashed timing
+     * wheel, used in place of DelayedWorkQueue by pools constructed
+     * with a tick duration.  As with DelayedWorkQueue, this class is
+     * declared as a BlockingQueue<Runnable> even though it can only
+     * hold RunnableScheduledFutures.
+     */
+    static class TimingWheelQueue extends AbstractQueue<Runnable>
+        implements BlockingQueue<Runnable> {
+
+        /*
+         * Time is divided into ticks, numbered from the creation of
+         * the queue.  A task whose trigger time falls within tick t is
+         * due once tick t has fully elapsed, so tasks are never
+         * enabled early, and at most one tick late.
+         *
+         * The wheel has LEVELS levels of SLOTS slots each.  A slot at
+         * level L spans SLOTS^L ticks.  With currentTick c (all ticks
+         * before c have been processed), a task for tick t >= c is
+         * placed at the lowest level L at which t and c agree in all
+         * but the low (L+1)*SLOT_BITS bits, in slot (t >>> L*SLOT_BITS)
+         * & SLOT_MASK; tasks beyond the range of the top level are
+         * kept in an overflow list.  When c enters a new block of
+         * level L (its low L*SLOT_BITS bits become zero), the level-L
+         * slot for that block is emptied and its tasks reinserted at
+         * lower levels ("cascading"), highest level first.  Because
+         * placement uses absolute tick numbers, a slot never holds
+         * tasks from different rotations, and slots of level L >= 1
+         * at or before the current one are always empty.
+         *
+         * Each slot is a doubly linked list of Nodes, so insertion
+         * and removal are O(1).  A ScheduledFutureTask records its
+         * Node; other RunnableScheduledFutures are found by search,
+         * as in DelayedWorkQueue.  A bitmap per level (SLOTS == 64)
+         * records nonempty slots, so that advancing past idle time
+         * and finding the next deadline skip empty slots a word at a
+         * time.  Due tasks are moved to the ready list, from which
+         * they are taken in order of tick, and then of insertion.
+         *
+         * All access is guarded by one lock, and waiting uses the
+         * same leader-follower scheme as DelayedWorkQueue, where the
+         * leader waits until the next deadline computed from the
+         * bitmaps.  ScheduledFutureTask.heapIndex is set to zero while
+         * a task is queued and -1 otherwise.
+         */
+
+        static final int SLOT_BITS = 6;
+        static final int SLOTS = 1 << SLOT_BITS;
+        static final int SLOT_MASK = SLOTS - 1;
+        static final int LEVELS = 4;
+        static final int OVERFLOW = LEVELS * SLOTS;
+        static final int READY = OVERFLOW + 1;
+
+        /**
+         * Element of a slot, overflow or ready list.
+         */
+        static final class Node {
+            final TimingWheelQueue queue;
+            final RunnableScheduledFuture<?> task;
+            Node prev, next;
+            int bucket;          // index into heads, or -1 if unlinked
+            long tick;
+            Node(TimingWheelQueue queue, RunnableScheduledFuture<?> task) {
+                this.queue = queue;
+                this.task = task;
+                this.bucket = -1;
+            }
+        }
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition available = lock.newCondition();
+        private Thread leader = null;
+
+        private final long tickNanos;
+        private final long origin;
+        private long currentTick;
+        private int size;
+        private final Node[] heads = new Node[READY + 1];
+        private final Node[] tails = new Node[READY + 1];
+        private final long[] occupied = new long[LEVELS];
+
+        TimingWheelQueue(long tickNanos) {
+            if (tickNanos <= 0L)
+                throw new IllegalArgumentException();
+            this.tickNanos = tickNanos;
+            this.origin = System.nanoTime();
+        }
+
+        /**
+         * Returns the tick containing the current time.
+         */
+        private long nowTick(long now) {
+            long d = now - origin;
+            return (d <= 0L) ? 0L : d / tickNanos;
+        }
+
+        private void link(Node n, int b) {
+            Node t = tails[b];
+            n.bucket = b;
+            n.next = null;
+            n.prev = t;
+            if (t == null) {
+                heads[b] = n;
+                if (b < OVERFLOW)
+                    occupied[b >>> SLOT_BITS] |= 1L << (b & SLOT_MASK);
+            }
+            else
+                t.next = n;
+            tails[b] = n;
+        }
+
+        private void unlink(Node n) {
+            int b = n.bucket;
+            Node p = n.prev, s = n.next;
+            if (p == null)
+                heads[b] = s;
+            else
+                p.next = s;
+            if (s == null)
+                tails[b] = p;
+            else
+                s.prev = p;
+            if (heads[b] == null && b < OVERFLOW)
+                occupied[b >>> SLOT_BITS] &= ~(1L << (b & SLOT_MASK));
+            n.prev = n.next = null;
+            n.bucket = -1;
+        }
+
+        /**
+         * Places a node by its tick relative to currentTick.
+         */
+        private void place(Node n) {
+            long t = n.tick, c = currentTick;
+            if (t < c) {
+                link(n, READY);
+                return;
+            }
+            for (int level = 0; level < LEVELS; ++level) {
+                int shift = (level + 1) * SLOT_BITS;
+                if ((t >>> shift) == (c >>> shift)) {
+                    int slot = (int)(t >>> (level * SLOT_BITS)) & SLOT_MASK;
+                    link(n, (level << SLOT_BITS) + slot);
+                    return;
+                }
+            }
+            link(n, OVERFLOW);
+        }
+
+        /**
+         * Reinserts all nodes of bucket b.
+         */
+        private void cascade(int b) {
+            Node n = heads[b];
+            heads[b] = tails[b] = null;
+            if (b < OVERFLOW)
+                occupied[b >>> SLOT_BITS] &= ~(1L << (b & SLOT_MASK));
+            while (n != null) {
+                Node next = n.next;
+                place(n);
+                n = next;
+            }
+        }
+
+        /**
+         * Performs the cascades due on entering tick c, highest level
+         * first.
+         */
+        private void enterTick(long c) {
+            if ((c & ((1L << (LEVELS * SLOT_BITS)) - 1L)) == 0L &&
+                heads[OVERFLOW] != null)
+                cascade(OVERFLOW);
+            for (int level = LEVELS - 1; level > 0; --level) {
+                int shift = level * SLOT_BITS;
+                if ((c & ((1L << shift) - 1L)) == 0L) {
+                    int slot = (int)(c >>> shift) & SLOT_MASK;
+                    if ((occupied[level] & (1L << slot)) != 0L)
+                        cascade((level << SLOT_BITS) + slot);
+                }
+            }
+        }
+
+        /**
+         * Moves the nodes of all ticks before nowTick to the ready
+         * list, and sets currentTick to nowTick.
+         */
+        private void advance(long now) {
+            long target = nowTick(now), c = currentTick;
+            while (c < target) {
+                long bits = occupied[0] >>> ((int)c & SLOT_MASK);
+                if (bits != 0L) {
+                    long next = c + Long.numberOfTrailingZeros(bits);
+                    if (next >= target) {
+                        c = target;
+                        break;
+                    }
+                    int b = (int)next & SLOT_MASK;
+                    Node n = heads[b];
+                    heads[b] = tails[b] = null;
+                    occupied[0] &= ~(1L << b);
+                    while (n != null) {
+                        Node s = n.next;
+                        link(n, READY);
+                        n = s;
+                    }
+                    c = next + 1L;
+                    currentTick = c;
+                    if ((c & SLOT_MASK) == 0L)
+                        enterTick(c);
+                }
+                else {
+                    long nb = (c | SLOT_MASK) + 1L;
+                    if (nb > target ||
+                        ((occupied[1] | occupied[2] | occupied[3]) == 0L &&
+                         heads[OVERFLOW] == null)) {
+                        c = target;
+                        break;
+                    }
+                    currentTick = c = nb;
+                    enterTick(c);
+                }
+            }
+            currentTick = c;
+        }
+
+        /**
+         * Returns the tick at whose start the next task may become
+         * due, assuming advance has been called and the ready list is
+         * empty, or Long.MAX_VALUE if the wheel is empty.  This is the
+         * end of the earliest occupied tick at level 0, or else the
+         * start of the next occupied block of some higher level, at
+         * which cascading will refine it.
+         */
+        private long nextDeadline() {
+            long c = currentTick;
+            for (int level = 0; level < LEVELS; ++level) {
+                int shift = level * SLOT_BITS;
+                int idx = (int)(c >>> shift) & SLOT_MASK;
+                if (level > 0 && ++idx == SLOTS)
+                    continue;
+                long bits = occupied[level] >>> idx;
+                if (bits != 0L) {
+                    long t = (((c >>> shift) & ~(long)SLOT_MASK) +
+                              idx + Long.numberOfTrailingZeros(bits)) << shift;
+                    return (level == 0) ? t + 1L : t;
+                }
+            }
+            if (heads[OVERFLOW] != null) {
+                int shift = LEVELS * SLOT_BITS;
+                return ((c >>> shift) + 1L) << shift;
+            }
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Returns the tick at whose start the given newly placed node
+         * may become due, in the same sense as nextDeadline.
+         */
+        private long deadlineOf(Node n) {
+            int b = n.bucket;
+            if (b == READY)
+                return Long.MIN_VALUE;
+            if (b == OVERFLOW) {
+                int shift = LEVELS * SLOT_BITS;
+                return ((currentTick >>> shift) + 1L) << shift;
+            }
+            int shift = (b >>> SLOT_BITS) * SLOT_BITS;
+            return (shift == 0) ? n.tick + 1L : (n.tick >>> shift) << shift;
+        }
+
+        /**
+         * Returns the nanoseconds from now until the start of the
+         * given tick, at least one.
+         */
+        private long delayUntil(long tick, long now) {
+            if (tick >= Long.MAX_VALUE / tickNanos)
+                return Long.MAX_VALUE;
+            long delay = tick * tickNanos - (now - origin);
+            return (delay <= 0L) ? 1L : delay;
+        }
+
+        /**
+         * Returns the earliest queued node, roughly: the head of the
+         * ready list or of the first occupied slot.
+         */
+        private Node firstNode() {
+            Node n;
+            if ((n = heads[READY]) != null)
+                return n;
+            long c = currentTick;
+            for (int level = 0; level < LEVELS; ++level) {
+                int idx = (int)(c >>> (level * SLOT_BITS)) & SLOT_MASK;
+                long bits = occupied[level] >>> idx;
+                if (bits != 0L)
+                    return heads[(level << SLOT_BITS) + idx +
+                                 Long.numberOfTrailingZeros(bits)];
+            }
+            return heads[OVERFLOW];
+        }
+
+        /**
+         * Finds the node of given task, or null if absent.
+         */
+        private Node nodeOf(Object x) {
+            if (x instanceof ScheduledFutureTask) {
+                Node n = ((ScheduledFutureTask)x).wheelNode;
+                // Sanity check; x could be from some other pool.
+                return (n != null && n.queue == this && n.bucket >= 0) ?
+                    n : null;
+            }
+            if (x != null) {
+                for (Node h : heads)
+                    for (; h != null; h = h.next)
+                        if (x.equals(h.task))
+                            return h;
+            }
+            return null;
+        }
+
+        private void setNode(RunnableScheduledFuture<?> f, Node n) {
+            if (f instanceof ScheduledFutureTask) {
+                ScheduledFutureTask<?> t = (ScheduledFutureTask<?>)f;
+                t.wheelNode = n;
+                t.heapIndex = (n == null) ? -1 : 0;
+            }
+        }
+
+        private RunnableScheduledFuture<?> finishPoll(Node n) {
+            unlink(n);
+            --size;
+            setNode(n.task, null);
+            return n.task;
+        }
+
+        public boolean contains(Object x) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return nodeOf(x) != null;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean remove(Object x) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                Node n = nodeOf(x);
+                if (n == null)
+                    return false;
+                finishPoll(n);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int size() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        public int remainingCapacity() {
+            return Integer.MAX_VALUE;
+        }
+
+        public RunnableScheduledFuture<?> peek() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                advance(System.nanoTime());
+                Node n = firstNode();
+                return (n == null) ? null : n.task;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean offer(Runnable x) {
+            if (x == null)
+                throw new NullPointerException();
+            RunnableScheduledFuture<?> e = (RunnableScheduledFuture<?>)x;
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                // read delay first, so that the tick is never too early
+                long delay = e.getDelay(NANOSECONDS);
+                long d = System.nanoTime() - origin;
+                Node n = new Node(this, e);
+                n.tick = (delay <= 0L) ? -1L :
+                    (delay > Long.MAX_VALUE - d) ? Long.MAX_VALUE / tickNanos :
+                    (d + delay) / tickNanos;
+                // placing relative to a stale currentTick is harmless
+                boolean wasReady = heads[READY] != null;
+                long prior = wasReady ? 0L : nextDeadline();
+                place(n);
+                ++size;
+                setNode(e, n);
+                if (!wasReady && deadlineOf(n) < prior) {
+                    leader = null;
+                    available.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        }
+
+        public void put(Runnable e) {
+            offer(e);
+        }
+
+        public boolean add(Runnable e) {
+            return offer(e);
+        }
+
+        public boolean offer(Runnable e, long timeout, TimeUnit unit) {
+            return offer(e);
+        }
+
+        public RunnableScheduledFuture<?> poll() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                advance(System.nanoTime());
+                Node n = heads[READY];
+                return (n == null) ? null : finishPoll(n);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public RunnableScheduledFuture<?> take() throws InterruptedException {
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                for (;;) {
+                    long now = System.nanoTime();
+                    advance(now);
+                    Node n = heads[READY];
+                    if (n != null)
+                        return finishPoll(n);
+                    if (size == 0)
+                        available.await();
+                    else {
+                        long delay = delayUntil(nextDeadline(), now);
+                        if (leader != null)
+                            available.await();
+                        else {
+                            Thread thisThread = Thread.currentThread();
+                            leader = thisThread;
+                            try {
+                                available.awaitNanos(delay);
+                            } finally {
+                                if (leader == thisThread)
+                                    leader = null;
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (leader == null && size != 0)
+                    available.signal();
+                lock.unlock();
+            }
+        }
+
+        public RunnableScheduledFuture<?> poll(long timeout, TimeUnit unit)
+            throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                for (;;) {
+                    long now = System.nanoTime();
+                    advance(now);
+                    Node n = heads[READY];
+                    if (n != null)
+                        return finishPoll(n);
+                    if (nanos <= 0)
+                        return null;
+                    if (size == 0)
+                        nanos = available.awaitNanos(nanos);
+                    else {
+                        long delay = delayUntil(nextDeadline(), now);
+                        if (nanos < delay || leader != null)
+                            nanos = available.awaitNanos(nanos);
+                        else {
+                            Thread thisThread = Thread.currentThread();
+                            leader = thisThread;
+                            try {
+                                long timeLeft = available.awaitNanos(delay);
+                                nanos -= delay - timeLeft;
+                            } finally {
+                                if (leader == thisThread)
+                                    leader = null;
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (leader == null && size != 0)
+                    available.signal();
+                lock.unlock();
+            }
+        }
+
+        public void clear() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                for (int b = 0; b <= READY; ++b) {
+                    for (Node n = heads[b], s; n != null; n = s) {
+                        s = n.next;
+                        n.prev = n.next = null;
+                        n.bucket = -1;
+                        setNode(n.task, null);
+                    }
+                    heads[b] = tails[b] = null;
+                }
+                Arrays.fill(occupied, 0L);
+                size = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public int drainTo(Collection<? super Runnable> c) {
+            return drainTo(c, Integer.MAX_VALUE);
+        }
+
+        public int drainTo(Collection<? super Runnable> c, int maxElements) {
+            if (c == null)
+                throw new NullPointerException();
+            if (c == this)
+                throw new IllegalArgumentException();
+            if (maxElements <= 0)
+                return 0;
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                advance(System.nanoTime());
+                Node first;
+                int n = 0;
+                while (n < maxElements && (first = heads[READY]) != null) {
+                    c.add(first.task);   // In this order, in case add() throws.
+                    finishPoll(first);
+                    ++n;
+                }
+                return n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns the queued tasks, ready ones first.  Call only when
+         * holding lock.
+         */
+        private RunnableScheduledFuture<?>[] snapshot() {
+            RunnableScheduledFuture<?>[] a = new RunnableScheduledFuture<?>[size];
+            int k = 0;
+            for (Node n = heads[READY]; n != null; n = n.next)
+                a[k++] = n.task;
+            for (int b = 0; b < READY; ++b)
+                for (Node n = heads[b]; n != null; n = n.next)
+                    a[k++] = n.task;
+            return a;
+        }
+
+        public Object[] toArray() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return Arrays.copyOf(snapshot(), size, Object[].class);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T[] toArray(T[] a) {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                RunnableScheduledFuture<?>[] s = snapshot();
+                if (a.length < size)
+                    return (T[]) Arrays.copyOf(s, size, a.getClass());
+                System.arraycopy(s, 0, a, 0, size);
+                if (a.length > size)
+                    a[size] = null;
+                return a;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Iterator<Runnable> iterator() {
+            final ReentrantLock lock = this.lock;
+            lock.lock();
+            try {
+                return new Itr(snapshot());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Snapshot iterator that works off copy of queued tasks.
+         */
+        private class Itr implements Iterator<Runnable> {
+            final RunnableScheduledFuture<?>[] array;
+            int cursor = 0;     // index of next element to return
+            int lastRet = -1;   // index of last element, or -1 if no such
+
+            Itr(RunnableScheduledFuture<?>[] array) {
+                this.array = array;
+            }
+
+            public boolean hasNext() {
+                return cursor < array.length;
+            }
+
+            public Runnable next() {
+                if (cursor >= array.length)
+                    throw new NoSuchElementException();
+                lastRet = cursor;
+                return array[cursor++];
+            }
+
+            public void remove() {
+                if (lastRet < 0)
+                    throw new IllegalStateException();
+                TimingWheelQueue.this.remove(array[lastRet]);
+                lastRet = -1;
+            }
+        }
+    }
 }
@@ -252,6 +252,22 @@ import java.util.*;
  * <p>If hook or callback methods throw exceptions, internal worker
  * threads may in turn fail and abruptly terminate.</dd>
  *
+ * <dt>Work stealing</dt>
+ *
+ * <dd>When tasks are mainly submitted by tasks already running in the
+ * pool, the shared work queue can become a point of contention.  Method
+ * {@link #allowWorkStealing(boolean)} enables a mode in which a task
+ * submitted from a pool thread is queued in a deque local to that
+ * thread, unless some other thread is idle to run it.  Threads run
+ * their locally queued tasks in submission order, and threads that
+ * run out of work steal tasks from the deques of others before
+ * waiting on the work queue.  Core and maximum pool sizes, rejection
+ * and hook methods apply as usual, but each thread may hold a bounded
+ * number of locally queued tasks beyond the capacity of the work
+ * queue.  Locally queued tasks are not contained in {@link
+ * #getQueue()}, and so cannot be removed by {@link
+ * #remove(Runnable)} or {@link #purge}.</dd>
+ *
  * <dt>Queue maintenance</dt>
  *
  * <dd>Method {@link #getQueue()} allows access to the work queue
@@ -531,6 +547,35 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      */
     private volatile boolean allowCoreThreadTimeOut;
 
+    /**
+     * If true, tasks submitted from worker threads are pushed onto
+     * the submitting worker's local TaskDeque (see execute).
+     */
+    private volatile boolean allowWorkStealing;
+
+    /**
+     * Local deques of all workers that have ever pushed a task, plus
+     * orphaned deques of exited workers that could not be emptied.
+     * Replaced (copy-on-write) only while holding mainLock, and read
+     * without locking by workers looking for tasks to steal.
+     */
+    private volatile TaskDeque[] deques = EMPTY_DEQUES;
+
+    private static final TaskDeque[] EMPTY_DEQUES = new TaskDeque[0];
+
+    /**
+     * Number of workers about to wait, or waiting, for a task on
+     * workQueue while stealing is possible.  A worker pushing a local
+     * task hands it to workQueue instead if this is nonzero.
+     */
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+
+    /**
+     * The worker run by the current thread, if it is a thread of this
+     * pool; used by execute to find the local deque.
+     */
+    private final ThreadLocal<Worker> currentWorker = new ThreadLocal<Worker>();
+
     /**
      * Core pool size is the minimum number of workers to keep alive
      * (and not allow to time out etc) unless allowCoreThreadTimeOut
@@ -608,6 +653,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Runnable firstTask;
         /** Per-thread task counter */
         volatile long completedTasks;
+        /** Local deque, created on first local push.  Owner-written. */
+        TaskDeque deque;
 
         /**
          * Creates with given first task and thread from ThreadFactory.
@@ -663,6 +710,138 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * A deque of tasks pushed by a single worker and taken, in FIFO
+     * order, by that worker or by stealing workers.  This is a
+     * simplified form of ForkJoinPool.WorkQueue: the owner pushes at
+     * top, and all takers claim tasks at base by CASing the slot to
+     * null and then advancing base.  The array grows (by the owner)
+     * up to MAXIMUM_CAPACITY, after which push fails and the task is
+     * handed to the shared workQueue instead.  Writes to top are
+     * volatile so that a pusher's subsequent read of idleWorkers is
+     * ordered with respect to idle workers' scans.
+     */
+    static final class TaskDeque {
+        static final int INITIAL_CAPACITY = 1 << 5;
+        static final int MAXIMUM_CAPACITY = 1 << 10;
+
+        Runnable[] array;      // the elements
+        volatile int base;     // index of next slot for poll
+        volatile int top;      // index of next slot for push
+        boolean orphaned;      // owner exited leaving tasks; under mainLock
+
+        TaskDeque() {
+            array = new Runnable[INITIAL_CAPACITY];
+        }
+
+        int size() {
+            int n = top - base;
+            return (n < 0) ? 0 : n;
+        }
+
+        boolean isEmpty() {
+            return top - base <= 0;
+        }
+
+        /**
+         * Pushes a task.  Call only by owner.
+         *
+         * @return false if the deque is full
+         */
+        boolean push(Runnable task) {
+            Runnable[] a = array;
+            int s = top, m = a.length - 1;
+            if (s - base >= m) {
+                if (a.length >= MAXIMUM_CAPACITY)
+                    return false;
+                a = growArray();
+                m = a.length - 1;
+            }
+            U.putOrderedObject(a, ((m & s) << ASHIFT) + ABASE, task);
+            top = s + 1;
+            return true;
+        }
+
+        /**
+         * Doubles the capacity of array, emulating polls from the old
+         * array so that racing takers cannot take a task twice.  Call
+         * only by owner.
+         */
+        private Runnable[] growArray() {
+            Runnable[] oldA = array;
+            int size = oldA.length << 1;
+            Runnable[] a = array = new Runnable[size];
+            int oldMask = oldA.length - 1, mask = size - 1, t, b;
+            if ((t = top) - (b = base) > 0) {
+                do {
+                    Runnable x;
+                    long oldj = ((b & oldMask) << ASHIFT) + ABASE;
+                    long j    = ((b &    mask) << ASHIFT) + ABASE;
+                    x = (Runnable)U.getObjectVolatile(oldA, oldj);
+                    if (x != null &&
+                        U.compareAndSwapObject(oldA, oldj, x, null))
+                        U.putObjectVolatile(a, j, x);
+                } while (++b != t);
+            }
+            return a;
+        }
+
+        /**
+         * Takes a task in FIFO order if one is available.
+         */
+        Runnable poll() {
+            Runnable[] a; int b; Runnable t;
+            while ((b = base) - top < 0 && (a = array) != null) {
+                long j = (((a.length - 1) & b) << ASHIFT) + ABASE;
+                t = (Runnable)U.getObjectVolatile(a, j);
+                if (base == b) {
+                    if (t != null) {
+                        if (U.compareAndSwapObject(a, j, t, null)) {
+                            base = b + 1;
+                            return t;
+                        }
+                    }
+                    else if (b + 1 == top) // now empty
+                        break;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Pops the given task only if it is at the top.  Call only by
+         * owner.
+         */
+        boolean tryUnpush(Runnable t) {
+            Runnable[] a; int s;
+            if ((a = array) != null && (s = top) != base &&
+                U.compareAndSwapObject
+                (a, (((a.length - 1) & --s) << ASHIFT) + ABASE, t, null)) {
+                top = s;
+                return true;
+            }
+            return false;
+        }
+
+        // Unsafe mechanics
+        private static final sun.misc.Unsafe U;
+        private static final int  ABASE;
+        private static final int  ASHIFT;
+        static {
+            try {
+                U = sun.misc.Unsafe.getUnsafe();
+                Class<?> ak = Runnable[].class;
+                ABASE = U.arrayBaseOffset(ak);
+                int scale = U.arrayIndexScale(ak);
+                if ((scale & (scale - 1)) != 0)
+                    throw new Error("data type scale not a power of two");
+                ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+            } catch (Exception e) {
+                throw new Error(e);
+            }
+        }
+    }
+
     /*
      * Methods for setting control state
      */
@@ -698,7 +877,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             int c = ctl.get();
             if (isRunning(c) ||
                 runStateAtLeast(c, TIDYING) ||
-                (runStateOf(c) == SHUTDOWN && ! workQueue.isEmpty()))
+                (runStateOf(c) == SHUTDOWN && ! queuesEmpty()))
                 return;
             if (workerCountOf(c) != 0) { // Eligible to terminate
                 interruptIdleWorkers(ONLY_ONE);
@@ -865,9 +1044,138 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                     taskList.add(r);
             }
         }
+        for (TaskDeque d : deques) {
+            Runnable r;
+            while ((r = d.poll()) != null)
+                taskList.add(r);
+        }
         return taskList;
     }
 
+    /**
+     * Returns true if neither workQueue nor any local deque holds
+     * tasks.  Used in place of workQueue.isEmpty() for decisions
+     * about shutdown and worker replacement.
+     */
+    private boolean queuesEmpty() {
+        if (!workQueue.isEmpty())
+            return false;
+        for (TaskDeque d : deques) {
+            if (!d.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tries to take a task from the local deque of some worker other
+     * than the one owning the given deque, starting at a random index.
+     *
+     * @param own the caller's deque, or null
+     * @return a task, or null if none was found
+     */
+    private Runnable steal(TaskDeque own) {
+        TaskDeque[] ds = deques;
+        int n = ds.length;
+        if (n > 0) {
+            int i = ThreadLocalRandom.current().nextInt(n);
+            for (int k = 0; k < n; ++k) {
+                TaskDeque d = ds[(i + k) % n];
+                Runnable r;
+                if (d != own && (r = d.poll()) != null)
+                    return r;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Creates and registers the local deque of the given worker.
+     * Called only by the worker's thread.
+     *
+     * @return the deque, or null if the pool is not running
+     */
+    private TaskDeque registerDeque(Worker w) {
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            if (!isRunning(ctl.get()))
+                return null;
+            TaskDeque q = new TaskDeque();
+            TaskDeque[] ds = deques;
+            TaskDeque[] nds = Arrays.copyOf(ds, ds.length + 1);
+            nds[ds.length] = q;
+            deques = nds;
+            return w.deque = q;
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Unregisters the local deque of an exiting worker.  Tasks left in
+     * it are moved to workQueue, and if that is not possible the deque
+     * stays registered as an orphan from which other workers steal.
+     * Empty orphans are removed.  Called only by the worker's thread.
+     */
+    private void deregisterDeque(Worker w) {
+        TaskDeque q = w.deque;
+        if (q != null) {
+            Runnable r;
+            while ((r = q.poll()) != null) {
+                if (!workQueue.offer(r)) {
+                    q.push(r);  // room was just made
+                    break;
+                }
+            }
+        }
+        final ReentrantLock mainLock = this.mainLock;
+        mainLock.lock();
+        try {
+            if (q != null)
+                q.orphaned = true;
+            TaskDeque[] ds = deques;
+            int n = 0;
+            for (TaskDeque d : ds) {
+                if (!d.orphaned || !d.isEmpty())
+                    ++n;
+            }
+            if (n != ds.length) {
+                TaskDeque[] nds = new TaskDeque[n];
+                int i = 0;
+                for (TaskDeque d : ds) {
+                    if (!d.orphaned || !d.isEmpty())
+                        nds[i++] = d;
+                }
+                deques = nds;
+            }
+        } finally {
+            mainLock.unlock();
+        }
+    }
+
+    /**
+     * Pushes a task submitted from a worker thread of this pool onto
+     * the worker's local deque, unless some worker is idle and can
+     * take it from workQueue sooner.
+     *
+     * @return true if the task was accepted (or rejected) here, false
+     *         if it should be queued as usual
+     */
+    private boolean pushLocal(Runnable command) {
+        Worker w = currentWorker.get();
+        TaskDeque q;
+        if (w == null ||
+            ((q = w.deque) == null && (q = registerDeque(w)) == null) ||
+            !q.push(command))
+            return false;
+        if (idleWorkers.get() != 0 && q.tryUnpush(command))
+            return false;
+        if (!isRunning(ctl.get()) && q.tryUnpush(command))
+            reject(command);
+        return true;
+    }
+
     /*
      * Methods for creating, running and cleaning up after workers
      */
@@ -908,7 +1216,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             if (rs >= SHUTDOWN &&
                 ! (rs == SHUTDOWN &&
                    firstTask == null &&
-                   ! workQueue.isEmpty()))
+                   ! queuesEmpty()))
                 return false;
 
             for (;;) {
@@ -1002,6 +1310,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         if (completedAbruptly) // If abrupt, then workerCount wasn't adjusted
             decrementWorkerCount();
 
+        currentWorker.remove();
+        if (w.deque != null)
+            deregisterDeque(w);
+
         final ReentrantLock mainLock = this.mainLock;
         mainLock.lock();
         try {
@@ -1017,7 +1329,7 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         if (runStateLessThan(c, STOP)) {
             if (!completedAbruptly) {
                 int min = allowCoreThreadTimeOut ? 0 : corePoolSize;
-                if (min == 0 && ! workQueue.isEmpty())
+                if (min == 0 && ! queuesEmpty())
                     min = 1;
                 if (workerCountOf(c) >= min)
                     return; // replacement not needed
@@ -1033,25 +1345,38 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * 1. There are more than maximumPoolSize workers (due to
      *    a call to setMaximumPoolSize).
      * 2. The pool is stopped.
-     * 3. The pool is shutdown and the queue is empty.
+     * 3. The pool is shutdown and the queue and local deques are empty.
      * 4. This worker timed out waiting for a task, and timed-out
      *    workers are subject to termination (that is,
      *    {@code allowCoreThreadTimeOut || workerCount > corePoolSize})
      *    both before and after the timed wait, and if the queue is
      *    non-empty, this worker is not the last thread in the pool.
      *
+     * When work stealing is possible, tasks are taken first from the
+     * worker's own deque, then from workQueue without waiting, then
+     * from other workers' deques.  Only then does the worker wait on
+     * workQueue, after registering as idle and rescanning the deques,
+     * so that a worker pushing a task concurrently either sees it as
+     * idle (and hands the task to workQueue) or has its task stolen.
+     *
+     * @param w the worker
      * @return task, or null if the worker must exit, in which case
      *         workerCount is decremented
      */
-    private Runnable getTask() {
+    private Runnable getTask(Worker w) {
         boolean timedOut = false; // Did the last poll() time out?
 
         for (;;) {
             int c = ctl.get();
             int rs = runStateOf(c);
+            TaskDeque q = w.deque;
+            Runnable r;
+
+            if (rs < STOP && q != null && (r = q.poll()) != null)
+                return r;
 
             // Check if queue empty only if necessary.
-            if (rs >= SHUTDOWN && (rs >= STOP || workQueue.isEmpty())) {
+            if (rs >= SHUTDOWN && (rs >= STOP || queuesEmpty())) {
                 decrementWorkerCount();
                 return null;
             }
@@ -1062,16 +1387,29 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
             boolean timed = allowCoreThreadTimeOut || wc > corePoolSize;
 
             if ((wc > maximumPoolSize || (timed && timedOut))
-                && (wc > 1 || workQueue.isEmpty())) {
+                && (wc > 1 || queuesEmpty())) {
                 if (compareAndDecrementWorkerCount(c))
                     return null;
                 continue;
             }
 
             try {
-                Runnable r = timed ?
-                    workQueue.poll(keepAliveTime, TimeUnit.NANOSECONDS) :
-                    workQueue.take();
+                if (!allowWorkStealing && deques.length == 0)
+                    r = timed ?
+                        workQueue.poll(keepAliveTime, TimeUnit.NANOSECONDS) :
+                        workQueue.take();
+                else if ((r = workQueue.poll()) == null &&
+                         (r = steal(q)) == null) {
+                    idleWorkers.incrementAndGet();
+                    try {
+                        if ((r = steal(q)) == null)
+                            r = timed ?
+                                workQueue.poll(keepAliveTime, TimeUnit.NANOSECONDS) :
+                                workQueue.take();
+                    } finally {
+                        idleWorkers.decrementAndGet();
+                    }
+                }
                 if (r != null)
                     return r;
                 timedOut = true;
@@ -1129,9 +1467,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         Runnable task = w.firstTask;
         w.firstTask = null;
         w.unlock(); // allow interrupts
+        currentWorker.set(w);
         boolean completedAbruptly = true;
         try {
-            while (task != null || (task = getTask()) != null) {
+            while (task != null || (task = getTask(w)) != null) {
                 w.lock();
                 // If pool is stopping, ensure thread is interrupted;
                 // if not, ensure thread is not interrupted.  This
@@ -1361,6 +1700,10 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
          * 3. If we cannot queue task, then we try to add a new
          * thread.  If it fails, we know we are shut down or saturated
          * and so reject the task.
+         *
+         * If work stealing is allowed and the caller is a worker of
+         * this pool, step 2 first tries pushing the task onto the
+         * caller's local deque (see pushLocal).
          */
         int c = ctl.get();
         if (workerCountOf(c) < corePoolSize) {
@@ -1368,6 +1711,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 return;
             c = ctl.get();
         }
+        if (isRunning(c) && allowWorkStealing && pushLocal(command))
+            return;
         if (isRunning(c) && workQueue.offer(command)) {
             int recheck = ctl.get();
             if (! isRunning(recheck) && remove(command))
@@ -1663,6 +2008,39 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
         }
     }
 
+    /**
+     * Returns true if tasks submitted from threads of this pool may be
+     * queued locally to the submitting thread, and stolen by other
+     * threads of this pool.
+     *
+     * @return {@code true} if work stealing is allowed, else {@code false}
+     * @see #allowWorkStealing(boolean)
+     * @since 1.8
+     */
+    public boolean allowsWorkStealing() {
+        return allowWorkStealing;
+    }
+
+    /**
+     * Sets the policy governing whether tasks submitted from threads
+     * of this pool are queued in a deque local to the submitting
+     * thread rather than in the work queue, whenever no other thread
+     * is idle.  Threads run their local tasks in submission order, and
+     * threads that run out of work steal tasks from the local deques
+     * of others before waiting on the work queue.  This reduces
+     * contention on the work queue when tasks submit further tasks.
+     * When false (the default), all tasks are queued in the work
+     * queue.  Tasks already queued locally when stealing is disallowed
+     * are still run.
+     *
+     * @param value {@code true} if work stealing should be allowed,
+     *        else {@code false}
+     * @since 1.8
+     */
+    public void allowWorkStealing(boolean value) {
+        allowWorkStealing = value;
+    }
+
     /**
      * Sets the maximum allowed number of threads. This overrides any
      * value set in the constructor. If the new value is smaller than
@@ -1738,7 +2116,9 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
      * Returns the task queue used by this executor. Access to the
      * task queue is intended primarily for debugging and monitoring.
      * This queue may be in active use.  Retrieving the task queue
-     * does not prevent queued tasks from executing.
+     * does not prevent queued tasks from executing.  The returned
+     * queue does not contain tasks queued locally to pool threads
+     * when {@linkplain #allowWorkStealing work stealing} is allowed.
      *
      * @return the task queue
      */
@@ -1873,6 +2253,8 @@ public class ThreadPoolExecutor extends AbstractExecutorService {
                 if (w.isLocked())
                     ++n;
             }
+            for (TaskDeque d : deques)
+                n += d.size();
             return n + workQueue.size();
         } finally {
             mainLock.unlock();
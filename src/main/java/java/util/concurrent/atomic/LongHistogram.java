@@ -0,0 +1,635 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent.atomic;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A histogram of non-negative {@code long} values, such as latencies
+ * measured in nanoseconds, that many threads may record concurrently.
+ * Like {@link LongAdder}, under contention the set of counters grows
+ * dynamically so that threads recording at the same time update
+ * different memory, and are not serialized on a single cache line as
+ * they would be when sharing an {@link AtomicLongArray}.
+ *
+ * <p>Values are counted in buckets whose width grows with magnitude:
+ * values below {@code 2^precision} are counted exactly, and each
+ * higher power-of-two range is divided into {@code 2^precision}
+ * equal sub-buckets, so that any recorded value is resolved to within
+ * a relative error of {@code 2^-precision}.  The default precision of
+ * 7 bits keeps values to within 1%.  Values greater than the highest
+ * trackable value given at construction are counted in the highest
+ * bucket.
+ *
+ * <p>{@link #recordValue} is lock-free and never allocates once the
+ * set of counters has stabilized.  Queries operate on a {@link
+ * Snapshot}, an immutable copy of the counts.  A snapshot taken
+ * during concurrent updates is not an atomic image of the histogram;
+ * it reflects each update either wholly or not at all, but may
+ * include some updates that happened after others that it omits.
+ * This class is usually preferable to synchronized or
+ * {@code AtomicLongArray}-based histograms when recording is frequent
+ * and queries are occasional, at the expense of higher space
+ * consumption under contention.
+ *
+ * @since 1.8
+ */
+public class LongHistogram {
+
+    /*
+     * Counts are held in Stripes, each a padded array with one counter
+     * per bucket.  As in Striped64, there is a base stripe used while
+     * updates are uncontended, and a table of stripes, indexed by the
+     * thread probe hash, that is created and doubled (up to the
+     * number of CPUs) when CAS failures show that threads are
+     * colliding.  A failed CAS on a bucket of a table stripe rehashes
+     * the thread to another stripe before expanding.  Table
+     * initialization and expansion are guarded by a spinlock
+     * (stripesBusy), and stripes are created lazily.  Stripes are
+     * @Contended and their counter arrays carry a cache line of
+     * padding at each end, so that neither the stripe headers nor
+     * the arrays of different stripes share cache lines.
+     *
+     * Bucket index i for value v, with P = 2^precision:
+     *   v < P:  i = v
+     *   v >= P: with e = floor(log2(v)) and s = e - precision,
+     *           i = P + s * P + ((v >>> s) - P)
+     * so the bucket of index i >= P covers 2^s consecutive values.
+     */
+
+    /** The default number of significant bits resolved per value. */
+    static final int DEFAULT_PRECISION = 7;
+
+    /** Number of longs of padding at either end of a stripe array. */
+    static final int PAD = 16;
+
+    /**
+     * A set of bucket counters.  Counters are read and written only
+     * via Unsafe, at indices offset by PAD.
+     */
+    @sun.misc.Contended static final class Stripe {
+        final long[] counts;
+        Stripe(int buckets) { counts = new long[buckets + (PAD << 1)]; }
+
+        final boolean cas(int i, long x) {
+            long o = ((long)(i + PAD) << ASHIFT) + ABASE, v;
+            return U.compareAndSwapLong(counts, o,
+                                        v = U.getLongVolatile(counts, o),
+                                        v + x);
+        }
+
+        final void add(int i, long x) {
+            U.getAndAddLong(counts, ((long)(i + PAD) << ASHIFT) + ABASE, x);
+        }
+
+        final long get(int i) {
+            return U.getLongVolatile(counts,
+                                     ((long)(i + PAD) << ASHIFT) + ABASE);
+        }
+
+        final long getAndClear(int i) {
+            return U.getAndSetLong(counts,
+                                   ((long)(i + PAD) << ASHIFT) + ABASE, 0L);
+        }
+    }
+
+    /** The number of significant bits resolved per value. */
+    private final int precision;
+
+    /** The highest value counted in its own bucket. */
+    private final long highestTrackableValue;
+
+    /** The number of buckets. */
+    private final int bucketCount;
+
+    /** Stripe used while updates are uncontended. */
+    private final Stripe base;
+
+    /** Table of stripes. When non-null, size is a power of 2. */
+    private transient volatile Stripe[] stripes;
+
+    /** Spinlock (locked via CAS) used when resizing and/or creating stripes. */
+    private transient volatile int stripesBusy;
+
+    /**
+     * Creates a new histogram able to count all non-negative
+     * {@code long} values to within 1%.
+     */
+    public LongHistogram() {
+        this(Long.MAX_VALUE, DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a new histogram counting values up to the given highest
+     * value to within a relative error of {@code 2^-precision}.
+     *
+     * @param highestTrackableValue the highest value to be
+     *        distinguished; greater values are counted with it
+     * @param precision the number of significant bits to resolve,
+     *        from 1 to 16
+     * @throws IllegalArgumentException if {@code highestTrackableValue}
+     *         is less than 1 or {@code precision} is out of range
+     */
+    public LongHistogram(long highestTrackableValue, int precision) {
+        if (highestTrackableValue < 1L || precision < 1 || precision > 16)
+            throw new IllegalArgumentException();
+        this.precision = precision;
+        this.highestTrackableValue = highestTrackableValue;
+        this.bucketCount = bucketIndex(highestTrackableValue, precision) + 1;
+        this.base = new Stripe(bucketCount);
+    }
+
+    /**
+     * Returns the bucket index of the given non-negative value.
+     */
+    static int bucketIndex(long v, int precision) {
+        long p = 1L << precision;
+        if (v < p)
+            return (int)v;
+        int s = 63 - Long.numberOfLeadingZeros(v) - precision;
+        return (int)(p + ((long)s << precision) + ((v >>> s) - p));
+    }
+
+    /**
+     * Returns the lowest value counted in the bucket of index i.
+     */
+    static long lowestValue(int i, int precision) {
+        int p = 1 << precision;
+        if (i < p)
+            return i;
+        int k = i - p, s = k >>> precision;
+        return (long)(p + (k & (p - 1))) << s;
+    }
+
+    /**
+     * Returns the highest value counted in the bucket of index i.
+     */
+    static long highestValue(int i, int precision) {
+        int p = 1 << precision;
+        if (i < p)
+            return i;
+        return lowestValue(i, precision) + ((1L << ((i - p) >>> precision)) - 1L);
+    }
+
+    /**
+     * Records one occurrence of the given value.
+     *
+     * @param value the value
+     * @throws IllegalArgumentException if {@code value} is negative
+     */
+    public void recordValue(long value) {
+        recordValues(value, 1L);
+    }
+
+    /**
+     * Records the given number of occurrences of the given value.
+     *
+     * @param value the value
+     * @param count the number of occurrences
+     * @throws IllegalArgumentException if {@code value} or
+     *         {@code count} is negative
+     */
+    public void recordValues(long value, long count) {
+        if (value < 0L || count < 0L)
+            throw new IllegalArgumentException();
+        int i = bucketIndex(Math.min(value, highestTrackableValue), precision);
+        Stripe[] ss; Stripe s; int m;
+        if ((ss = stripes) != null || !base.cas(i, count)) {
+            boolean uncontended = true;
+            if (ss == null || (m = ss.length - 1) < 0 ||
+                (s = ss[Striped64.getProbe() & m]) == null ||
+                !(uncontended = s.cas(i, count)))
+                stripedRecord(i, count, uncontended);
+        }
+    }
+
+    /**
+     * Handles updates involving initialization, resizing, creating
+     * new Stripes, and/or contention, as does Striped64.longAccumulate.
+     *
+     * @param i the bucket index
+     * @param x the count to add
+     * @param wasUncontended false if CAS failed before call
+     */
+    private void stripedRecord(int i, long x, boolean wasUncontended) {
+        int h;
+        if ((h = Striped64.getProbe()) == 0) {
+            ThreadLocalRandom.current(); // force initialization
+            h = Striped64.getProbe();
+            wasUncontended = true;
+        }
+        boolean collide = false;                // True if last slot nonempty
+        for (;;) {
+            Stripe[] ss; Stripe s; int n;
+            if ((ss = stripes) != null && (n = ss.length) > 0) {
+                if ((s = ss[(n - 1) & h]) == null) {
+                    if (stripesBusy == 0) {     // Try to attach new Stripe
+                        Stripe r = new Stripe(bucketCount);
+                        r.counts[i + PAD] = x;  // Optimistically create
+                        if (stripesBusy == 0 && casStripesBusy()) {
+                            boolean created = false;
+                            try {               // Recheck under lock
+                                Stripe[] rs; int m, j;
+                                if ((rs = stripes) != null &&
+                                    (m = rs.length) > 0 &&
+                                    rs[j = (m - 1) & h] == null) {
+                                    rs[j] = r;
+                                    created = true;
+                                }
+                            } finally {
+                                stripesBusy = 0;
+                            }
+                            if (created)
+                                break;
+                            continue;           // Slot is now non-empty
+                        }
+                    }
+                    collide = false;
+                }
+                else if (!wasUncontended)       // CAS already known to fail
+                    wasUncontended = true;      // Continue after rehash
+                else if (s.cas(i, x))
+                    break;
+                else if (n >= Striped64.NCPU || stripes != ss) {
+                    s.add(i, x);                // At max size or stale
+                    break;
+                }
+                else if (!collide)
+                    collide = true;
+                else if (stripesBusy == 0 && casStripesBusy()) {
+                    try {
+                        if (stripes == ss)      // Expand table unless stale
+                            stripes = Arrays.copyOf(ss, n << 1);
+                    } finally {
+                        stripesBusy = 0;
+                    }
+                    collide = false;
+                    continue;                   // Retry with expanded table
+                }
+                h = Striped64.advanceProbe(h);
+            }
+            else if (stripesBusy == 0 && stripes == ss && casStripesBusy()) {
+                boolean init = false;
+                try {                           // Initialize table
+                    if (stripes == ss) {
+                        Stripe[] rs = new Stripe[2];
+                        Stripe r = new Stripe(bucketCount);
+                        r.counts[i + PAD] = x;
+                        rs[h & 1] = r;
+                        stripes = rs;
+                        init = true;
+                    }
+                } finally {
+                    stripesBusy = 0;
+                }
+                if (init)
+                    break;
+            }
+            else if (base.cas(i, x))
+                break;                          // Fall back on using base
+        }
+    }
+
+    /**
+     * CASes the stripesBusy field from 0 to 1 to acquire lock.
+     */
+    private boolean casStripesBusy() {
+        return U.compareAndSwapInt(this, BUSY, 0, 1);
+    }
+
+    /**
+     * Returns the number of significant bits to which this histogram
+     * resolves values.
+     *
+     * @return the precision
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Returns the highest value that this histogram distinguishes.
+     *
+     * @return the highest trackable value
+     */
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    /**
+     * Returns the current total number of recorded values.  The
+     * returned value is <em>NOT</em> an atomic snapshot; invocation
+     * in the absence of concurrent updates returns an accurate
+     * result, but concurrent updates that occur while the total is
+     * being calculated might not be incorporated.
+     *
+     * @return the total count
+     */
+    public long getTotalCount() {
+        long sum = 0L;
+        for (long c : sumCounts(false))
+            sum += c;
+        return sum;
+    }
+
+    /**
+     * Returns a snapshot of the current counts.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(precision, sumCounts(false));
+    }
+
+    /**
+     * Equivalent in effect to {@link #snapshot} followed by {@link
+     * #reset}, except that each concurrent update is reflected either
+     * in the returned snapshot or in the reset histogram, and never
+     * lost.  This method may apply for example when a reporter
+     * periodically collects the values recorded in an interval.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshotThenReset() {
+        return new Snapshot(precision, sumCounts(true));
+    }
+
+    /**
+     * Resets counts to zero.  This method may be a useful alternative
+     * to creating a new histogram, but is only effective if there are
+     * no concurrent updates.  Because this method is intrinsically
+     * racy, it should only be used when it is known that no threads
+     * are concurrently updating.
+     */
+    public void reset() {
+        Stripe[] ss = stripes; Stripe s;
+        Arrays.fill(base.counts, 0L);
+        if (ss != null) {
+            for (int j = 0; j < ss.length; ++j) {
+                if ((s = ss[j]) != null)
+                    Arrays.fill(s.counts, 0L);
+            }
+        }
+    }
+
+    /**
+     * Adds all counts of the given histogram to this one.  Both
+     * histograms must have the same precision and highest trackable
+     * value.  If the other histogram is concurrently updated, only
+     * some of those updates may be added.
+     *
+     * @param other the histogram to add
+     * @throws IllegalArgumentException if the histograms differ in
+     *         precision or highest trackable value
+     */
+    public void add(LongHistogram other) {
+        if (other.precision != precision ||
+            other.highestTrackableValue != highestTrackableValue)
+            throw new IllegalArgumentException();
+        add(other.snapshot());
+    }
+
+    /**
+     * Adds all counts of the given snapshot to this histogram.  Values
+     * of the snapshot greater than the highest trackable value of this
+     * histogram are counted with it.
+     *
+     * @param snapshot the snapshot to add
+     * @throws IllegalArgumentException if the snapshot was taken from
+     *         a histogram of a different precision
+     */
+    public void add(Snapshot snapshot) {
+        if (snapshot.precision != precision)
+            throw new IllegalArgumentException();
+        long[] cs = snapshot.counts;
+        int last = bucketCount - 1;
+        for (int i = 0; i < cs.length; ++i) {
+            long c;
+            if ((c = cs[i]) != 0L)
+                base.add(Math.min(i, last), c);
+        }
+    }
+
+    /**
+     * Returns the per-bucket sums over all stripes, optionally
+     * clearing each counter as it is read.
+     */
+    private long[] sumCounts(boolean clear) {
+        Stripe[] ss = stripes; Stripe s;
+        int n = bucketCount;
+        long[] sums = new long[n];
+        for (int i = 0; i < n; ++i)
+            sums[i] = clear ? base.getAndClear(i) : base.get(i);
+        if (ss != null) {
+            for (int j = 0; j < ss.length; ++j) {
+                if ((s = ss[j]) != null) {
+                    for (int i = 0; i < n; ++i)
+                        sums[i] += clear ? s.getAndClear(i) : s.get(i);
+                }
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Returns a String summarizing the current distribution.
+     * @return a String summarizing the current distribution
+     */
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable copy of the counts of a {@link LongHistogram},
+     * supporting queries of the recorded distribution.  Values
+     * reported by a snapshot are bucket boundaries, and so are exact
+     * only to within the precision of the histogram.
+     *
+     * @since 1.8
+     */
+    public static final class Snapshot implements Serializable {
+        private static final long serialVersionUID = -1437195066470135742L;
+
+        /** @serial the precision of the originating histogram */
+        final int precision;
+        /** @serial the counts, indexed by bucket */
+        final long[] counts;
+        /** The total count, computed on construction */
+        private transient long totalCount;
+
+        Snapshot(int precision, long[] counts) {
+            this.precision = precision;
+            this.counts = counts;
+            this.totalCount = total(counts);
+        }
+
+        private static long total(long[] counts) {
+            long sum = 0L;
+            for (long c : counts)
+                sum += c;
+            return sum;
+        }
+
+        /**
+         * Returns the total number of recorded values.
+         *
+         * @return the total count
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns the number of recorded values counted in the same
+         * bucket as the given value.
+         *
+         * @param value the value
+         * @return the count of values equivalent to {@code value}
+         * @throws IllegalArgumentException if {@code value} is negative
+         */
+        public long getCountAtValue(long value) {
+            if (value < 0L)
+                throw new IllegalArgumentException();
+            int i = bucketIndex(value, precision);
+            return (i < counts.length) ? counts[i] : 0L;
+        }
+
+        /**
+         * Returns the lowest recorded value, or zero if none.
+         *
+         * @return the minimum
+         */
+        public long getMin() {
+            for (int i = 0; i < counts.length; ++i) {
+                if (counts[i] != 0L)
+                    return lowestValue(i, precision);
+            }
+            return 0L;
+        }
+
+        /**
+         * Returns the highest recorded value, or zero if none.
+         *
+         * @return the maximum
+         */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; --i) {
+                if (counts[i] != 0L)
+                    return highestValue(i, precision);
+            }
+            return 0L;
+        }
+
+        /**
+         * Returns the arithmetic mean of recorded values, or zero if
+         * none.
+         *
+         * @return the mean
+         */
+        public double getMean() {
+            if (totalCount == 0L)
+                return 0.0d;
+            double sum = 0.0d;
+            for (int i = 0; i < counts.length; ++i) {
+                long c;
+                if ((c = counts[i]) != 0L) {
+                    double lo = lowestValue(i, precision);
+                    double hi = highestValue(i, precision);
+                    sum += c * ((lo + hi) * 0.5d);
+                }
+            }
+            return sum / totalCount;
+        }
+
+        /**
+         * Returns the value at or below which the given percentage of
+         * recorded values lie, or zero if none.
+         *
+         * @param percentile the percentage, from 0.0 to 100.0
+         * @return the value at the given percentile
+         * @throws IllegalArgumentException if {@code percentile} is
+         *         not between 0.0 and 100.0
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0.0d && percentile <= 100.0d))
+                throw new IllegalArgumentException();
+            long target = (long)Math.ceil((percentile / 100.0d) * totalCount);
+            if (target < 1L)
+                target = 1L;
+            long seen = 0L;
+            for (int i = 0; i < counts.length; ++i) {
+                if ((seen += counts[i]) >= target)
+                    return highestValue(i, precision);
+            }
+            return 0L;
+        }
+
+        /**
+         * Returns a String summarizing the distribution.
+         * @return a String summarizing the distribution
+         */
+        public String toString() {
+            return "[count=" + totalCount + ", min=" + getMin() +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50.0d) +
+                ", p99=" + getValueAtPercentile(99.0d) +
+                ", p99.9=" + getValueAtPercentile(99.9d) +
+                ", max=" + getMax() + "]";
+        }
+
+        /**
+         * Reconstitutes the total count from the stream.
+         */
+        private void readObject(java.io.ObjectInputStream s)
+            throws java.io.IOException, ClassNotFoundException {
+            s.defaultReadObject();
+            if (precision < 1 || precision > 16 || counts == null)
+                throw new java.io.InvalidObjectException("Invalid snapshot");
+            totalCount = total(counts);
+        }
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long BUSY;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            BUSY = U.objectFieldOffset
+                (LongHistogram.class.getDeclaredField("stripesBusy"));
+            ABASE = U.arrayBaseOffset(long[].class);
+            int scale = U.arrayIndexScale(long[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
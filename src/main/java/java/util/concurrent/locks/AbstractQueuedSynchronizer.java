@@ -34,10 +34,16 @@
  */
 
 package java.util.concurrent.locks;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongHistogram;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import sun.misc.Unsafe;
 
 /**
@@ -96,6 +102,19 @@ import sun.misc.Unsafe;
  * using an {@code AbstractQueuedSynchronizer} for their
  * synchronization mechanics.
  *
+ * <p>This class also supports optional contention profiling, covering
+ * all synchronizers at once.  While profiling is enabled, each
+ * synchronizer records, whenever a thread has to queue to acquire it,
+ * the number of threads already queued and the time until the thread
+ * stops waiting.  Profiling is controlled by {@link
+ * #setProfilingEnabled} and its results are read by {@link
+ * #getContentionProfiles}, or through the platform {@link
+ * java.lang.management.LockContentionMXBean LockContentionMXBean}.  It
+ * is disabled by default, and may be enabled on startup by setting the
+ * system property {@code
+ * java.util.concurrent.locks.AbstractQueuedSynchronizer.profile} to
+ * {@code true}.
+ *
  * <p>Serialization of this class stores only the underlying atomic
  * integer maintaining state, so deserialized objects have empty
  * thread queues. Typical subclasses requiring serializability will
@@ -165,14 +184,15 @@ import sun.misc.Unsafe;
  * While this is not guaranteed to be fair or starvation-free, earlier
  * queued threads are allowed to recontend before later queued
  * threads, and each recontention has an unbiased chance to succeed
- * against incoming threads.  Also, while acquires do not
- * &quot;spin&quot; in the usual sense, they may perform multiple
- * invocations of {@code tryAcquire} interspersed with other
- * computations before blocking.  This gives most of the benefits of
- * spins when exclusive synchronization is only briefly held, without
- * most of the liabilities when it isn't. If so desired, you can
- * augment this by preceding calls to acquire methods with
- * "fast-path" checks, possibly prechecking {@link #hasContended}
+ * against incoming threads.  Also, on multiprocessors, a thread that
+ * is first in the queue briefly spins, repeatedly invoking {@code
+ * tryAcquire}, before blocking.  The number of attempts is adapted to
+ * the number that recent acquires of the same synchronizer needed,
+ * and is reduced when spinning has been failing.  This gives most of
+ * the benefits of spins when exclusive synchronization is only
+ * briefly held, without most of the liabilities when it isn't. If so
+ * desired, you can augment this by preceding calls to acquire methods
+ * with "fast-path" checks, possibly prechecking {@link #hasContended}
  * and/or {@link #hasQueuedThreads} to only do so if the synchronizer
  * is likely not to be contended.
  *
@@ -477,6 +497,16 @@ public abstract class AbstractQueuedSynchronizer
          */
         Node nextWaiter;
 
+        /**
+         * While this node is head, the number of times that a thread
+         * at the front of the queue retries before parking.  Set by
+         * the thread that acquired, as adapted by adaptSpinLimit, just
+         * before making the node head, so the value is carried along
+         * the queue rather than kept in each synchronizer.  Zero until
+         * first adapted.  Updates are racy, which is harmless.
+         */
+        int spinLimit;
+
         /**
          * Returns true if node is waiting in shared mode.
          */
@@ -575,6 +605,23 @@ public abstract class AbstractQueuedSynchronizer
      */
     static final long spinForTimeoutThreshold = 1000L;
 
+    /** The number of CPUs, for spin control */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The least number of times that a thread at the front of the
+     * queue retries before parking.  Spinning is useless on
+     * uniprocessors.
+     */
+    static final int MIN_SPINS = (NCPU < 2) ? 0 : 1 << 4;
+
+    /**
+     * The greatest number of times that a thread at the front of the
+     * queue retries before parking, amounting to a few microseconds,
+     * comparable to the cost of parking and being unparked.
+     */
+    static final int MAX_SPINS = (NCPU < 2) ? 0 : 1 << 10;
+
     /**
      * Inserts node into queue, initializing if necessary. See picture above.
      * @param node the node to insert
@@ -837,6 +884,45 @@ public abstract class AbstractQueuedSynchronizer
         return Thread.interrupted();
     }
 
+    /**
+     * Returns the number of times that a thread at the front of the
+     * queue should retry before parking.
+     */
+    private int spins() {
+        Node h = head;
+        int s = (h == null) ? 0 : h.spinLimit;
+        return (s < MIN_SPINS) ? MIN_SPINS : s;
+    }
+
+    /**
+     * Returns the spin limit to carry forward after an acquire by a
+     * thread whose predecessor was the given head.  If the acquire
+     * succeeded while spinning, the limit moves halfway towards twice
+     * the number of retries it needed, so that it follows the hold
+     * times of recent owners.  If it went on to park, the spins were
+     * wasted, and the limit is halved.  If it did not spin, the limit
+     * is unchanged.
+     *
+     * @param p the predecessor, which was head
+     * @param limit the number of retries the thread started with
+     * @param spins the number of retries it had left
+     */
+    private static int adaptSpinLimit(Node p, int limit, int spins) {
+        if (spins == limit)
+            return p.spinLimit;
+        int s = (spins > 0) ? (limit + ((limit - spins) << 1)) >>> 1
+            : limit >>> 1;
+        return (s < MIN_SPINS) ? MIN_SPINS : (s > MAX_SPINS) ? MAX_SPINS : s;
+    }
+
+    /**
+     * If profiling is enabled, starts timing the wait of the current
+     * thread, which has just been queued.  Otherwise returns null.
+     */
+    private WaitTimer beginWait() {
+        return profiling ? new WaitTimer(Profile.of(this)) : null;
+    }
+
     /*
      * Various flavors of acquire, varying in exclusive/shared and
      * control modes.  Each is mostly the same, but annoyingly
@@ -844,6 +930,10 @@ public abstract class AbstractQueuedSynchronizer
      * interactions of exception mechanics (including ensuring that we
      * cancel if tryAcquire throws exception) and other control, at
      * least not without hurting performance too much.
+     *
+     * Each spins while its node is first in the queue before asking
+     * to be signalled, so that a release during the spin need not
+     * unpark it, and is timed by a WaitTimer while profiling.
      */
 
     /**
@@ -856,23 +946,32 @@ public abstract class AbstractQueuedSynchronizer
      */
     final boolean acquireQueued(final Node node, int arg) {
         boolean failed = true;
+        WaitTimer timer = null;
         try {
+            timer = beginWait();
             boolean interrupted = false;
+            final int limit = spins();
+            int spins = limit;
             for (;;) {
                 final Node p = node.predecessor();
                 if (p == head && tryAcquire(arg)) {
+                    node.spinLimit = adaptSpinLimit(p, limit, spins);
                     setHead(node);
                     p.next = null; // help GC
                     failed = false;
                     return interrupted;
                 }
-                if (shouldParkAfterFailedAcquire(p, node) &&
-                    parkAndCheckInterrupt())
+                if (p == head && spins > 0)
+                    --spins;
+                else if (shouldParkAfterFailedAcquire(p, node) &&
+                         parkAndCheckInterrupt())
                     interrupted = true;
             }
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (timer != null)
+                timer.stop();
         }
     }
 
@@ -884,22 +983,31 @@ public abstract class AbstractQueuedSynchronizer
         throws InterruptedException {
         final Node node = addWaiter(Node.EXCLUSIVE);
         boolean failed = true;
+        WaitTimer timer = null;
         try {
+            timer = beginWait();
+            final int limit = spins();
+            int spins = limit;
             for (;;) {
                 final Node p = node.predecessor();
                 if (p == head && tryAcquire(arg)) {
+                    node.spinLimit = adaptSpinLimit(p, limit, spins);
                     setHead(node);
                     p.next = null; // help GC
                     failed = false;
                     return;
                 }
-                if (shouldParkAfterFailedAcquire(p, node) &&
-                    parkAndCheckInterrupt())
+                if (p == head && spins > 0)
+                    --spins;
+                else if (shouldParkAfterFailedAcquire(p, node) &&
+                         parkAndCheckInterrupt())
                     throw new InterruptedException();
             }
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (timer != null)
+                timer.stop();
         }
     }
 
@@ -917,10 +1025,15 @@ public abstract class AbstractQueuedSynchronizer
         final long deadline = System.nanoTime() + nanosTimeout;
         final Node node = addWaiter(Node.EXCLUSIVE);
         boolean failed = true;
+        WaitTimer timer = null;
         try {
+            timer = beginWait();
+            final int limit = spins();
+            int spins = limit;
             for (;;) {
                 final Node p = node.predecessor();
                 if (p == head && tryAcquire(arg)) {
+                    node.spinLimit = adaptSpinLimit(p, limit, spins);
                     setHead(node);
                     p.next = null; // help GC
                     failed = false;
@@ -929,8 +1042,10 @@ public abstract class AbstractQueuedSynchronizer
                 nanosTimeout = deadline - System.nanoTime();
                 if (nanosTimeout <= 0L)
                     return false;
-                if (shouldParkAfterFailedAcquire(p, node) &&
-                    nanosTimeout > spinForTimeoutThreshold)
+                if (p == head && spins > 0)
+                    --spins;
+                else if (shouldParkAfterFailedAcquire(p, node) &&
+                         nanosTimeout > spinForTimeoutThreshold)
                     LockSupport.parkNanos(this, nanosTimeout);
                 if (Thread.interrupted())
                     throw new InterruptedException();
@@ -938,6 +1053,8 @@ public abstract class AbstractQueuedSynchronizer
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (timer != null)
+                timer.stop();
         }
     }
 
@@ -948,13 +1065,18 @@ public abstract class AbstractQueuedSynchronizer
     private void doAcquireShared(int arg) {
         final Node node = addWaiter(Node.SHARED);
         boolean failed = true;
+        WaitTimer timer = null;
         try {
+            timer = beginWait();
             boolean interrupted = false;
+            final int limit = spins();
+            int spins = limit;
             for (;;) {
                 final Node p = node.predecessor();
                 if (p == head) {
                     int r = tryAcquireShared(arg);
                     if (r >= 0) {
+                        node.spinLimit = adaptSpinLimit(p, limit, spins);
                         setHeadAndPropagate(node, r);
                         p.next = null; // help GC
                         if (interrupted)
@@ -963,13 +1085,17 @@ public abstract class AbstractQueuedSynchronizer
                         return;
                     }
                 }
-                if (shouldParkAfterFailedAcquire(p, node) &&
-                    parkAndCheckInterrupt())
+                if (p == head && spins > 0)
+                    --spins;
+                else if (shouldParkAfterFailedAcquire(p, node) &&
+                         parkAndCheckInterrupt())
                     interrupted = true;
             }
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (timer != null)
+                timer.stop();
         }
     }
 
@@ -981,25 +1107,34 @@ public abstract class AbstractQueuedSynchronizer
         throws InterruptedException {
         final Node node = addWaiter(Node.SHARED);
         boolean failed = true;
+        WaitTimer timer = null;
         try {
+            timer = beginWait();
+            final int limit = spins();
+            int spins = limit;
             for (;;) {
                 final Node p = node.predecessor();
                 if (p == head) {
                     int r = tryAcquireShared(arg);
                     if (r >= 0) {
+                        node.spinLimit = adaptSpinLimit(p, limit, spins);
                         setHeadAndPropagate(node, r);
                         p.next = null; // help GC
                         failed = false;
                         return;
                     }
                 }
-                if (shouldParkAfterFailedAcquire(p, node) &&
-                    parkAndCheckInterrupt())
+                if (p == head && spins > 0)
+                    --spins;
+                else if (shouldParkAfterFailedAcquire(p, node) &&
+                         parkAndCheckInterrupt())
                     throw new InterruptedException();
             }
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (timer != null)
+                timer.stop();
         }
     }
 
@@ -1017,12 +1152,17 @@ public abstract class AbstractQueuedSynchronizer
         final long deadline = System.nanoTime() + nanosTimeout;
         final Node node = addWaiter(Node.SHARED);
         boolean failed = true;
+        WaitTimer timer = null;
         try {
+            timer = beginWait();
+            final int limit = spins();
+            int spins = limit;
             for (;;) {
                 final Node p = node.predecessor();
                 if (p == head) {
                     int r = tryAcquireShared(arg);
                     if (r >= 0) {
+                        node.spinLimit = adaptSpinLimit(p, limit, spins);
                         setHeadAndPropagate(node, r);
                         p.next = null; // help GC
                         failed = false;
@@ -1032,8 +1172,10 @@ public abstract class AbstractQueuedSynchronizer
                 nanosTimeout = deadline - System.nanoTime();
                 if (nanosTimeout <= 0L)
                     return false;
-                if (shouldParkAfterFailedAcquire(p, node) &&
-                    nanosTimeout > spinForTimeoutThreshold)
+                if (p == head && spins > 0)
+                    --spins;
+                else if (shouldParkAfterFailedAcquire(p, node) &&
+                         nanosTimeout > spinForTimeoutThreshold)
                     LockSupport.parkNanos(this, nanosTimeout);
                 if (Thread.interrupted())
                     throw new InterruptedException();
@@ -1041,6 +1183,8 @@ public abstract class AbstractQueuedSynchronizer
         } finally {
             if (failed)
                 cancelAcquire(node);
+            if (timer != null)
+                timer.stop();
         }
     }
 
@@ -1620,6 +1764,250 @@ public abstract class AbstractQueuedSynchronizer
     }
 
 
+    // Contention profiling
+
+    /**
+     * True while contention profiling is enabled.
+     */
+    static volatile boolean profiling;
+
+    /**
+     * Returns {@code true} if contention profiling is enabled.
+     *
+     * @return {@code true} if contention profiling is enabled
+     * @since 1.8
+     */
+    public static boolean isProfilingEnabled() {
+        return profiling;
+    }
+
+    /**
+     * Enables or disables contention profiling of all synchronizers.
+     * Statistics gathered while profiling was enabled are retained
+     * when it is disabled, until {@linkplain #resetContentionProfiles
+     * reset}.
+     *
+     * @param enable {@code true} to enable profiling; {@code false} to
+     *        disable it
+     * @throws SecurityException if a security manager exists and
+     *         the caller does not have
+     *         {@link RuntimePermission}{@code ("modifyThread")}
+     * @since 1.8
+     */
+    public static void setProfilingEnabled(boolean enable) {
+        checkProfilingPermission();
+        profiling = enable;
+    }
+
+    /**
+     * Returns the statistics gathered for each synchronizer that has
+     * been contended while profiling was enabled, and has not since
+     * been garbage collected or {@linkplain #resetContentionProfiles
+     * reset}, in no particular order.
+     *
+     * @return the contention profiles of all profiled synchronizers
+     * @since 1.8
+     */
+    public static ContentionProfile[] getContentionProfiles() {
+        Profile.expungeStaleEntries();
+        List<ContentionProfile> list = new ArrayList<ContentionProfile>();
+        for (Profile p : Profile.table.values()) {
+            LongHistogram.Snapshot w = p.waitTimes.snapshot();
+            if (w.getTotalCount() != 0L)
+                list.add(new ContentionProfile(p.className,
+                                               p.identityHashCode, w,
+                                               p.queueLengths.snapshot()));
+        }
+        return list.toArray(new ContentionProfile[list.size()]);
+    }
+
+    /**
+     * Discards the statistics gathered for all synchronizers.
+     *
+     * @throws SecurityException if a security manager exists and
+     *         the caller does not have
+     *         {@link RuntimePermission}{@code ("modifyThread")}
+     * @since 1.8
+     */
+    public static void resetContentionProfiles() {
+        checkProfilingPermission();
+        for (Profile p : Profile.table.values()) {
+            p.waitTimes.reset();
+            p.queueLengths.reset();
+        }
+    }
+
+    private static void checkProfilingPermission() {
+        SecurityManager security = System.getSecurityManager();
+        if (security != null)
+            security.checkPermission(new RuntimePermission("modifyThread"));
+    }
+
+    /**
+     * The contention statistics of a synchronizer, as returned by
+     * {@link #getContentionProfiles}.
+     *
+     * @since 1.8
+     */
+    public static final class ContentionProfile {
+        private final String className;
+        private final int identityHashCode;
+        private final LongHistogram.Snapshot waitTimes;
+        private final LongHistogram.Snapshot queueLengths;
+
+        ContentionProfile(String className, int identityHashCode,
+                          LongHistogram.Snapshot waitTimes,
+                          LongHistogram.Snapshot queueLengths) {
+            this.className = className;
+            this.identityHashCode = identityHashCode;
+            this.waitTimes = waitTimes;
+            this.queueLengths = queueLengths;
+        }
+
+        /**
+         * Returns the name of the class of the synchronizer.
+         *
+         * @return the class name of the synchronizer
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * Returns the identity hash code of the synchronizer.
+         *
+         * @return the identity hash code of the synchronizer
+         * @see System#identityHashCode
+         */
+        public int getIdentityHashCode() {
+            return identityHashCode;
+        }
+
+        /**
+         * Returns the distribution of the times, in nanoseconds, that
+         * threads queued to acquire the synchronizer waited.
+         *
+         * @return the distribution of wait times
+         */
+        public LongHistogram.Snapshot getWaitTimes() {
+            return waitTimes;
+        }
+
+        /**
+         * Returns the distribution of the numbers of threads already
+         * waiting when a thread queued to acquire the synchronizer.
+         *
+         * @return the distribution of queue lengths
+         */
+        public LongHistogram.Snapshot getQueueLengths() {
+            return queueLengths;
+        }
+    }
+
+    /**
+     * The contention statistics being gathered for a synchronizer.
+     * Profiles are kept in a side table, so that synchronizers that
+     * are never profiled carry no state for it, weakly keyed by their
+     * synchronizer.  Entries for collected synchronizers are removed
+     * whenever a profile is created or the table is read.
+     */
+    static final class Profile {
+        /** The longest wait time distinguished, in nanoseconds */
+        static final long MAX_WAIT_TIME = 1L << 40;
+        /** The longest queue length distinguished */
+        static final long MAX_QUEUE_LENGTH = 1L << 16;
+        /** Histogram precision, resolving values to within about 6% */
+        static final int PRECISION = 4;
+
+        static final ConcurrentHashMap<Key,Profile> table =
+            new ConcurrentHashMap<Key,Profile>();
+        static final ReferenceQueue<AbstractQueuedSynchronizer> stale =
+            new ReferenceQueue<AbstractQueuedSynchronizer>();
+
+        final String className;
+        final int identityHashCode;
+        final LongHistogram waitTimes =
+            new LongHistogram(MAX_WAIT_TIME, PRECISION);
+        final LongHistogram queueLengths =
+            new LongHistogram(MAX_QUEUE_LENGTH, PRECISION);
+        /** The number of threads whose waits are being timed */
+        final AtomicInteger waiters = new AtomicInteger();
+
+        Profile(AbstractQueuedSynchronizer sync) {
+            className = sync.getClass().getName();
+            identityHashCode = System.identityHashCode(sync);
+        }
+
+        /**
+         * Returns the profile of the given synchronizer, creating it
+         * if absent.
+         */
+        static Profile of(AbstractQueuedSynchronizer sync) {
+            Profile p = table.get(new Key(sync, null));
+            if (p == null) {
+                expungeStaleEntries();
+                Profile q = new Profile(sync);
+                if ((p = table.putIfAbsent(new Key(sync, stale), q)) == null)
+                    p = q;
+            }
+            return p;
+        }
+
+        static void expungeStaleEntries() {
+            for (Object k; (k = stale.poll()) != null; )
+                table.remove(k);
+        }
+    }
+
+    /**
+     * A weak reference to a synchronizer, equal to any other referring
+     * to the same live synchronizer, and otherwise only to itself.
+     */
+    static final class Key extends WeakReference<AbstractQueuedSynchronizer> {
+        final int hash;
+
+        Key(AbstractQueuedSynchronizer sync,
+            ReferenceQueue<AbstractQueuedSynchronizer> queue) {
+            super(sync, queue);
+            hash = System.identityHashCode(sync);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            Object r;
+            return o == this ||
+                (o instanceof Key && (r = get()) != null &&
+                 r == ((Key)o).get());
+        }
+    }
+
+    /**
+     * Times the wait of a thread queued while profiling.  The number
+     * of threads queued ahead of it is taken from a count of timed
+     * waiters of the same synchronizer, rather than by traversing the
+     * queue.
+     */
+    static final class WaitTimer {
+        final Profile profile;
+        final long start;
+
+        WaitTimer(Profile profile) {
+            this.profile = profile;
+            profile.queueLengths.recordValue(
+                profile.waiters.getAndIncrement());
+            this.start = System.nanoTime();
+        }
+
+        void stop() {
+            long d = System.nanoTime() - start;
+            profile.waiters.decrementAndGet();
+            profile.waitTimes.recordValue((d < 0L) ? 0L : d);
+        }
+    }
+
     // Internal support methods for Conditions
 
     /**
@@ -2265,6 +2653,9 @@ public abstract class AbstractQueuedSynchronizer
     private static final long nextOffset;
 
     static {
+        profiling = java.security.AccessController.doPrivileged(
+            new sun.security.action.GetBooleanAction(
+                "java.util.concurrent.locks.AbstractQueuedSynchronizer.profile"));
         try {
             stateOffset = unsafe.objectFieldOffset
                 (AbstractQueuedSynchronizer.class.getDeclaredField("state"));
@@ -0,0 +1,800 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+
+package java.util.concurrent.locks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ReadWriteLock} whose read lock scales with the number of
+ * processors, intended for data that is read very often and written
+ * rarely.
+ *
+ * <p>The read lock of a {@link ReentrantReadWriteLock} is acquired and
+ * released by atomically updating a single shared count, so that when
+ * many threads read at once they serialize on one cache line even
+ * though none of them has to wait.  A {@code StripedReadWriteLock}
+ * instead counts readers in a set of counters, one of which is chosen
+ * by each thread, so that readers running on different processors
+ * mostly update different memory.  The set of counters is created
+ * only when readers are seen to contend, and has about as many
+ * counters as there are processors, each on its own cache line.  The
+ * price is paid by writers, which must examine every counter to
+ * determine that no reader holds the lock.
+ *
+ * <p>This class has the following properties:
+ *
+ * <ul>
+ * <li><b>Writer preference.</b> While a writer holds the write lock,
+ * or holds it pending the release of the read lock by current
+ * readers, threads attempting to acquire the read lock block until
+ * the writer releases it.  Writers acquire the write lock in
+ * nonfair order among themselves, as for a nonfair {@link
+ * ReentrantLock}, and threads blocked acquiring the read lock queue
+ * with them.
+ *
+ * <li><b>Reentrancy.</b> The write lock is reentrant.  The read lock
+ * is not: readers are counted, not recorded, so a thread holding the
+ * read lock that attempts to acquire it again is not distinguished
+ * from a new reader, and blocks if a writer is waiting, which
+ * deadlocks.  For the same reason, {@link Lock#unlock unlock} of the
+ * read lock by a thread that does not hold it is not detected, and
+ * leaves the lock in an undefined state.
+ *
+ * <li><b>Lock downgrading.</b> A thread holding the write lock may
+ * acquire the read lock, and then release the write lock, as for
+ * {@code ReentrantReadWriteLock}.  Upgrading from a read lock to the
+ * write lock is not possible.
+ *
+ * <li><b>Interruption of lock acquisition.</b> Both locks support
+ * interruption during acquisition.
+ *
+ * <li><b>{@link Condition} support.</b> Neither lock supports
+ * conditions; {@link Lock#newCondition} throws {@link
+ * UnsupportedOperationException}.
+ * </ul>
+ *
+ * <p>Serialization of this class behaves in the same way as built-in
+ * locks: a deserialized lock is in the unlocked state, regardless of
+ * its state when serialized.
+ *
+ * <p><b>Sample usage</b>.  A configuration that is consulted on every
+ * request and replaced occasionally:
+ *
+ * <pre> {@code
+ * class Settings {
+ *   private final Map<String, String> m = new HashMap<String, String>();
+ *   private final StripedReadWriteLock rwl = new StripedReadWriteLock();
+ *   private final Lock r = rwl.readLock();
+ *   private final Lock w = rwl.writeLock();
+ *
+ *   public String get(String key) {
+ *     r.lock();
+ *     try { return m.get(key); }
+ *     finally { r.unlock(); }
+ *   }
+ *   public void putAll(Map<String, String> updates) {
+ *     w.lock();
+ *     try { m.putAll(updates); }
+ *     finally { w.unlock(); }
+ *   }
+ * }}</pre>
+ *
+ * @see ReentrantReadWriteLock
+ * @see StampedLock
+ * @since 1.8
+ */
+public class StripedReadWriteLock implements ReadWriteLock, java.io.Serializable {
+    private static final long serialVersionUID = 2943287261527283340L;
+
+    /*
+     * The number of readers is the sum of a base count and, once
+     * created, an array of counters.  As in Striped64, readers add to
+     * the base while they do not contend, and after a failed CAS on
+     * the base create the array and thereafter add to the counter
+     * indexed by their thread probe.  The array is never replaced or
+     * resized, so that no count can be lost.  A reader may release
+     * using a different counter from the one it acquired with, since
+     * its probe may have been changed by other users, so individual
+     * counters may be negative; only the sum is meaningful.
+     *
+     * Writers serialize on the ReentrantLock mutex, and announce
+     * themselves by setting field writer.  A reader first adds to a
+     * count and then reads writer; a writer first sets writer and
+     * then reads the counts.  Since all of these accesses are
+     * volatile or atomic, either the reader sees the writer, and
+     * backs out its count, or the writer sees the count of the reader,
+     * and waits until it is released.  A writer that has seen one
+     * reader's increment sees the counts as no lower than the number
+     * of readers holding the lock, because a decrement by a holder is
+     * always preceded by its increment, which the writer must see.
+     * This does not hold for the decrement backing out a count made
+     * after the writer read that counter, so a back-out is applied to
+     * the same counter as the increment it undoes.
+     *
+     * Readers that back out acquire the mutex, which is held by the
+     * writer they saw or will soon be free, and add to a count while
+     * holding it, at which point no writer can be active unless it is
+     * the current thread, which is then downgrading.  Readers do not
+     * otherwise touch the mutex.
+     *
+     * A writer waiting for readers spins briefly and then parks.  A
+     * reader that releases while a writer is announced unparks it,
+     * possibly spuriously.  Either the writer's read of the counts
+     * sees the release, or the releasing reader's read of writer sees
+     * the writer, so the wakeup cannot be lost.
+     */
+
+    /** The number of CPUs, for sizing and spin control */
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    /** The greatest number of reader counters */
+    static final int MAX_COUNTERS = 1 << 8;
+
+    /** The number of counters, a power of two at least NCPU */
+    static final int COUNTERS;
+    static {
+        int n = 1;
+        while (n < NCPU && n < MAX_COUNTERS)
+            n <<= 1;
+        COUNTERS = n;
+    }
+
+    /**
+     * The shift from counter index to array index, spacing counters
+     * 128 bytes apart so that each has its own cache line, and
+     * leaving one unused line at either end.
+     */
+    static final int COUNTER_SHIFT = 4;
+
+    /**
+     * The number of times a writer rechecks the counts before parking.
+     */
+    static final int WRITER_SPINS = (NCPU > 1) ? 1 << 6 : 0;
+
+    /** Inner class providing readlock */
+    private final ReadLock readerLock;
+    /** Inner class providing writelock */
+    private final WriteLock writerLock;
+
+    /** Mutex held by writers, and by readers that saw a writer */
+    private final ReentrantLock mutex;
+
+    /** The writer holding the mutex, or null if none */
+    private transient volatile Thread writer;
+
+    /** Base count of readers */
+    private transient volatile long readers;
+
+    /** Padded reader counters; null until readers contend */
+    private transient volatile long[] counters;
+
+    /**
+     * Creates a new {@code StripedReadWriteLock}, initially in the
+     * unlocked state.
+     */
+    public StripedReadWriteLock() {
+        readerLock = new ReadLock(this);
+        writerLock = new WriteLock(this);
+        mutex = new ReentrantLock();
+    }
+
+    public StripedReadWriteLock.WriteLock writeLock() { return writerLock; }
+    public StripedReadWriteLock.ReadLock  readLock()  { return readerLock; }
+
+    // Reader counts
+
+    /**
+     * Returns the counter array, creating it if necessary.
+     */
+    private long[] counters() {
+        long[] cs = counters;
+        if (cs == null) {
+            cs = new long[(COUNTERS + 2) << COUNTER_SHIFT];
+            if (!U.compareAndSwapObject(this, COUNTERS_OFFSET, null, cs))
+                cs = counters;
+        }
+        return cs;
+    }
+
+    /**
+     * Returns the offset of the counter of the current thread.
+     */
+    private static long counterOffset() {
+        int h;
+        if ((h = U.getInt(Thread.currentThread(), PROBE)) == 0) {
+            ThreadLocalRandom.current(); // force initialization
+            h = U.getInt(Thread.currentThread(), PROBE);
+        }
+        return ((long)(((h & (COUNTERS - 1)) + 1) << COUNTER_SHIFT) << ASHIFT) +
+            ABASE;
+    }
+
+    /**
+     * Adds the given value to the count of readers.
+     *
+     * @return the offset of the counter updated, or 0 if the base
+     */
+    private long addReaders(long x) {
+        long[] cs; long b;
+        if ((cs = counters) == null &&
+            U.compareAndSwapLong(this, READERS, b = readers, b + x))
+            return 0L;
+        if (cs == null)
+            cs = counters();
+        long offset = counterOffset();
+        U.getAndAddLong(cs, offset, x);
+        return offset;
+    }
+
+    /**
+     * Returns the number of readers.  The result is exact only in the
+     * absence of concurrent updates, but while a writer is announced
+     * it is never less than the number of readers holding the lock.
+     */
+    final long readerCount() {
+        long sum = readers;
+        long[] cs = counters;
+        if (cs != null) {
+            for (int i = 1; i <= COUNTERS; ++i)
+                sum += U.getLongVolatile(cs, ((long)(i << COUNTER_SHIFT) << ASHIFT) +
+                                         ABASE);
+        }
+        return sum;
+    }
+
+    // Reader acquisition and release
+
+    /**
+     * Adds a reader without regard to writers, if possible; otherwise
+     * returns false, with the count unchanged, if a writer is
+     * announced.
+     */
+    private boolean tryAddReader() {
+        long offset = addReaders(1L);
+        if (writer == null)
+            return true;
+        // Back out on the same counter, so that a writer summing the
+        // counts concurrently cannot see the decrement without the
+        // increment
+        if (offset == 0L)
+            U.getAndAddLong(this, READERS, -1L);
+        else
+            U.getAndAddLong(counters, offset, -1L);
+        Thread w;
+        if ((w = writer) != null)
+            LockSupport.unpark(w);
+        return false;
+    }
+
+    final void acquireRead() {
+        if (!tryAddReader()) {
+            mutex.lock();
+            try {
+                addReaders(1L);
+            } finally {
+                mutex.unlock();
+            }
+        }
+    }
+
+    final void acquireReadInterruptibly() throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        if (!tryAddReader()) {
+            mutex.lockInterruptibly();
+            try {
+                addReaders(1L);
+            } finally {
+                mutex.unlock();
+            }
+        }
+    }
+
+    final boolean tryAcquireRead() {
+        if (tryAddReader())
+            return true;
+        if (!mutex.tryLock())
+            return false;
+        try {
+            addReaders(1L);
+        } finally {
+            mutex.unlock();
+        }
+        return true;
+    }
+
+    final boolean tryAcquireReadNanos(long nanos) throws InterruptedException {
+        if (Thread.interrupted())
+            throw new InterruptedException();
+        if (tryAddReader())
+            return true;
+        if (!mutex.tryLock(nanos, TimeUnit.NANOSECONDS))
+            return false;
+        try {
+            addReaders(1L);
+        } finally {
+            mutex.unlock();
+        }
+        return true;
+    }
+
+    final void releaseRead() {
+        addReaders(-1L);
+        Thread w;
+        if ((w = writer) != null)
+            LockSupport.unpark(w);
+    }
+
+    // Writer acquisition and release
+
+    /**
+     * Waits, after the current thread has acquired the mutex for the
+     * first time, for readers to release.  On failure, withdraws the
+     * announcement and releases the mutex.
+     *
+     * @param interruptible true if interrupts abort the wait
+     * @param timed true if the wait is timed
+     * @param nanos the time to wait, if timed
+     * @return 1 if all readers released, 0 if timed out, or -1 if
+     *         interrupted
+     */
+    private int awaitReaders(boolean interruptible, boolean timed,
+                             long nanos) {
+        final Thread current = Thread.currentThread();
+        writer = current;
+        if (readerCount() == 0L)
+            return 1;
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        boolean interrupted = false;
+        int result = 1;
+        for (int spins = WRITER_SPINS; readerCount() != 0L; ) {
+            if (spins > 0)
+                --spins;
+            else if (!timed)
+                LockSupport.park(this);
+            else if ((nanos = deadline - System.nanoTime()) > 0L)
+                LockSupport.parkNanos(this, nanos);
+            else {
+                result = 0;
+                break;
+            }
+            if (Thread.interrupted()) {
+                if (interruptible) {
+                    result = -1;
+                    break;
+                }
+                interrupted = true;
+            }
+        }
+        if (result != 1) {
+            writer = null;
+            mutex.unlock();
+        }
+        if (interrupted)
+            current.interrupt();
+        return result;
+    }
+
+    final void acquireWrite() {
+        mutex.lock();
+        if (mutex.getHoldCount() == 1)
+            awaitReaders(false, false, 0L);
+    }
+
+    final void acquireWriteInterruptibly() throws InterruptedException {
+        mutex.lockInterruptibly();
+        if (mutex.getHoldCount() == 1 && awaitReaders(true, false, 0L) < 0)
+            throw new InterruptedException();
+    }
+
+    final boolean tryAcquireWrite() {
+        if (!mutex.tryLock())
+            return false;
+        if (mutex.getHoldCount() == 1) {
+            writer = Thread.currentThread();
+            if (readerCount() != 0L) {
+                writer = null;
+                mutex.unlock();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    final boolean tryAcquireWriteNanos(long nanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + nanos;
+        if (!mutex.tryLock(nanos, TimeUnit.NANOSECONDS))
+            return false;
+        if (mutex.getHoldCount() > 1)
+            return true;
+        int r = awaitReaders(true, true, deadline - System.nanoTime());
+        if (r < 0)
+            throw new InterruptedException();
+        return r > 0;
+    }
+
+    final void releaseWrite() {
+        if (mutex.isHeldByCurrentThread() && mutex.getHoldCount() == 1)
+            writer = null;
+        mutex.unlock();
+    }
+
+    /**
+     * The lock returned by method {@link StripedReadWriteLock#readLock}.
+     */
+    public static class ReadLock implements Lock, java.io.Serializable {
+        private static final long serialVersionUID = -1524137287468702533L;
+        private final StripedReadWriteLock lock;
+
+        /**
+         * Constructor for use by subclasses
+         *
+         * @param lock the outer lock object
+         * @throws NullPointerException if the lock is null
+         */
+        protected ReadLock(StripedReadWriteLock lock) {
+            if (lock == null)
+                throw new NullPointerException();
+            this.lock = lock;
+        }
+
+        /**
+         * Acquires the read lock.
+         *
+         * <p>Acquires the read lock if the write lock is not held by
+         * another thread and no writer is waiting for readers to
+         * release, and returns immediately.
+         *
+         * <p>Otherwise the current thread becomes disabled for thread
+         * scheduling purposes and lies dormant until the read lock has
+         * been acquired.
+         */
+        public void lock() {
+            lock.acquireRead();
+        }
+
+        /**
+         * Acquires the read lock unless the current thread is
+         * {@linkplain Thread#interrupt interrupted}.
+         *
+         * <p>Acquires the read lock if the write lock is not held by
+         * another thread and no writer is waiting for readers to
+         * release, and returns immediately.
+         *
+         * <p>Otherwise the current thread becomes disabled for thread
+         * scheduling purposes and lies dormant until the read lock has
+         * been acquired or some other thread interrupts the current
+         * thread.
+         *
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        public void lockInterruptibly() throws InterruptedException {
+            lock.acquireReadInterruptibly();
+        }
+
+        /**
+         * Acquires the read lock only if the write lock is not held by
+         * another thread at the time of invocation.
+         *
+         * @return {@code true} if the read lock was acquired
+         */
+        public boolean tryLock() {
+            return lock.tryAcquireRead();
+        }
+
+        /**
+         * Acquires the read lock if the write lock is not held by
+         * another thread within the given waiting time and the current
+         * thread has not been {@linkplain Thread#interrupt interrupted}.
+         *
+         * @param timeout the time to wait for the read lock
+         * @param unit the time unit of the timeout argument
+         * @return {@code true} if the read lock was acquired
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws NullPointerException if the time unit is null
+         */
+        public boolean tryLock(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return lock.tryAcquireReadNanos(unit.toNanos(timeout));
+        }
+
+        /**
+         * Releases this lock.  The current thread must hold the read
+         * lock; this is not checked.
+         */
+        public void unlock() {
+            lock.releaseRead();
+        }
+
+        /**
+         * Throws {@code UnsupportedOperationException} because
+         * {@code ReadLocks} do not support conditions.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Returns a string identifying this lock, as well as its lock state.
+         * The state, in brackets, includes the String {@code "Read locks ="}
+         * followed by the number of held read locks.
+         *
+         * @return a string identifying this lock, as well as its lock state
+         */
+        public String toString() {
+            return super.toString() +
+                "[Read locks = " + lock.getReadLockCount() + "]";
+        }
+    }
+
+    /**
+     * The lock returned by method {@link StripedReadWriteLock#writeLock}.
+     */
+    public static class WriteLock implements Lock, java.io.Serializable {
+        private static final long serialVersionUID = 8431203794258106947L;
+        private final StripedReadWriteLock lock;
+
+        /**
+         * Constructor for use by subclasses
+         *
+         * @param lock the outer lock object
+         * @throws NullPointerException if the lock is null
+         */
+        protected WriteLock(StripedReadWriteLock lock) {
+            if (lock == null)
+                throw new NullPointerException();
+            this.lock = lock;
+        }
+
+        /**
+         * Acquires the write lock.
+         *
+         * <p>Acquires the write lock if it is not held by another
+         * thread, and waits for the read lock to be released by all
+         * threads holding it; readers arriving meanwhile block.  If the
+         * current thread already holds the write lock then the hold
+         * count is incremented by one and the method returns
+         * immediately.
+         */
+        public void lock() {
+            lock.acquireWrite();
+        }
+
+        /**
+         * Acquires the write lock unless the current thread is
+         * {@linkplain Thread#interrupt interrupted}, as for {@link
+         * #lock}.
+         *
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        public void lockInterruptibly() throws InterruptedException {
+            lock.acquireWriteInterruptibly();
+        }
+
+        /**
+         * Acquires the write lock only if it is not held by another
+         * thread and the read lock is not held at the time of
+         * invocation.  If the current thread already holds the write
+         * lock then the hold count is incremented by one and the method
+         * returns {@code true}.
+         *
+         * @return {@code true} if the lock was acquired
+         */
+        public boolean tryLock() {
+            return lock.tryAcquireWrite();
+        }
+
+        /**
+         * Acquires the write lock if it is not held by another thread,
+         * and the read lock is released by all threads holding it,
+         * within the given waiting time and the current thread has not
+         * been {@linkplain Thread#interrupt interrupted}.
+         *
+         * @param timeout the time to wait for the write lock
+         * @param unit the time unit of the timeout argument
+         * @return {@code true} if the lock was acquired
+         * @throws InterruptedException if the current thread is interrupted
+         * @throws NullPointerException if the time unit is null
+         */
+        public boolean tryLock(long timeout, TimeUnit unit)
+                throws InterruptedException {
+            return lock.tryAcquireWriteNanos(unit.toNanos(timeout));
+        }
+
+        /**
+         * Attempts to release this lock.  If the current thread holds
+         * this lock then the hold count is decremented, and if it is
+         * now zero the lock is released.
+         *
+         * @throws IllegalMonitorStateException if the current thread does not
+         * hold this lock
+         */
+        public void unlock() {
+            lock.releaseWrite();
+        }
+
+        /**
+         * Throws {@code UnsupportedOperationException} because
+         * {@code WriteLocks} of this class do not support conditions.
+         *
+         * @throws UnsupportedOperationException always
+         */
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Returns a string identifying this lock, as well as its lock
+         * state.  The state, in brackets, includes either the String
+         * {@code "[Unlocked]"} or the String {@code "[Locked by thread"}
+         * followed by the {@linkplain Thread#getName name} of the owning
+         * thread.
+         *
+         * @return a string identifying this lock, as well as its lock state
+         */
+        public String toString() {
+            Thread o = lock.writer;
+            return super.toString() + ((o == null) ?
+                                       "[Unlocked]" :
+                                       "[Locked by thread " + o.getName() + "]");
+        }
+
+        /**
+         * Queries if this write lock is held by the current thread.
+         * Identical in effect to {@link
+         * StripedReadWriteLock#isWriteLockedByCurrentThread}.
+         *
+         * @return {@code true} if the current thread holds this lock and
+         *         {@code false} otherwise
+         */
+        public boolean isHeldByCurrentThread() {
+            return lock.isWriteLockedByCurrentThread();
+        }
+
+        /**
+         * Queries the number of holds on this write lock by the current
+         * thread.  Identical in effect to {@link
+         * StripedReadWriteLock#getWriteHoldCount}.
+         *
+         * @return the number of holds on this lock by the current thread,
+         *         or zero if this lock is not held by the current thread
+         */
+        public int getHoldCount() {
+            return lock.getWriteHoldCount();
+        }
+    }
+
+    // Instrumentation and status
+
+    /**
+     * Queries if the write lock is held by any thread.  A writer that
+     * holds the write lock pending the release of the read lock by
+     * current readers is considered to hold it.  This method is
+     * designed for use in monitoring system state, not for
+     * synchronization control.
+     *
+     * @return {@code true} if any thread holds the write lock and
+     *         {@code false} otherwise
+     */
+    public boolean isWriteLocked() {
+        return writer != null;
+    }
+
+    /**
+     * Queries if the write lock is held by the current thread.
+     *
+     * @return {@code true} if the current thread holds the write lock and
+     *         {@code false} otherwise
+     */
+    public boolean isWriteLockedByCurrentThread() {
+        return writer == Thread.currentThread();
+    }
+
+    /**
+     * Queries the number of reentrant write holds on this lock by the
+     * current thread.
+     *
+     * @return the number of holds on the write lock by the current thread,
+     *         or zero if the write lock is not held by the current thread
+     */
+    public int getWriteHoldCount() {
+        return isWriteLockedByCurrentThread() ? mutex.getHoldCount() : 0;
+    }
+
+    /**
+     * Queries the number of read locks held for this lock.  The value
+     * is only an estimate while threads acquire or release the read
+     * lock.  This method is designed for use in monitoring system
+     * state, not for synchronization control.
+     *
+     * @return the number of read locks held
+     */
+    public int getReadLockCount() {
+        long n = readerCount();
+        return (n <= 0L) ? 0 : (n >= Integer.MAX_VALUE) ? Integer.MAX_VALUE
+            : (int)n;
+    }
+
+    /**
+     * Queries whether any threads are blocked waiting to acquire the
+     * read or write lock.  Threads that are only waiting for readers
+     * to release, as a writer does, are not included.
+     *
+     * @return {@code true} if there may be other threads waiting to
+     *         acquire the lock
+     */
+    public final boolean hasQueuedThreads() {
+        return mutex.hasQueuedThreads();
+    }
+
+    /**
+     * Returns a string identifying this lock, as well as its lock state.
+     * The state, in brackets, includes the String {@code "Read locks ="}
+     * followed by the number of held read locks, preceded, if the
+     * write lock is held, by the String {@code "Write locked by thread"}
+     * followed by the {@linkplain Thread#getName name} of the owning
+     * thread.
+     *
+     * @return a string identifying this lock, as well as its lock state
+     */
+    public String toString() {
+        Thread o = writer;
+        return super.toString() + "[" +
+            ((o == null) ? "" : "Write locked by thread " + o.getName() + ", ") +
+            "Read locks = " + getReadLockCount() + "]";
+    }
+
+    // Unsafe mechanics
+    private static final sun.misc.Unsafe U;
+    private static final long READERS;
+    private static final long COUNTERS_OFFSET;
+    private static final long PROBE;
+    private static final long ABASE;
+    private static final int ASHIFT;
+    static {
+        try {
+            U = sun.misc.Unsafe.getUnsafe();
+            Class<?> k = StripedReadWriteLock.class;
+            READERS = U.objectFieldOffset
+                (k.getDeclaredField("readers"));
+            COUNTERS_OFFSET = U.objectFieldOffset
+                (k.getDeclaredField("counters"));
+            Class<?> tk = Thread.class;
+            PROBE = U.objectFieldOffset
+                (tk.getDeclaredField("threadLocalRandomProbe"));
+            ABASE = U.arrayBaseOffset(long[].class);
+            int scale = U.arrayIndexScale(long[].class);
+            if ((scale & (scale - 1)) != 0)
+                throw new Error("data type scale not a power of two");
+            ASHIFT = 31 - Integer.numberOfLeadingZeros(scale);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -508,6 +508,24 @@ abstract class AbstractPipeline<E_IN, E_OUT, S extends BaseStream<E_OUT, S>>
         return StreamOpFlag.ORDERED.isKnown(combinedFlags);
     }
 
+    /**
+     * Returns true if this pipeline stage is linked, directly or through
+     * intermediate stages, from the given source stage.
+     *
+     * @param source the source stage
+     */
+    final boolean isLinkedFrom(AbstractPipeline<?, ?, ?> source) {
+        return sourceStage == source;
+    }
+
+    /**
+     * Returns true if any intermediate operation of this pipeline is
+     * stateful.
+     */
+    final boolean isAnyStateful() {
+        return sourceStage.sourceAnyStateful;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     final <P_IN> Sink<P_IN> wrapSink(Sink<E_OUT> sink) {
@@ -24,13 +24,14 @@
  */
 package java.util.stream;
 
+import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Spliterator;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntFunction;
 
 /**
@@ -43,6 +44,91 @@ final class DistinctOps {
 
     private DistinctOps() { }
 
+    /**
+     * Minimum number of elements per chunk processed by one task in
+     * {@link #orderedDistinct}.
+     */
+    static final int MIN_CHUNK_SIZE = 1 << 12;
+
+    @SuppressWarnings("unchecked")
+    private static <T> IntFunction<T[]> castingArray() {
+        return size -> (T[]) new Object[size];
+    }
+
+    /**
+     * Returns the distinct elements of an array, in the order of their
+     * first occurrence, computed in parallel.
+     *
+     * <p>Rather than merging per-leaf sets of distinct elements, which
+     * rehashes the larger set at every level of the computation tree, the
+     * array is divided into chunks processed in three parallel passes.  The
+     * first pass records in a shared concurrent map the least index at
+     * which each element occurs.  The map is updated only when an element
+     * is found at an index less than the one recorded, which, as chunks
+     * are scanned in ascending order, happens at most once per element and
+     * chunk, so frequently repeated elements cause little contention.  The
+     * second pass retains the indices of each chunk that are recorded in
+     * the map, and the third copies the elements at those indices to the
+     * chunk's position in the result.
+     *
+     * @param a the elements, in encounter order
+     * @param generator the array factory for the result
+     * @return an array of the distinct elements, in encounter order
+     */
+    static <T> T[] orderedDistinct(T[] a, IntFunction<T[]> generator) {
+        int n = a.length;
+        int chunks = Math.max(1, Math.min(AbstractTask.LEAF_TARGET, n / MIN_CHUNK_SIZE));
+        int chunkSize = (n + chunks - 1) / chunks;
+
+        ConcurrentHashMap<T, Integer> firstIndex = new ConcurrentHashMap<>();
+        // Holder of the first index of null since ConcurrentHashMap does not support null keys
+        AtomicInteger firstNull = new AtomicInteger(Integer.MAX_VALUE);
+        int[][] retained = new int[chunks][];
+        int[] counts = new int[chunks];
+
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            for (int i = c * chunkSize, to = Math.min(n, i + chunkSize); i < to; i++) {
+                T t = a[i];
+                if (t == null) {
+                    if (firstNull.get() > i)
+                        firstNull.accumulateAndGet(i, Math::min);
+                }
+                else {
+                    Integer f = firstIndex.get(t);
+                    if (f == null || f > i)
+                        firstIndex.merge(t, i, (x, y) -> (x <= y) ? x : y);
+                }
+            }
+        });
+
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] is = new int[16];
+            int k = 0;
+            for (int i = c * chunkSize, to = Math.min(n, i + chunkSize); i < to; i++) {
+                T t = a[i];
+                if ((t == null) ? firstNull.get() == i : firstIndex.get(t) == i) {
+                    if (k == is.length)
+                        is = Arrays.copyOf(is, k << 1);
+                    is[k++] = i;
+                }
+            }
+            retained[c] = is;
+            counts[c] = k;
+        });
+
+        int[] offsets = new int[chunks + 1];
+        for (int c = 0; c < chunks; c++)
+            offsets[c + 1] = offsets[c] + counts[c];
+        T[] result = generator.apply(offsets[chunks]);
+
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] is = retained[c];
+            for (int j = 0, k = counts[c], o = offsets[c]; j < k; j++)
+                result[o + j] = a[is[j]];
+        });
+        return result;
+    }
+
     /**
      * Appends a "distinct" operation to the provided stream, and returns the
      * new stream.
@@ -55,13 +141,12 @@ final class DistinctOps {
         return new ReferencePipeline.StatefulOp<T, T>(upstream, StreamShape.REFERENCE,
                                                       StreamOpFlag.IS_DISTINCT | StreamOpFlag.NOT_SIZED) {
 
-            <P_IN> Node<T> reduce(PipelineHelper<T> helper, Spliterator<P_IN> spliterator) {
+            <P_IN> Node<T> reduce(PipelineHelper<T> helper, Spliterator<P_IN> spliterator,
+                                  IntFunction<T[]> generator) {
                 // If the stream is SORTED then it should also be ORDERED so the following will also
                 // preserve the sort order
-                TerminalOp<T, LinkedHashSet<T>> reduceOp
-                        = ReduceOps.<T, LinkedHashSet<T>>makeRef(LinkedHashSet::new, LinkedHashSet::add,
-                                                                 LinkedHashSet::addAll);
-                return Nodes.node(reduceOp.evaluateParallel(helper, spliterator));
+                T[] flattenedData = helper.evaluate(spliterator, true, generator).asArray(generator);
+                return Nodes.node(orderedDistinct(flattenedData, generator));
             }
 
             @Override
@@ -73,7 +158,7 @@ final class DistinctOps {
                     return helper.evaluate(spliterator, false, generator);
                 }
                 else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
-                    return reduce(helper, spliterator);
+                    return reduce(helper, spliterator, generator);
                 }
                 else {
                     // Holder of null state since ConcurrentHashMap does not support null values
@@ -107,7 +192,7 @@ final class DistinctOps {
                 }
                 else if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
                     // Not lazy, barrier required to preserve order
-                    return reduce(helper, spliterator).spliterator();
+                    return reduce(helper, spliterator, castingArray()).spliterator();
                 }
                 else {
                     // Lazy
@@ -476,6 +476,14 @@ abstract class DoublePipeline<E_IN>
         return evaluate(ReduceOps.makeDouble(supplier, accumulator, operator));
     }
 
+    @Override
+    public final <A, R> R collect(PrimitiveCollector.OfDouble<A, R> collector) {
+        A container = evaluate(ReduceOps.makeDouble(collector.supplier(),
+                                                    collector.accumulator(),
+                                                    collector.combiner()));
+        return collector.finisher().apply(container);
+    }
+
     @Override
     public final boolean anyMatch(DoublePredicate predicate) {
         return evaluate(MatchOps.makeDouble(predicate, MatchOps.MatchKind.ANY));
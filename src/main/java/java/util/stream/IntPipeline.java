@@ -472,6 +472,14 @@ abstract class IntPipeline<E_IN>
         return evaluate(ReduceOps.makeInt(supplier, accumulator, operator));
     }
 
+    @Override
+    public final <A, R> R collect(PrimitiveCollector.OfInt<A, R> collector) {
+        A container = evaluate(ReduceOps.makeInt(collector.supplier(),
+                                                 collector.accumulator(),
+                                                 collector.combiner()));
+        return collector.finisher().apply(container);
+    }
+
     @Override
     public final boolean anyMatch(IntPredicate predicate) {
         return evaluate(MatchOps.makeInt(predicate, MatchOps.MatchKind.ANY));
@@ -446,6 +446,38 @@ public interface IntStream extends BaseStream<Integer, IntStream> {
                   ObjIntConsumer<R> accumulator,
                   BiConsumer<R, R> combiner);
 
+    /**
+     * Performs a <a href="package-summary.html#MutableReduction">mutable
+     * reduction</a> operation on the elements of this stream using a
+     * {@code PrimitiveCollector}.  This is equivalent to
+     * {@link #collect(Supplier, ObjIntConsumer, BiConsumer)}, except that the
+     * combining function may return a new result container, and the
+     * collector's finishing function is applied to the result.
+     *
+     * <p>This is a <a href="package-summary.html#StreamOps">terminal
+     * operation</a>.
+     *
+     * @implSpec
+     * The default implementation holds each result container in a
+     * one-element array and delegates to
+     * {@link #collect(Supplier, ObjIntConsumer, BiConsumer)}.
+     *
+     * @param <A> the intermediate accumulation type of the collector
+     * @param <R> the type of the result
+     * @param collector the {@code PrimitiveCollector} describing the reduction
+     * @return the result of the reduction
+     * @see PrimitiveCollectors
+     */
+    @SuppressWarnings("unchecked")
+    default <A, R> R collect(PrimitiveCollector.OfInt<A, R> collector) {
+        Supplier<A> supplier = collector.supplier();
+        ObjIntConsumer<A> accumulator = collector.accumulator();
+        Object[] box = collect(() -> new Object[] { supplier.get() },
+                               (b, t) -> accumulator.accept((A) b[0], t),
+                               (l, r) -> l[0] = collector.combiner().apply((A) l[0], (A) r[0]));
+        return collector.finisher().apply((A) box[0]);
+    }
+
     /**
      * Returns the sum of elements in this stream.  This is a special case
      * of a <a href="package-summary.html#Reduction">reduction</a>
@@ -454,6 +454,14 @@ abstract class LongPipeline<E_IN>
         return evaluate(ReduceOps.makeLong(supplier, accumulator, operator));
     }
 
+    @Override
+    public final <A, R> R collect(PrimitiveCollector.OfLong<A, R> collector) {
+        A container = evaluate(ReduceOps.makeLong(collector.supplier(),
+                                                  collector.accumulator(),
+                                                  collector.combiner()));
+        return collector.finisher().apply(container);
+    }
+
     @Override
     public final boolean anyMatch(LongPredicate predicate) {
         return evaluate(MatchOps.makeLong(predicate, MatchOps.MatchKind.ANY));
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * A <a href="package-summary.html#Reduction">mutable reduction operation</a>
+ * over the elements of a primitive stream.  A {@code PrimitiveCollector}
+ * plays the role of a {@link Collector} for {@link IntStream},
+ * {@link LongStream} and {@link DoubleStream}, whose {@code collect}
+ * methods accept the specializations {@link OfInt}, {@link OfLong} and
+ * {@link OfDouble}.  Elements are folded into the result container by a
+ * primitive accumulator, so that they are never boxed.
+ *
+ * <p>As with {@code Collector}, a collector is specified by four
+ * functions: creation of a new result container ({@link #supplier()}),
+ * incorporation of an element ({@code accumulator()}), combination of
+ * two result containers ({@link #combiner()}), and an optional final
+ * transformation ({@link #finisher()}).  The same constraints apply:
+ * for parallel evaluation the accumulator and combiner must be
+ * associative, non-interfering and stateless, and the collector must
+ * produce a result equivalent to a sequential reduction however the
+ * input is partitioned.
+ *
+ * <p>{@link PrimitiveCollectors} provides implementations of common
+ * reductions, such as counting into arrays and grouping into
+ * primitive-keyed maps.
+ *
+ * @param <A> the mutable accumulation type of the reduction operation
+ * @param <R> the result type of the reduction operation
+ * @see Collector
+ * @see PrimitiveCollectors
+ * @since 1.8
+ */
+public interface PrimitiveCollector<A, R> {
+    /**
+     * A function that creates and returns a new mutable result container.
+     *
+     * @return a function which returns a new, mutable result container
+     */
+    Supplier<A> supplier();
+
+    /**
+     * A function that accepts two partial results and merges them.  The
+     * combiner function may fold state from one argument into the other and
+     * return that, or may return a new result container.
+     *
+     * @return a function which combines two partial results into a combined
+     * result
+     */
+    BinaryOperator<A> combiner();
+
+    /**
+     * Perform the final transformation from the intermediate accumulation type
+     * {@code A} to the final result type {@code R}.
+     *
+     * @return a function which transforms the intermediate result to the final
+     * result
+     */
+    Function<A, R> finisher();
+
+    /**
+     * A {@code PrimitiveCollector} of {@code int} values.
+     *
+     * @param <A> the mutable accumulation type of the reduction operation
+     * @param <R> the result type of the reduction operation
+     * @see IntStream#collect(PrimitiveCollector.OfInt)
+     */
+    interface OfInt<A, R> extends PrimitiveCollector<A, R> {
+        /**
+         * A function that folds a value into a mutable result container.
+         *
+         * @return a function which folds a value into a mutable result
+         * container
+         */
+        ObjIntConsumer<A> accumulator();
+
+        /**
+         * Returns a new {@code PrimitiveCollector.OfInt} described by the
+         * given {@code supplier}, {@code accumulator}, {@code combiner}, and
+         * {@code finisher} functions.
+         *
+         * @param supplier The supplier function for the new collector
+         * @param accumulator The accumulator function for the new collector
+         * @param combiner The combiner function for the new collector
+         * @param finisher The finisher function for the new collector
+         * @param <A> The intermediate accumulation type of the new collector
+         * @param <R> The final result type of the new collector
+         * @throws NullPointerException if any argument is null
+         * @return the new collector
+         */
+        public static <A, R> OfInt<A, R> of(Supplier<A> supplier,
+                                            ObjIntConsumer<A> accumulator,
+                                            BinaryOperator<A> combiner,
+                                            Function<A, R> finisher) {
+            return new PrimitiveCollectors.OfIntImpl<>(
+                    Objects.requireNonNull(supplier),
+                    Objects.requireNonNull(accumulator),
+                    Objects.requireNonNull(combiner),
+                    Objects.requireNonNull(finisher));
+        }
+    }
+
+    /**
+     * A {@code PrimitiveCollector} of {@code long} values.
+     *
+     * @param <A> the mutable accumulation type of the reduction operation
+     * @param <R> the result type of the reduction operation
+     * @see LongStream#collect(PrimitiveCollector.OfLong)
+     */
+    interface OfLong<A, R> extends PrimitiveCollector<A, R> {
+        /**
+         * A function that folds a value into a mutable result container.
+         *
+         * @return a function which folds a value into a mutable result
+         * container
+         */
+        ObjLongConsumer<A> accumulator();
+
+        /**
+         * Returns a new {@code PrimitiveCollector.OfLong} described by the
+         * given {@code supplier}, {@code accumulator}, {@code combiner}, and
+         * {@code finisher} functions.
+         *
+         * @param supplier The supplier function for the new collector
+         * @param accumulator The accumulator function for the new collector
+         * @param combiner The combiner function for the new collector
+         * @param finisher The finisher function for the new collector
+         * @param <A> The intermediate accumulation type of the new collector
+         * @param <R> The final result type of the new collector
+         * @throws NullPointerException if any argument is null
+         * @return the new collector
+         */
+        public static <A, R> OfLong<A, R> of(Supplier<A> supplier,
+                                             ObjLongConsumer<A> accumulator,
+                                             BinaryOperator<A> combiner,
+                                             Function<A, R> finisher) {
+            return new PrimitiveCollectors.OfLongImpl<>(
+                    Objects.requireNonNull(supplier),
+                    Objects.requireNonNull(accumulator),
+                    Objects.requireNonNull(combiner),
+                    Objects.requireNonNull(finisher));
+        }
+    }
+
+    /**
+     * A {@code PrimitiveCollector} of {@code double} values.
+     *
+     * @param <A> the mutable accumulation type of the reduction operation
+     * @param <R> the result type of the reduction operation
+     * @see DoubleStream#collect(PrimitiveCollector.OfDouble)
+     */
+    interface OfDouble<A, R> extends PrimitiveCollector<A, R> {
+        /**
+         * A function that folds a value into a mutable result container.
+         *
+         * @return a function which folds a value into a mutable result
+         * container
+         */
+        ObjDoubleConsumer<A> accumulator();
+
+        /**
+         * Returns a new {@code PrimitiveCollector.OfDouble} described by the
+         * given {@code supplier}, {@code accumulator}, {@code combiner}, and
+         * {@code finisher} functions.
+         *
+         * @param supplier The supplier function for the new collector
+         * @param accumulator The accumulator function for the new collector
+         * @param combiner The combiner function for the new collector
+         * @param finisher The finisher function for the new collector
+         * @param <A> The intermediate accumulation type of the new collector
+         * @param <R> The final result type of the new collector
+         * @throws NullPointerException if any argument is null
+         * @return the new collector
+         */
+        public static <A, R> OfDouble<A, R> of(Supplier<A> supplier,
+                                               ObjDoubleConsumer<A> accumulator,
+                                               BinaryOperator<A> combiner,
+                                               Function<A, R> finisher) {
+            return new PrimitiveCollectors.OfDoubleImpl<>(
+                    Objects.requireNonNull(supplier),
+                    Objects.requireNonNull(accumulator),
+                    Objects.requireNonNull(combiner),
+                    Objects.requireNonNull(finisher));
+        }
+    }
+}
@@ -0,0 +1,559 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.IntHashMap;
+import java.util.LongHashMap;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleToIntFunction;
+import java.util.function.DoubleToLongFunction;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongToIntFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Implementations of {@link PrimitiveCollector} that implement useful
+ * reduction operations over primitive streams without boxing their
+ * elements.  Where {@link Collectors#groupingBy(Function, Collector)
+ * Collectors.groupingBy} accumulates into a {@code Map} of boxed keys
+ * and values, and {@link Collectors#partitioningBy(java.util.function.Predicate)
+ * Collectors.partitioningBy} into a {@code Map<Boolean, ...>}, the
+ * collectors here accumulate into {@link IntHashMap}s,
+ * {@link LongHashMap}s and primitive arrays.
+ *
+ * <p>The following are examples of using the predefined collectors:
+ *
+ * <pre>{@code
+ *     // Count requests by status code
+ *     IntHashMap byStatus = requests.stream()
+ *                                   .mapToInt(Request::getStatus)
+ *                                   .collect(PrimitiveCollectors.groupingIntsByCount(s -> s));
+ *
+ *     // Count events by hour of their millisecond timestamps
+ *     LongHashMap byHour = events.stream()
+ *                                .mapToLong(Event::getTimestamp)
+ *                                .collect(PrimitiveCollectors.groupingLongsByCount(t -> t / 3_600_000L));
+ *
+ *     // Histogram latencies, in milliseconds, into 100 bins of 10ms
+ *     int[] bins = latencies.stream()
+ *                           .mapToInt(Latency::getMillis)
+ *                           .collect(PrimitiveCollectors.histogramInts(0, 1000, 100));
+ * }</pre>
+ *
+ * <p>Collectors whose names end in {@code Ints}, {@code Longs} or
+ * {@code Doubles} apply to {@link IntStream}, {@link LongStream} and
+ * {@link DoubleStream} respectively.
+ *
+ * @see PrimitiveCollector
+ * @see Collectors
+ * @since 1.8
+ */
+public final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() { }
+
+    /**
+     * Simple implementation class for {@code PrimitiveCollector.OfInt}.
+     *
+     * @param <A> the mutable result type
+     * @param <R> the result type
+     */
+    static final class OfIntImpl<A, R> implements PrimitiveCollector.OfInt<A, R> {
+        private final Supplier<A> supplier;
+        private final ObjIntConsumer<A> accumulator;
+        private final BinaryOperator<A> combiner;
+        private final Function<A, R> finisher;
+
+        OfIntImpl(Supplier<A> supplier, ObjIntConsumer<A> accumulator,
+                  BinaryOperator<A> combiner, Function<A, R> finisher) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.finisher = finisher;
+        }
+
+        @Override
+        public Supplier<A> supplier() {
+            return supplier;
+        }
+
+        @Override
+        public ObjIntConsumer<A> accumulator() {
+            return accumulator;
+        }
+
+        @Override
+        public BinaryOperator<A> combiner() {
+            return combiner;
+        }
+
+        @Override
+        public Function<A, R> finisher() {
+            return finisher;
+        }
+    }
+
+    /**
+     * Simple implementation class for {@code PrimitiveCollector.OfLong}.
+     *
+     * @param <A> the mutable result type
+     * @param <R> the result type
+     */
+    static final class OfLongImpl<A, R> implements PrimitiveCollector.OfLong<A, R> {
+        private final Supplier<A> supplier;
+        private final ObjLongConsumer<A> accumulator;
+        private final BinaryOperator<A> combiner;
+        private final Function<A, R> finisher;
+
+        OfLongImpl(Supplier<A> supplier, ObjLongConsumer<A> accumulator,
+                   BinaryOperator<A> combiner, Function<A, R> finisher) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.finisher = finisher;
+        }
+
+        @Override
+        public Supplier<A> supplier() {
+            return supplier;
+        }
+
+        @Override
+        public ObjLongConsumer<A> accumulator() {
+            return accumulator;
+        }
+
+        @Override
+        public BinaryOperator<A> combiner() {
+            return combiner;
+        }
+
+        @Override
+        public Function<A, R> finisher() {
+            return finisher;
+        }
+    }
+
+    /**
+     * Simple implementation class for {@code PrimitiveCollector.OfDouble}.
+     *
+     * @param <A> the mutable result type
+     * @param <R> the result type
+     */
+    static final class OfDoubleImpl<A, R> implements PrimitiveCollector.OfDouble<A, R> {
+        private final Supplier<A> supplier;
+        private final ObjDoubleConsumer<A> accumulator;
+        private final BinaryOperator<A> combiner;
+        private final Function<A, R> finisher;
+
+        OfDoubleImpl(Supplier<A> supplier, ObjDoubleConsumer<A> accumulator,
+                     BinaryOperator<A> combiner, Function<A, R> finisher) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.finisher = finisher;
+        }
+
+        @Override
+        public Supplier<A> supplier() {
+            return supplier;
+        }
+
+        @Override
+        public ObjDoubleConsumer<A> accumulator() {
+            return accumulator;
+        }
+
+        @Override
+        public BinaryOperator<A> combiner() {
+            return combiner;
+        }
+
+        @Override
+        public Function<A, R> finisher() {
+            return finisher;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <I, R> Function<I, R> castingIdentity() {
+        return i -> (R) i;
+    }
+
+    // Grouping into maps
+
+    /**
+     * Returns a collector that groups {@code int} elements by a classifier
+     * and counts the elements of each group.  If more than
+     * {@code Integer.MAX_VALUE} elements fall in a group, its count
+     * overflows.
+     *
+     * @param classifier a function mapping elements to keys
+     * @return a collector producing a map from each key to the number of
+     * elements mapped to it
+     */
+    public static PrimitiveCollector.OfInt<IntHashMap, IntHashMap>
+    groupingIntsByCount(IntUnaryOperator classifier) {
+        Objects.requireNonNull(classifier);
+        return new OfIntImpl<>(IntHashMap::new,
+                               (m, t) -> m.merge(classifier.applyAsInt(t), 1, Integer::sum),
+                               PrimitiveCollectors::mergeSums, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that groups {@code int} elements by a classifier
+     * and sums the elements of each group.  As with
+     * {@link Collectors#summingInt}, sums overflow silently.
+     *
+     * @param classifier a function mapping elements to keys
+     * @return a collector producing a map from each key to the sum of the
+     * elements mapped to it
+     */
+    public static PrimitiveCollector.OfInt<IntHashMap, IntHashMap>
+    groupingIntsBySum(IntUnaryOperator classifier) {
+        Objects.requireNonNull(classifier);
+        return new OfIntImpl<>(IntHashMap::new,
+                               (m, t) -> m.merge(classifier.applyAsInt(t), t, Integer::sum),
+                               PrimitiveCollectors::mergeSums, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that groups {@code long} elements by a classifier
+     * and counts the elements of each group.
+     *
+     * @param classifier a function mapping elements to keys
+     * @return a collector producing a map from each key to the number of
+     * elements mapped to it
+     */
+    public static PrimitiveCollector.OfLong<LongHashMap, LongHashMap>
+    groupingLongsByCount(LongUnaryOperator classifier) {
+        Objects.requireNonNull(classifier);
+        return new OfLongImpl<>(LongHashMap::new,
+                                (m, t) -> m.merge(classifier.applyAsLong(t), 1L, Long::sum),
+                                PrimitiveCollectors::mergeSums, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that groups {@code long} elements by a classifier
+     * and sums the elements of each group.  As with
+     * {@link Collectors#summingLong}, sums overflow silently.
+     *
+     * @param classifier a function mapping elements to keys
+     * @return a collector producing a map from each key to the sum of the
+     * elements mapped to it
+     */
+    public static PrimitiveCollector.OfLong<LongHashMap, LongHashMap>
+    groupingLongsBySum(LongUnaryOperator classifier) {
+        Objects.requireNonNull(classifier);
+        return new OfLongImpl<>(LongHashMap::new,
+                                (m, t) -> m.merge(classifier.applyAsLong(t), t, Long::sum),
+                                PrimitiveCollectors::mergeSums, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that groups {@code double} elements by a
+     * classifier and counts the elements of each group.
+     *
+     * @param classifier a function mapping elements to keys
+     * @return a collector producing a map from each key to the number of
+     * elements mapped to it
+     */
+    public static PrimitiveCollector.OfDouble<LongHashMap, LongHashMap>
+    groupingDoublesByCount(DoubleToLongFunction classifier) {
+        Objects.requireNonNull(classifier);
+        return new OfDoubleImpl<>(LongHashMap::new,
+                                  (m, t) -> m.merge(classifier.applyAsLong(t), 1L, Long::sum),
+                                  PrimitiveCollectors::mergeSums, castingIdentity());
+    }
+
+    /**
+     * Adds the values of the right map to those of the same keys in the
+     * left map.
+     */
+    private static IntHashMap mergeSums(IntHashMap left, IntHashMap right) {
+        if (left.size() < right.size()) {
+            IntHashMap t = left; left = right; right = t;
+        }
+        IntHashMap m = left;
+        right.forEach((k, v) -> m.merge(k, v, Integer::sum));
+        return m;
+    }
+
+    /**
+     * Adds the values of the right map to those of the same keys in the
+     * left map.
+     */
+    private static LongHashMap mergeSums(LongHashMap left, LongHashMap right) {
+        if (left.size() < right.size()) {
+            LongHashMap t = left; left = right; right = t;
+        }
+        LongHashMap m = left;
+        right.forEach((k, v) -> m.merge(k, v, Long::sum));
+        return m;
+    }
+
+    // Partitioning and counting into arrays
+
+    /**
+     * Returns a collector that counts the {@code int} elements that do
+     * not, and that do, match a predicate.
+     *
+     * @param predicate a predicate used for classifying input elements
+     * @return a collector producing an array of two counts: at index 0
+     * that of elements not matching the predicate, and at index 1 that
+     * of elements matching it
+     */
+    public static PrimitiveCollector.OfInt<long[], long[]>
+    partitioningIntsByCount(IntPredicate predicate) {
+        Objects.requireNonNull(predicate);
+        return new OfIntImpl<>(() -> new long[2],
+                               (a, t) -> a[predicate.test(t) ? 1 : 0]++,
+                               PrimitiveCollectors::addCounts, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that counts the {@code long} elements that do
+     * not, and that do, match a predicate.
+     *
+     * @param predicate a predicate used for classifying input elements
+     * @return a collector producing an array of two counts: at index 0
+     * that of elements not matching the predicate, and at index 1 that
+     * of elements matching it
+     */
+    public static PrimitiveCollector.OfLong<long[], long[]>
+    partitioningLongsByCount(LongPredicate predicate) {
+        Objects.requireNonNull(predicate);
+        return new OfLongImpl<>(() -> new long[2],
+                                (a, t) -> a[predicate.test(t) ? 1 : 0]++,
+                                PrimitiveCollectors::addCounts, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that counts the {@code double} elements that do
+     * not, and that do, match a predicate.
+     *
+     * @param predicate a predicate used for classifying input elements
+     * @return a collector producing an array of two counts: at index 0
+     * that of elements not matching the predicate, and at index 1 that
+     * of elements matching it
+     */
+    public static PrimitiveCollector.OfDouble<long[], long[]>
+    partitioningDoublesByCount(DoublePredicate predicate) {
+        Objects.requireNonNull(predicate);
+        return new OfDoubleImpl<>(() -> new long[2],
+                                  (a, t) -> a[predicate.test(t) ? 1 : 0]++,
+                                  PrimitiveCollectors::addCounts, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that counts {@code int} elements into an array,
+     * at the index to which a function maps each element.  Collection
+     * fails with {@code ArrayIndexOutOfBoundsException} if an element is
+     * mapped to an index out of bounds.
+     *
+     * @param length the length of the array of counts
+     * @param indexer a function mapping elements to indices between 0
+     *        (inclusive) and {@code length} (exclusive)
+     * @return a collector producing an array of counts
+     * @throws IllegalArgumentException if {@code length} is negative
+     */
+    public static PrimitiveCollector.OfInt<long[], long[]>
+    countingInts(int length, IntUnaryOperator indexer) {
+        checkLength(length);
+        Objects.requireNonNull(indexer);
+        return new OfIntImpl<>(() -> new long[length],
+                               (a, t) -> a[indexer.applyAsInt(t)]++,
+                               PrimitiveCollectors::addCounts, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that counts {@code long} elements into an array,
+     * at the index to which a function maps each element.  Collection
+     * fails with {@code ArrayIndexOutOfBoundsException} if an element is
+     * mapped to an index out of bounds.
+     *
+     * @param length the length of the array of counts
+     * @param indexer a function mapping elements to indices between 0
+     *        (inclusive) and {@code length} (exclusive)
+     * @return a collector producing an array of counts
+     * @throws IllegalArgumentException if {@code length} is negative
+     */
+    public static PrimitiveCollector.OfLong<long[], long[]>
+    countingLongs(int length, LongToIntFunction indexer) {
+        checkLength(length);
+        Objects.requireNonNull(indexer);
+        return new OfLongImpl<>(() -> new long[length],
+                                (a, t) -> a[indexer.applyAsInt(t)]++,
+                                PrimitiveCollectors::addCounts, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that counts {@code double} elements into an
+     * array, at the index to which a function maps each element.
+     * Collection fails with {@code ArrayIndexOutOfBoundsException} if an
+     * element is mapped to an index out of bounds.
+     *
+     * @param length the length of the array of counts
+     * @param indexer a function mapping elements to indices between 0
+     *        (inclusive) and {@code length} (exclusive)
+     * @return a collector producing an array of counts
+     * @throws IllegalArgumentException if {@code length} is negative
+     */
+    public static PrimitiveCollector.OfDouble<long[], long[]>
+    countingDoubles(int length, DoubleToIntFunction indexer) {
+        checkLength(length);
+        Objects.requireNonNull(indexer);
+        return new OfDoubleImpl<>(() -> new long[length],
+                                  (a, t) -> a[indexer.applyAsInt(t)]++,
+                                  PrimitiveCollectors::addCounts, castingIdentity());
+    }
+
+    private static void checkLength(int length) {
+        if (length < 0)
+            throw new IllegalArgumentException("Illegal length: " + length);
+    }
+
+    private static long[] addCounts(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++)
+            left[i] += right[i];
+        return left;
+    }
+
+    // Histograms
+
+    /**
+     * Returns a collector that counts the {@code int} elements lying in
+     * each of a number of equal-width bins spanning a range.  An element
+     * {@code t} in the range falls in bin
+     * {@code (t - origin) * bins / (bound - origin)}; elements outside
+     * the range are not counted.  If more than {@code Integer.MAX_VALUE}
+     * elements fall in a bin, its count overflows.
+     *
+     * @param origin the least value of the range (inclusive)
+     * @param bound the upper bound of the range (exclusive)
+     * @param bins the number of bins
+     * @return a collector producing an array of the count of each bin
+     * @throws IllegalArgumentException if {@code origin} is not less than
+     *         {@code bound}, or {@code bins} is not positive
+     */
+    public static PrimitiveCollector.OfInt<int[], int[]>
+    histogramInts(int origin, int bound, int bins) {
+        if (origin >= bound || bins <= 0)
+            throw new IllegalArgumentException();
+        long range = (long) bound - origin;
+        return new OfIntImpl<>(() -> new int[bins],
+                               (a, t) -> {
+                                   if (t >= origin && t < bound)
+                                       a[(int) (((long) t - origin) * bins / range)]++;
+                               },
+                               PrimitiveCollectors::addBins, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that counts the {@code long} elements lying in
+     * each of a number of equal-width bins spanning a range.  An element
+     * {@code t} in the range falls in bin
+     * {@code (t - origin) * bins / (bound - origin)}, computed exactly
+     * unless that product would overflow, in which case it is computed
+     * in {@code double} arithmetic; elements outside the range are not
+     * counted.  If more than {@code Integer.MAX_VALUE} elements fall in a
+     * bin, its count overflows.
+     *
+     * @param origin the least value of the range (inclusive)
+     * @param bound the upper bound of the range (exclusive)
+     * @param bins the number of bins
+     * @return a collector producing an array of the count of each bin
+     * @throws IllegalArgumentException if {@code origin} is not less than
+     *         {@code bound}, {@code bound - origin} overflows, or
+     *         {@code bins} is not positive
+     */
+    public static PrimitiveCollector.OfLong<int[], int[]>
+    histogramLongs(long origin, long bound, int bins) {
+        long range = bound - origin;
+        if (origin >= bound || range <= 0L || bins <= 0)
+            throw new IllegalArgumentException();
+        ObjLongConsumer<int[]> accumulator;
+        if (range <= Long.MAX_VALUE / bins)
+            accumulator = (a, t) -> {
+                if (t >= origin && t < bound)
+                    a[(int) ((t - origin) * bins / range)]++;
+            };
+        else {
+            double scale = (double) bins / range;
+            accumulator = (a, t) -> {
+                if (t >= origin && t < bound)
+                    a[Math.min((int) ((t - origin) * scale), bins - 1)]++;
+            };
+        }
+        return new OfLongImpl<>(() -> new int[bins], accumulator,
+                                PrimitiveCollectors::addBins, castingIdentity());
+    }
+
+    /**
+     * Returns a collector that counts the {@code double} elements lying in
+     * each of a number of equal-width bins spanning a range.  An element
+     * {@code t} in the range falls in bin
+     * {@code (int) ((t - origin) / (bound - origin) * bins)}; elements
+     * outside the range, and NaN elements, are not counted.  If more than
+     * {@code Integer.MAX_VALUE} elements fall in a bin, its count
+     * overflows.
+     *
+     * @param origin the least value of the range (inclusive)
+     * @param bound the upper bound of the range (exclusive)
+     * @param bins the number of bins
+     * @return a collector producing an array of the count of each bin
+     * @throws IllegalArgumentException if {@code origin} is not less than
+     *         {@code bound}, either is not finite, or {@code bins} is not
+     *         positive
+     */
+    public static PrimitiveCollector.OfDouble<int[], int[]>
+    histogramDoubles(double origin, double bound, int bins) {
+        if (!(origin < bound) || Double.isInfinite(origin) ||
+            Double.isInfinite(bound) || bins <= 0)
+            throw new IllegalArgumentException();
+        double scale = bins / (bound - origin);
+        return new OfDoubleImpl<>(() -> new int[bins],
+                                  (a, t) -> {
+                                      if (t >= origin && t < bound)
+                                          a[Math.min((int) ((t - origin) * scale), bins - 1)]++;
+                                  },
+                                  PrimitiveCollectors::addBins, castingIdentity());
+    }
+
+    private static int[] addBins(int[] left, int[] right) {
+        for (int i = 0; i < left.length; i++)
+            left[i] += right[i];
+        return left;
+    }
+}
@@ -93,6 +93,128 @@ final class SortedOps {
         return new OfDouble(upstream);
     }
 
+    /**
+     * Arrays smaller than this are sorted by {@link Arrays#parallelSort}
+     * rather than by {@link #sampleSort}.
+     */
+    static final int MIN_SAMPLE_SORT_SIZE = 1 << 16;
+
+    /**
+     * The maximum number of buckets into which {@link #sampleSort}
+     * distributes elements; bucket indices must fit in a byte.
+     */
+    static final int MAX_BUCKETS = 1 << 8;
+
+    /**
+     * The number of samples taken per bucket when choosing splitters.
+     */
+    static final int OVERSAMPLING = 32;
+
+    /**
+     * Sorts an array in parallel by sample sort, returning the sorted
+     * elements in a new array, or in the given one if it was sorted in
+     * place.
+     *
+     * <p>Splitters chosen from a sorted sample of the elements divide the
+     * range of values into buckets of similar expected size, one or a few
+     * per worker thread.  The array is divided into chunks, and in one
+     * parallel pass each chunk computes the bucket of each of its elements
+     * and the number of its elements in each bucket.  From these counts
+     * every chunk knows where in the output its elements of each bucket
+     * begin, so that a second parallel pass scatters all elements to their
+     * buckets without synchronization, and a third sorts each bucket
+     * independently.  Unlike a merge sort, no pass merges whole sorted
+     * runs.  Since elements keep their relative order when distributed and
+     * buckets are sorted stably, the sort is stable.
+     *
+     * <p>Many equal splitters indicate that many elements are equal, which
+     * would crowd them into one bucket; such arrays, and arrays too small
+     * to benefit, are sorted by {@link Arrays#parallelSort} instead.
+     * Buckets that nonetheless receive many more elements than expected are
+     * themselves sorted with {@code Arrays.parallelSort}.
+     *
+     * @param a the array to sort
+     * @param comparator the comparator to order elements by
+     * @param generator the array factory for the result
+     * @return an array holding the elements of {@code a} in sorted order
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T[] sampleSort(T[] a, Comparator<? super T> comparator,
+                              IntFunction<T[]> generator) {
+        int n = a.length;
+        int buckets = Math.min(AbstractTask.LEAF_TARGET, MAX_BUCKETS);
+        if (n < MIN_SAMPLE_SORT_SIZE || buckets < 8) {
+            Arrays.parallelSort(a, comparator);
+            return a;
+        }
+
+        // Choose splitters from a regular sample; the bucket of an
+        // element is the number of splitters not greater than it
+        Object[] sample = new Object[buckets * OVERSAMPLING];
+        for (int i = 0; i < sample.length; i++)
+            sample[i] = a[(int) ((long) i * n / sample.length)];
+        Arrays.sort((T[]) sample, comparator);
+        Object[] splitters = new Object[buckets - 1];
+        for (int i = 0; i < splitters.length; i++) {
+            splitters[i] = sample[(i + 1) * OVERSAMPLING];
+            if (i > 0 && comparator.compare((T) splitters[i - 1], (T) splitters[i]) == 0) {
+                Arrays.parallelSort(a, comparator);
+                return a;
+            }
+        }
+
+        int chunks = buckets;
+        int chunkSize = (n + chunks - 1) / chunks;
+        byte[] bucketOf = new byte[n];
+        int[][] counts = new int[chunks][buckets];
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] count = counts[c];
+            for (int i = c * chunkSize, to = Math.min(n, i + chunkSize); i < to; i++) {
+                T t = a[i];
+                int lo = 0, hi = splitters.length;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (comparator.compare(t, (T) splitters[mid]) < 0)
+                        hi = mid;
+                    else
+                        lo = mid + 1;
+                }
+                bucketOf[i] = (byte) lo;
+                count[lo]++;
+            }
+        });
+
+        // Turn counts into the starting offset, within the output, of each
+        // chunk's elements of each bucket
+        int[] bounds = new int[buckets + 1];
+        for (int b = 0, offset = 0; b < buckets; b++) {
+            bounds[b] = offset;
+            for (int c = 0; c < chunks; c++) {
+                int k = counts[c][b];
+                counts[c][b] = offset;
+                offset += k;
+            }
+        }
+        bounds[buckets] = n;
+
+        T[] result = generator.apply(n);
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            int[] offset = counts[c];
+            for (int i = c * chunkSize, to = Math.min(n, i + chunkSize); i < to; i++)
+                result[offset[bucketOf[i] & 0xff]++] = a[i];
+        });
+
+        int skewed = (n / buckets) << 2;
+        IntStream.range(0, buckets).parallel().forEach(b -> {
+            int from = bounds[b], to = bounds[b + 1];
+            if (to - from > skewed)
+                Arrays.parallelSort(result, from, to, comparator);
+            else
+                Arrays.sort(result, from, to, comparator);
+        });
+        return result;
+    }
+
     /**
      * Specialized subtype for sorting reference streams
      */
@@ -155,8 +277,14 @@ final class SortedOps {
             else {
                 // @@@ Weak two-pass parallel implementation; parallel collect, parallel sort
                 T[] flattenedData = helper.evaluate(spliterator, true, generator).asArray(generator);
-                Arrays.parallelSort(flattenedData, comparator);
-                return Nodes.node(flattenedData);
+                if (StreamOpFlag.ORDERED.isKnown(helper.getStreamAndOpFlags())) {
+                    // Stable parallel merge of sorted runs
+                    Arrays.parallelSort(flattenedData, comparator);
+                    return Nodes.node(flattenedData);
+                }
+                else {
+                    return Nodes.node(sampleSort(flattenedData, comparator, generator));
+                }
             }
         }
     }
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2013, Oracle and/or its affiliates. All rights reserved.
+ * ORACLE PROPRIETARY/CONFIDENTIAL. Use is subject to license terms.
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ *
+ */
+package java.util.stream;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A sequence of intermediate stream operations that is built once and
+ * may then be applied, with a terminal operation, to any number of
+ * sources.
+ *
+ * <p>Each evaluation of a {@link Stream} builds a new object for every
+ * stage of its pipeline and a new chain of {@link Sink}s through which
+ * elements are pushed.  For streams over small collections this
+ * overhead can dominate the cost of the operations themselves.  A
+ * {@code StreamTemplate} builds the stages once, when it is created,
+ * and, if none of its operations is stateful, builds the chain of
+ * sinks once as well, so that running the template does little more
+ * work than a hand-written loop:
+ *
+ * <pre>{@code
+ *     static final StreamTemplate<Order, String> OPEN_IDS =
+ *         StreamTemplate.of(s -> s.filter(Order::isOpen).map(Order::id));
+ *
+ *     List<String> ids = OPEN_IDS.collect(orders, Collectors.toList());
+ * }</pre>
+ *
+ * <p>A template is evaluated sequentially, in the encounter order of
+ * its source; operations such as {@link Stream#parallel()} applied by
+ * the shape function have no effect.  Templates may be used by
+ * multiple threads concurrently.  The reusable chain of sinks is used
+ * by one evaluation at a time; an evaluation that finds it in use, or
+ * that is run by a template containing stateful operations such as
+ * {@link Stream#sorted()}, {@link Stream#distinct()} or
+ * {@link Stream#limit(long)}, builds a chain of its own.
+ *
+ * <p>As with streams, the behavioral parameters of the operations
+ * must be non-interfering and should be stateless.  Because those
+ * parameters are retained for the life of the template, any state they
+ * capture is shared by all evaluations.
+ *
+ * @param <T> the type of the source elements
+ * @param <R> the type of the elements produced by the operations
+ * @since 1.8
+ */
+public final class StreamTemplate<T, R> {
+
+    /** The last stage of the pipeline */
+    private final AbstractPipeline<?, R, ?> tail;
+
+    /** True if any operation is stateful, so no chain of sinks is kept */
+    private final boolean stateful;
+
+    /** Terminal sink at the end of the reusable chain, or null */
+    private final Relay<R> relay;
+
+    /** The reusable chain of sinks ending in {@code relay}, or null */
+    private final Sink<Object> chain;
+
+    /** Claimed by an evaluation using {@code chain} */
+    private final AtomicBoolean busy = new AtomicBoolean();
+
+    @SuppressWarnings("unchecked")
+    private StreamTemplate(Function<? super Stream<T>, ? extends Stream<R>> shape) {
+        ReferencePipeline.Head<T, T> h =
+                new ReferencePipeline.Head<>(Spliterators.<T>emptySpliterator(),
+                                             StreamOpFlag.IS_ORDERED, false);
+        Stream<R> s = shape.apply(h);
+        if (!(s instanceof ReferencePipeline) ||
+            !((AbstractPipeline<?, ?, ?>) s).isLinkedFrom(h))
+            throw new IllegalArgumentException(
+                    "shape must return a stream derived from its argument");
+        this.tail = (AbstractPipeline<?, R, ?>) s;
+        this.stateful = tail.isAnyStateful();
+        if (stateful) {
+            this.relay = null;
+            this.chain = null;
+        }
+        else {
+            this.relay = new Relay<>();
+            this.chain = tail.wrapSink(relay);
+        }
+    }
+
+    /**
+     * Creates a template from the intermediate operations that the
+     * given function applies to a stream.  The function is invoked once,
+     * with a stream that serves only as a placeholder for the sources of
+     * later evaluations; it must return a stream derived from that
+     * stream by intermediate operations only.
+     *
+     * @param <T> the type of the source elements
+     * @param <R> the type of the elements produced by the operations
+     * @param shape a function applying intermediate operations to its
+     *        argument
+     * @return the new template
+     * @throws IllegalArgumentException if {@code shape} returns a stream
+     *         not derived from its argument
+     */
+    public static <T, R> StreamTemplate<T, R> of(
+            Function<? super Stream<T>, ? extends Stream<R>> shape) {
+        return new StreamTemplate<>(Objects.requireNonNull(shape));
+    }
+
+    /**
+     * Performs a <a href="package-summary.html#MutableReduction">mutable
+     * reduction</a> of the elements produced from the given source,
+     * using a {@code Collector}, as by {@link Stream#collect(Collector)}.
+     *
+     * @param <A> the intermediate accumulation type of the
+     *        {@code Collector}
+     * @param <X> the type of the result
+     * @param source the source elements
+     * @param collector the {@code Collector} describing the reduction
+     * @return the result of the reduction
+     */
+    @SuppressWarnings("unchecked")
+    public <A, X> X collect(Iterable<? extends T> source,
+                            Collector<? super R, A, X> collector) {
+        A container = collector.supplier().get();
+        run(source, Relay.COLLECT, container, collector.accumulator());
+        return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+               ? (X) container
+               : collector.finisher().apply(container);
+    }
+
+    /**
+     * Performs an action for each element produced from the given
+     * source, in encounter order, as by
+     * {@link Stream#forEachOrdered(Consumer)}.
+     *
+     * @param source the source elements
+     * @param action an action to perform on the elements
+     */
+    public void forEach(Iterable<? extends T> source, Consumer<? super R> action) {
+        run(source, Relay.FOR_EACH, null, Objects.requireNonNull(action));
+    }
+
+    /**
+     * Returns the number of elements produced from the given source, as
+     * by {@link Stream#count()}.
+     *
+     * @param source the source elements
+     * @return the count of elements
+     */
+    public long count(Iterable<? extends T> source) {
+        return (Long) run(source, Relay.COUNT, null, null);
+    }
+
+    /**
+     * Performs a reduction of the elements produced from the given
+     * source, using the provided identity value and an associative
+     * accumulation function, as by
+     * {@link Stream#reduce(Object, BinaryOperator)}.
+     *
+     * @param source the source elements
+     * @param identity the identity value for the accumulating function
+     * @param accumulator an associative, non-interfering, stateless
+     *        function for combining two values
+     * @return the result of the reduction
+     */
+    @SuppressWarnings("unchecked")
+    public R reduce(Iterable<? extends T> source, R identity,
+                    BinaryOperator<R> accumulator) {
+        return (R) run(source, Relay.REDUCE, identity,
+                       Objects.requireNonNull(accumulator));
+    }
+
+    /**
+     * Performs a reduction of the elements produced from the given
+     * source, using an associative accumulation function, and returns
+     * an {@code Optional} describing the reduced value, if any, as by
+     * {@link Stream#reduce(BinaryOperator)}.
+     *
+     * @param source the source elements
+     * @param accumulator an associative, non-interfering, stateless
+     *        function for combining two values
+     * @return an {@link Optional} describing the result of the reduction
+     * @throws NullPointerException if the result of the reduction is null
+     */
+    @SuppressWarnings("unchecked")
+    public Optional<R> reduce(Iterable<? extends T> source,
+                              BinaryOperator<R> accumulator) {
+        Object r = run(source, Relay.REDUCE, Relay.NONE,
+                       Objects.requireNonNull(accumulator));
+        return (r == Relay.NONE) ? Optional.empty() : Optional.of((R) r);
+    }
+
+    /**
+     * Pushes the elements of the source through the operations into a
+     * relay set up for the given terminal operation, using the reusable
+     * chain of sinks if it is available.
+     *
+     * @return the final state of the relay
+     */
+    @SuppressWarnings("unchecked")
+    private Object run(Iterable<? extends T> source, int mode,
+                       Object state, Object function) {
+        Spliterator<Object> spliterator =
+                (Spliterator<Object>) source.spliterator();
+        if (!stateful && busy.compareAndSet(false, true)) {
+            Relay<R> r = relay;
+            try {
+                r.init(mode, state, function);
+                tail.copyInto(chain, spliterator);
+                return r.result();
+            } finally {
+                r.clear();
+                busy.set(false);
+            }
+        }
+        else {
+            Relay<R> r = new Relay<>();
+            r.init(mode, state, function);
+            tail.copyInto(tail.<Object>wrapSink(r), spliterator);
+            return r.result();
+        }
+    }
+
+    /**
+     * Terminal sink of a template, accumulating the result of whichever
+     * terminal operation it is set up for.
+     */
+    private static final class Relay<R> implements Sink<R> {
+        static final int FOR_EACH = 0;
+        static final int COLLECT  = 1;
+        static final int COUNT    = 2;
+        static final int REDUCE   = 3;
+
+        /** Marks the absence of a value in a reduction without identity */
+        static final Object NONE = new Object();
+
+        int mode;
+        Object state;
+        Object function;
+        long count;
+
+        void init(int mode, Object state, Object function) {
+            this.mode = mode;
+            this.state = state;
+            this.function = function;
+            this.count = 0L;
+        }
+
+        Object result() {
+            return (mode == COUNT) ? Long.valueOf(count) : state;
+        }
+
+        void clear() {
+            state = null;
+            function = null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void accept(R r) {
+            switch (mode) {
+                case FOR_EACH:
+                    ((Consumer<? super R>) function).accept(r);
+                    break;
+                case COLLECT:
+                    ((BiConsumer<Object, ? super R>) function).accept(state, r);
+                    break;
+                case COUNT:
+                    count++;
+                    break;
+                default:
+                    Object s = state;
+                    state = (s == NONE) ? r
+                            : ((BinaryOperator<R>) function).apply((R) s, r);
+            }
+        }
+    }
+}